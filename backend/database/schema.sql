@@ -1,4 +1,13 @@
 -- Drop tables if they exist to avoid conflicts on restart
+DROP TABLE IF EXISTS resident_balance_snapshots;
+DROP TABLE IF EXISTS resident_balances;
+DROP TABLE IF EXISTS resident_ledger;
+DROP TABLE IF EXISTS archive_watermarks;
+DROP TABLE IF EXISTS announcements_archive;
+DROP TABLE IF EXISTS complaints_archive;
+DROP TABLE IF EXISTS payments_archive;
+DROP TABLE IF EXISTS notification_outbox;
+DROP TABLE IF EXISTS report_jobs;
 DROP TABLE IF EXISTS announcements;
 DROP TABLE IF EXISTS bookings;
 DROP TABLE IF EXISTS payments;
@@ -9,9 +18,11 @@ DROP TABLE IF EXISTS apartments;
 -- Create apartments table
 CREATE TABLE apartments (
     id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    property_id BIGINT NOT NULL DEFAULT 1,
     name VARCHAR(100) NOT NULL,
     floor_number INT NOT NULL,
     unit_number VARCHAR(20) NOT NULL,
+    building VARCHAR(50),
     area DOUBLE NOT NULL,
     bedrooms INT NOT NULL,
     bathrooms INT NOT NULL,
@@ -19,6 +30,7 @@ CREATE TABLE apartments (
     description TEXT,
     image_url VARCHAR(255),
     is_available BOOLEAN NOT NULL DEFAULT TRUE,
+    version BIGINT NOT NULL DEFAULT 0,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
 );
@@ -42,6 +54,7 @@ CREATE TABLE users (
 -- Create complaints table
 CREATE TABLE complaints (
     id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    property_id BIGINT NOT NULL DEFAULT 1,
     title VARCHAR(100) NOT NULL,
     description VARCHAR(1000) NOT NULL,
     category ENUM('MAINTENANCE', 'PLUMBING', 'ELECTRICAL', 'HVAC', 'APPLIANCE', 'NOISE', 'SECURITY', 'OTHER') NOT NULL,
@@ -63,6 +76,7 @@ CREATE TABLE complaints (
 -- Create payments table
 CREATE TABLE payments (
     id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    property_id BIGINT NOT NULL DEFAULT 1,
     type ENUM('RENT', 'DEPOSIT', 'MAINTENANCE', 'OTHER') NOT NULL DEFAULT 'RENT',
     amount DECIMAL(10,2) NOT NULL,
     description VARCHAR(255) NOT NULL,
@@ -82,15 +96,18 @@ CREATE TABLE payments (
 -- Create bookings table
 CREATE TABLE bookings (
     id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    property_id BIGINT NOT NULL DEFAULT 1,
     apartment_id BIGINT NOT NULL,
     visitor_id BIGINT NOT NULL,
     move_in_date DATE NOT NULL,
+    move_out_date DATE,
     status ENUM('PENDING', 'APPROVED', 'REJECTED', 'CANCELLED') NOT NULL DEFAULT 'PENDING',
     message VARCHAR(1000),
     admin_notes VARCHAR(1000),
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
     status_changed_at TIMESTAMP,
+    version BIGINT NOT NULL DEFAULT 0,
     FOREIGN KEY (apartment_id) REFERENCES apartments(id),
     FOREIGN KEY (visitor_id) REFERENCES users(id)
 );
@@ -109,12 +126,167 @@ CREATE TABLE announcements (
     FOREIGN KEY (created_by_id) REFERENCES users(id)
 );
 
+-- Create report jobs table (results of asynchronous report jobs)
+CREATE TABLE report_jobs (
+    id VARCHAR(36) PRIMARY KEY,
+    spec_key VARCHAR(255) NOT NULL,
+    type VARCHAR(50) NOT NULL,
+    status ENUM('QUEUED', 'RUNNING', 'COMPLETED', 'FAILED') NOT NULL DEFAULT 'QUEUED',
+    total_parts INT NOT NULL DEFAULT 0,
+    result LONGTEXT,
+    failure VARCHAR(1000),
+    submitted_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    finished_at TIMESTAMP NULL
+);
+
+-- Create notification outbox table (written in the same transaction as the
+-- change it reports, drained by the notification dispatcher)
+CREATE TABLE notification_outbox (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    resident_id BIGINT NOT NULL,
+    kind ENUM('PAYMENT_OVERDUE', 'COMPLAINT_STATUS') NOT NULL,
+    reference_id BIGINT NOT NULL,
+    message VARCHAR(1000) NOT NULL,
+    status ENUM('PENDING', 'SENDING', 'SENT', 'FAILED') NOT NULL DEFAULT 'PENDING',
+    attempts INT NOT NULL DEFAULT 0,
+    next_attempt_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    claim_token VARCHAR(36),
+    last_error VARCHAR(500),
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    sent_at TIMESTAMP NULL,
+    FOREIGN KEY (resident_id) REFERENCES users(id)
+);
+
+-- Create archive tables (closed rows moved out of the hot tables by the
+-- archiver; no foreign keys, and enum columns widened to VARCHAR so the hot
+-- enums can grow without touching the archive)
+CREATE TABLE payments_archive (
+    id BIGINT PRIMARY KEY,
+    property_id BIGINT NOT NULL,
+    type VARCHAR(20) NOT NULL,
+    amount DECIMAL(10,2) NOT NULL,
+    description VARCHAR(255) NOT NULL,
+    payment_date DATE,
+    due_date DATE NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    resident_id BIGINT NOT NULL,
+    apartment_id BIGINT NOT NULL,
+    transaction_id VARCHAR(255),
+    payment_method VARCHAR(50),
+    created_at TIMESTAMP NULL,
+    updated_at TIMESTAMP NULL,
+    archived_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE TABLE complaints_archive (
+    id BIGINT PRIMARY KEY,
+    property_id BIGINT NOT NULL,
+    title VARCHAR(100) NOT NULL,
+    description VARCHAR(1000) NOT NULL,
+    category VARCHAR(20) NOT NULL,
+    priority VARCHAR(20) NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    resident_id BIGINT NOT NULL,
+    apartment_id BIGINT NOT NULL,
+    assigned_to_id BIGINT,
+    image_url VARCHAR(255),
+    resolution VARCHAR(1000),
+    created_at TIMESTAMP NULL,
+    updated_at TIMESTAMP NULL,
+    resolved_at TIMESTAMP NULL,
+    archived_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE TABLE announcements_archive (
+    id BIGINT PRIMARY KEY,
+    title VARCHAR(100) NOT NULL,
+    content VARCHAR(2000) NOT NULL,
+    created_by_id BIGINT NOT NULL,
+    type VARCHAR(20) NOT NULL,
+    active BOOLEAN NOT NULL,
+    expiry_date TIMESTAMP NULL,
+    created_at TIMESTAMP NULL,
+    updated_at TIMESTAMP NULL,
+    archived_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Create archive watermarks table (per hot table, every archived row is
+-- older than archived_before; reads only consult the archive for ranges
+-- starting before it)
+CREATE TABLE archive_watermarks (
+    table_name VARCHAR(64) PRIMARY KEY,
+    archived_before TIMESTAMP NULL,
+    rows_archived BIGINT NOT NULL DEFAULT 0,
+    amount_archived DECIMAL(15,2) NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP NULL
+);
+
+INSERT INTO archive_watermarks (table_name) VALUES ('payments'), ('complaints'), ('announcements');
+
+-- Create resident ledger table (append-only; one entry per change in what a
+-- payment charges or has been paid, so a resident's balance is the sum of
+-- charged - paid over their entries)
+CREATE TABLE resident_ledger (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    property_id BIGINT NOT NULL,
+    resident_id BIGINT NOT NULL,
+    payment_id BIGINT NOT NULL,
+    entry_type VARCHAR(20) NOT NULL,
+    charged DECIMAL(12,2) NOT NULL DEFAULT 0,
+    paid DECIMAL(12,2) NOT NULL DEFAULT 0,
+    effective_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    recorded_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Create resident balances table (running totals of the ledger, updated in
+-- the transaction that appends the entry; last_entry_id is the newest entry
+-- included)
+CREATE TABLE resident_balances (
+    resident_id BIGINT PRIMARY KEY,
+    property_id BIGINT NOT NULL,
+    total_charged DECIMAL(15,2) NOT NULL DEFAULT 0,
+    total_paid DECIMAL(15,2) NOT NULL DEFAULT 0,
+    balance DECIMAL(15,2) NOT NULL DEFAULT 0,
+    last_entry_id BIGINT NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP NULL
+);
+
+-- Create resident balance snapshots table (periodic copies of changed
+-- balances; a past balance is the latest snapshot before it plus the
+-- entries after last_entry_id)
+CREATE TABLE resident_balance_snapshots (
+    resident_id BIGINT NOT NULL,
+    taken_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    total_charged DECIMAL(15,2) NOT NULL,
+    total_paid DECIMAL(15,2) NOT NULL,
+    last_entry_id BIGINT NOT NULL,
+    PRIMARY KEY (resident_id, taken_at)
+);
+
 -- Index for common queries
 CREATE INDEX idx_apartment_availability ON apartments(is_available);
+CREATE INDEX idx_apartment_building ON apartments(building);
 CREATE INDEX idx_user_role ON users(role);
 CREATE INDEX idx_complaint_status ON complaints(status);
 CREATE INDEX idx_payment_status ON payments(status);
 CREATE INDEX idx_payment_due_date ON payments(due_date);
 CREATE INDEX idx_booking_status ON bookings(status);
 CREATE INDEX idx_announcement_active ON announcements(active);
-CREATE INDEX idx_announcement_expiry ON announcements(expiry_date); 
\ No newline at end of file
+CREATE INDEX idx_announcement_expiry ON announcements(expiry_date);
+CREATE INDEX idx_report_job_spec ON report_jobs(spec_key, status);
+CREATE INDEX idx_apartment_property ON apartments(property_id);
+CREATE INDEX idx_complaint_property_status ON complaints(property_id, status);
+CREATE INDEX idx_payment_property_due_date ON payments(property_id, due_date);
+CREATE INDEX idx_booking_property_apartment ON bookings(property_id, apartment_id);
+CREATE INDEX idx_outbox_due ON notification_outbox(status, next_attempt_at);
+CREATE INDEX idx_outbox_reference ON notification_outbox(kind, reference_id);
+CREATE INDEX idx_outbox_claim ON notification_outbox(claim_token);
+CREATE UNIQUE INDEX uq_payment_transaction ON payments(transaction_id);
+CREATE INDEX idx_payment_archive_date ON payments_archive(payment_date);
+CREATE INDEX idx_payment_archive_resident ON payments_archive(resident_id, created_at);
+CREATE UNIQUE INDEX uq_payment_archive_transaction ON payments_archive(transaction_id);
+CREATE INDEX idx_complaint_archive_resident ON complaints_archive(resident_id, created_at);
+CREATE INDEX idx_ledger_payment ON resident_ledger(payment_id);
+CREATE INDEX idx_ledger_resident ON resident_ledger(resident_id, id);
+CREATE INDEX idx_balance_property ON resident_balances(property_id, balance);
+CREATE INDEX idx_snapshot_entry ON resident_balance_snapshots(resident_id, last_entry_id); 
\ No newline at end of file
@@ -0,0 +1,29 @@
+package com.ams.benchmark;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import com.ams.perf.EmbeddedDatabase;
+import com.ams.perf.SyntheticDataGenerator;
+
+/**
+ * Embedded H2 database in MySQL mode, created from the application's
+ * schema.sql and seeded with deterministic synthetic data.
+ */
+public final class BenchmarkDatabase {
+
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+    private BenchmarkDatabase() {
+    }
+
+    /**
+     * Create a fresh database sized for roughly the given number of residents
+     */
+    public static DataSource create(int residents) {
+        DataSource dataSource = EmbeddedDatabase.create("ams_bench_" + SEQUENCE.incrementAndGet());
+        new SyntheticDataGenerator(dataSource, 42).generate(SyntheticDataGenerator.Scale.ofResidents(residents));
+        return dataSource;
+    }
+}
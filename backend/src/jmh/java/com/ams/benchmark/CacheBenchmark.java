@@ -0,0 +1,64 @@
+package com.ams.benchmark;
+
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.cache.Cache;
+
+import com.ams.config.CacheConfig;
+
+/**
+ * Hit and miss paths through the Spring cache abstraction configured by
+ * {@link CacheConfig}, compared with the underlying Caffeine cache
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class CacheBenchmark {
+
+    private static final int ENTRIES = 400;
+
+    private Cache cache;
+    private com.github.benmanes.caffeine.cache.Cache<Object, Object> nativeCache;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        cache = new CacheConfig().cacheManager().getCache("residentReports");
+        for (long residentId = 0; residentId < ENTRIES; residentId++) {
+            cache.put(residentId, Map.of("residentInfo", Map.of("id", residentId)));
+        }
+        nativeCache = (com.github.benmanes.caffeine.cache.Cache<Object, Object>) cache.getNativeCache();
+    }
+
+    @Benchmark
+    public Object springCacheHit() {
+        return cache.get((long) ThreadLocalRandom.current().nextInt(ENTRIES));
+    }
+
+    @Benchmark
+    public Object springCacheMiss() {
+        return cache.get(ENTRIES + (long) ThreadLocalRandom.current().nextInt(ENTRIES));
+    }
+
+    @Benchmark
+    public Object caffeineHit() {
+        return nativeCache.getIfPresent((long) ThreadLocalRandom.current().nextInt(ENTRIES));
+    }
+}
@@ -0,0 +1,81 @@
+package com.ams.benchmark;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Cost of materializing {@code DatabaseService} result sets as
+ * {@code List<Map<String, Object>>}. The queries are the bodies of the
+ * corresponding stored procedures, run directly against H2.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RowMappingBenchmark {
+
+    private static final String OVERDUE_PAYMENTS_SQL =
+            "SELECT p.id, p.amount, p.description, p.due_date, u.first_name, u.last_name, u.email, "
+            + "a.name as apartment_name, a.unit_number "
+            + "FROM payments p JOIN users u ON p.resident_id = u.id JOIN apartments a ON p.apartment_id = a.id "
+            + "WHERE p.status = 'PENDING' AND p.due_date < CURDATE()";
+
+    private static final String MONTHLY_REVENUE_SQL =
+            "SELECT SUM(amount) as total_revenue, COUNT(*) as payment_count, type FROM payments "
+            + "WHERE status = 'PAID' AND YEAR(payment_date) = ? AND MONTH(payment_date) = ? GROUP BY type";
+
+    private static final String PAYMENT_HISTORY_SQL =
+            "SELECT payment_date, due_date, amount, status, type, description FROM payments "
+            + "WHERE resident_id = ? ORDER BY created_at DESC LIMIT 10";
+
+    @Param({"1000", "10000"})
+    public int residents;
+
+    private JdbcTemplate jdbcTemplate;
+    private int year;
+    private int month;
+
+    @Setup
+    public void setup() {
+        DataSource dataSource = BenchmarkDatabase.create(residents);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        
+        LocalDate lastMonth = LocalDate.now().minusMonths(1);
+        year = lastMonth.getYear();
+        month = lastMonth.getMonthValue();
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> overduePayments() {
+        return jdbcTemplate.queryForList(OVERDUE_PAYMENTS_SQL);
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> monthlyRevenueReport() {
+        return jdbcTemplate.queryForList(MONTHLY_REVENUE_SQL, year, month);
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> residentPaymentHistory() {
+        return jdbcTemplate.queryForList(PAYMENT_HISTORY_SQL, 2L + residents / 2);
+    }
+}
@@ -0,0 +1,51 @@
+package com.ams.benchmark;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ams.service.SearchService;
+
+/**
+ * {@link SearchService} query assembly, execution and mapping, uncached.
+ * Only the LIKE-based user search is portable to H2; the full-text searches
+ * need MySQL.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+
+    @Param({"1000", "10000"})
+    public int residents;
+
+    @Param({"smith", "resident42@"})
+    public String searchTerm;
+
+    private SearchService searchService;
+
+    @Setup
+    public void setup() {
+        searchService = new SearchService(BenchmarkDatabase.create(residents));
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> searchUsers() {
+        return searchService.searchUsers(searchTerm);
+    }
+}
@@ -0,0 +1,89 @@
+package com.ams.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.ams.service.DomainChange;
+import com.ams.service.DomainChangeStream;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Measures the domain change stream on its own: producer threads publish as
+ * fast as the slowest subscriber allows, yielding and retrying whenever the
+ * buffer is full, while several subscribers count what they receive. Every
+ * change must reach every subscriber; exits with status 1 otherwise.
+ *
+ * Settings: {@code changes.producers} (4), {@code changes.subscribers} (3),
+ * {@code changes.events} (2,000,000 per producer), {@code changes.capacity}
+ * (65536).
+ */
+@Slf4j
+public class ChangeStreamBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int producers = Integer.getInteger("changes.producers", 4);
+        int subscribers = Integer.getInteger("changes.subscribers", 3);
+        long events = Long.getLong("changes.events", 2_000_000L);
+        int capacity = Integer.getInteger("changes.capacity", 65536);
+
+        DomainChangeStream stream = new DomainChangeStream(new SimpleMeterRegistry(), capacity, 1024, 50);
+        List<AtomicLong> received = new ArrayList<>();
+        for (int i = 0; i < subscribers; i++) {
+            AtomicLong count = new AtomicLong();
+            received.add(count);
+            stream.subscribe("bench-" + i, batch -> count.addAndGet(batch.size()));
+        }
+
+        AtomicLong full = new AtomicLong();
+        CountDownLatch done = new CountDownLatch(producers);
+        long start = System.nanoTime();
+        for (int p = 0; p < producers; p++) {
+            long propertyId = p + 1;
+            Thread producer = new Thread(() -> {
+                long retries = 0;
+                for (long i = 0; i < events; i++) {
+                    DomainChange change = new DomainChange("Payment", i, DomainChange.Kind.UPDATED, propertyId, 0);
+                    while (!stream.publish(change)) {
+                        retries++;
+                        Thread.yield();
+                    }
+                }
+                full.addAndGet(retries);
+                done.countDown();
+            }, "change-producer-" + p);
+            producer.start();
+        }
+        done.await();
+        long publishNanos = System.nanoTime() - start;
+        long published = producers * events;
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (received.stream().anyMatch(count -> count.get() < published) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        long totalNanos = System.nanoTime() - start;
+        stream.shutdown();
+
+        log.info("Published {} changes from {} producers in {} ms ({} retries on a full buffer): {} changes/s",
+                published, producers, publishNanos / 1_000_000, full.get(),
+                published * 1_000_000_000L / Math.max(1, publishNanos));
+        log.info("Delivered to {} subscribers in {} ms: {} deliveries/s",
+                subscribers, totalNanos / 1_000_000,
+                published * subscribers * 1_000_000_000L / Math.max(1, totalNanos));
+
+        boolean passed = true;
+        for (int i = 0; i < subscribers; i++) {
+            if (received.get(i).get() != published) {
+                log.error("Subscriber bench-{} received {} of {} changes", i, received.get(i).get(), published);
+                passed = false;
+            }
+        }
+        System.exit(passed ? 0 : 1);
+    }
+}
@@ -0,0 +1,164 @@
+package com.ams.loadtest;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import javax.sql.DataSource;
+
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.ams.perf.EmbeddedDatabase;
+import com.ams.perf.SyntheticDataGenerator;
+import com.ams.service.BookingIntervalIndex;
+import com.ams.service.BookingService;
+import com.ams.service.BookingService.ApprovalOutcome;
+import com.ams.service.DatabaseService;
+import com.ams.service.DatabaseService.AssignmentOutcome;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Fires hundreds of concurrent apartment assignments and booking approvals
+ * at a handful of units and then checks that no unit was double-assigned or
+ * double-booked. Exits with status 1 when an invariant is broken.
+ *
+ * Settings: {@code stress.threads} (64), {@code stress.attempts} (500),
+ * {@code stress.units} (5).
+ */
+@Slf4j
+public class ConcurrencyStressRunner {
+
+    public static void main(String[] args) throws Exception {
+        int threads = Integer.getInteger("stress.threads", 64);
+        int attempts = Integer.getInteger("stress.attempts", 500);
+        int units = Integer.getInteger("stress.units", 5);
+        
+        ConfigurableApplicationContext context = LoadTestRunner.startContext("ams_stress", threads);
+        boolean passed;
+        try {
+            DataSource dataSource = context.getBean(DataSource.class);
+            EmbeddedDatabase.initialize(dataSource);
+            SyntheticDataGenerator.Scale scale = new SyntheticDataGenerator.Scale();
+            scale.setBuildings(1);
+            new SyntheticDataGenerator(dataSource, 7).generate(scale);
+            context.getBean(BookingIntervalIndex.class).rebuild();
+            
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+            List<Long> available = jdbcTemplate.queryForList(
+                    "SELECT id FROM apartments WHERE is_available = TRUE ORDER BY id", Long.class);
+            if (available.size() < units * 2) {
+                throw new IllegalStateException("Need " + units * 2 + " available apartments, found " + available.size());
+            }
+            List<Long> assignmentUnits = available.subList(0, units);
+            List<Long> bookingUnits = available.subList(units, units * 2);
+            int residents = scale.residents();
+            
+            DatabaseService databaseService = context.getBean(DatabaseService.class);
+            Map<AssignmentOutcome, AtomicLong> assignments = storm(threads, attempts, AssignmentOutcome.class,
+                    () -> databaseService.assignResidentToApartment(
+                            2L + ThreadLocalRandom.current().nextInt(residents),
+                            assignmentUnits.get(ThreadLocalRandom.current().nextInt(units))));
+            log.info("Assignment outcomes: {}", assignments);
+            
+            List<Long> visitors = jdbcTemplate.queryForList(
+                    "SELECT id FROM users WHERE role = 'VISITOR' ORDER BY id", Long.class);
+            List<Long> bookingIds = new ArrayList<>();
+            for (int i = 0; i < attempts; i++) {
+                jdbcTemplate.update("INSERT INTO bookings (apartment_id, visitor_id, move_in_date, status) "
+                        + "VALUES (?, ?, CURRENT_DATE, 'PENDING')",
+                        bookingUnits.get(i % units), visitors.get(i % visitors.size()));
+                bookingIds.add(jdbcTemplate.queryForObject("SELECT MAX(id) FROM bookings", Long.class));
+            }
+            BookingService bookingService = context.getBean(BookingService.class);
+            Map<ApprovalOutcome, AtomicLong> approvals = storm(threads, attempts, ApprovalOutcome.class,
+                    () -> bookingService.approveBooking(
+                            bookingIds.get(ThreadLocalRandom.current().nextInt(bookingIds.size())), "stress"));
+            log.info("Approval outcomes: {}", approvals);
+            
+            passed = check(jdbcTemplate, "apartments with more than one resident",
+                    "SELECT COUNT(*) FROM (SELECT apartment_id FROM users WHERE apartment_id IS NOT NULL "
+                    + "GROUP BY apartment_id HAVING COUNT(*) > 1) t");
+            passed &= check(jdbcTemplate, "available apartments that have a resident",
+                    "SELECT COUNT(*) FROM apartments a WHERE a.is_available = TRUE "
+                    + "AND EXISTS (SELECT 1 FROM users u WHERE u.apartment_id = a.id)");
+            passed &= check(jdbcTemplate, "stress units with more than one approved booking",
+                    "SELECT COUNT(*) FROM (SELECT apartment_id FROM bookings WHERE status = 'APPROVED' "
+                    + "AND apartment_id IN (" + joinIds(bookingUnits) + ") GROUP BY apartment_id "
+                    + "HAVING COUNT(*) > 1) t");
+            passed &= approvals.get(ApprovalOutcome.APPROVED).get() <= units;
+        } finally {
+            context.close();
+        }
+        
+        log.info(passed ? "Concurrency invariants held" : "Concurrency invariants BROKEN");
+        System.exit(passed ? 0 : 1);
+    }
+
+    /**
+     * Release all attempts at once from a start latch and count the outcomes
+     */
+    private static <E extends Enum<E>> Map<E, AtomicLong> storm(int threads, int attempts, Class<E> outcomes,
+            Supplier<E> attempt) throws InterruptedException {
+        Map<E, AtomicLong> counts = new ConcurrentHashMap<>(new EnumMap<>(outcomes));
+        for (E outcome : outcomes.getEnumConstants()) {
+            counts.put(outcome, new AtomicLong());
+        }
+        AtomicLong errors = new AtomicLong();
+        
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int i = 0; i < attempts; i++) {
+            executor.submit(() -> {
+                try {
+                    start.await();
+                    counts.get(attempt.get()).incrementAndGet();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                } catch (RuntimeException ex) {
+                    errors.incrementAndGet();
+                    log.warn("Attempt failed", ex);
+                }
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        executor.awaitTermination(5, TimeUnit.MINUTES);
+        
+        if (errors.get() > 0) {
+            throw new IllegalStateException(errors.get() + " attempts failed with an exception instead of an outcome");
+        }
+        return counts;
+    }
+
+    private static boolean check(JdbcTemplate jdbcTemplate, String description, String countSql) {
+        long violations = jdbcTemplate.queryForObject(countSql, Long.class);
+        if (violations > 0) {
+            log.error("{}: {}", description, violations);
+            return false;
+        }
+        log.info("{}: none", description);
+        return true;
+    }
+
+    private static String joinIds(List<Long> ids) {
+        StringBuilder joined = new StringBuilder();
+        for (Long id : ids) {
+            if (joined.length() > 0) {
+                joined.append(',');
+            }
+            joined.append(id);
+        }
+        return joined.toString();
+    }
+}
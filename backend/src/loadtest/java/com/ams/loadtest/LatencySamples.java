@@ -0,0 +1,50 @@
+package com.ams.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * Growable array of latency samples in nanoseconds. Each worker thread owns
+ * its own instance, so recording is a plain array store; instances are
+ * merged once the run is over.
+ */
+class LatencySamples {
+
+    private long[] samples = new long[1024];
+    private int size;
+
+    void record(long nanos) {
+        if (size == samples.length) {
+            samples = Arrays.copyOf(samples, size * 2);
+        }
+        samples[size++] = nanos;
+    }
+
+    void addAll(LatencySamples other) {
+        if (size + other.size > samples.length) {
+            samples = Arrays.copyOf(samples, Math.max(samples.length * 2, size + other.size));
+        }
+        System.arraycopy(other.samples, 0, samples, size, other.size);
+        size += other.size;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Sort the samples and return the value at each requested percentile, in milliseconds
+     */
+    double[] percentilesMillis(double... percentiles) {
+        Arrays.sort(samples, 0, size);
+        double[] values = new double[percentiles.length];
+        for (int i = 0; i < percentiles.length; i++) {
+            if (size == 0) {
+                values[i] = 0;
+                continue;
+            }
+            int index = (int) Math.ceil(percentiles[i] * size) - 1;
+            values[i] = samples[Math.max(0, Math.min(size - 1, index))] / 1_000_000.0;
+        }
+        return values;
+    }
+}
@@ -0,0 +1,327 @@
+package com.ams.loadtest;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.ams.ApartmentManagementApplication;
+import com.ams.perf.EmbeddedDatabase;
+import com.ams.perf.SyntheticDataGenerator;
+import com.ams.service.BookingIntervalIndex;
+import com.ams.service.StaffWorkloadIndex;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Offline load test: starts the Spring context on an embedded H2 database,
+ * generates synthetic data, drives a mixed workload from many threads and
+ * compares per-operation p99 latency with a stored baseline.
+ *
+ * Settings are read from system properties:
+ * <ul>
+ *   <li>{@code loadtest.threads} - worker threads (default 16)</li>
+ *   <li>{@code loadtest.warmupSeconds} / {@code loadtest.durationSeconds} - run length (10 / 60)</li>
+ *   <li>{@code loadtest.buildings}, {@code loadtest.yearsOfPayments}, {@code loadtest.visitors} - data scale</li>
+ *   <li>{@code loadtest.baseline} - baseline JSON file</li>
+ *   <li>{@code loadtest.tolerance} - allowed p99 regression as a fraction (0.25)</li>
+ *   <li>{@code loadtest.updateBaseline} - overwrite the baseline with this run's p99s</li>
+ *   <li>{@code loadtest.report} - where to write the JSON report</li>
+ *   <li>{@code loadtest.replica} - add a second embedded database as a read
+ *       replica, loaded with the same synthetic data</li>
+ *   <li>{@code loadtest.shards} - extra embedded databases as property
+ *       shards, each holding its own synthetic property (default 0)</li>
+ * </ul>
+ * Exits with status 1 when any operation reports errors, when the baseline
+ * is missing, or when any operation regresses past the baseline.
+ */
+@Slf4j
+public class LoadTestRunner {
+
+    private static final double[] PERCENTILES = {0.5, 0.95, 0.99, 0.999};
+
+    public static void main(String[] args) throws Exception {
+        int threads = Integer.getInteger("loadtest.threads", 16);
+        int warmupSeconds = Integer.getInteger("loadtest.warmupSeconds", 10);
+        int durationSeconds = Integer.getInteger("loadtest.durationSeconds", 60);
+        double tolerance = Double.parseDouble(System.getProperty("loadtest.tolerance", "0.25"));
+        File baselineFile = new File(System.getProperty("loadtest.baseline", "src/loadtest/baseline.json"));
+        File reportFile = new File(System.getProperty("loadtest.report", "target/loadtest-result.json"));
+        boolean updateBaseline = Boolean.getBoolean("loadtest.updateBaseline");
+        boolean replica = Boolean.getBoolean("loadtest.replica");
+        int shards = Integer.getInteger("loadtest.shards", 0);
+        
+        SyntheticDataGenerator.Scale scale = new SyntheticDataGenerator.Scale();
+        scale.setBuildings(Integer.getInteger("loadtest.buildings", scale.getBuildings()));
+        scale.setYearsOfPayments(Integer.getInteger("loadtest.yearsOfPayments", scale.getYearsOfPayments()));
+        scale.setVisitors(Integer.getInteger("loadtest.visitors", scale.getVisitors()));
+        
+        DataSource replicaDataSource = replica ? EmbeddedDatabase.create("ams_loadtest_replica") : null;
+        List<DataSource> shardDataSources = new ArrayList<>();
+        for (int shard = 1; shard <= shards; shard++) {
+            shardDataSources.add(EmbeddedDatabase.create("ams_loadtest_shard" + shard));
+        }
+        ConfigurableApplicationContext context = startContext("ams_loadtest", replica ? "ams_loadtest_replica" : null,
+                shards, threads);
+        int exitCode;
+        try {
+            DataSource dataSource = context.getBean(DataSource.class);
+            EmbeddedDatabase.initialize(dataSource);
+            new SyntheticDataGenerator(dataSource, 42).generate(scale);
+            if (replicaDataSource != null) {
+                // Same seed, same rows: the replica starts as an exact copy
+                new SyntheticDataGenerator(replicaDataSource, 42).generate(scale);
+            }
+            for (int shard = 1; shard <= shards; shard++) {
+                // Shard k holds property k + 1; the primary keeps property 1
+                DataSource shardDataSource = shardDataSources.get(shard - 1);
+                new SyntheticDataGenerator(shardDataSource, 42 + shard).generate(scale);
+                assignProperty(shardDataSource, shard + 1);
+            }
+            context.getBean(BookingIntervalIndex.class).rebuild();
+            context.getBean(StaffWorkloadIndex.class).rebuild();
+            
+            Workload workload = new Workload(context, scale);
+            log.info("Warming up for {} s with {} threads", warmupSeconds, threads);
+            run(workload, threads, warmupSeconds);
+            log.info("Measuring for {} s with {} threads", durationSeconds, threads);
+            Map<String, Object> report = report(workload, run(workload, threads, durationSeconds), durationSeconds);
+            
+            ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+            reportFile.getParentFile().mkdirs();
+            mapper.writeValue(reportFile, report);
+            log.info("Report written to {}", reportFile.getAbsolutePath());
+            
+            exitCode = compareWithBaseline(mapper, report, baselineFile, tolerance, updateBaseline) ? 0 : 1;
+        } finally {
+            context.close();
+        }
+        System.exit(exitCode);
+    }
+
+    /**
+     * Start the application without a web server on an empty embedded
+     * database. Command-line arguments take precedence over
+     * application.properties, so they redirect the data source without
+     * touching it.
+     */
+    static ConfigurableApplicationContext startContext(String databaseName, int threads) {
+        return startContext(databaseName, null, 0, threads);
+    }
+
+    /**
+     * As {@link #startContext(String, int)}, optionally routing reads to a
+     * second embedded database and spreading properties over extra embedded
+     * shards ({@code <databaseName>_shard<k>} holds property k + 1).
+     * Embedded replicas have no replication status, so only their
+     * connectivity is checked. Extra arguments override any setting.
+     */
+    static ConfigurableApplicationContext startContext(String databaseName, String replicaName, int shards,
+            int threads, String... extraArguments) {
+        List<String> arguments = new ArrayList<>(Arrays.asList(embeddedDatabaseArguments(databaseName, threads)));
+        if (replicaName != null) {
+            arguments.add("--ams.datasource.replica.urls=" + EmbeddedDatabase.url(replicaName));
+            arguments.add("--ams.datasource.replica.lag-query=");
+        }
+        for (int shard = 1; shard <= shards; shard++) {
+            arguments.add("--ams.sharding.shards.shard" + shard + "="
+                    + EmbeddedDatabase.url(databaseName + "_shard" + shard));
+            arguments.add("--ams.sharding.properties." + (shard + 1) + "=shard" + shard);
+        }
+        arguments.addAll(Arrays.asList(extraArguments));
+        return new SpringApplicationBuilder(ApartmentManagementApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(arguments.toArray(new String[0]));
+    }
+
+    private static String[] embeddedDatabaseArguments(String databaseName, int threads) {
+        return new String[] {
+            "--spring.datasource.url=" + EmbeddedDatabase.url(databaseName),
+            "--spring.datasource.driver-class-name=org.h2.Driver",
+            "--spring.datasource.username=sa",
+            "--spring.datasource.password=",
+            "--spring.datasource.hikari.maximum-pool-size=" + Math.max(10, threads),
+            "--spring.sql.init.mode=never",
+            "--spring.jpa.show-sql=false",
+            "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+            "--logging.level.com.ams=INFO",
+            "--logging.level.org.springframework.security=INFO",
+            "--logging.level.org.springframework.jdbc.datasource.init=INFO"
+        };
+    }
+
+    private static void assignProperty(DataSource dataSource, long propertyId) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        for (String table : new String[] {"apartments", "complaints", "payments", "bookings"}) {
+            jdbcTemplate.update("UPDATE " + table + " SET property_id = ?", propertyId);
+        }
+    }
+
+    /**
+     * Run the workload for the given time and return the per-operation samples
+     * merged across threads, plus the error counts
+     */
+    private static RunResult run(Workload workload, int threads, int seconds) throws InterruptedException {
+        int operationCount = workload.operations().size();
+        List<LatencySamples[]> perThread = new ArrayList<>();
+        AtomicLong[] errors = new AtomicLong[operationCount];
+        for (int i = 0; i < operationCount; i++) {
+            errors[i] = new AtomicLong();
+        }
+        
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            LatencySamples[] samples = new LatencySamples[operationCount];
+            for (int i = 0; i < operationCount; i++) {
+                samples[i] = new LatencySamples();
+            }
+            perThread.add(samples);
+            
+            Thread worker = new Thread(() -> {
+                try {
+                    while (System.nanoTime() < deadline) {
+                        int op = workload.next();
+                        long start = System.nanoTime();
+                        try {
+                            workload.operations().get(op).action.run();
+                            samples[op].record(System.nanoTime() - start);
+                        } catch (RuntimeException ex) {
+                            errors[op].incrementAndGet();
+                        }
+                    }
+                } finally {
+                    done.countDown();
+                }
+            }, "load-" + t);
+            worker.start();
+        }
+        done.await();
+        
+        LatencySamples[] merged = new LatencySamples[operationCount];
+        for (int i = 0; i < operationCount; i++) {
+            merged[i] = new LatencySamples();
+            for (LatencySamples[] samples : perThread) {
+                merged[i].addAll(samples[i]);
+            }
+        }
+        return new RunResult(merged, errors);
+    }
+
+    private static Map<String, Object> report(Workload workload, RunResult result, int seconds) {
+        Map<String, Object> operations = new LinkedHashMap<>();
+        LatencySamples all = new LatencySamples();
+        long totalErrors = 0;
+        for (int i = 0; i < workload.operations().size(); i++) {
+            LatencySamples samples = result.samples[i];
+            all.addAll(samples);
+            totalErrors += result.errors[i].get();
+            operations.put(workload.operations().get(i).name,
+                    stats(samples, result.errors[i].get(), seconds));
+        }
+        
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("durationSeconds", seconds);
+        report.put("overall", stats(all, totalErrors, seconds));
+        report.put("operations", operations);
+        
+        log.info(String.format("%-40s %10s %8s %10s %10s %10s %10s", "operation", "ops/s", "errors",
+                "p50 ms", "p95 ms", "p99 ms", "p99.9 ms"));
+        operations.forEach((name, stats) -> log.info(format(name, stats)));
+        log.info(format("overall", report.get("overall")));
+        return report;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static String format(String name, Object stats) {
+        Map<String, Object> s = (Map<String, Object>) stats;
+        return String.format("%-40s %10.1f %8d %10.2f %10.2f %10.2f %10.2f", name, s.get("throughput"),
+                s.get("errors"), s.get("p50Ms"), s.get("p95Ms"), s.get("p99Ms"), s.get("p999Ms"));
+    }
+
+    private static Map<String, Object> stats(LatencySamples samples, long errors, int seconds) {
+        double[] values = samples.percentilesMillis(PERCENTILES);
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("count", samples.size());
+        stats.put("errors", errors);
+        stats.put("throughput", samples.size() / (double) seconds);
+        stats.put("p50Ms", values[0]);
+        stats.put("p95Ms", values[1]);
+        stats.put("p99Ms", values[2]);
+        stats.put("p999Ms", values[3]);
+        return stats;
+    }
+
+    /**
+     * Fail on any operation error, then compare each operation's p99 with the
+     * baseline. A failing operation can only look faster, so a run with errors
+     * neither passes nor records a baseline. Operations missing from the
+     * baseline are reported but never fail the run; a missing baseline does.
+     */
+    @SuppressWarnings("unchecked")
+    private static boolean compareWithBaseline(ObjectMapper mapper, Map<String, Object> report, File baselineFile,
+            double tolerance, boolean updateBaseline) throws IOException {
+        Map<String, Object> operations = (Map<String, Object>) report.get("operations");
+        boolean failed = false;
+        for (Map.Entry<String, Object> entry : operations.entrySet()) {
+            long errors = ((Number) ((Map<String, Object>) entry.getValue()).get("errors")).longValue();
+            if (errors > 0) {
+                log.error("{}: {} errors", entry.getKey(), errors);
+                failed = true;
+            }
+        }
+        if (failed) {
+            return false;
+        }
+        if (updateBaseline) {
+            Map<String, Double> baseline = new LinkedHashMap<>();
+            operations.forEach((name, stats) -> baseline.put(name, (Double) ((Map<String, Object>) stats).get("p99Ms")));
+            mapper.writeValue(baselineFile, baseline);
+            log.info("Baseline updated: {}", baselineFile.getAbsolutePath());
+            return true;
+        }
+        if (!baselineFile.exists()) {
+            log.error("No baseline at {}; run with -Dloadtest.updateBaseline=true to record one", baselineFile);
+            return false;
+        }
+        
+        Map<String, Number> baseline = mapper.readValue(baselineFile, Map.class);
+        boolean passed = true;
+        for (Map.Entry<String, Object> entry : operations.entrySet()) {
+            Number expected = baseline.get(entry.getKey());
+            double actual = (Double) ((Map<String, Object>) entry.getValue()).get("p99Ms");
+            if (expected == null) {
+                log.info("{}: p99 {} ms (no baseline)", entry.getKey(), actual);
+            } else if (actual > expected.doubleValue() * (1 + tolerance)) {
+                log.error("{}: p99 {} ms regressed past baseline {} ms (+{}%)", entry.getKey(), actual,
+                        expected, Math.round(tolerance * 100));
+                passed = false;
+            }
+        }
+        return passed;
+    }
+
+    private static final class RunResult {
+        final LatencySamples[] samples;
+        final AtomicLong[] errors;
+
+        RunResult(LatencySamples[] samples, AtomicLong[] errors) {
+            this.samples = samples;
+            this.errors = errors;
+        }
+    }
+}
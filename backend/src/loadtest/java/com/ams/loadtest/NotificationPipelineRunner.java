@@ -0,0 +1,105 @@
+package com.ams.loadtest;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import javax.sql.DataSource;
+
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.ams.model.Complaint.Status;
+import com.ams.perf.EmbeddedDatabase;
+import com.ams.perf.SyntheticDataGenerator;
+import com.ams.service.ComplaintService;
+import com.ams.service.NotificationDispatcher;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Drives the notification pipeline end to end against
+ * {@link LocalSmtpServer}: queues complaint updates and overdue payment
+ * reminders, drains the outbox while the server rejects a share of messages,
+ * and checks that every notification was delivered and each resident got
+ * exactly one digest. Exits with status 1 otherwise.
+ *
+ * Settings: {@code notify.failureRate} (0.2), {@code notify.complaintUpdates}
+ * (200), {@code notify.maxRounds} (50).
+ */
+@Slf4j
+public class NotificationPipelineRunner {
+
+    public static void main(String[] args) throws Exception {
+        double failureRate = Double.parseDouble(System.getProperty("notify.failureRate", "0.2"));
+        int complaintUpdates = Integer.getInteger("notify.complaintUpdates", 200);
+        int maxRounds = Integer.getInteger("notify.maxRounds", 50);
+
+        boolean passed;
+        try (LocalSmtpServer smtp = new LocalSmtpServer(failureRate)) {
+            // The runner drives scans and dispatch rounds itself; retries are due at once
+            ConfigurableApplicationContext context = LoadTestRunner.startContext("ams_notify", null, 0, 8,
+                    "--ams.notifications.enabled=true",
+                    "--ams.notifications.smtp.host=127.0.0.1",
+                    "--ams.notifications.smtp.port=" + smtp.getPort(),
+                    "--ams.notifications.poll-interval-ms=3600000",
+                    "--ams.notifications.overdue-scan-interval-ms=3600000",
+                    "--ams.notifications.coalesce-window-ms=0",
+                    "--ams.notifications.retry-backoff-ms=0",
+                    "--ams.notifications.max-attempts=" + maxRounds);
+            try {
+                DataSource dataSource = context.getBean(DataSource.class);
+                EmbeddedDatabase.initialize(dataSource);
+                SyntheticDataGenerator.Scale scale = new SyntheticDataGenerator.Scale();
+                scale.setBuildings(1);
+                new SyntheticDataGenerator(dataSource, 11).generate(scale);
+
+                JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+                ComplaintService complaintService = context.getBean(ComplaintService.class);
+                List<Long> complaints = jdbcTemplate.queryForList("SELECT id FROM complaints "
+                        + "WHERE status = 'PENDING' ORDER BY id LIMIT ?", Long.class, complaintUpdates);
+                complaints.forEach(id -> complaintService.updateStatus(id, Status.IN_PROGRESS));
+
+                NotificationDispatcher dispatcher = context.getBean(NotificationDispatcher.class);
+                dispatcher.scanOverduePayments();
+                int notifications = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM notification_outbox",
+                        Integer.class);
+                int residents = jdbcTemplate.queryForObject(
+                        "SELECT COUNT(DISTINCT resident_id) FROM notification_outbox", Integer.class);
+                log.info("Queued {} notifications for {} residents", notifications, residents);
+
+                long start = System.nanoTime();
+                int rounds = 0;
+                while (rounds < maxRounds && jdbcTemplate.queryForObject("SELECT COUNT(*) FROM notification_outbox "
+                        + "WHERE status IN ('PENDING', 'SENDING')", Integer.class) > 0) {
+                    dispatcher.dispatch();
+                    rounds++;
+                }
+                log.info("Outbox drained in {} rounds, {} ms: {} digests accepted, {} rejected, {} SMTP connections",
+                        rounds, (System.nanoTime() - start) / 1_000_000, smtp.getMessages().size(),
+                        smtp.getRejected(), smtp.getConnections());
+
+                Set<String> recipients = smtp.getMessages().stream()
+                        .flatMap(message -> message.getRecipients().stream())
+                        .collect(Collectors.toSet());
+                passed = check("notifications not delivered", jdbcTemplate.queryForObject(
+                        "SELECT COUNT(*) FROM notification_outbox WHERE status <> 'SENT'", Integer.class));
+                passed &= check("residents without exactly one digest",
+                        Math.abs(residents - smtp.getMessages().size()) + Math.abs(residents - recipients.size()));
+            } finally {
+                context.close();
+            }
+        }
+
+        log.info(passed ? "Notification pipeline delivered everything" : "Notification pipeline FAILED");
+        System.exit(passed ? 0 : 1);
+    }
+
+    private static boolean check(String description, int violations) {
+        if (violations > 0) {
+            log.error("{}: {}", description, violations);
+            return false;
+        }
+        return true;
+    }
+}
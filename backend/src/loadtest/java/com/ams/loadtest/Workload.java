@@ -0,0 +1,149 @@
+package com.ams.loadtest;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.springframework.context.ApplicationContext;
+
+import com.ams.model.Complaint;
+import com.ams.perf.SyntheticDataGenerator;
+import com.ams.repository.BookingRepository;
+import com.ams.repository.ComplaintRepository;
+import com.ams.repository.PaymentRepository;
+import com.ams.service.BookingService;
+import com.ams.service.ComplaintService;
+import com.ams.service.DatabaseService;
+import com.ams.service.PaymentIngestionService;
+import com.ams.service.ReceivablesAnalyticsService;
+import com.ams.service.SearchService;
+
+/**
+ * Weighted mix of read and write operations against the application's
+ * services and repositories
+ */
+class Workload {
+
+    /**
+     * A single named operation and its share of the mix
+     */
+    static final class Operation {
+        final String name;
+        final int weight;
+        final Runnable action;
+
+        Operation(String name, int weight, Runnable action) {
+            this.name = name;
+            this.weight = weight;
+            this.action = action;
+        }
+    }
+
+    private static final String[] SEARCH_TERMS = {"smith", "john", "garcia", "resident1", "example.com", "lee"};
+
+    private final List<Operation> operations = new ArrayList<>();
+    private final int[] cumulativeWeights;
+    private final int totalWeight;
+
+    Workload(ApplicationContext context, SyntheticDataGenerator.Scale scale) {
+        DatabaseService databaseService = context.getBean(DatabaseService.class);
+        SearchService searchService = context.getBean(SearchService.class);
+        PaymentRepository paymentRepository = context.getBean(PaymentRepository.class);
+        ComplaintRepository complaintRepository = context.getBean(ComplaintRepository.class);
+        BookingRepository bookingRepository = context.getBean(BookingRepository.class);
+        BookingService bookingService = context.getBean(BookingService.class);
+        ComplaintService complaintService = context.getBean(ComplaintService.class);
+        ReceivablesAnalyticsService receivablesAnalytics = context.getBean(ReceivablesAnalyticsService.class);
+        PaymentIngestionService paymentIngestion = context.getBean(PaymentIngestionService.class);
+        
+        int apartments = scale.apartments();
+        int residents = scale.residents();
+        int months = scale.getYearsOfPayments() * 12;
+        
+        // Reads
+        add("getDashboardStatistics", 10, databaseService::getDashboardStatistics);
+        add("getOccupancyStatistics", 5, databaseService::getOccupancyStatistics);
+        add("getAvailableApartments", 10, () -> databaseService.getAvailableApartments(
+                1 + random().nextInt(3), 1 + random().nextInt(2),
+                BigDecimal.valueOf(500), BigDecimal.valueOf(1500 + 500 * random().nextInt(4))));
+        add("getResidentReport", 15, () -> databaseService.getResidentReport(residentId(residents)));
+        add("getMonthlyRevenueReport", 5, () -> {
+            LocalDate month = LocalDate.now().minusMonths(random().nextInt(months));
+            databaseService.getMonthlyRevenueReport(month.getYear(), month.getMonthValue());
+        });
+        add("getOverduePayments", 3, databaseService::getOverduePayments);
+        add("receivablesAnalytics.getReceivables", 3, receivablesAnalytics::getReceivables);
+        add("getPendingComplaints", 5, databaseService::getPendingComplaints);
+        add("searchUsers", 8, () -> searchService.searchUsers(SEARCH_TERMS[random().nextInt(SEARCH_TERMS.length)]
+                + random().nextInt(10)));
+        add("paymentRepository.findByResidentId", 10,
+                () -> paymentRepository.findByResidentId(residentId(residents)));
+        add("complaintRepository.findByApartmentId", 5,
+                () -> complaintRepository.findByApartmentId(1L + random().nextInt(apartments)));
+        add("bookingRepository.findByApartmentId", 5,
+                () -> bookingRepository.findByApartmentId(1L + random().nextInt(apartments)));
+        add("bookingService.findFreeApartments", 5, () -> {
+            LocalDate from = LocalDate.now().plusDays(random().nextInt(180));
+            bookingService.findFreeApartments(from, from.plusMonths(1 + random().nextInt(12)));
+        });
+        
+        // Writes
+        add("processPayment", 5, () -> databaseService.processPayment(
+                1L + random().nextInt(residents * months), "TXN-" + random().nextLong(), "CARD"));
+        // One gateway transaction per payment, so most calls are redelivered callbacks
+        add("paymentIngestion.ingest", 5, () -> {
+            long paymentId = 1L + random().nextInt(residents * months);
+            paymentIngestion.ingest(paymentId, "GW-" + paymentId, "CARD");
+        });
+        add("assignResidentToApartment", 2, () -> databaseService.assignResidentToApartment(
+                residentId(residents), 1L + random().nextInt(apartments)));
+        add("complaintService.create", 2, () -> {
+            long residentId = residentId(residents);
+            Complaint complaint = new Complaint();
+            complaint.setTitle("Load test complaint");
+            complaint.setDescription("Generated by the load test harness");
+            complaint.setCategory(Complaint.Category.values()[random().nextInt(Complaint.Category.values().length)]);
+            complaint.setPriority(Complaint.Priority.values()[random().nextInt(Complaint.Priority.values().length)]);
+            complaintService.create(complaint, residentId, residentId - 1);
+        });
+        
+        cumulativeWeights = new int[operations.size()];
+        int sum = 0;
+        for (int i = 0; i < operations.size(); i++) {
+            sum += operations.get(i).weight;
+            cumulativeWeights[i] = sum;
+        }
+        totalWeight = sum;
+    }
+
+    List<Operation> operations() {
+        return operations;
+    }
+
+    /**
+     * Pick the index of the next operation according to the weights
+     */
+    int next() {
+        int pick = random().nextInt(totalWeight);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (pick < cumulativeWeights[i]) {
+                return i;
+            }
+        }
+        return cumulativeWeights.length - 1;
+    }
+
+    private void add(String name, int weight, Runnable action) {
+        operations.add(new Operation(name, weight, action));
+    }
+
+    private static long residentId(int residents) {
+        return 2L + random().nextInt(residents);
+    }
+
+    private static ThreadLocalRandom random() {
+        return ThreadLocalRandom.current();
+    }
+}
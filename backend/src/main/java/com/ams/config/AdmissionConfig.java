@@ -0,0 +1,35 @@
+package com.ams.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.ams.util.JwtUtil;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+import lombok.extern.slf4j.Slf4j;
+
+@Configuration
+@EnableConfigurationProperties(AdmissionProperties.class)
+@Slf4j
+public class AdmissionConfig {
+
+    /**
+     * Registered as a servlet filter, so rejected requests never reach
+     * Spring MVC
+     */
+    @Bean
+    public AdmissionFilter admissionFilter(AdmissionProperties properties, JwtUtil jwtUtil,
+            MeterRegistry meterRegistry) {
+        properties.getClasses().forEach((name, endpointClass) -> log.info(
+                "Admission limit for {} {}: {} burst, {}/s per user", name, endpointClass.getPaths(),
+                endpointClass.getCapacity(), endpointClass.getRefillPerSecond()));
+        return new AdmissionFilter(properties, jwtUtil, meterRegistry);
+    }
+
+    @Bean
+    public AdmissionEndpoint admissionEndpoint(AdmissionFilter admissionFilter) {
+        return new AdmissionEndpoint(admissionFilter);
+    }
+}
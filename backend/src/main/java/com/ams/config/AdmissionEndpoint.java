@@ -0,0 +1,81 @@
+package com.ams.config;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+
+/**
+ * Exposes {@code /actuator/admission}: the admission limits in force and
+ * the current in-flight count. A POST changes limits without a restart,
+ * e.g. {@code {"endpointClass": "search", "capacity": 5, "refillPerSecond": 1}}
+ * or {@code {"maxConcurrent": 4}}. Limits must be positive; a request with
+ * any other value is rejected with 400 and changes nothing.
+ */
+@Endpoint(id = "admission")
+public class AdmissionEndpoint {
+
+    private final AdmissionFilter filter;
+
+    public AdmissionEndpoint(AdmissionFilter filter) {
+        this.filter = filter;
+    }
+
+    @ReadOperation
+    public Map<String, Object> admission() {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("enabled", filter.isEnabled());
+        report.put("maxConcurrent", filter.getMaxConcurrent());
+        report.put("inFlight", filter.getInFlight());
+        report.put("classes", filter.getClasses());
+        return report;
+    }
+
+    @WriteOperation
+    public Map<String, Object> update(@Nullable Boolean enabled, @Nullable Integer maxConcurrent,
+            @Nullable String endpointClass, @Nullable List<String> paths,
+            @Nullable Integer capacity, @Nullable Double refillPerSecond) {
+        requirePositive("maxConcurrent", maxConcurrent);
+        requirePositive("capacity", capacity);
+        requirePositive("refillPerSecond", refillPerSecond);
+        if (enabled != null) {
+            filter.setEnabled(enabled);
+        }
+        if (maxConcurrent != null) {
+            filter.setMaxConcurrent(maxConcurrent);
+        }
+        if (endpointClass != null) {
+            AdmissionProperties.EndpointClass current = filter.getClasses().get(endpointClass);
+            AdmissionProperties.EndpointClass updated = new AdmissionProperties.EndpointClass();
+            if (current != null) {
+                updated.setPaths(current.getPaths());
+                updated.setCapacity(current.getCapacity());
+                updated.setRefillPerSecond(current.getRefillPerSecond());
+            }
+            if (paths != null) {
+                updated.setPaths(paths);
+            }
+            if (capacity != null) {
+                updated.setCapacity(capacity);
+            }
+            if (refillPerSecond != null) {
+                updated.setRefillPerSecond(refillPerSecond);
+            }
+            filter.updateClass(endpointClass, updated);
+        }
+        return admission();
+    }
+
+    private static void requirePositive(String name, @Nullable Number value) {
+        // NaN fails the comparison too
+        if (value != null && !(value.doubleValue() > 0)) {
+            throw new InvalidEndpointRequestException(name + " must be positive, got " + value,
+                    "Invalid " + name);
+        }
+    }
+}
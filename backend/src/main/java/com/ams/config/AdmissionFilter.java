@@ -0,0 +1,189 @@
+package com.ams.config;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.ams.util.JwtUtil;
+import com.ams.util.TokenBucket;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.jsonwebtoken.JwtException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Admission control for database-bound endpoints.
+ *
+ * Every request matching a configured endpoint class first takes a token
+ * from the caller's bucket for that class, keyed by the user id in the JWT
+ * (or the client address without a valid token), then a slot from a global
+ * in-flight limit. Either failure is answered with 429 and a Retry-After
+ * before any database work starts, so one noisy client cannot drain the
+ * connection pool. Both steps are lock-free, and limits can be changed at
+ * runtime through {@link AdmissionEndpoint}.
+ */
+@Slf4j
+public class AdmissionFilter extends OncePerRequestFilter {
+
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    private final JwtUtil jwtUtil;
+    private final MeterRegistry meterRegistry;
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Cache<String, TokenBucket> buckets;
+
+    // Replaced wholesale on reconfiguration; read once per request
+    private volatile Map<String, AdmissionProperties.EndpointClass> classes;
+    private volatile int maxConcurrent;
+    private volatile boolean enabled;
+
+    public AdmissionFilter(AdmissionProperties properties, JwtUtil jwtUtil, MeterRegistry meterRegistry) {
+        this.jwtUtil = jwtUtil;
+        this.meterRegistry = meterRegistry;
+        this.classes = new LinkedHashMap<>(properties.getClasses());
+        this.maxConcurrent = properties.getMaxConcurrent();
+        this.enabled = properties.isEnabled();
+        // Buckets of users who went quiet are dropped; a returning user
+        // starts with a full bucket, which is what an idle bucket holds anyway
+        this.buckets = Caffeine.newBuilder()
+                .expireAfterAccess(Duration.ofMinutes(10))
+                .build();
+
+        Gauge.builder("ams.admission.in-flight", inFlight, AtomicInteger::get)
+                .description("Admitted database-bound requests currently running")
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String endpointClass = enabled ? classify(request) : null;
+        if (endpointClass == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        AdmissionProperties.EndpointClass limit = classes.get(endpointClass);
+        TokenBucket bucket = buckets.get(endpointClass + ':' + callerKey(request), key -> new TokenBucket());
+        long waitNanos = bucket.tryAcquire(limit.getCapacity(), limit.getRefillPerSecond());
+        if (waitNanos > 0) {
+            reject(response, endpointClass, "rate", TimeUnit.NANOSECONDS.toSeconds(waitNanos) + 1);
+            return;
+        }
+        if (!tryEnter()) {
+            reject(response, endpointClass, "concurrency", 1);
+            return;
+        }
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * Change one endpoint class's per-user limit, adding the class if new
+     */
+    public synchronized void updateClass(String name, AdmissionProperties.EndpointClass endpointClass) {
+        Map<String, AdmissionProperties.EndpointClass> updated = new LinkedHashMap<>(classes);
+        updated.put(name, endpointClass);
+        classes = updated;
+        log.info("Admission limit for {} set to {} burst, {}/s", name, endpointClass.getCapacity(),
+                endpointClass.getRefillPerSecond());
+    }
+
+    public void setMaxConcurrent(int maxConcurrent) {
+        this.maxConcurrent = maxConcurrent;
+        log.info("Admission concurrency limit set to {}", maxConcurrent);
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        log.info("Admission control {}", enabled ? "enabled" : "disabled");
+    }
+
+    public Map<String, AdmissionProperties.EndpointClass> getClasses() {
+        return classes;
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    private boolean tryEnter() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= maxConcurrent) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private String classify(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        for (Map.Entry<String, AdmissionProperties.EndpointClass> entry : classes.entrySet()) {
+            for (String pattern : entry.getValue().getPaths()) {
+                if (pathMatcher.match(pattern, path)) {
+                    return entry.getKey();
+                }
+            }
+        }
+        return null;
+    }
+
+    private String callerKey(HttpServletRequest request) {
+        String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (header != null && header.startsWith(BEARER_PREFIX)) {
+            try {
+                Long userId = jwtUtil.extractUserId(header.substring(BEARER_PREFIX.length()));
+                if (userId != null) {
+                    return "user-" + userId;
+                }
+            } catch (JwtException | IllegalArgumentException ex) {
+                // Invalid tokens are limited by address like anonymous callers
+            }
+        }
+        return "addr-" + request.getRemoteAddr();
+    }
+
+    private void reject(HttpServletResponse response, String endpointClass, String reason, long retryAfterSeconds) {
+        Counter.builder("ams.admission.rejected")
+                .tag("class", endpointClass)
+                .tag("reason", reason)
+                .description("Requests shed with 429 by admission control")
+                .register(meterRegistry)
+                .increment();
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+    }
+}
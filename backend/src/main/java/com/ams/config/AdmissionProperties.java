@@ -0,0 +1,48 @@
+package com.ams.config;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Data;
+
+@Data
+@ConfigurationProperties(prefix = "ams.admission")
+public class AdmissionProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Requests of any limited class allowed in flight at once, across all
+     * users; keep it below the connection pool size
+     */
+    private int maxConcurrent = 8;
+
+    /**
+     * Endpoint classes keyed by name
+     * (e.g. {@code ams.admission.classes.search.paths=/search/**})
+     */
+    private Map<String, EndpointClass> classes = new LinkedHashMap<>();
+
+    @Data
+    public static class EndpointClass {
+
+        /**
+         * Ant-style path patterns belonging to the class
+         */
+        private List<String> paths = new ArrayList<>();
+
+        /**
+         * Burst each user may send before being throttled
+         */
+        private int capacity = 10;
+
+        /**
+         * Sustained requests per second each user may send
+         */
+        private double refillPerSecond = 2;
+    }
+}
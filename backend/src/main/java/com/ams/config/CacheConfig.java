@@ -1,26 +1,142 @@
 package com.ams.config;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
+import javax.annotation.PreDestroy;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.cache.caffeine.CaffeineCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 
+import com.ams.util.MappedLogStore;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import com.github.benmanes.caffeine.cache.Caffeine;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Caching runs ahead of every other advice but the stale fallback, so that
+ * circuit breakers, operation timers and transactions only wrap real
+ * database work, never cache hits, and stale results are never cached.
+ *
+ * Caches listed under {@code ams.cache.store.caches} are also kept in a
+ * memory-mapped store on local disk, which outlives both the 500-entry
+ * memory limit and restarts.
+ */
 @Configuration
-@EnableCaching
+@EnableCaching(order = Ordered.HIGHEST_PRECEDENCE + 1)
+@EnableConfigurationProperties(CacheStoreProperties.class)
+@Slf4j
 public class CacheConfig {
 
+    /**
+     * Caches are declared up front so that their statistics are bound to the
+     * meter registry at startup.
+     */
+    public static final List<String> CACHE_NAMES = List.of(
+            "overduePayments",
+            "availableApartments",
+            "availableApartmentsJson",
+            "pendingComplaints",
+            "monthlyRevenueReports",
+            "occupancyStatistics",
+            "occupancyStatisticsJson",
+            "dashboardStatistics",
+            "dashboardStatisticsJson",
+            "residentReports",
+            "apartmentSearchResults",
+            "complaintSearchResults",
+            "announcementSearchResults",
+            "userSearchResults");
+
+    private final List<MappedLogStore> stores = new ArrayList<>();
+
     @Bean
-    public CacheManager cacheManager() {
-        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+    public CacheManager cacheManager(CacheStoreProperties storeProperties,
+            Jackson2ObjectMapperBuilder objectMapperBuilder, MeterRegistry meterRegistry) throws IOException {
+        Map<String, MappedLogStore> persistent = openStores(storeProperties, meterRegistry);
+        // Smile with the application's Jackson settings, so a value reads
+        // back as what the endpoints would have rendered it as
+        ObjectMapper codec = objectMapperBuilder.factory(new SmileFactory())
+                .featuresToEnable(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS)
+                .build();
+
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager() {
+            @Override
+            protected Cache adaptCaffeineCache(String name,
+                    com.github.benmanes.caffeine.cache.Cache<Object, Object> cache) {
+                MappedLogStore store = persistent.get(name);
+                if (store == null) {
+                    return new TracingCaffeineCache(name, cache, isAllowNullValues());
+                }
+                return new PersistentCaffeineCache(name, cache, isAllowNullValues(), store, codec,
+                        storeProperties.getCaches().get(name), meterRegistry);
+            }
+        };
         cacheManager.setCaffeine(Caffeine.newBuilder()
                 .maximumSize(500)
                 .expireAfterWrite(Duration.ofMinutes(15))
                 .recordStats());
+        cacheManager.setCacheNames(CACHE_NAMES);
         return cacheManager;
     }
-} 
\ No newline at end of file
+
+    @PreDestroy
+    public void closeStores() {
+        for (MappedLogStore store : stores) {
+            try {
+                store.close();
+            } catch (IOException ex) {
+                log.warn("Could not close cache store: {}", ex.getMessage());
+            }
+        }
+    }
+
+    private Map<String, MappedLogStore> openStores(CacheStoreProperties properties, MeterRegistry meterRegistry)
+            throws IOException {
+        Map<String, MappedLogStore> persistent = new LinkedHashMap<>();
+        if (!properties.isEnabled()) {
+            return persistent;
+        }
+        for (String name : properties.getCaches().keySet()) {
+            if (!CACHE_NAMES.contains(name)) {
+                throw new IllegalStateException("ams.cache.store.caches names an unknown cache: " + name);
+            }
+            Path directory = Paths.get(properties.getDirectory(), name);
+            MappedLogStore store = new MappedLogStore(directory, properties.getSegmentBytes(),
+                    properties.getIndexSlots(), properties.getCompactBelow(), properties.getCompactionIntervalMs(),
+                    "cache-compactor-" + name);
+            stores.add(store);
+            persistent.put(name, store);
+
+            Gauge.builder("ams.cache.store.entries", store, MappedLogStore::size)
+                    .description("Entries in the persistent cache store, including expired ones not yet compacted")
+                    .tag("cache", name)
+                    .register(meterRegistry);
+            Gauge.builder("ams.cache.store.bytes", store, MappedLogStore::usedBytes)
+                    .description("Bytes written to the persistent cache store's segments")
+                    .tag("cache", name)
+                    .baseUnit("bytes")
+                    .register(meterRegistry);
+        }
+        return persistent;
+    }
+}
@@ -0,0 +1,52 @@
+package com.ams.config;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Data;
+
+@Data
+@ConfigurationProperties(prefix = "ams.cache.store")
+public class CacheStoreProperties {
+
+    /**
+     * Keep the listed caches in memory-mapped files as well, so entries
+     * evicted from the heap or lost in a restart are still found there
+     */
+    private boolean enabled = true;
+
+    /**
+     * Directory holding one subdirectory of segment files per cache; must not
+     * be shared by two running instances
+     */
+    private String directory = "data/cache";
+
+    /**
+     * Time to live in milliseconds of the persisted entries, keyed by cache
+     * name (e.g. {@code ams.cache.store.caches.residentReports=900000})
+     */
+    private Map<String, Long> caches = new LinkedHashMap<>();
+
+    /**
+     * Size of each segment file; entries larger than this are only cached in memory
+     */
+    private int segmentBytes = 64 * 1024 * 1024;
+
+    /**
+     * Index slots each store starts with, a power of two; the index doubles
+     * when it is 70% full
+     */
+    private int indexSlots = 16384;
+
+    /**
+     * Segments whose live entries fill less than this fraction are compacted
+     */
+    private double compactBelow = 0.5;
+
+    /**
+     * Milliseconds between compaction runs
+     */
+    private long compactionIntervalMs = 60000;
+}
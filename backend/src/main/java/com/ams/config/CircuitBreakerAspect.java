@@ -0,0 +1,171 @@
+package com.ams.config;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.transaction.TransactionException;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import com.ams.util.CircuitBreaker;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Guards every {@code DatabaseService} and {@code SearchService} operation
+ * with its own {@link CircuitBreaker} and bulkhead. A call first needs the
+ * breaker's permission, then one of the operation's slots; a request waits
+ * at most max-wait for it and otherwise fails fast with
+ * {@link CircuitOpenException} instead of queueing for a connection.
+ * Failures are database and transaction errors, not constraint violations
+ * or empty results, and calls over the operation's slow-call duration count
+ * against the breaker too.
+ *
+ * Ordered after the cache interceptor, so cache hits never touch a breaker,
+ * and ahead of replica routing and transactions. Results of cached reads are
+ * retained in {@link LastKnownGood} for {@link StaleFallbackAspect}.
+ */
+@Aspect
+@Order(Ordered.HIGHEST_PRECEDENCE + 5)
+public class CircuitBreakerAspect {
+
+    private final CircuitBreakerProperties properties;
+    private final LastKnownGood lastKnownGood;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Guard> guards = new ConcurrentHashMap<>();
+
+    public CircuitBreakerAspect(CircuitBreakerProperties properties, LastKnownGood lastKnownGood,
+            MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.lastKnownGood = lastKnownGood;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Around("execution(public * com.ams.service.DatabaseService.*(..)) "
+            + "|| execution(public * com.ams.service.SearchService.*(..))")
+    public Object guard(ProceedingJoinPoint joinPoint) throws Throwable {
+        if (!properties.isEnabled()) {
+            return joinPoint.proceed();
+        }
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        String operation = method.getName();
+        Guard guard = guards.computeIfAbsent(operation, this::newGuard);
+
+        long permit = guard.breaker.tryAcquire();
+        if (permit < 0) {
+            throw reject(operation, "open", "circuit open");
+        }
+        boolean acquired = false;
+        try {
+            acquired = acquireSlot(guard.bulkhead);
+        } finally {
+            if (!acquired) {
+                guard.breaker.release(permit);
+            }
+        }
+        if (!acquired) {
+            throw reject(operation, "bulkhead", "all " + properties.getMaxConcurrent() + " slots busy");
+        }
+
+        long start = System.nanoTime();
+        boolean failed = false;
+        try {
+            Object result = joinPoint.proceed();
+            if (method.isAnnotationPresent(Cacheable.class)) {
+                lastKnownGood.retain(operation, joinPoint.getArgs(), result);
+            }
+            return result;
+        } catch (DataAccessException | TransactionException ex) {
+            failed = isFailure(ex);
+            throw ex;
+        } finally {
+            guard.bulkhead.release();
+            guard.breaker.onResult(permit, System.nanoTime() - start, failed);
+        }
+    }
+
+    /**
+     * Breakers by operation, created on first call
+     */
+    public Map<String, Guard> getGuards() {
+        return guards;
+    }
+
+    /**
+     * Requests wait at most max-wait for a slot; background work (report
+     * jobs, scheduled tasks) waits its turn, so it is throttled, not failed
+     */
+    private boolean acquireSlot(Semaphore bulkhead) throws InterruptedException {
+        if (RequestContextHolder.getRequestAttributes() == null) {
+            bulkhead.acquire();
+            return true;
+        }
+        return bulkhead.tryAcquire(properties.getMaxWait().toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    private Guard newGuard(String operation) {
+        Duration slowCall = properties.getSlowCall().getOrDefault(operation, properties.getSlowCallDuration());
+        Guard guard = new Guard(new CircuitBreaker(operation, properties.getWindowSize(),
+                properties.getMinimumCalls(), properties.getFailureRateThreshold(),
+                properties.getSlowCallRateThreshold(), slowCall.toNanos(), properties.getOpenDuration().toNanos(),
+                properties.getHalfOpenProbes()), new Semaphore(properties.getMaxConcurrent()));
+
+        Gauge.builder("ams.breaker.state", guard.breaker, breaker -> breaker.getState().ordinal())
+                .tag("operation", operation)
+                .description("Circuit state of the operation: 0 closed, 1 half-open, 2 open")
+                .register(meterRegistry);
+        Gauge.builder("ams.breaker.in-flight", guard, Guard::getInFlight)
+                .tag("operation", operation)
+                .description("Calls of the operation holding a bulkhead slot")
+                .register(meterRegistry);
+        return guard;
+    }
+
+    private CircuitOpenException reject(String operation, String cause, String reason) {
+        Counter.builder("ams.breaker.rejected")
+                .tag("operation", operation)
+                .tag("reason", cause)
+                .description("Calls rejected without reaching the database")
+                .register(meterRegistry)
+                .increment();
+        return new CircuitOpenException(operation, reason);
+    }
+
+    private static boolean isFailure(RuntimeException ex) {
+        // The database answered; the request was wrong
+        return !(ex instanceof DataIntegrityViolationException || ex instanceof IncorrectResultSizeDataAccessException);
+    }
+
+    public final class Guard {
+        private final CircuitBreaker breaker;
+        private final Semaphore bulkhead;
+
+        private Guard(CircuitBreaker breaker, Semaphore bulkhead) {
+            this.breaker = breaker;
+            this.bulkhead = bulkhead;
+        }
+
+        public CircuitBreaker getBreaker() {
+            return breaker;
+        }
+
+        public int getInFlight() {
+            return properties.getMaxConcurrent() - bulkhead.availablePermits();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.ams.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Circuit breakers and bulkheads around database-bound service calls, with
+ * stale fallback for cached reads. Advice order, outermost first: stale
+ * fallback, cache, circuit breaker, replica routing, transactions.
+ */
+@Configuration
+@EnableConfigurationProperties(CircuitBreakerProperties.class)
+@Slf4j
+public class CircuitBreakerConfig {
+
+    @Bean
+    public LastKnownGood lastKnownGood(CircuitBreakerProperties properties) {
+        return new LastKnownGood(properties.getStaleEntries(), properties.getStaleTtl());
+    }
+
+    @Bean
+    public CircuitBreakerAspect circuitBreakerAspect(CircuitBreakerProperties properties, LastKnownGood lastKnownGood,
+            MeterRegistry meterRegistry) {
+        log.info("Circuit breakers {}: open at {}% failed or {}% slow (over {} ms) of the last {} calls, "
+                + "{} concurrent calls per operation", properties.isEnabled() ? "enabled" : "disabled",
+                Math.round(properties.getFailureRateThreshold() * 100),
+                Math.round(properties.getSlowCallRateThreshold() * 100),
+                properties.getSlowCallDuration().toMillis(), properties.getWindowSize(),
+                properties.getMaxConcurrent());
+        return new CircuitBreakerAspect(properties, lastKnownGood, meterRegistry);
+    }
+
+    @Bean
+    public StaleFallbackAspect staleFallbackAspect(LastKnownGood lastKnownGood, MeterRegistry meterRegistry) {
+        return new StaleFallbackAspect(lastKnownGood, meterRegistry);
+    }
+
+    @Bean
+    public CircuitBreakerEndpoint circuitBreakerEndpoint(CircuitBreakerAspect circuitBreakerAspect,
+            LastKnownGood lastKnownGood) {
+        return new CircuitBreakerEndpoint(circuitBreakerAspect, lastKnownGood);
+    }
+}
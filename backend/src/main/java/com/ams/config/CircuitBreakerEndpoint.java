@@ -0,0 +1,47 @@
+package com.ams.config;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+import com.ams.util.CircuitBreaker;
+
+/**
+ * Exposes {@code /actuator/breakers}: the circuit state, recent failure and
+ * slow-call rates and bulkhead use of every operation called so far, and how
+ * many results are kept for stale fallback.
+ */
+@Endpoint(id = "breakers")
+public class CircuitBreakerEndpoint {
+
+    private final CircuitBreakerAspect circuitBreakerAspect;
+    private final LastKnownGood lastKnownGood;
+
+    public CircuitBreakerEndpoint(CircuitBreakerAspect circuitBreakerAspect, LastKnownGood lastKnownGood) {
+        this.circuitBreakerAspect = circuitBreakerAspect;
+        this.lastKnownGood = lastKnownGood;
+    }
+
+    @ReadOperation
+    public Map<String, Object> breakers() {
+        Map<String, Object> operations = new TreeMap<>();
+        circuitBreakerAspect.getGuards().forEach((operation, guard) -> {
+            CircuitBreaker breaker = guard.getBreaker();
+            Map<String, Object> status = new LinkedHashMap<>();
+            status.put("state", breaker.getState());
+            status.put("calls", breaker.getCalls());
+            status.put("failureRate", breaker.getFailureRate());
+            status.put("slowCallRate", breaker.getSlowCallRate());
+            status.put("inFlight", guard.getInFlight());
+            operations.put(operation, status);
+        });
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("operations", operations);
+        report.put("retainedResults", lastKnownGood.size());
+        return report;
+    }
+}
@@ -0,0 +1,80 @@
+package com.ams.config;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Data;
+
+@Data
+@ConfigurationProperties(prefix = "ams.breaker")
+public class CircuitBreakerProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Most recent calls of an operation the failure and slow-call rates are
+     * taken over
+     */
+    private int windowSize = 50;
+
+    /**
+     * Calls the window must hold before the rates can open the circuit
+     */
+    private int minimumCalls = 10;
+
+    /**
+     * Share of failed calls in the window that opens the circuit
+     */
+    private double failureRateThreshold = 0.5;
+
+    /**
+     * Share of slow calls in the window that opens the circuit
+     */
+    private double slowCallRateThreshold = 0.8;
+
+    /**
+     * Calls taking longer than this count as slow
+     */
+    private Duration slowCallDuration = Duration.ofSeconds(2);
+
+    /**
+     * Slow-call duration per operation, keyed by service method name
+     * (e.g. {@code ams.breaker.slow-call.searchApartments=500ms})
+     */
+    private Map<String, Duration> slowCall = new LinkedHashMap<>();
+
+    /**
+     * How long an open circuit rejects calls before letting probes through
+     */
+    private Duration openDuration = Duration.ofSeconds(30);
+
+    /**
+     * Probe calls let through while half-open; all must succeed in time for
+     * the circuit to close
+     */
+    private int halfOpenProbes = 3;
+
+    /**
+     * Calls of one operation allowed to run at once; keep it below the
+     * connection pool size so one slow operation cannot hold every connection
+     */
+    private int maxConcurrent = 5;
+
+    /**
+     * How long a call waits for one of its operation's slots before being rejected
+     */
+    private Duration maxWait = Duration.ofMillis(50);
+
+    /**
+     * Last-known-good results of cached reads kept for stale fallback
+     */
+    private int staleEntries = 10000;
+
+    /**
+     * How long a result can still be served stale after it was read
+     */
+    private Duration staleTtl = Duration.ofHours(24);
+}
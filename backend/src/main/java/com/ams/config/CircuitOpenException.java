@@ -0,0 +1,16 @@
+package com.ams.config;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * A database-bound call rejected without being attempted, because its
+ * operation's circuit is open or all of its slots are busy
+ */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class CircuitOpenException extends RuntimeException {
+
+    public CircuitOpenException(String operation, String reason) {
+        super("Operation " + operation + " rejected: " + reason);
+    }
+}
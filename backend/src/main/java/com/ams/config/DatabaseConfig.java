@@ -1,36 +1,103 @@
 package com.ams.config;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.PreDestroy;
 import javax.sql.DataSource;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Binder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.PropertySource;
 import org.springframework.core.env.Environment;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
-import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import com.zaxxer.hikari.HikariDataSource;
 
 import lombok.extern.slf4j.Slf4j;
 
 @Configuration
 @PropertySource("classpath:application.properties")
+@EnableConfigurationProperties(ShardingProperties.class)
 @Slf4j
 public class DatabaseConfig {
 
     @Autowired
     private Environment env;
 
+    private ReplicaRoutingDataSource routingDataSource;
+    private ShardRoutingDataSource shardRoutingDataSource;
+
+    /**
+     * The primary pool, or a replica-routing data source when
+     * {@code ams.datasource.replica.urls} lists any replicas, in turn behind
+     * a shard-routing data source when {@code ams.sharding.shards} lists any
+     * other shards
+     */
     @Bean
     public DataSource dataSource() {
-        DriverManagerDataSource dataSource = new DriverManagerDataSource();
-        dataSource.setDriverClassName(env.getRequiredProperty("spring.datasource.driver-class-name"));
-        dataSource.setUrl(env.getRequiredProperty("spring.datasource.url"));
-        dataSource.setUsername(env.getRequiredProperty("spring.datasource.username"));
-        dataSource.setPassword(env.getRequiredProperty("spring.datasource.password"));
-        
-        log.info("Database configured: {}", dataSource.getUrl());
-        return dataSource;
+        DataSource primaryShard = primaryShard();
+        ShardingProperties sharding = Binder.get(env).bind("ams.sharding", ShardingProperties.class)
+                .orElseGet(ShardingProperties::new);
+        if (sharding.getShards().isEmpty()) {
+            return routingDataSource != null ? new LazyConnectionDataSourceProxy(routingDataSource) : primaryShard;
+        }
+
+        Map<String, DataSource> shards = new LinkedHashMap<>();
+        for (Map.Entry<String, String> shard : sharding.getShards().entrySet()) {
+            HikariDataSource pool = pool("ams-shard-" + shard.getKey(), shard.getValue().trim(),
+                    env.getRequiredProperty("spring.datasource.username"),
+                    env.getRequiredProperty("spring.datasource.password"));
+            shards.put(shard.getKey(), pool);
+            log.info("Shard {} configured: {}", shard.getKey(), pool.getJdbcUrl());
+        }
+        shardRoutingDataSource = new ShardRoutingDataSource(primaryShard, shards, sharding.getProperties());
+        return new LazyConnectionDataSourceProxy(shardRoutingDataSource);
+    }
+
+    private DataSource primaryShard() {
+        HikariDataSource primary = pool("ams-primary", env.getRequiredProperty("spring.datasource.url"),
+                env.getRequiredProperty("spring.datasource.username"),
+                env.getRequiredProperty("spring.datasource.password"));
+        log.info("Database configured: {}", primary.getJdbcUrl());
+
+        String[] replicaUrls = env.getProperty("ams.datasource.replica.urls", String[].class, new String[0]);
+        if (replicaUrls.length == 0) {
+            return primary;
+        }
+
+        List<HikariDataSource> replicas = new ArrayList<>();
+        for (int i = 0; i < replicaUrls.length; i++) {
+            HikariDataSource replica = pool("ams-replica-" + (i + 1), replicaUrls[i].trim(),
+                    env.getProperty("ams.datasource.replica.username", primary.getUsername()),
+                    env.getProperty("ams.datasource.replica.password", primary.getPassword()));
+            replica.setReadOnly(true);
+            replicas.add(replica);
+            log.info("Read replica configured: {}", replica.getJdbcUrl());
+        }
+        routingDataSource = new ReplicaRoutingDataSource(primary, replicas,
+                env.getProperty("ams.datasource.replica.max-lag-seconds", Long.class, 5L),
+                env.getProperty("ams.datasource.replica.lag-query", "SHOW REPLICA STATUS"),
+                env.getProperty("ams.datasource.replica.lag-column", "Seconds_Behind_Source"),
+                env.getProperty("ams.datasource.replica.check-interval-ms", Long.class, 5000L));
+        return routingDataSource;
+    }
+
+    @PreDestroy
+    public void closeRoutingDataSource() {
+        // Closing the shard router closes the primary shard along with the others
+        if (shardRoutingDataSource != null) {
+            shardRoutingDataSource.close();
+        } else if (routingDataSource != null) {
+            routingDataSource.close();
+        }
     }
 
     @Bean
@@ -42,4 +109,17 @@ public class DatabaseConfig {
     public NamedParameterJdbcTemplate namedParameterJdbcTemplate() {
         return new NamedParameterJdbcTemplate(dataSource());
     }
-} 
\ No newline at end of file
+
+    private HikariDataSource pool(String poolName, String url, String username, String password) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName(poolName);
+        dataSource.setDriverClassName(env.getRequiredProperty("spring.datasource.driver-class-name"));
+        dataSource.setJdbcUrl(url);
+        dataSource.setUsername(username);
+        dataSource.setPassword(password);
+        dataSource.setMaximumPoolSize(env.getProperty("spring.datasource.hikari.maximum-pool-size", Integer.class, 10));
+        dataSource.setMinimumIdle(env.getProperty("spring.datasource.hikari.minimum-idle", Integer.class, 2));
+        dataSource.setConnectionTimeout(env.getProperty("spring.datasource.hikari.connection-timeout", Long.class, 30000L));
+        return dataSource;
+    }
+}
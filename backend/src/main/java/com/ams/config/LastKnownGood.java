@@ -0,0 +1,62 @@
+package com.ams.config;
+
+import java.time.Duration;
+
+import org.springframework.cache.interceptor.SimpleKey;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * The latest result of every cached read, kept well past the cache's own
+ * expiry so it can stand in when the database cannot answer. Keyed by
+ * property, operation and arguments, so one property's data is never served
+ * to another. Holds the same objects the caches do, so an entry only costs
+ * extra memory once the cache has let go of it.
+ */
+public class LastKnownGood {
+
+    private final Cache<SimpleKey, Retained> results;
+
+    public LastKnownGood(int maximumSize, Duration ttl) {
+        this.results = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    public void retain(String operation, Object[] args, Object value) {
+        if (value != null) {
+            results.put(key(operation, args), new Retained(value, System.currentTimeMillis()));
+        }
+    }
+
+    /**
+     * The last result read for these arguments, or null
+     */
+    public Retained find(String operation, Object[] args) {
+        return results.getIfPresent(key(operation, args));
+    }
+
+    public long size() {
+        return results.estimatedSize();
+    }
+
+    private static SimpleKey key(String operation, Object[] args) {
+        return new SimpleKey(PropertyContext.currentProperty(), operation, new SimpleKey(args));
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static final class Retained {
+        private final Object value;
+        private final long readAtMillis;
+
+        public long getAgeMillis() {
+            return System.currentTimeMillis() - readAtMillis;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.ams.config;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+
+import lombok.extern.slf4j.Slf4j;
+
+@Configuration
+@EnableConfigurationProperties(MetricsProperties.class)
+@Slf4j
+public class MetricsConfig {
+
+    public static final String DATABASE_TIMER = "ams.database.operation";
+    public static final String SEARCH_TIMER = "ams.search.operation";
+
+    /**
+     * Enables {@code @Timed} on service methods
+     */
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry registry) {
+        return new TimedAspect(registry);
+    }
+
+    /**
+     * Registers one {@code ams.slo.breached} gauge per configured budget so that
+     * alerting can fire on a single 0/1 series per operation.
+     */
+    @Bean
+    public SloEndpoint sloEndpoint(MeterRegistry registry, MetricsProperties properties) {
+        for (Map.Entry<String, Duration> entry : properties.getSlo().entrySet()) {
+            String operation = entry.getKey();
+            Gauge.builder("ams.slo.breached", registry, r -> isBreached(r, operation, entry.getValue()) ? 1 : 0)
+                    .tag("operation", operation)
+                    .description("1 when the operation's p99 latency exceeds its configured budget")
+                    .register(registry);
+            log.info("SLO budget for {}: p99 <= {} ms", operation, entry.getValue().toMillis());
+        }
+        return new SloEndpoint(registry, properties);
+    }
+
+    /**
+     * Find the timer recorded for a service operation, regardless of which
+     * service it belongs to
+     */
+    static Timer findOperationTimer(MeterRegistry registry, String operation) {
+        Timer timer = registry.find(DATABASE_TIMER).tag("operation", operation).timer();
+        return timer != null ? timer : registry.find(SEARCH_TIMER).tag("operation", operation).timer();
+    }
+
+    /**
+     * Read the p99 of an operation in milliseconds, or -1 when nothing has been recorded
+     */
+    static double p99Millis(MeterRegistry registry, String operation) {
+        Timer timer = findOperationTimer(registry, operation);
+        if (timer == null) {
+            return -1;
+        }
+        for (ValueAtPercentile percentile : timer.takeSnapshot().percentileValues()) {
+            if (percentile.percentile() == 0.99) {
+                return percentile.value(TimeUnit.MILLISECONDS);
+            }
+        }
+        return -1;
+    }
+
+    static boolean isBreached(MeterRegistry registry, String operation, Duration budget) {
+        return p99Millis(registry, operation) > budget.toMillis();
+    }
+}
@@ -0,0 +1,20 @@
+package com.ams.config;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Data;
+
+@Data
+@ConfigurationProperties(prefix = "ams.metrics")
+public class MetricsProperties {
+
+    /**
+     * p99 latency budget per operation, keyed by service method name
+     * (e.g. {@code ams.metrics.slo.getDashboardStatistics=250ms})
+     */
+    private Map<String, Duration> slo = new LinkedHashMap<>();
+}
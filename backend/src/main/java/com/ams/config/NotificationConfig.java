@@ -0,0 +1,21 @@
+package com.ams.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.ams.service.SmtpConnectionPool;
+
+@Configuration
+@EnableConfigurationProperties(NotificationProperties.class)
+public class NotificationConfig {
+
+    /**
+     * Connections are opened on first use, so an unreachable mail server
+     * does not stop the application from starting
+     */
+    @Bean
+    public SmtpConnectionPool smtpConnectionPool(NotificationProperties properties) {
+        return new SmtpConnectionPool(properties.getSmtp());
+    }
+}
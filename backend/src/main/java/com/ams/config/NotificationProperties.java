@@ -0,0 +1,84 @@
+package com.ams.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Data;
+
+@Data
+@ConfigurationProperties(prefix = "ams.notifications")
+public class NotificationProperties {
+
+    /**
+     * Queue and send resident notifications; when off nothing is written to
+     * the outbox
+     */
+    private boolean enabled = false;
+
+    /**
+     * How often the dispatcher looks for notifications that are due
+     */
+    private long pollIntervalMs = 5000;
+
+    /**
+     * How often payments that went overdue are queued
+     */
+    private long overdueScanIntervalMs = 3_600_000;
+
+    /**
+     * Residents claimed per dispatch round; each receives one digest
+     */
+    private int batchSize = 200;
+
+    /**
+     * A notification waits at least this long so that others for the same
+     * resident can join its digest
+     */
+    private long coalesceWindowMs = 60_000;
+
+    /**
+     * Claimed notifications not settled within this time (e.g. because the
+     * instance died mid-send) are claimed again
+     */
+    private long leaseMs = 300_000;
+
+    /**
+     * Delivery attempts before a notification is marked FAILED
+     */
+    private int maxAttempts = 5;
+
+    /**
+     * Delay before the first retry; doubles with each further attempt
+     */
+    private long retryBackoffMs = 60_000;
+
+    private Smtp smtp = new Smtp();
+
+    @Data
+    public static class Smtp {
+
+        private String host = "localhost";
+
+        private int port = 25;
+
+        /**
+         * Leave empty for servers that accept unauthenticated mail
+         */
+        private String username = "";
+
+        private String password = "";
+
+        private boolean starttls = false;
+
+        private String from = "no-reply@ams.local";
+
+        /**
+         * Open SMTP connections kept for reuse, and threads sending on them
+         */
+        private int connections = 4;
+
+        /**
+         * Connect and read timeout
+         */
+        private int timeoutMs = 10_000;
+    }
+}
@@ -0,0 +1,168 @@
+package com.ams.config;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Callable;
+
+import com.ams.util.MappedLogStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Caffeine cache with a {@link MappedLogStore} beneath it. Misses in memory
+ * are looked up in the store and promoted; writes, evictions and clears go
+ * to both tiers. Values are stored in Jackson's binary Smile format, so they
+ * read back as the JSON types they are served as (maps, lists, numbers and
+ * strings). Store failures are logged and treated as misses: the store only
+ * ever saves work.
+ */
+@Slf4j
+public class PersistentCaffeineCache extends TracingCaffeineCache {
+
+    private final MappedLogStore store;
+    private final ObjectMapper codec;
+    private final long ttlMillis;
+    private final Counter hits;
+    private final Counter misses;
+
+    public PersistentCaffeineCache(String name, Cache<Object, Object> cache, boolean allowNullValues,
+            MappedLogStore store, ObjectMapper codec, long ttlMillis, MeterRegistry meterRegistry) {
+        super(name, cache, allowNullValues);
+        this.store = store;
+        this.codec = codec;
+        this.ttlMillis = ttlMillis;
+        this.hits = Counter.builder("ams.cache.store.requests")
+                .description("Lookups that missed in memory and went to the persistent store")
+                .tag("cache", name)
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder("ams.cache.store.requests")
+                .description("Lookups that missed in memory and went to the persistent store")
+                .tag("cache", name)
+                .tag("result", "miss")
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected Object lookup(Object key) {
+        Object value = super.lookup(key);
+        if (value == null) {
+            value = load(key);
+            if (value != null) {
+                getNativeCache().put(key, value);
+            }
+        }
+        return value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        return super.get(key, () -> {
+            Object stored = load(key);
+            if (stored != null) {
+                return (T) stored;
+            }
+            T value = valueLoader.call();
+            write(key, value);
+            return value;
+        });
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        super.put(key, value);
+        write(key, value);
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        ValueWrapper existing = super.putIfAbsent(key, value);
+        if (existing == null) {
+            write(key, value);
+        }
+        return existing;
+    }
+
+    @Override
+    public void evict(Object key) {
+        super.evict(key);
+        remove(key);
+    }
+
+    @Override
+    public boolean evictIfPresent(Object key) {
+        boolean present = super.evictIfPresent(key);
+        remove(key);
+        return present;
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        clearStore();
+    }
+
+    @Override
+    public boolean invalidate() {
+        boolean present = super.invalidate();
+        clearStore();
+        return present;
+    }
+
+    private Object load(Object key) {
+        byte[] bytes = store.get(keyBytes(key));
+        if (bytes == null) {
+            misses.increment();
+            return null;
+        }
+        try {
+            Object value = codec.readValue(bytes, Object.class);
+            hits.increment();
+            return value;
+        } catch (IOException ex) {
+            log.warn("Unreadable entry {} in cache {}: {}", key, getName(), ex.getMessage());
+            misses.increment();
+            return null;
+        }
+    }
+
+    private void write(Object key, Object value) {
+        // Null values stay in memory only
+        if (value == null) {
+            return;
+        }
+        try {
+            if (!store.put(keyBytes(key), codec.writeValueAsBytes(value), ttlMillis)) {
+                log.debug("Entry {} too large for the store of cache {}", key, getName());
+            }
+        } catch (IOException ex) {
+            log.warn("Could not persist entry {} in cache {}: {}", key, getName(), ex.getMessage());
+        }
+    }
+
+    private void remove(Object key) {
+        try {
+            store.remove(keyBytes(key));
+        } catch (IOException ex) {
+            log.warn("Could not remove entry {} from cache {}: {}", key, getName(), ex.getMessage());
+        }
+    }
+
+    private void clearStore() {
+        try {
+            store.clear();
+        } catch (IOException ex) {
+            log.warn("Could not clear the store of cache {}: {}", getName(), ex.getMessage());
+        }
+    }
+
+    private static byte[] keyBytes(Object key) {
+        return String.valueOf(key).getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,92 @@
+package com.ams.config;
+
+import java.util.function.Supplier;
+
+/**
+ * The property (tenant) the current thread works for, which decides the
+ * shard its connections go to. Requests set it from the
+ * {@code X-Property-Id} header; threads without one work for
+ * {@link #DEFAULT_PROPERTY}. Scatter-gather queries pin a shard directly.
+ *
+ * The property is a shard selector, not a filter. New rows are stamped with
+ * it, but reads see every row on the shard, so properties that share a
+ * shard (every unmapped property shares the primary) share their data.
+ * Caches are keyed by property all the same, so moving a property to its
+ * own shard needs no cache changes.
+ */
+public final class PropertyContext {
+
+    public static final long DEFAULT_PROPERTY = 1L;
+
+    private static final ThreadLocal<Long> PROPERTY = new ThreadLocal<>();
+    private static final ThreadLocal<String> SHARD = new ThreadLocal<>();
+
+    private PropertyContext() {
+    }
+
+    public static long currentProperty() {
+        Long propertyId = PROPERTY.get();
+        return propertyId != null ? propertyId : DEFAULT_PROPERTY;
+    }
+
+    /**
+     * Work for a property on this thread until {@link #exitProperty(Long)}
+     * @return the previous property, to restore on exit
+     */
+    public static Long enterProperty(long propertyId) {
+        Long previous = PROPERTY.get();
+        PROPERTY.set(propertyId);
+        return previous;
+    }
+
+    public static void exitProperty(Long previous) {
+        restore(PROPERTY, previous);
+    }
+
+    /**
+     * Run an action for one property, restoring the previous one afterwards
+     */
+    public static <T> T withProperty(long propertyId, Supplier<T> action) {
+        Long previous = enterProperty(propertyId);
+        try {
+            return action.get();
+        } finally {
+            exitProperty(previous);
+        }
+    }
+
+    public static void withProperty(long propertyId, Runnable action) {
+        withProperty(propertyId, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    /**
+     * Run an action against one shard, whatever the current property
+     */
+    public static <T> T onShard(String shard, Supplier<T> action) {
+        String previous = SHARD.get();
+        SHARD.set(shard);
+        try {
+            return action.get();
+        } finally {
+            restore(SHARD, previous);
+        }
+    }
+
+    /**
+     * The shard pinned by {@link #onShard}, or null
+     */
+    static String pinnedShard() {
+        return SHARD.get();
+    }
+
+    private static <T> void restore(ThreadLocal<T> local, T previous) {
+        if (previous == null) {
+            local.remove();
+        } else {
+            local.set(previous);
+        }
+    }
+}
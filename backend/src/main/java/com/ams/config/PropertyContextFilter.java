@@ -0,0 +1,45 @@
+package com.ams.config;
+
+import java.io.IOException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Runs each request for the property named in its {@code X-Property-Id}
+ * header, so its reads and writes go to that property's shard. Requests
+ * without the header work for the default property.
+ */
+public class PropertyContextFilter extends OncePerRequestFilter {
+
+    public static final String PROPERTY_HEADER = "X-Property-Id";
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String header = request.getHeader(PROPERTY_HEADER);
+        if (header == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        long propertyId;
+        try {
+            propertyId = Long.parseLong(header.trim());
+        } catch (NumberFormatException ex) {
+            response.sendError(HttpStatus.BAD_REQUEST.value(), "Invalid " + PROPERTY_HEADER);
+            return;
+        }
+        Long previous = PropertyContext.enterProperty(propertyId);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            PropertyContext.exitProperty(previous);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.ams.config;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Routes {@link ReadFromReplica} methods to a replica for the duration of
+ * the call. Ordered after the cache interceptor, so cache hits never touch
+ * the routing at all.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class ReplicaRoutingAspect {
+
+    @Around("@annotation(com.ams.config.ReadFromReplica) || @within(com.ams.config.ReadFromReplica)")
+    public Object routeToReplica(ProceedingJoinPoint joinPoint) throws Throwable {
+        boolean previous = ReplicaRoutingDataSource.enterReplicaScope();
+        try {
+            return joinPoint.proceed();
+        } finally {
+            ReplicaRoutingDataSource.exitReplicaScope(previous);
+        }
+    }
+}
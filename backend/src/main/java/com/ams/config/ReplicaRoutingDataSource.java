@@ -0,0 +1,207 @@
+package com.ams.config;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.StringUtils;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Sends reads to healthy replicas and everything else to the primary.
+ *
+ * A connection goes to a replica when the current thread is inside a
+ * {@link ReadFromReplica} method or a read-only transaction. Replicas are
+ * used round-robin and checked in the background: one whose lag exceeds
+ * the tolerance, or that cannot be reached, is skipped until it recovers,
+ * and with no healthy replica reads fall back to the primary. Wrap this in a
+ * {@code LazyConnectionDataSourceProxy} so the read-only flag of a starting
+ * transaction is known before the connection is chosen.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractDataSource implements AutoCloseable {
+
+    private static final ThreadLocal<Boolean> REPLICA_SCOPE = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    private final HikariDataSource primary;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final AtomicInteger next = new AtomicInteger();
+    private final long maxLagSeconds;
+    private final String lagQuery;
+    private final String lagColumn;
+    private final ScheduledExecutorService monitor;
+
+    /**
+     * @param lagQuery statement returning the replica's lag in seconds in
+     *        {@code lagColumn}; blank to only check that the replica answers
+     */
+    public ReplicaRoutingDataSource(HikariDataSource primary, List<HikariDataSource> replicaPools,
+            long maxLagSeconds, String lagQuery, String lagColumn, long checkIntervalMs) {
+        this.primary = primary;
+        for (HikariDataSource pool : replicaPools) {
+            replicas.add(new Replica(pool));
+        }
+        this.maxLagSeconds = maxLagSeconds;
+        this.lagQuery = lagQuery;
+        this.lagColumn = lagColumn;
+        this.monitor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        monitor.scheduleWithFixedDelay(this::checkReplicas, 0, checkIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Prefer replicas on this thread until {@link #exitReplicaScope(boolean)}
+     * @return the previous setting, to restore on exit
+     */
+    public static boolean enterReplicaScope() {
+        boolean previous = REPLICA_SCOPE.get();
+        REPLICA_SCOPE.set(Boolean.TRUE);
+        return previous;
+    }
+
+    public static void exitReplicaScope(boolean previous) {
+        REPLICA_SCOPE.set(previous);
+    }
+
+    /**
+     * Whether this thread currently prefers replicas, so work handed to
+     * another thread can carry the preference along
+     */
+    public static boolean isInReplicaScope() {
+        return REPLICA_SCOPE.get();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (!REPLICA_SCOPE.get() && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return primary.getConnection();
+        }
+        Replica replica = nextHealthyReplica();
+        if (replica == null) {
+            return primary.getConnection();
+        }
+        try {
+            return replica.pool.getConnection();
+        } catch (SQLException ex) {
+            replica.markDown("unreachable: " + ex.getMessage());
+            return primary.getConnection();
+        }
+    }
+
+    /**
+     * Connections with explicit credentials are never routed to a replica;
+     * the primary pool decides whether it supports them
+     */
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return primary.getConnection(username, password);
+    }
+
+    /**
+     * Unwraps to the primary pool, so pool metrics and health checks that
+     * look for a Hikari pool keep reporting the primary
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return (T) this;
+        }
+        return primary.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || primary.isWrapperFor(iface);
+    }
+
+    @Override
+    public void close() {
+        monitor.shutdownNow();
+        replicas.forEach(replica -> replica.pool.close());
+        primary.close();
+    }
+
+    private Replica nextHealthyReplica() {
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (replica.healthy) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    private void checkReplicas() {
+        for (Replica replica : replicas) {
+            try (Connection connection = replica.pool.getConnection()) {
+                if (!StringUtils.hasText(lagQuery)) {
+                    if (connection.isValid(1)) {
+                        replica.markUp();
+                    } else {
+                        replica.markDown("connection not valid");
+                    }
+                    continue;
+                }
+                try (Statement statement = connection.createStatement();
+                     ResultSet rs = statement.executeQuery(lagQuery)) {
+                    Object lag = rs.next() ? rs.getObject(lagColumn) : null;
+                    if (lag == null) {
+                        replica.markDown("replication not running");
+                    } else if (((Number) lag).longValue() > maxLagSeconds) {
+                        replica.markDown("lagging " + lag + " s");
+                    } else {
+                        replica.markUp();
+                    }
+                }
+            } catch (SQLException | RuntimeException ex) {
+                replica.markDown("check failed: " + ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * A replica pool and whether reads may currently go to it
+     */
+    private static final class Replica {
+        private final HikariDataSource pool;
+        private volatile boolean healthy;
+
+        Replica(HikariDataSource pool) {
+            this.pool = pool;
+        }
+
+        void markUp() {
+            if (!healthy) {
+                healthy = true;
+                log.info("Replica {} is serving reads", pool.getPoolName());
+            }
+        }
+
+        void markDown(String reason) {
+            if (healthy) {
+                healthy = false;
+                log.warn("Replica {} taken out of rotation: {}", pool.getPoolName(), reason);
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.ams.config;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Sends each connection to the shard of the current property, or to the
+ * shard pinned for a scatter-gather query. The primary shard may itself be
+ * a {@link ReplicaRoutingDataSource}. Wrap this in a
+ * {@code LazyConnectionDataSourceProxy} so the shard is chosen when the
+ * first statement runs rather than when a transaction begins.
+ */
+@Slf4j
+public class ShardRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+
+    private final DataSource primary;
+    private final Map<String, DataSource> shards;
+    private final Map<Long, String> propertyShards;
+
+    public ShardRoutingDataSource(DataSource primary, Map<String, DataSource> shards,
+            Map<Long, String> propertyShards) {
+        this.primary = primary;
+        this.shards = shards;
+        this.propertyShards = new HashMap<>(propertyShards);
+        for (Map.Entry<Long, String> entry : propertyShards.entrySet()) {
+            if (!ShardingProperties.PRIMARY_SHARD.equals(entry.getValue()) && !shards.containsKey(entry.getValue())) {
+                throw new IllegalArgumentException("Property " + entry.getKey() + " is mapped to unknown shard "
+                        + entry.getValue());
+            }
+        }
+
+        Map<Object, Object> targets = new HashMap<>(shards);
+        targets.put(ShardingProperties.PRIMARY_SHARD, primary);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    /**
+     * Every shard name, primary first
+     */
+    public List<String> getShardNames() {
+        List<String> names = new ArrayList<>();
+        names.add(ShardingProperties.PRIMARY_SHARD);
+        names.addAll(shards.keySet());
+        return names;
+    }
+
+    /**
+     * The shard the current thread's connections go to
+     */
+    public String currentShard() {
+        return (String) determineCurrentLookupKey();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        String pinned = PropertyContext.pinnedShard();
+        if (pinned != null) {
+            return pinned;
+        }
+        return propertyShards.getOrDefault(PropertyContext.currentProperty(), ShardingProperties.PRIMARY_SHARD);
+    }
+
+    /**
+     * Unwraps to the primary shard, like {@link ReplicaRoutingDataSource}
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return (T) this;
+        }
+        return primary.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || primary.isWrapperFor(iface);
+    }
+
+    @Override
+    public void close() {
+        for (DataSource dataSource : shards.values()) {
+            closeQuietly(dataSource);
+        }
+        closeQuietly(primary);
+    }
+
+    private static void closeQuietly(DataSource dataSource) {
+        if (dataSource instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) dataSource).close();
+            } catch (Exception ex) {
+                log.warn("Failed to close shard data source: {}", ex.getMessage());
+            }
+        }
+    }
+}
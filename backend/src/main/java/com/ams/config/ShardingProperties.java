@@ -0,0 +1,35 @@
+package com.ams.config;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Data;
+
+@Data
+@ConfigurationProperties(prefix = "ams.sharding")
+public class ShardingProperties {
+
+    /**
+     * Name of the shard served by {@code spring.datasource.url}
+     */
+    public static final String PRIMARY_SHARD = "primary";
+
+    /**
+     * JDBC URL of each additional shard, keyed by shard name
+     * (e.g. {@code ams.sharding.shards.east=jdbc:mysql://db-east/apartment_management})
+     */
+    private Map<String, String> shards = new LinkedHashMap<>();
+
+    /**
+     * Shard of each property, keyed by property id; unlisted properties live
+     * on the primary shard (e.g. {@code ams.sharding.properties.2=east})
+     */
+    private Map<Long, String> properties = new LinkedHashMap<>();
+
+    /**
+     * Threads running cross-property queries against the shards in parallel
+     */
+    private int scatterThreads = 4;
+}
@@ -0,0 +1,42 @@
+package com.ams.config;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Exposes {@code /actuator/slo}: the current p99 of every operation with a
+ * configured budget and whether the budget is exceeded.
+ */
+@Endpoint(id = "slo")
+public class SloEndpoint {
+
+    private final MeterRegistry registry;
+    private final MetricsProperties properties;
+
+    public SloEndpoint(MeterRegistry registry, MetricsProperties properties) {
+        this.registry = registry;
+        this.properties = properties;
+    }
+
+    @ReadOperation
+    public Map<String, Object> slo() {
+        Map<String, Object> report = new LinkedHashMap<>();
+        for (Map.Entry<String, Duration> entry : properties.getSlo().entrySet()) {
+            String operation = entry.getKey();
+            double p99 = MetricsConfig.p99Millis(registry, operation);
+            
+            Map<String, Object> status = new LinkedHashMap<>();
+            status.put("budgetMs", entry.getValue().toMillis());
+            status.put("p99Ms", p99 < 0 ? null : p99);
+            status.put("breached", MetricsConfig.isBreached(registry, operation, entry.getValue()));
+            report.put(operation, status);
+        }
+        return report;
+    }
+}
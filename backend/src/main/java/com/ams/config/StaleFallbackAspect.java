@@ -0,0 +1,93 @@
+package com.ams.config;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.transaction.TransactionException;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Answers a cached read from its last known good result when the database
+ * cannot: the circuit is open, the operation's slots are busy, or the call
+ * failed. The response is flagged with {@code Warning: 110} ("Response is
+ * Stale") and an {@code Age} header.
+ *
+ * Runs ahead of the cache interceptor, so a stale result is never written
+ * back into a cache as if it were fresh. Only requests are answered stale;
+ * background work such as report jobs sees the failure.
+ */
+@Aspect
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@Slf4j
+public class StaleFallbackAspect {
+
+    private static final String STALE_ATTRIBUTE = StaleFallbackAspect.class.getName() + ".STALE";
+    private static final String STALE_WARNING = "110 - \"Response is Stale\"";
+
+    private final LastKnownGood lastKnownGood;
+    private final MeterRegistry meterRegistry;
+
+    public StaleFallbackAspect(LastKnownGood lastKnownGood, MeterRegistry meterRegistry) {
+        this.lastKnownGood = lastKnownGood;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Around("(execution(public * com.ams.service.DatabaseService.*(..)) "
+            + "|| execution(public * com.ams.service.SearchService.*(..))) "
+            + "&& @annotation(org.springframework.cache.annotation.Cacheable)")
+    public Object fallBack(ProceedingJoinPoint joinPoint) throws Throwable {
+        try {
+            return joinPoint.proceed();
+        } catch (CircuitOpenException | DataAccessException | TransactionException ex) {
+            RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+            String operation = joinPoint.getSignature().getName();
+            LastKnownGood.Retained retained = attributes == null ? null
+                    : lastKnownGood.find(operation, joinPoint.getArgs());
+            if (retained == null) {
+                throw ex;
+            }
+            markStale(attributes, retained.getAgeMillis());
+            Counter.builder("ams.breaker.stale-served")
+                    .tag("operation", operation)
+                    .description("Reads answered from a last known good result")
+                    .register(meterRegistry)
+                    .increment();
+            log.warn("Serving {} from a result {} s old: {}", operation, retained.getAgeMillis() / 1000,
+                    ex.getMessage());
+            return retained.getValue();
+        }
+    }
+
+    /**
+     * Whether the current request has been answered with stale data
+     */
+    public static boolean isServingStale() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        return attributes != null
+                && attributes.getAttribute(STALE_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) != null;
+    }
+
+    private static void markStale(RequestAttributes attributes, long ageMillis) {
+        attributes.setAttribute(STALE_ATTRIBUTE, Boolean.TRUE, RequestAttributes.SCOPE_REQUEST);
+        if (attributes instanceof ServletRequestAttributes) {
+            HttpServletResponse response = ((ServletRequestAttributes) attributes).getResponse();
+            if (response != null && !response.isCommitted()) {
+                response.setHeader(HttpHeaders.WARNING, STALE_WARNING);
+                response.setHeader(HttpHeaders.AGE, String.valueOf(ageMillis / 1000));
+            }
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.ams.config;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Objects;
+
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.FlywayException;
+import org.flywaydb.core.api.MigrationInfo;
+import org.flywaydb.core.api.MigrationVersion;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+
+import com.ams.service.AnnouncementFeed;
+import com.ams.service.ArchiveService;
+import com.ams.service.BookingIntervalIndex;
+import com.ams.service.NotificationDispatcher;
+import com.ams.service.PaymentIngestionService;
+import com.ams.service.ReceivablesAnalyticsService;
+import com.ams.service.ReportService;
+import com.ams.service.ResidentLedger;
+import com.ams.service.StaffWorkloadIndex;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Startup tuning for the prod profile, the baseline choice for databases
+ * that predate migrations, and a time-to-ready measurement taken from JVM
+ * start so that class loading and CDS gains are included.
+ */
+@Configuration
+@Slf4j
+public class StartupConfig {
+
+    /**
+     * A table that only the latest versioned migration creates. Move it
+     * forward whenever a new migration adds a table.
+     */
+    private static final String LATEST_SCHEMA_TABLE = "resident_balance_snapshots";
+
+    private final MeterRegistry meterRegistry;
+    private final boolean exitOnReady;
+
+    public StartupConfig(MeterRegistry meterRegistry, @Value("${ams.startup.exit-on-ready:false}") boolean exitOnReady) {
+        this.meterRegistry = meterRegistry;
+        this.exitOnReady = exitOnReady;
+    }
+
+    /**
+     * Beans that load in-memory state, recover jobs or start background
+     * work when the application becomes ready stay eager under lazy
+     * initialization, so the first request never pays for their rebuild
+     */
+    @Bean
+    public static LazyInitializationExcludeFilter eagerStartupBeans() {
+        return LazyInitializationExcludeFilter.forBeanTypes(BookingIntervalIndex.class, StaffWorkloadIndex.class,
+                AnnouncementFeed.class, ReportService.class, AdmissionFilter.class, NotificationDispatcher.class,
+                PaymentIngestionService.class, ArchiveService.class, ResidentLedger.class,
+                ReceivablesAnalyticsService.class);
+    }
+
+    /**
+     * Databases without a schema history are baselined at
+     * {@code spring.flyway.baseline-version} (0), so V1 onwards run on
+     * them. That suits empty databases and ones created by the original
+     * schema.sql, which V1 leaves alone. A database last initialized by
+     * the default mode's schema.sql replay already holds every migration,
+     * so it is baselined at the latest version instead.
+     */
+    @Bean
+    public FlywayMigrationStrategy flywayMigrationStrategy() {
+        return flyway -> {
+            if (flyway.info().applied().length == 0 && hasTable(flyway, LATEST_SCHEMA_TABLE)) {
+                MigrationVersion latest = Arrays.stream(flyway.info().all())
+                        .map(MigrationInfo::getVersion)
+                        .filter(Objects::nonNull)
+                        .max(Comparator.naturalOrder())
+                        .orElse(MigrationVersion.EMPTY);
+                log.info("Database holds the current schema without a schema history; baselining at {}", latest);
+                Flyway.configure()
+                        .configuration(flyway.getConfiguration())
+                        .baselineVersion(latest)
+                        .load()
+                        .baseline();
+            }
+            flyway.migrate();
+        };
+    }
+
+    private static boolean hasTable(Flyway flyway, String table) {
+        try (Connection connection = flyway.getConfiguration().getDataSource().getConnection()) {
+            DatabaseMetaData metaData = connection.getMetaData();
+            String name = metaData.storesUpperCaseIdentifiers() ? table.toUpperCase() : table;
+            try (ResultSet tables = metaData.getTables(connection.getCatalog(), null, name, new String[] {"TABLE"})) {
+                return tables.next();
+            }
+        } catch (SQLException ex) {
+            throw new FlywayException("Could not inspect the schema before migrating", ex);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reportTimeToReady(ApplicationReadyEvent event) {
+        long timeToReady = ManagementFactory.getRuntimeMXBean().getUptime();
+        Gauge.builder("ams.startup.time-to-ready", () -> timeToReady)
+                .description("Milliseconds from JVM start until the application was ready")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        log.info("Ready {} ms after JVM start (profiles: {})", timeToReady,
+                String.join(",", event.getApplicationContext().getEnvironment().getActiveProfiles()));
+
+        if (exitOnReady) {
+            // Training run for a class-data-sharing archive: the JVM writes
+            // the archive of every class loaded so far on exit
+            log.info("Exiting after startup (ams.startup.exit-on-ready)");
+            System.exit(SpringApplication.exit(event.getApplicationContext()));
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.ams.config;
+
+import org.springframework.cache.caffeine.CaffeineCache;
+
+import com.ams.jfr.CacheLookupEvent;
+import com.github.benmanes.caffeine.cache.Cache;
+
+/**
+ * Caffeine-backed Spring cache that reports every lookup as a
+ * {@link CacheLookupEvent}. When the event is disabled the only cost is the
+ * {@code shouldCommit} check.
+ */
+public class TracingCaffeineCache extends CaffeineCache {
+
+    public TracingCaffeineCache(String name, Cache<Object, Object> cache, boolean allowNullValues) {
+        super(name, cache, allowNullValues);
+    }
+
+    @Override
+    protected Object lookup(Object key) {
+        CacheLookupEvent event = new CacheLookupEvent();
+        event.begin();
+        
+        Object value = super.lookup(key);
+        
+        event.end();
+        if (event.shouldCommit()) {
+            event.cacheName = getName();
+            event.hit = value != null;
+            event.commit();
+        }
+        return value;
+    }
+}
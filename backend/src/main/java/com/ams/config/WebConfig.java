@@ -0,0 +1,49 @@
+package com.ams.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    @Value("${ams.export.max-concurrent:4}")
+    private int maxConcurrentExports;
+
+    @Value("${ams.export.timeout-ms:3600000}")
+    private long exportTimeoutMs;
+
+    /**
+     * Streaming responses run on a small bounded pool, so a burst of exports
+     * cannot take every database connection
+     */
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(maxConcurrentExports);
+        executor.setMaxPoolSize(maxConcurrentExports);
+        executor.setQueueCapacity(maxConcurrentExports * 4);
+        executor.setThreadNamePrefix("export-");
+        executor.initialize();
+        
+        configurer.setTaskExecutor(executor);
+        configurer.setDefaultTimeout(exportTimeoutMs);
+    }
+
+    /**
+     * Runs ahead of every other filter, so that anything touching the
+     * database during the request already uses the property's shard
+     */
+    @Bean
+    public FilterRegistrationBean<PropertyContextFilter> propertyContextFilter() {
+        FilterRegistrationBean<PropertyContextFilter> registration =
+                new FilterRegistrationBean<>(new PropertyContextFilter());
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+}
@@ -0,0 +1,70 @@
+package com.ams.controller;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.validation.Valid;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.ams.model.Announcement;
+import com.ams.service.AnnouncementFeed;
+import com.ams.service.AnnouncementService;
+
+/**
+ * Announcements. Clients subscribe to {@code /announcements/feed} instead of
+ * polling: it opens with a {@code snapshot} event and then pushes
+ * {@code published}, {@code removed} and {@code expired} events.
+ */
+@RestController
+@RequestMapping("/announcements")
+public class AnnouncementController {
+
+    private final AnnouncementService announcementService;
+    private final AnnouncementFeed announcementFeed;
+
+    @Autowired
+    public AnnouncementController(AnnouncementService announcementService, AnnouncementFeed announcementFeed) {
+        this.announcementService = announcementService;
+        this.announcementFeed = announcementFeed;
+    }
+
+    @GetMapping(value = "/feed", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter feed() {
+        return announcementFeed.subscribe();
+    }
+
+    @GetMapping("/active")
+    public List<AnnouncementFeed.Item> active() {
+        return announcementFeed.getActive();
+    }
+
+    @PostMapping
+    public ResponseEntity<Map<String, Long>> create(@Valid @RequestBody Announcement announcement,
+            @RequestParam Long createdBy) {
+        return announcementService.create(announcement, createdBy)
+                .map(saved -> ResponseEntity.status(HttpStatus.CREATED)
+                        .body(Collections.singletonMap("id", saved.getId())))
+                .orElse(ResponseEntity.badRequest().build());
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> deactivate(@PathVariable Long id) {
+        return announcementService.deactivate(id)
+                ? ResponseEntity.noContent().build()
+                : ResponseEntity.notFound().build();
+    }
+}
@@ -0,0 +1,77 @@
+package com.ams.controller;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.ams.service.BookingService;
+import com.ams.service.BookingService.ApprovalOutcome;
+import com.ams.service.BookingService.CancellationOutcome;
+
+/**
+ * Booking decisions and date-range availability. Outcomes other than success
+ * map to 404 or 409 so clients can tell a lost race from a bad request.
+ */
+@RestController
+@RequestMapping("/bookings")
+public class BookingController {
+
+    private final BookingService bookingService;
+
+    @Autowired
+    public BookingController(BookingService bookingService) {
+        this.bookingService = bookingService;
+    }
+
+    /**
+     * Apartments with no resident and no approved stay in {@code [from, to)}, e.g.
+     * {@code GET /bookings/free-apartments?from=2024-01-01&to=2024-07-01};
+     * omit {@code to} for an open-ended stay
+     */
+    @GetMapping("/free-apartments")
+    public ResponseEntity<List<Long>> freeApartments(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        if (to != null && !to.isAfter(from)) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(bookingService.findFreeApartments(from, to));
+    }
+
+    @PostMapping("/{id}/approve")
+    public ResponseEntity<ApprovalOutcome> approve(@PathVariable Long id,
+            @RequestParam(required = false) String notes) {
+        ApprovalOutcome outcome = bookingService.approveBooking(id, notes);
+        switch (outcome) {
+            case APPROVED:
+                return ResponseEntity.ok(outcome);
+            case NOT_FOUND:
+                return ResponseEntity.notFound().build();
+            default:
+                return ResponseEntity.status(HttpStatus.CONFLICT).body(outcome);
+        }
+    }
+
+    @PostMapping("/{id}/cancel")
+    public ResponseEntity<CancellationOutcome> cancel(@PathVariable Long id) {
+        CancellationOutcome outcome = bookingService.cancelBooking(id);
+        switch (outcome) {
+            case CANCELLED:
+                return ResponseEntity.ok(outcome);
+            case NOT_FOUND:
+                return ResponseEntity.notFound().build();
+            default:
+                return ResponseEntity.status(HttpStatus.CONFLICT).body(outcome);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.ams.controller;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.validation.Valid;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.ams.model.Complaint;
+import com.ams.model.Complaint.Status;
+import com.ams.service.ComplaintService;
+import com.ams.service.StaffWorkloadIndex;
+
+/**
+ * Complaint intake with automatic staff assignment, status transitions and
+ * the current staff workload
+ */
+@RestController
+@RequestMapping("/complaints")
+public class ComplaintController {
+
+    private final ComplaintService complaintService;
+    private final StaffWorkloadIndex workloadIndex;
+
+    @Autowired
+    public ComplaintController(ComplaintService complaintService, StaffWorkloadIndex workloadIndex) {
+        this.complaintService = complaintService;
+        this.workloadIndex = workloadIndex;
+    }
+
+    @PostMapping
+    public ResponseEntity<Map<String, Object>> create(@Valid @RequestBody Complaint complaint,
+            @RequestParam Long residentId, @RequestParam Long apartmentId) {
+        Complaint saved = complaintService.create(complaint, residentId, apartmentId);
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("id", saved.getId());
+        body.put("assignedToId", saved.getAssignedTo() == null ? null : saved.getAssignedTo().getId());
+        return ResponseEntity.status(HttpStatus.CREATED).body(body);
+    }
+
+    @PutMapping("/{id}/status")
+    public ResponseEntity<Void> updateStatus(@PathVariable Long id, @RequestParam Status status) {
+        return complaintService.updateStatus(id, status)
+                ? ResponseEntity.noContent().build()
+                : ResponseEntity.badRequest().build();
+    }
+
+    @PostMapping("/{id}/resolve")
+    public ResponseEntity<Void> resolve(@PathVariable Long id, @RequestParam String resolution) {
+        return complaintService.resolve(id, resolution)
+                ? ResponseEntity.noContent().build()
+                : ResponseEntity.notFound().build();
+    }
+
+    @PutMapping("/{id}/assignee")
+    public ResponseEntity<Void> reassign(@PathVariable Long id, @RequestParam Long staffId) {
+        return complaintService.reassign(id, staffId)
+                ? ResponseEntity.noContent().build()
+                : ResponseEntity.badRequest().build();
+    }
+
+    @GetMapping("/workload")
+    public List<StaffWorkloadIndex.Workload> workload() {
+        return workloadIndex.getWorkloads();
+    }
+}
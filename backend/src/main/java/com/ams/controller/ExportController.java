@@ -0,0 +1,73 @@
+package com.ams.controller;
+
+import java.time.LocalDate;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.ams.config.PropertyContext;
+import com.ams.service.ExportService;
+import com.ams.service.ExportService.Dataset;
+import com.ams.service.ExportService.Format;
+
+/**
+ * Streaming exports of payments, complaints and bookings as CSV or NDJSON
+ */
+@RestController
+@RequestMapping("/exports")
+public class ExportController {
+
+    private final ExportService exportService;
+
+    @Autowired
+    public ExportController(ExportService exportService) {
+        this.exportService = exportService;
+    }
+
+    /**
+     * Export one dataset, e.g. {@code GET /exports/payments?from=2020-01-01&to=2025-01-01&format=ndjson}.
+     * The range is inclusive of {@code from} and exclusive of {@code to}; both default to an open range.
+     * An unknown dataset is a 404, an unknown format a 400.
+     */
+    @GetMapping("/{dataset}")
+    public ResponseEntity<StreamingResponseBody> export(
+            @PathVariable String dataset,
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        Dataset selected;
+        Format selectedFormat;
+        try {
+            selected = Dataset.valueOf(dataset.toUpperCase());
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.notFound().build();
+        }
+        try {
+            selectedFormat = Format.valueOf(format.toUpperCase());
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().build();
+        }
+        LocalDate start = from != null ? from : LocalDate.of(1970, 1, 1);
+        LocalDate end = to != null ? to : LocalDate.of(9999, 12, 31);
+        
+        String filename = dataset.toLowerCase() + "." + selectedFormat.name().toLowerCase();
+        // The body is written on an async thread; carry the request's property to it
+        long propertyId = PropertyContext.currentProperty();
+        StreamingResponseBody body = out -> PropertyContext.withProperty(propertyId, () -> {
+            exportService.export(selected, selectedFormat, start, end, out);
+        });
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(selectedFormat.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                .body(body);
+    }
+}
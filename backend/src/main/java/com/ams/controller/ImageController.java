@@ -0,0 +1,202 @@
+package com.ams.controller;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.ams.service.ApartmentService;
+import com.ams.service.ComplaintService;
+import com.ams.service.ImageStore;
+import com.ams.service.ImageStore.StoredImage;
+
+/**
+ * Photo upload and serving.
+ *
+ * Uploads are the raw image body ({@code Content-Type: image/jpeg} etc.),
+ * optionally attached to an apartment or complaint. Images never change
+ * under their content hash, so responses carry a year-long immutable cache
+ * header and the hash as ETag. Bodies are sent with the container's sendfile
+ * where available and {@link FileChannel#transferTo} otherwise; single byte
+ * ranges are honoured.
+ */
+@RestController
+@RequestMapping("/images")
+public class ImageController {
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+    private static final String IMMUTABLE = CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable()
+            .getHeaderValue();
+
+    private final ImageStore imageStore;
+    private final ApartmentService apartmentService;
+    private final ComplaintService complaintService;
+
+    @Autowired
+    public ImageController(ImageStore imageStore, ApartmentService apartmentService,
+            ComplaintService complaintService) {
+        this.imageStore = imageStore;
+        this.apartmentService = apartmentService;
+        this.complaintService = complaintService;
+    }
+
+    /**
+     * Store an image, e.g. {@code POST /images?apartmentId=3} with a JPEG body.
+     * Returns 201 with the image URL, or 200 when the same image was already
+     * stored.
+     */
+    @PostMapping(consumes = {"image/jpeg", "image/png", "image/gif", "image/webp"})
+    public ResponseEntity<Map<String, Object>> upload(HttpServletRequest request,
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+            @RequestParam(required = false) Long apartmentId,
+            @RequestParam(required = false) Long complaintId) throws IOException {
+        StoredImage image;
+        try {
+            image = imageStore.store(request.getInputStream(), contentType);
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        String url = request.getContextPath() + "/images/" + image.getKey();
+        if (apartmentId != null && !apartmentService.attachImage(apartmentId, url)
+                || complaintId != null && !complaintService.attachImage(complaintId, url)) {
+            return ResponseEntity.notFound().build();
+        }
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("key", image.getKey());
+        body.put("url", url);
+        body.put("thumbnailUrl", url + "/thumbnail");
+        body.put("size", image.getSize());
+        body.put("duplicate", image.isDuplicate());
+        return ResponseEntity.status(image.isDuplicate() ? HttpStatus.OK : HttpStatus.CREATED).body(body);
+    }
+
+    @GetMapping("/{key:.+}")
+    public void image(@PathVariable String key, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        send(imageStore.find(key), ImageStore.contentTypeOf(key), "\"" + key + "\"", request, response);
+    }
+
+    /**
+     * The JPEG thumbnail; 404 until it has been rendered
+     */
+    @GetMapping("/{key:.+}/thumbnail")
+    public void thumbnail(@PathVariable String key, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        send(imageStore.findThumbnail(key), MediaType.IMAGE_JPEG_VALUE, "\"" + key + "-thumb\"", request, response);
+    }
+
+    private void send(Optional<Path> file, String contentType, String etag, HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        if (!file.isPresent()) {
+            response.setStatus(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, IMMUTABLE);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null && (ifNoneMatch.contains(etag) || ifNoneMatch.trim().equals("*"))) {
+            response.setStatus(HttpStatus.NOT_MODIFIED.value());
+            return;
+        }
+
+        Path path = file.get();
+        long size = Files.size(path);
+        long start = 0;
+        long end = size;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (range != null && (ifRange == null || ifRange.equals(etag))) {
+            long[] bounds = parseRange(range, size);
+            if (bounds == null) {
+                response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                return;
+            }
+            if (bounds.length == 2) {
+                start = bounds[0];
+                end = bounds[1];
+                response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + (end - 1) + "/" + size);
+            }
+        }
+        response.setContentType(contentType);
+        response.setContentLengthLong(end - start);
+        if ("HEAD".equals(request.getMethod())) {
+            return;
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // Tomcat writes the file itself with transferTo once the servlet returns
+            request.setAttribute(SENDFILE_FILENAME, path.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            for (long position = start; position < end; ) {
+                position += channel.transferTo(position, end - position, out);
+            }
+        }
+    }
+
+    /**
+     * Parse a single {@code bytes=} range into an exclusive [start, end).
+     * Returns an empty array to serve the whole file (multiple or foreign
+     * ranges may be ignored), or null when the range cannot be satisfied.
+     */
+    private static long[] parseRange(String header, long size) {
+        if (!header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+            return new long[0];
+        }
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return new long[0];
+        }
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            if (first.isEmpty()) {
+                long suffix = Long.parseLong(last);
+                return suffix <= 0 ? null : new long[] {Math.max(0, size - suffix), size};
+            }
+            long start = Long.parseLong(first);
+            long end = last.isEmpty() ? size : Math.min(size, Long.parseLong(last) + 1);
+            return start >= size || end <= start ? null : new long[] {start, end};
+        } catch (NumberFormatException ex) {
+            return new long[0];
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.ams.controller;
+
+import java.io.IOException;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.ams.service.ImportJob;
+import com.ams.service.ImportService;
+
+/**
+ * Bulk import of apartments and residents. The request body is the raw CSV
+ * or JSON file; progress is polled through the returned job.
+ */
+@RestController
+@RequestMapping("/imports")
+public class ImportController {
+
+    private final ImportService importService;
+
+    @Autowired
+    public ImportController(ImportService importService) {
+        this.importService = importService;
+    }
+
+    /**
+     * Start an import, e.g. {@code POST /imports/apartments?format=csv}
+     */
+    @PostMapping("/{type}")
+    public ResponseEntity<ImportJob> submit(@PathVariable String type,
+            @RequestParam(defaultValue = "csv") String format,
+            HttpServletRequest request) throws IOException {
+        try {
+            ImportJob job = importService.submit(type, format.toLowerCase(), request.getInputStream());
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("/jobs/{id}")
+    public ResponseEntity<ImportJob> status(@PathVariable String id) {
+        return importService.getJob(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+}
@@ -0,0 +1,53 @@
+package com.ams.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.ams.service.DatabaseService.PaymentOutcome;
+import com.ams.service.PaymentIngestionService;
+
+/**
+ * Payment gateway callbacks. A redelivered callback is answered 200 with
+ * DUPLICATE, so gateways stop retrying; a transaction that conflicts with
+ * how the payment was settled is 409.
+ */
+@RestController
+@RequestMapping("/payments")
+public class PaymentController {
+
+    private final PaymentIngestionService paymentIngestionService;
+
+    @Autowired
+    public PaymentController(PaymentIngestionService paymentIngestionService) {
+        this.paymentIngestionService = paymentIngestionService;
+    }
+
+    /**
+     * e.g. {@code POST /payments/42/callback?transactionId=TXN-123&paymentMethod=CARD}
+     */
+    @PostMapping("/{id}/callback")
+    public ResponseEntity<PaymentOutcome> callback(@PathVariable Long id, @RequestParam String transactionId,
+            @RequestParam(required = false) String paymentMethod) {
+        PaymentOutcome outcome;
+        try {
+            outcome = paymentIngestionService.ingest(id, transactionId, paymentMethod);
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().build();
+        }
+        switch (outcome) {
+            case PROCESSED:
+            case DUPLICATE:
+                return ResponseEntity.ok(outcome);
+            case NOT_FOUND:
+                return ResponseEntity.notFound().build();
+            default:
+                return ResponseEntity.status(HttpStatus.CONFLICT).body(outcome);
+        }
+    }
+}
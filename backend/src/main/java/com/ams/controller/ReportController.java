@@ -0,0 +1,146 @@
+package com.ams.controller;
+
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import javax.validation.Valid;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.ams.config.PropertyContext;
+import com.ams.service.DatabaseService;
+import com.ams.service.ReceivablesAnalyticsService;
+import com.ams.service.ReceivablesAnalyticsService.ReceivablesReport;
+import com.ams.service.ReportJob;
+import com.ams.service.ReportService;
+import com.ams.service.ReportSpec;
+import com.ams.service.ResidentLedger;
+
+/**
+ * Asynchronous multi-month and all-resident reports. Submit a spec, poll the
+ * job, then stream the stored result. Receivables analytics are answered
+ * directly from the day's cached result.
+ */
+@RestController
+@RequestMapping("/reports")
+public class ReportController {
+
+    private final ReportService reportService;
+    private final ReceivablesAnalyticsService receivablesAnalytics;
+    private final DatabaseService databaseService;
+    private final ResidentLedger residentLedger;
+
+    @Autowired
+    public ReportController(ReportService reportService, ReceivablesAnalyticsService receivablesAnalytics,
+            DatabaseService databaseService, ResidentLedger residentLedger) {
+        this.reportService = reportService;
+        this.receivablesAnalytics = receivablesAnalytics;
+        this.databaseService = databaseService;
+        this.residentLedger = residentLedger;
+    }
+
+    /**
+     * One resident's apartment, payment and complaint summary
+     */
+    @GetMapping("/residents/{id}")
+    public ResponseEntity<Map<String, Object>> residentReport(@PathVariable Long id) {
+        return ResponseEntity.ok(residentLedger.withCurrentBalance(databaseService.getResidentReport(id), id));
+    }
+
+    /**
+     * A resident's charged and paid totals and outstanding balance, now or at
+     * the end of a past day, e.g. {@code GET /reports/residents/7/balance?date=2024-03-31}
+     */
+    @GetMapping("/residents/{id}/balance")
+    public ResponseEntity<ResidentLedger.Balance> residentBalance(@PathVariable Long id,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        return ResponseEntity.ok(date == null
+                ? residentLedger.currentBalance(id)
+                : residentLedger.balanceAt(id, date));
+    }
+
+    /**
+     * The property's residents by outstanding balance, highest first unless
+     * {@code order=asc}
+     */
+    @GetMapping("/balances")
+    public ResponseEntity<List<Map<String, Object>>> balances(@RequestParam(defaultValue = "100") int limit,
+            @RequestParam(defaultValue = "desc") String order) {
+        if (limit < 1) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(residentLedger.rankByBalance(limit, "asc".equalsIgnoreCase(order)));
+    }
+
+    /**
+     * Aging buckets of outstanding payments and monthly collection rates by
+     * building and payment type
+     */
+    @GetMapping("/receivables")
+    public ResponseEntity<ReceivablesReport> receivables() {
+        return ResponseEntity.ok(receivablesAnalytics.getReceivables());
+    }
+
+    /**
+     * Submit a report, e.g. {@code {"type": "MONTHLY_REVENUE", "from": "2023-01", "to": "2023-12"}}.
+     * Returns 200 with the existing job when an identical report is already
+     * running or done, 202 with a new job otherwise.
+     */
+    @PostMapping
+    public ResponseEntity<ReportJob> submit(@Valid @RequestBody ReportSpec spec) {
+        try {
+            ReportJob job = reportService.submit(spec);
+            return job.getStatus() == ReportJob.Status.COMPLETED
+                    ? ResponseEntity.ok(job)
+                    : ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("/jobs/{id}")
+    public ResponseEntity<ReportJob> status(@PathVariable String id) {
+        return reportService.getJob(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * The completed report as JSON; 404 until the job has completed and its
+     * result is stored on the requesting property's shard
+     */
+    @GetMapping("/jobs/{id}/result")
+    public ResponseEntity<StreamingResponseBody> result(@PathVariable String id) {
+        if (!reportService.hasResult(id)) {
+            return ResponseEntity.notFound().build();
+        }
+        // The body is written on an async thread; carry the request's property to it
+        long propertyId = PropertyContext.currentProperty();
+        StreamingResponseBody body = out -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+            if (!PropertyContext.withProperty(propertyId, () -> reportService.streamResult(id, writer))) {
+                // Only if the job was deleted since the check; the 200 is already committed
+                throw new IllegalStateException("Result of report job " + id + " disappeared");
+            }
+            writer.flush();
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+}
@@ -0,0 +1,89 @@
+package com.ams.controller;
+
+import java.math.BigDecimal;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.interceptor.SimpleKey;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+
+import com.ams.service.DatabaseService;
+import com.ams.service.JsonResponseCache;
+import com.ams.service.JsonResponseCache.CachedJson;
+
+/**
+ * Dashboard, occupancy and availability reads, served from pre-serialized
+ * JSON. A conditional GET whose ETag still matches gets a 304 without
+ * touching the database or Jackson. The gzip encoding is a different
+ * representation and carries its own strong ETag.
+ */
+@RestController
+@RequestMapping("/statistics")
+public class StatisticsController {
+
+    private final DatabaseService databaseService;
+    private final JsonResponseCache jsonCache;
+
+    @Autowired
+    public StatisticsController(DatabaseService databaseService, JsonResponseCache jsonCache) {
+        this.databaseService = databaseService;
+        this.jsonCache = jsonCache;
+    }
+
+    @GetMapping("/dashboard")
+    public ResponseEntity<byte[]> dashboard(WebRequest request,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        return respond(request, acceptEncoding, jsonCache.get("dashboardStatisticsJson", SimpleKey.EMPTY,
+                databaseService::getDashboardStatistics));
+    }
+
+    @GetMapping("/occupancy")
+    public ResponseEntity<byte[]> occupancy(WebRequest request,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        return respond(request, acceptEncoding, jsonCache.get("occupancyStatisticsJson", SimpleKey.EMPTY,
+                databaseService::getOccupancyStatistics));
+    }
+
+    @GetMapping("/available-apartments")
+    public ResponseEntity<byte[]> availableApartments(WebRequest request,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            @RequestParam(defaultValue = "0") int minBedrooms,
+            @RequestParam(defaultValue = "0") int minBathrooms,
+            @RequestParam(defaultValue = "0") BigDecimal minRent,
+            @RequestParam(defaultValue = "1000000") BigDecimal maxRent) {
+        String key = minBedrooms + "_" + minBathrooms + "_" + minRent + "_" + maxRent;
+        return respond(request, acceptEncoding, jsonCache.get("availableApartmentsJson", key,
+                () -> databaseService.getAvailableApartments(minBedrooms, minBathrooms, minRent, maxRent)));
+    }
+
+    private ResponseEntity<byte[]> respond(WebRequest request, String acceptEncoding, CachedJson cached) {
+        boolean gzip = cached.getGzip() != null && acceptEncoding != null && acceptEncoding.contains("gzip");
+        String etag = gzip ? gzipEtag(cached.getEtag()) : cached.getEtag();
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(etag)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(cached.getGzip());
+        }
+        return response.body(cached.getJson());
+    }
+
+    /**
+     * The tag of the gzip encoding: the quoted version tag with a {@code -gz}
+     * suffix inside the quotes
+     */
+    private static String gzipEtag(String etag) {
+        return etag.substring(0, etag.length() - 1) + "-gz\"";
+    }
+}
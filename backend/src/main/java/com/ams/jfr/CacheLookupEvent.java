@@ -0,0 +1,27 @@
+package com.ams.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Emitted for every lookup against a Caffeine-backed Spring cache
+ */
+@Name("com.ams.CacheLookup")
+@Label("Cache Lookup")
+@Category({"Apartment Management", "Cache"})
+@Description("Lookup of a key in one of the application caches")
+@Enabled(false)
+@StackTrace(false)
+public class CacheLookupEvent extends Event {
+
+    @Label("Cache Name")
+    public String cacheName;
+
+    @Label("Hit")
+    public boolean hit;
+}
@@ -0,0 +1,30 @@
+package com.ams.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Emitted around every stored-procedure call made by {@code DatabaseService}
+ */
+@Name("com.ams.ProcedureCall")
+@Label("Stored Procedure Call")
+@Category({"Apartment Management", "Database"})
+@Description("Execution of a stored procedure through SimpleJdbcCall")
+@Enabled(false)
+@StackTrace(false)
+public class ProcedureCallEvent extends Event {
+
+    @Label("Procedure")
+    public String procedure;
+
+    @Label("Succeeded")
+    public boolean succeeded;
+
+    @Label("Result Sets")
+    public int resultSets;
+}
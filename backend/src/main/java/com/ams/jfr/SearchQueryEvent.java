@@ -0,0 +1,27 @@
+package com.ams.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Emitted around every query issued by {@code SearchService}
+ */
+@Name("com.ams.SearchQuery")
+@Label("Search Query")
+@Category({"Apartment Management", "Database"})
+@Description("Full-text or LIKE search query")
+@Enabled(false)
+@StackTrace(false)
+public class SearchQueryEvent extends Event {
+
+    @Label("Operation")
+    public String operation;
+
+    @Label("Rows")
+    public int rows;
+}
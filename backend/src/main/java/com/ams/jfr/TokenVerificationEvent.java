@@ -0,0 +1,24 @@
+package com.ams.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Emitted around every JWT signature verification performed by {@code JwtUtil}
+ */
+@Name("com.ams.TokenVerification")
+@Label("Token Verification")
+@Category({"Apartment Management", "Security"})
+@Description("Parsing and signature verification of a JWT")
+@Enabled(false)
+@StackTrace(false)
+public class TokenVerificationEvent extends Event {
+
+    @Label("Valid")
+    public boolean valid;
+}
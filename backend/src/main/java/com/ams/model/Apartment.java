@@ -14,6 +14,7 @@ import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.OneToMany;
 import javax.persistence.Table;
+import javax.persistence.Version;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
@@ -23,6 +24,8 @@ import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
+import com.ams.service.DomainChangeListener;
+
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -32,13 +35,17 @@ import lombok.NoArgsConstructor;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-@EntityListeners(AuditingEntityListener.class)
+@EntityListeners({AuditingEntityListener.class, DomainChangeListener.class})
 public class Apartment {
     
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
     
+    // Property (tenant) the row belongs to; decides which shard stores it
+    @NotNull
+    private Long propertyId = 1L;
+    
     @NotBlank
     @Size(max = 100)
     private String name;
@@ -50,6 +57,9 @@ public class Apartment {
     @Size(max = 20)
     private String unitNumber;
     
+    @Size(max = 50)
+    private String building;
+    
     @NotNull
     @Min(value = 0)
     private Double area;
@@ -73,6 +83,9 @@ public class Apartment {
     @NotNull
     private boolean isAvailable = true;
     
+    @Version
+    private Long version;
+    
     @OneToMany(mappedBy = "apartment", cascade = CascadeType.ALL, orphanRemoval = true)
     private Set<User> residents = new HashSet<>();
     
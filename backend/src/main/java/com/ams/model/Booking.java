@@ -15,6 +15,7 @@ import javax.persistence.Id;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
+import javax.persistence.Version;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
 
@@ -22,6 +23,8 @@ import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
+import com.ams.service.DomainChangeListener;
+
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -31,13 +34,17 @@ import lombok.NoArgsConstructor;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-@EntityListeners(AuditingEntityListener.class)
+@EntityListeners({AuditingEntityListener.class, DomainChangeListener.class})
 public class Booking {
     
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
     
+    // Property (tenant) the row belongs to; decides which shard stores it
+    @NotNull
+    private Long propertyId = 1L;
+    
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "apartment_id", nullable = false)
     private Apartment apartment;
@@ -49,6 +56,9 @@ public class Booking {
     @NotNull
     private LocalDate moveInDate;
     
+    // Exclusive end of the stay; null while it is open-ended
+    private LocalDate moveOutDate;
+    
     @NotNull
     @Enumerated(EnumType.STRING)
     private BookingStatus status = BookingStatus.PENDING;
@@ -68,6 +78,9 @@ public class Booking {
     
     private LocalDateTime statusChangedAt;
     
+    @Version
+    private Long version;
+    
     public enum BookingStatus {
         PENDING,
         APPROVED,
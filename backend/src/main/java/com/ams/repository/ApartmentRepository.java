@@ -2,8 +2,12 @@ package com.ams.repository;
 
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.Optional;
+
+import javax.persistence.LockModeType;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.stereotype.Repository;
 
 import com.ams.model.Apartment;
@@ -17,4 +21,11 @@ public interface ApartmentRepository extends JpaRepository<Apartment, Long> {
     List<Apartment> findByRentBetween(BigDecimal minRent, BigDecimal maxRent);
     List<Apartment> findByIsAvailableAndBedroomsGreaterThanEqualAndBathroomsGreaterThanEqual(
             boolean isAvailable, Integer bedrooms, Integer bathrooms);
+    
+    /**
+     * Load an apartment whose version is incremented when the transaction
+     * commits, even if the apartment itself is not changed
+     */
+    @Lock(LockModeType.OPTIMISTIC_FORCE_INCREMENT)
+    Optional<Apartment> findLockedById(Long id);
 } 
\ No newline at end of file
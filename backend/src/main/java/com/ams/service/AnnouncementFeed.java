@@ -0,0 +1,285 @@
+package com.ams.service;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.ams.model.Announcement;
+import com.ams.model.Announcement.AnnouncementType;
+import com.ams.repository.AnnouncementRepository;
+import com.ams.util.HashedTimerWheel;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Active announcements held in memory and pushed to clients over
+ * Server-Sent Events, so residents no longer poll the database.
+ *
+ * Each change is serialized once and queued to every subscriber; a per
+ * subscriber drain task writes its queue on a small shared pool. A
+ * subscriber whose bounded queue overflows is disconnected and picks up a
+ * fresh snapshot when its EventSource reconnects. Expiry dates are tracked on
+ * a hashed timer wheel that removes announcements and pushes the removal.
+ */
+@Service
+@Slf4j
+public class AnnouncementFeed {
+
+    public static final String SNAPSHOT_EVENT = "snapshot";
+    public static final String PUBLISHED_EVENT = "published";
+    public static final String REMOVED_EVENT = "removed";
+    public static final String EXPIRED_EVENT = "expired";
+
+    private final AnnouncementRepository announcementRepository;
+    private final ObjectMapper objectMapper;
+    private final int bufferSize;
+    private final long emitterTimeoutMs;
+    private final ExecutorService dispatcher;
+    private final HashedTimerWheel<Long> expiryWheel;
+
+    // Newest first; ids are assigned in creation order
+    private final Map<Long, Item> active = new ConcurrentSkipListMap<>(Comparator.reverseOrder());
+    private final Map<Long, HashedTimerWheel.Timeout<Long>> expiries = new ConcurrentHashMap<>();
+    private final Set<Subscriber> subscribers = new CopyOnWriteArraySet<>();
+
+    @Autowired
+    public AnnouncementFeed(AnnouncementRepository announcementRepository, ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${ams.announcements.feed.buffer-size:64}") int bufferSize,
+            @Value("${ams.announcements.feed.timeout-ms:1800000}") long emitterTimeoutMs,
+            @Value("${ams.announcements.feed.dispatch-threads:2}") int dispatchThreads,
+            @Value("${ams.announcements.feed.tick-ms:1000}") long tickMillis,
+            @Value("${ams.announcements.feed.wheel-size:512}") int wheelSize) {
+        this.announcementRepository = announcementRepository;
+        this.objectMapper = objectMapper;
+        this.bufferSize = bufferSize;
+        this.emitterTimeoutMs = emitterTimeoutMs;
+        this.dispatcher = Executors.newFixedThreadPool(dispatchThreads, runnable -> {
+            Thread thread = new Thread(runnable, "feed-dispatch");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.expiryWheel = new HashedTimerWheel<>(tickMillis, wheelSize, "feed-expiry", this::expire);
+
+        Gauge.builder("ams.announcements.subscribers", subscribers, Set::size)
+                .description("Open announcement feed connections")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        try {
+            for (Announcement announcement : announcementRepository.findByActive(true)) {
+                publish(announcement);
+            }
+            log.info("Announcement feed loaded with {} active announcements", active.size());
+        } catch (DataAccessException ex) {
+            log.warn("Announcement feed not loaded: {}", ex.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        expiryWheel.stop();
+        dispatcher.shutdownNow();
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+    }
+
+    /**
+     * Open a feed connection; the first event is a snapshot of every active
+     * announcement
+     */
+    public SseEmitter subscribe() {
+        Subscriber subscriber = new Subscriber(new SseEmitter(emitterTimeoutMs), bufferSize);
+        subscriber.emitter.onCompletion(() -> subscribers.remove(subscriber));
+        subscriber.emitter.onTimeout(() -> subscribers.remove(subscriber));
+        subscriber.emitter.onError(ex -> subscribers.remove(subscriber));
+
+        // Register before taking the snapshot: an event queued ahead of it is
+        // already reflected in it, and nothing published afterwards is lost
+        subscribers.add(subscriber);
+        subscriber.offer(new FeedEvent(SNAPSHOT_EVENT, toJson(getActive())));
+        schedule(subscriber);
+        return subscriber.emitter;
+    }
+
+    /**
+     * Get the active announcements, newest first
+     */
+    public List<Item> getActive() {
+        return new ArrayList<>(active.values());
+    }
+
+    /**
+     * Add or replace an announcement and push it to every subscriber.
+     * Inactive or already expired announcements are withdrawn instead.
+     */
+    public void publish(Announcement announcement) {
+        if (!announcement.isActive() || announcement.isExpired()) {
+            withdraw(announcement.getId());
+            return;
+        }
+
+        Item item = new Item(announcement.getId(), announcement.getTitle(), announcement.getContent(),
+                announcement.getType(), announcement.getExpiryDate(), announcement.getCreatedAt());
+        active.put(item.getId(), item);
+        cancelExpiry(item.getId());
+        if (item.getExpiryDate() != null) {
+            expiries.put(item.getId(), expiryWheel.schedule(item.getId(), deadline(item)));
+        }
+        broadcast(new FeedEvent(PUBLISHED_EVENT, toJson(item)));
+    }
+
+    /**
+     * Remove an announcement and push the removal
+     */
+    public void withdraw(Long announcementId) {
+        cancelExpiry(announcementId);
+        if (active.remove(announcementId) != null) {
+            broadcast(new FeedEvent(REMOVED_EVENT, String.valueOf(announcementId)));
+        }
+    }
+
+    private void expire(Long announcementId) {
+        // A timeout cancelled by a concurrent re-publish may still fire once
+        Item item = active.get(announcementId);
+        if (item == null || item.getExpiryDate() == null) {
+            return;
+        }
+        if (item.getExpiryDate().isAfter(LocalDateTime.now())) {
+            // The wheel fired early by the wall clock; wait out the rest, replacing any newer timeout
+            expiries.compute(announcementId, (id, current) -> {
+                if (current != null) {
+                    current.cancel();
+                }
+                return expiryWheel.schedule(id, deadline(item));
+            });
+            return;
+        }
+        expiries.remove(announcementId);
+        if (active.remove(announcementId, item)) {
+            broadcast(new FeedEvent(EXPIRED_EVENT, String.valueOf(announcementId)));
+        }
+    }
+
+    private static long deadline(Item item) {
+        return item.getExpiryDate().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private void cancelExpiry(Long announcementId) {
+        HashedTimerWheel.Timeout<Long> timeout = expiries.remove(announcementId);
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
+
+    private void broadcast(FeedEvent event) {
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.offer(event)) {
+                schedule(subscriber);
+            } else {
+                log.debug("Disconnecting slow announcement feed subscriber");
+                subscribers.remove(subscriber);
+                subscriber.emitter.complete();
+            }
+        }
+    }
+
+    private void schedule(Subscriber subscriber) {
+        if (subscriber.draining.compareAndSet(false, true)) {
+            dispatcher.execute(() -> drain(subscriber));
+        }
+    }
+
+    private void drain(Subscriber subscriber) {
+        try {
+            for (FeedEvent event; (event = subscriber.queue.poll()) != null; ) {
+                subscriber.emitter.send(SseEmitter.event().name(event.getName()).data(event.getJson()));
+            }
+        } catch (IOException | IllegalStateException ex) {
+            subscribers.remove(subscriber);
+            subscriber.emitter.completeWithError(ex);
+            return;
+        } finally {
+            subscriber.draining.set(false);
+        }
+        // An event queued after the last poll but before the flag was cleared
+        if (!subscriber.queue.isEmpty()) {
+            schedule(subscriber);
+        }
+    }
+
+    private String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Cannot serialize announcement feed event", ex);
+        }
+    }
+
+    /**
+     * Announcement as sent to clients, detached from the persistence context
+     */
+    @Getter
+    @AllArgsConstructor
+    public static final class Item {
+        private final Long id;
+        private final String title;
+        private final String content;
+        private final AnnouncementType type;
+        private final LocalDateTime expiryDate;
+        private final LocalDateTime createdAt;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private static final class FeedEvent {
+        private final String name;
+        private final String json;
+    }
+
+    private static final class Subscriber {
+        private final SseEmitter emitter;
+        private final Queue<FeedEvent> queue;
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        Subscriber(SseEmitter emitter, int bufferSize) {
+            this.emitter = emitter;
+            this.queue = new ArrayBlockingQueue<>(bufferSize);
+        }
+
+        boolean offer(FeedEvent event) {
+            return queue.offer(event);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.ams.service;
+
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.ams.model.Announcement;
+import com.ams.model.User;
+import com.ams.repository.AnnouncementRepository;
+import com.ams.repository.UserRepository;
+import com.ams.util.TransactionHooks;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Announcement writes. Every committed change is pushed to the
+ * {@link AnnouncementFeed}.
+ */
+@Service
+@Slf4j
+public class AnnouncementService {
+
+    private final AnnouncementRepository announcementRepository;
+    private final UserRepository userRepository;
+    private final AnnouncementFeed announcementFeed;
+
+    @Autowired
+    public AnnouncementService(AnnouncementRepository announcementRepository, UserRepository userRepository,
+            AnnouncementFeed announcementFeed) {
+        this.announcementRepository = announcementRepository;
+        this.userRepository = userRepository;
+        this.announcementFeed = announcementFeed;
+    }
+
+    /**
+     * Create an announcement on behalf of an admin
+     */
+    @Transactional
+    @CacheEvict(value = "announcementSearchResults", allEntries = true)
+    public Optional<Announcement> create(Announcement announcement, Long createdById) {
+        Optional<User> admin = userRepository.findById(createdById)
+                .filter(user -> user.getRole() == User.Role.ADMIN);
+        if (!admin.isPresent()) {
+            return Optional.empty();
+        }
+        
+        announcement.setId(null);
+        announcement.setCreatedBy(admin.get());
+        Announcement saved = announcementRepository.saveAndFlush(announcement);
+        TransactionHooks.afterCommit(() -> announcementFeed.publish(saved));
+        log.info("Announcement (ID={}) created by admin (ID={})", saved.getId(), createdById);
+        return Optional.of(saved);
+    }
+
+    /**
+     * Deactivate an announcement before its expiry date
+     */
+    @Transactional
+    @CacheEvict(value = "announcementSearchResults", allEntries = true)
+    public boolean deactivate(Long announcementId) {
+        Optional<Announcement> announcement = announcementRepository.findById(announcementId);
+        if (!announcement.isPresent()) {
+            return false;
+        }
+        
+        announcement.get().setActive(false);
+        TransactionHooks.afterCommit(() -> announcementFeed.withdraw(announcementId));
+        return true;
+    }
+}
@@ -0,0 +1,36 @@
+package com.ams.service;
+
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.ams.model.Apartment;
+import com.ams.repository.ApartmentRepository;
+
+/**
+ * Apartment updates made through the API rather than stored procedures
+ */
+@Service
+public class ApartmentService {
+
+    private final ApartmentRepository apartmentRepository;
+
+    @Autowired
+    public ApartmentService(ApartmentRepository apartmentRepository) {
+        this.apartmentRepository = apartmentRepository;
+    }
+
+    /**
+     * Point an apartment at an uploaded photo
+     */
+    @Transactional
+    @CacheEvict(value = {"availableApartments", "availableApartmentsJson", "apartmentSearchResults"}, allEntries = true)
+    public boolean attachImage(Long apartmentId, String imageUrl) {
+        Optional<Apartment> apartment = apartmentRepository.findById(apartmentId);
+        apartment.ifPresent(a -> a.setImageUrl(imageUrl));
+        return apartment.isPresent();
+    }
+}
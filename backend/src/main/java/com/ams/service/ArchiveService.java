@@ -0,0 +1,342 @@
+package com.ams.service;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.ams.config.PropertyContext;
+import com.ams.util.TransactionHooks;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Moves closed rows out of the hot tables: payments paid, complaints
+ * resolved or cancelled, and announcements expired longer ago than the
+ * configured age.
+ *
+ * Rows move in chunks; each chunk is copied to the archive table and deleted
+ * from the hot one in a single transaction, so a run that stops at any point
+ * leaves every row in exactly one place and the next run carries on with
+ * what is left. Before a table is archived its watermark is raised to the
+ * cutoff: every archived row is older than the watermark, so readers only
+ * consult the archive for ranges that start before it. Archived payments
+ * are published to the {@link DomainChangeStream} as deleted.
+ */
+@Service
+@Slf4j
+public class ArchiveService {
+
+    public enum ArchivedTable {
+        PAYMENTS("payments", "payments_archive",
+                "id, property_id, type, amount, description, payment_date, due_date, status, resident_id, "
+                        + "apartment_id, transaction_id, payment_method, created_at, updated_at",
+                // Both dates, so the watermark also bounds due dates paid in advance
+                "status = 'PAID' AND payment_date < ? AND due_date < ?"),
+        COMPLAINTS("complaints", "complaints_archive",
+                "id, property_id, title, description, category, priority, status, resident_id, apartment_id, "
+                        + "assigned_to_id, image_url, resolution, created_at, updated_at, resolved_at",
+                "status IN ('RESOLVED', 'CANCELLED') AND COALESCE(resolved_at, updated_at, created_at) < ?"),
+        ANNOUNCEMENTS("announcements", "announcements_archive",
+                "id, title, content, created_by_id, type, active, expiry_date, created_at, updated_at",
+                "expiry_date < ?");
+
+        private final String table;
+        private final String archiveTable;
+        private final String columns;
+        private final String closedBefore;
+
+        ArchivedTable(String table, String archiveTable, String columns, String closedBefore) {
+            this.table = table;
+            this.archiveTable = archiveTable;
+            this.columns = columns;
+            this.closedBefore = closedBefore;
+        }
+
+        public String getTable() {
+            return table;
+        }
+
+        public String getArchiveTable() {
+            return archiveTable;
+        }
+    }
+
+    private static final String WATERMARK_SQL = "SELECT archived_before FROM archive_watermarks WHERE table_name = ?";
+    private static final String REVENUE_SQL = "SELECT SUM(amount) AS total_revenue, COUNT(*) AS payment_count, type "
+            + "FROM payments_archive WHERE payment_date >= ? AND payment_date < ? GROUP BY type";
+    private static final String BUILDING_REVENUE_SQL = "SELECT SUM(p.amount) AS total_revenue, "
+            + "COUNT(*) AS payment_count, p.type "
+            + "FROM payments_archive p JOIN apartments a ON p.apartment_id = a.id "
+            + "WHERE a.building = ? AND p.payment_date >= ? AND p.payment_date < ? "
+            + "GROUP BY p.type";
+    private static final String PAYMENT_HISTORY_SQL = "SELECT payment_date, due_date, amount, status, type, description "
+            + "FROM payments_archive WHERE resident_id = ? ORDER BY created_at DESC LIMIT ?";
+    private static final String COMPLAINT_HISTORY_SQL = "SELECT title, category, priority, status, created_at, "
+            + "resolved_at FROM complaints_archive WHERE resident_id = ? ORDER BY created_at DESC LIMIT ?";
+    // Only paid payments are archived
+    private static final String PAYMENT_STATS_SQL = "SELECT COUNT(*) AS total_payments, COUNT(*) AS paid_count, "
+            + "COALESCE(SUM(amount), 0) AS total_paid FROM payments_archive WHERE resident_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ScatterGather scatterGather;
+    private final DomainChangeStream changeStream;
+    private final MeterRegistry meterRegistry;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final Map<ArchivedTable, Integer> ageDays = new EnumMap<>(ArchivedTable.class);
+    private final boolean enabled;
+    private final long intervalMillis;
+    private final int batchSize;
+    private final long pauseMillis;
+
+    @Autowired
+    public ArchiveService(DataSource dataSource, PlatformTransactionManager transactionManager,
+            ScatterGather scatterGather, DomainChangeStream changeStream, MeterRegistry meterRegistry,
+            @Value("${ams.archive.enabled:false}") boolean enabled,
+            @Value("${ams.archive.interval-ms:86400000}") long intervalMillis,
+            @Value("${ams.archive.batch-size:1000}") int batchSize,
+            @Value("${ams.archive.pause-ms:100}") long pauseMillis,
+            @Value("${ams.archive.payments-after-days:730}") int paymentsAfterDays,
+            @Value("${ams.archive.complaints-after-days:365}") int complaintsAfterDays,
+            @Value("${ams.archive.announcements-after-days:90}") int announcementsAfterDays) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.scatterGather = scatterGather;
+        this.changeStream = changeStream;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.intervalMillis = intervalMillis;
+        this.batchSize = batchSize;
+        this.pauseMillis = pauseMillis;
+        this.ageDays.put(ArchivedTable.PAYMENTS, paymentsAfterDays);
+        this.ageDays.put(ArchivedTable.COMPLAINTS, complaintsAfterDays);
+        this.ageDays.put(ArchivedTable.ANNOUNCEMENTS, announcementsAfterDays);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "archiver");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            log.info("Archiving disabled");
+            return;
+        }
+        scheduler.scheduleWithFixedDelay(this::archive, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        log.info("Archiving rows older than {} every {} ms", ageDays, intervalMillis);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Archive everything past its age on every shard; returns at once when a
+     * run is already in progress
+     * @return rows archived per table
+     */
+    public Map<ArchivedTable, Long> archive() {
+        Map<ArchivedTable, Long> archived = new EnumMap<>(ArchivedTable.class);
+        if (!running.compareAndSet(false, true)) {
+            log.info("Archiving already in progress");
+            return archived;
+        }
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            for (String shard : scatterGather.getShards()) {
+                for (ArchivedTable table : ArchivedTable.values()) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        return archived;
+                    }
+                    LocalDateTime cutoff = now.toLocalDate().minusDays(ageDays.get(table)).atStartOfDay();
+                    try {
+                        long rows = PropertyContext.onShard(shard, () -> archiveTable(table, cutoff));
+                        archived.merge(table, rows, Long::sum);
+                        if (rows > 0) {
+                            log.info("Archived {} {} rows older than {} on shard {}", rows, table.table, cutoff, shard);
+                        }
+                    } catch (DataAccessException ex) {
+                        log.warn("Archiving {} on shard {} failed: {}", table.table, shard, ex.getMessage());
+                    }
+                }
+            }
+            return archived;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * Whether rows of the table from {@code from} onwards may be archived on
+     * the current shard, i.e. whether a read of that range must include the
+     * archive
+     */
+    public boolean isNeeded(ArchivedTable table, LocalDate from) {
+        Timestamp archivedBefore = watermark(table);
+        return archivedBefore != null && from.atStartOfDay().isBefore(archivedBefore.toLocalDateTime());
+    }
+
+    /**
+     * Whether anything of the table may be archived on the current shard
+     */
+    public boolean hasArchived(ArchivedTable table) {
+        return watermark(table) != null;
+    }
+
+    /**
+     * Archived revenue in [from, to) by payment type, shaped like
+     * {@code GetMonthlyRevenueReport}
+     */
+    public List<Map<String, Object>> revenueByType(LocalDate from, LocalDate to, String building) {
+        return building == null
+                ? jdbcTemplate.queryForList(REVENUE_SQL, from, to)
+                : jdbcTemplate.queryForList(BUILDING_REVENUE_SQL, building, from, to);
+    }
+
+    /**
+     * A resident's most recent archived payments, shaped like the payment
+     * history of {@code GetResidentReport}
+     */
+    public List<Map<String, Object>> paymentHistory(Long residentId, int limit) {
+        return jdbcTemplate.queryForList(PAYMENT_HISTORY_SQL, residentId, limit);
+    }
+
+    /**
+     * A resident's most recent archived complaints, shaped like the
+     * complaint history of {@code GetResidentReport}
+     */
+    public List<Map<String, Object>> complaintHistory(Long residentId, int limit) {
+        return jdbcTemplate.queryForList(COMPLAINT_HISTORY_SQL, residentId, limit);
+    }
+
+    /**
+     * Totals of a resident's archived payments, to be added to the payment
+     * statistics of {@code GetResidentReport}
+     */
+    public Map<String, Object> paymentStats(Long residentId) {
+        return jdbcTemplate.queryForMap(PAYMENT_STATS_SQL, residentId);
+    }
+
+    /**
+     * Sum of all archived payments on the current shard, kept with the
+     * watermark so totals need not scan the archive
+     */
+    public BigDecimal archivedRevenue() {
+        List<BigDecimal> amount = jdbcTemplate.queryForList(
+                "SELECT amount_archived FROM archive_watermarks WHERE table_name = ?", BigDecimal.class,
+                ArchivedTable.PAYMENTS.table);
+        return amount.isEmpty() || amount.get(0) == null ? BigDecimal.ZERO : amount.get(0);
+    }
+
+    private Timestamp watermark(ArchivedTable table) {
+        List<Timestamp> watermark = jdbcTemplate.queryForList(WATERMARK_SQL, Timestamp.class, table.table);
+        return watermark.isEmpty() ? null : watermark.get(0);
+    }
+
+    private long archiveTable(ArchivedTable table, LocalDateTime cutoff) {
+        Timestamp before = Timestamp.valueOf(cutoff);
+        // Raised first: until the rows below have moved, readers merely
+        // look in the archive without finding them there
+        jdbcTemplate.update("UPDATE archive_watermarks SET archived_before = ?, updated_at = ? "
+                + "WHERE table_name = ? AND (archived_before IS NULL OR archived_before < ?)",
+                before, Timestamp.valueOf(LocalDateTime.now()), table.table, before);
+
+        Counter counter = Counter.builder("ams.archive.rows")
+                .tag("table", table.table)
+                .description("Rows moved from hot tables to archive tables")
+                .register(meterRegistry);
+        long archived = 0;
+        while (!Thread.currentThread().isInterrupted()) {
+            Integer moved = transactionTemplate.execute(status -> moveChunk(table, before));
+            if (moved == null || moved == 0) {
+                break;
+            }
+            archived += moved;
+            counter.increment(moved);
+            if (pauseMillis > 0) {
+                try {
+                    // Leave room for the regular workload between chunks
+                    Thread.sleep(pauseMillis);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        return archived;
+    }
+
+    private int moveChunk(ArchivedTable table, Timestamp before) {
+        List<Object> args = new ArrayList<>(Collections.nCopies(countParameters(table.closedBefore), before));
+        args.add(batchSize);
+        List<Long> ids = jdbcTemplate.queryForList("SELECT id FROM " + table.table + " WHERE " + table.closedBefore
+                + " ORDER BY id LIMIT ? FOR UPDATE", Long.class, args.toArray());
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        String inIds = "id IN (" + String.join(", ", Collections.nCopies(ids.size(), "?")) + ")";
+        Object[] idArgs = ids.toArray();
+        List<Object> insertArgs = new ArrayList<>(ids.size() + 1);
+        insertArgs.add(Timestamp.valueOf(LocalDateTime.now()));
+        insertArgs.addAll(ids);
+        jdbcTemplate.update("INSERT INTO " + table.archiveTable + " (" + table.columns + ", archived_at) "
+                + "SELECT " + table.columns + ", ? FROM " + table.table + " WHERE " + inIds, insertArgs.toArray());
+        BigDecimal amount = BigDecimal.ZERO;
+        if (table == ArchivedTable.PAYMENTS) {
+            List<DomainChange> changes = new ArrayList<>(ids.size());
+            long now = System.currentTimeMillis();
+            for (Map<String, Object> row : jdbcTemplate.queryForList(
+                    "SELECT id, property_id, amount FROM payments WHERE " + inIds, idArgs)) {
+                amount = amount.add((BigDecimal) row.get("amount"));
+                changes.add(new DomainChange("Payment", ((Number) row.get("id")).longValue(),
+                        DomainChange.Kind.DELETED, ((Number) row.get("property_id")).longValue(), now));
+            }
+            TransactionHooks.afterCommit(() -> changes.forEach(changeStream::publish));
+        }
+        jdbcTemplate.update("DELETE FROM " + table.table + " WHERE " + inIds, idArgs);
+        jdbcTemplate.update("UPDATE archive_watermarks SET rows_archived = rows_archived + ?, "
+                + "amount_archived = amount_archived + ?, updated_at = ? WHERE table_name = ?",
+                ids.size(), amount, Timestamp.valueOf(LocalDateTime.now()), table.table);
+        return ids.size();
+    }
+
+    private static int countParameters(String sql) {
+        int count = 0;
+        for (int i = 0; i < sql.length(); i++) {
+            if (sql.charAt(i) == '?') {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,206 @@
+package com.ams.service;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * In-memory index of the stays reserved by APPROVED bookings, one sorted
+ * interval list per apartment. Stays are half-open {@code [moveIn, moveOut)}
+ * and a missing move-out date means the stay is open-ended.
+ *
+ * Reads are lock-free against immutable per-apartment snapshots; writers are
+ * serialized so a rebuild cannot lose a concurrent status change. The index
+ * is local to this instance, covers the apartments of every shard, and is
+ * refreshed from the database on startup.
+ */
+@Service
+@Slf4j
+public class BookingIntervalIndex {
+
+    private static final String APARTMENTS_SQL = "SELECT id FROM apartments";
+    private static final String APPROVED_STAYS_SQL =
+            "SELECT id, apartment_id, move_in_date, move_out_date FROM bookings WHERE status = 'APPROVED'";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ScatterGather scatterGather;
+    private volatile ConcurrentSkipListMap<Long, Stays> stays = new ConcurrentSkipListMap<>();
+
+    @Autowired
+    public BookingIntervalIndex(DataSource dataSource, ScatterGather scatterGather) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.scatterGather = scatterGather;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        try {
+            rebuild();
+        } catch (DataAccessException ex) {
+            log.warn("Booking interval index not loaded: {}", ex.getMessage());
+        }
+    }
+
+    /**
+     * Reload every apartment and approved stay from all shards. Apartment
+     * ids are unique across shards, so the shards' stays simply merge.
+     */
+    public synchronized void rebuild() {
+        long start = System.nanoTime();
+        ConcurrentSkipListMap<Long, Stays> rebuilt = new ConcurrentSkipListMap<>();
+        int stayCount = 0;
+        for (Map<Long, List<long[]>> shard : scatterGather.gather(this::loadStays)) {
+            for (Map.Entry<Long, List<long[]>> entry : shard.entrySet()) {
+                rebuilt.put(entry.getKey(), entry.getValue().isEmpty() ? Stays.EMPTY : Stays.of(entry.getValue()));
+                stayCount += entry.getValue().size();
+            }
+        }
+
+        stays = rebuilt;
+        log.info("Booking interval index rebuilt: {} apartments, {} stays in {} ms", rebuilt.size(), stayCount,
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Approved stays of one shard as {@code {bookingId, startDay, endDay}}
+     * rows per apartment, with an empty list for apartments without any
+     */
+    private Map<Long, List<long[]>> loadStays() {
+        Map<Long, List<long[]>> rows = new HashMap<>();
+        for (Long apartmentId : jdbcTemplate.queryForList(APARTMENTS_SQL, Long.class)) {
+            rows.put(apartmentId, new ArrayList<>());
+        }
+        jdbcTemplate.query(APPROVED_STAYS_SQL, rs -> {
+            Date moveOut = rs.getDate("move_out_date");
+            rows.computeIfAbsent(rs.getLong("apartment_id"), id -> new ArrayList<>()).add(new long[] {
+                rs.getLong("id"),
+                rs.getDate("move_in_date").toLocalDate().toEpochDay(),
+                moveOut == null ? Long.MAX_VALUE : moveOut.toLocalDate().toEpochDay()
+            });
+        });
+        return rows;
+    }
+
+    /**
+     * Record an approved booking's stay, replacing any earlier entry for it
+     */
+    public synchronized void add(Long apartmentId, Long bookingId, LocalDate moveIn, LocalDate moveOut) {
+        stays.compute(apartmentId, (id, current) -> (current == null ? Stays.EMPTY : current)
+                .with(bookingId, moveIn.toEpochDay(), moveOut == null ? Long.MAX_VALUE : moveOut.toEpochDay()));
+    }
+
+    /**
+     * Forget a booking's stay after it stops being APPROVED
+     */
+    public synchronized void remove(Long apartmentId, Long bookingId) {
+        stays.computeIfPresent(apartmentId, (id, current) -> current.without(bookingId));
+    }
+
+    /**
+     * Check whether no approved stay overlaps {@code [from, to)}; a null
+     * {@code to} asks about an open-ended stay
+     */
+    public boolean isFree(Long apartmentId, LocalDate from, LocalDate to) {
+        Stays current = stays.get(apartmentId);
+        return current == null || !current.overlaps(from.toEpochDay(), to == null ? Long.MAX_VALUE : to.toEpochDay());
+    }
+
+    /**
+     * Immutable stays of one apartment sorted by start day, augmented with the
+     * running maximum end day so an overlap check is a single binary search.
+     */
+    static final class Stays {
+
+        static final Stays EMPTY = new Stays(new long[0], new long[0], new long[0]);
+
+        private final long[] bookingIds;
+        private final long[] starts;
+        private final long[] ends;
+        private final long[] maxEnds;
+
+        private Stays(long[] bookingIds, long[] starts, long[] ends) {
+            this.bookingIds = bookingIds;
+            this.starts = starts;
+            this.ends = ends;
+            this.maxEnds = new long[ends.length];
+            long max = Long.MIN_VALUE;
+            for (int i = 0; i < ends.length; i++) {
+                max = Math.max(max, ends[i]);
+                maxEnds[i] = max;
+            }
+        }
+
+        /**
+         * Build from {@code {bookingId, startDay, endDay}} rows
+         */
+        static Stays of(List<long[]> rows) {
+            long[][] sorted = rows.toArray(new long[0][]);
+            Arrays.sort(sorted, (a, b) -> Long.compare(a[1], b[1]));
+            long[] bookingIds = new long[sorted.length];
+            long[] starts = new long[sorted.length];
+            long[] ends = new long[sorted.length];
+            for (int i = 0; i < sorted.length; i++) {
+                bookingIds[i] = sorted[i][0];
+                starts[i] = sorted[i][1];
+                ends[i] = sorted[i][2];
+            }
+            return new Stays(bookingIds, starts, ends);
+        }
+
+        /**
+         * A stay overlaps {@code [from, to)} when it starts before {@code to}
+         * and ends after {@code from}. Among the stays starting before
+         * {@code to} (a prefix of the sorted array) it is enough to compare
+         * the largest end.
+         */
+        boolean overlaps(long from, long to) {
+            int low = 0;
+            int high = starts.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (starts[mid] < to) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low > 0 && maxEnds[low - 1] > from;
+        }
+
+        Stays with(long bookingId, long start, long end) {
+            List<long[]> rows = rows(bookingId);
+            rows.add(new long[] {bookingId, start, end});
+            return of(rows);
+        }
+
+        Stays without(long bookingId) {
+            return of(rows(bookingId));
+        }
+
+        private List<long[]> rows(long excludedBookingId) {
+            List<long[]> rows = new ArrayList<>(bookingIds.length + 1);
+            for (int i = 0; i < bookingIds.length; i++) {
+                if (bookingIds[i] != excludedBookingId) {
+                    rows.add(new long[] {bookingIds[i], starts[i], ends[i]});
+                }
+            }
+            return rows;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.ams.service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.ams.config.MetricsConfig;
+import com.ams.model.Apartment;
+import com.ams.model.Booking;
+import com.ams.model.Booking.BookingStatus;
+import com.ams.repository.ApartmentRepository;
+import com.ams.repository.BookingRepository;
+import com.ams.util.Backoff;
+import com.ams.util.TransactionHooks;
+
+import io.micrometer.core.annotation.Timed;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Booking decisions with optimistic concurrency control. A booking reserves
+ * its apartment for the dates of its stay only: an apartment can be booked
+ * when no resident occupies it ({@code is_available}) and no approved stay
+ * overlaps, and approval leaves {@code is_available} alone. Approval bumps
+ * the apartment's {@code @Version} as well as the booking's, so two
+ * approvals racing for the same unit cannot both commit, and each approval
+ * checks for overlapping stays in the database after taking that version.
+ * Committed status changes are mirrored into the {@link BookingIntervalIndex},
+ * which serves availability searches but, being local to each instance and
+ * updated after commit, never decides an approval.
+ */
+@Service
+@Slf4j
+public class BookingService {
+
+    public enum ApprovalOutcome {
+        APPROVED,
+        NOT_FOUND,
+        NOT_PENDING,
+        UNIT_UNAVAILABLE,
+        CONFLICT
+    }
+
+    public enum CancellationOutcome {
+        CANCELLED,
+        NOT_FOUND,
+        ALREADY_CLOSED,
+        CONFLICT
+    }
+
+    private static final String AVAILABLE_APARTMENTS_SQL = "SELECT id FROM apartments WHERE is_available = TRUE";
+    // Approved stays of an apartment ending after a move-in date; a null move-out date is open-ended
+    private static final String OVERLAPPING_STAYS_SQL = "SELECT COUNT(*) FROM bookings WHERE apartment_id = ? "
+            + "AND status = 'APPROVED' AND id <> ? AND (move_out_date IS NULL OR move_out_date > ?)";
+
+    private final BookingRepository bookingRepository;
+    private final ApartmentRepository apartmentRepository;
+    private final BookingIntervalIndex intervalIndex;
+    private final ScatterGather scatterGather;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxAttempts;
+    private final long backoffMillis;
+
+    @Autowired
+    public BookingService(BookingRepository bookingRepository, ApartmentRepository apartmentRepository,
+            BookingIntervalIndex intervalIndex, ScatterGather scatterGather, DataSource dataSource,
+            PlatformTransactionManager transactionManager,
+            @Value("${ams.concurrency.max-attempts:3}") int maxAttempts,
+            @Value("${ams.concurrency.backoff-ms:20}") long backoffMillis) {
+        this.bookingRepository = bookingRepository;
+        this.apartmentRepository = apartmentRepository;
+        this.intervalIndex = intervalIndex;
+        this.scatterGather = scatterGather;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxAttempts = maxAttempts;
+        this.backoffMillis = backoffMillis;
+    }
+
+    /**
+     * Get the ids of all apartments, across properties, that no resident
+     * occupies and no approved stay overlaps in {@code [from, to)}, in
+     * ascending order; a null {@code to} asks about an open-ended stay.
+     * The stays come from this instance's interval index, so a stay
+     * approved elsewhere moments ago may not be reflected yet; approval
+     * checks the database again.
+     */
+    public List<Long> findFreeApartments(LocalDate from, LocalDate to) {
+        List<Long> free = new ArrayList<>();
+        for (List<Long> available : scatterGather.gather(
+                () -> jdbcTemplate.queryForList(AVAILABLE_APARTMENTS_SQL, Long.class))) {
+            for (Long apartmentId : available) {
+                if (intervalIndex.isFree(apartmentId, from, to)) {
+                    free.add(apartmentId);
+                }
+            }
+        }
+        Collections.sort(free);
+        return free;
+    }
+
+    /**
+     * Approve a pending booking and reserve its apartment for the stay.
+     * Version conflicts are retried with a fresh read a bounded number of
+     * times.
+     */
+    @Timed(value = MetricsConfig.DATABASE_TIMER, extraTags = {"operation", "approveBooking"})
+    public ApprovalOutcome approveBooking(Long bookingId, String notes) {
+        return withRetries("approval", bookingId, () -> approveOnce(bookingId, notes), ApprovalOutcome.CONFLICT);
+    }
+
+    /**
+     * Cancel a pending or approved booking. Cancelling an approved booking
+     * releases its stay in the interval index.
+     */
+    @Timed(value = MetricsConfig.DATABASE_TIMER, extraTags = {"operation", "cancelBooking"})
+    public CancellationOutcome cancelBooking(Long bookingId) {
+        return withRetries("cancellation", bookingId, () -> cancelOnce(bookingId), CancellationOutcome.CONFLICT);
+    }
+
+    private <E extends Enum<E>> E withRetries(String action, Long bookingId, Supplier<E> once, E conflict) {
+        for (int attempt = 1; ; attempt++) {
+            E outcome;
+            try {
+                outcome = transactionTemplate.execute(status -> once.get());
+            } catch (ConcurrencyFailureException ex) {
+                outcome = conflict;
+            }
+            
+            if (outcome != conflict || attempt >= maxAttempts) {
+                log.info("Booking (ID={}) {}: {} after {} attempt(s)", bookingId, action, outcome, attempt);
+                return outcome;
+            }
+            Backoff.pause(attempt, backoffMillis);
+        }
+    }
+
+    private ApprovalOutcome approveOnce(Long bookingId, String notes) {
+        Booking booking = bookingRepository.findById(bookingId).orElse(null);
+        if (booking == null) {
+            return ApprovalOutcome.NOT_FOUND;
+        }
+        if (booking.getStatus() != BookingStatus.PENDING) {
+            return ApprovalOutcome.NOT_PENDING;
+        }
+        
+        // The apartment's version is bumped on commit, so a concurrent
+        // approval for the same unit fails its version check, and its retry
+        // finds this stay in the database
+        Long apartmentId = booking.getApartment().getId();
+        Apartment apartment = apartmentRepository.findLockedById(apartmentId).orElse(null);
+        if (apartment == null || !apartment.isAvailable()
+                || hasOverlappingStay(apartmentId, bookingId, booking.getMoveInDate(), booking.getMoveOutDate())) {
+            return ApprovalOutcome.UNIT_UNAVAILABLE;
+        }
+        
+        booking.approveBooking(notes);
+        bookingRepository.saveAndFlush(booking);
+        TransactionHooks.afterCommit(() -> intervalIndex.add(apartment.getId(), bookingId,
+                booking.getMoveInDate(), booking.getMoveOutDate()));
+        return ApprovalOutcome.APPROVED;
+    }
+
+    /**
+     * Whether another approved stay overlaps {@code [from, to)}, read in the
+     * current transaction; a null {@code to} is an open-ended stay
+     */
+    private boolean hasOverlappingStay(Long apartmentId, Long bookingId, LocalDate from, LocalDate to) {
+        Integer overlapping = to == null
+                ? jdbcTemplate.queryForObject(OVERLAPPING_STAYS_SQL, Integer.class, apartmentId, bookingId, from)
+                : jdbcTemplate.queryForObject(OVERLAPPING_STAYS_SQL + " AND move_in_date < ?", Integer.class,
+                        apartmentId, bookingId, from, to);
+        return overlapping != null && overlapping > 0;
+    }
+
+    private CancellationOutcome cancelOnce(Long bookingId) {
+        Booking booking = bookingRepository.findById(bookingId).orElse(null);
+        if (booking == null) {
+            return CancellationOutcome.NOT_FOUND;
+        }
+        BookingStatus previous = booking.getStatus();
+        if (previous != BookingStatus.PENDING && previous != BookingStatus.APPROVED) {
+            return CancellationOutcome.ALREADY_CLOSED;
+        }
+        
+        Long apartmentId = booking.getApartment().getId();
+        booking.cancelBooking();
+        bookingRepository.saveAndFlush(booking);
+        if (previous == BookingStatus.APPROVED) {
+            TransactionHooks.afterCommit(() -> intervalIndex.remove(apartmentId, bookingId));
+        }
+        return CancellationOutcome.CANCELLED;
+    }
+
+}
@@ -0,0 +1,149 @@
+package com.ams.service;
+
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.ams.config.PropertyContext;
+import com.ams.model.Complaint;
+import com.ams.model.Complaint.Status;
+import com.ams.model.User;
+import com.ams.repository.ApartmentRepository;
+import com.ams.repository.ComplaintRepository;
+import com.ams.repository.UserRepository;
+import com.ams.util.TransactionHooks;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Complaint intake and status transitions. New complaints are assigned to
+ * the least loaded staff member from the {@link StaffWorkloadIndex}, and
+ * every transition keeps the index current.
+ */
+@Service
+@Slf4j
+public class ComplaintService {
+
+    private final ComplaintRepository complaintRepository;
+    private final UserRepository userRepository;
+    private final ApartmentRepository apartmentRepository;
+    private final StaffWorkloadIndex workloadIndex;
+    private final NotificationOutbox notificationOutbox;
+
+    @Autowired
+    public ComplaintService(ComplaintRepository complaintRepository, UserRepository userRepository,
+            ApartmentRepository apartmentRepository, StaffWorkloadIndex workloadIndex,
+            NotificationOutbox notificationOutbox) {
+        this.complaintRepository = complaintRepository;
+        this.userRepository = userRepository;
+        this.apartmentRepository = apartmentRepository;
+        this.workloadIndex = workloadIndex;
+        this.notificationOutbox = notificationOutbox;
+    }
+
+    /**
+     * File a complaint and assign it to the least loaded staff member
+     */
+    @Transactional
+    @CacheEvict(value = {"pendingComplaints", "dashboardStatistics", "dashboardStatisticsJson"}, allEntries = true)
+    public Complaint create(Complaint complaint, Long residentId, Long apartmentId) {
+        complaint.setId(null);
+        complaint.setStatus(Status.PENDING);
+        complaint.setPropertyId(PropertyContext.currentProperty());
+        complaint.setResident(userRepository.getReferenceById(residentId));
+        complaint.setApartment(apartmentRepository.getReferenceById(apartmentId));
+        complaint.setAssignedTo(null);
+        Complaint saved = complaintRepository.saveAndFlush(complaint);
+        
+        Optional<Long> staffId = workloadIndex.assignLeastLoaded(saved.getId(), saved.getPriority(), saved.getCategory());
+        if (staffId.isPresent()) {
+            saved.setAssignedTo(userRepository.getReferenceById(staffId.get()));
+            TransactionHooks.afterRollback(() -> workloadIndex.untrack(saved.getId()));
+            log.info("Complaint (ID={}) assigned to staff (ID={})", saved.getId(), staffId.get());
+        } else {
+            log.warn("Complaint (ID={}) left unassigned: no staff available", saved.getId());
+        }
+        return saved;
+    }
+
+    /**
+     * Hand a complaint to a specific staff member
+     */
+    @Transactional
+    public boolean reassign(Long complaintId, Long staffId) {
+        Optional<Complaint> complaint = complaintRepository.findById(complaintId);
+        Optional<User> staff = userRepository.findById(staffId).filter(user -> user.getRole() == User.Role.ADMIN);
+        if (!complaint.isPresent() || !staff.isPresent() || !isOpen(complaint.get().getStatus())) {
+            return false;
+        }
+        
+        Complaint updated = complaint.get();
+        updated.setAssignedTo(staff.get());
+        TransactionHooks.afterCommit(() -> workloadIndex.track(complaintId, staffId,
+                updated.getPriority(), updated.getCategory()));
+        return true;
+    }
+
+    /**
+     * Move a complaint to a new status; resolving goes through
+     * {@link #resolve(Long, String)} so the resolution is recorded
+     */
+    @Transactional
+    @CacheEvict(value = {"pendingComplaints", "dashboardStatistics", "dashboardStatisticsJson"}, allEntries = true)
+    public boolean updateStatus(Long complaintId, Status status) {
+        if (status == Status.RESOLVED) {
+            return false;
+        }
+        Optional<Complaint> complaint = complaintRepository.findById(complaintId);
+        if (!complaint.isPresent()) {
+            return false;
+        }
+        
+        complaint.get().setStatus(status);
+        if (!isOpen(status)) {
+            TransactionHooks.afterCommit(() -> workloadIndex.untrack(complaintId));
+        }
+        notifyResident(complaint.get(), "is now " + status.name().replace('_', ' ').toLowerCase());
+        return true;
+    }
+
+    /**
+     * Resolve a complaint and release it from its assignee's workload
+     */
+    @Transactional
+    @CacheEvict(value = {"pendingComplaints", "dashboardStatistics", "dashboardStatisticsJson"}, allEntries = true)
+    public boolean resolve(Long complaintId, String resolution) {
+        Optional<Complaint> complaint = complaintRepository.findById(complaintId);
+        if (!complaint.isPresent()) {
+            return false;
+        }
+        
+        complaint.get().markResolved(resolution);
+        TransactionHooks.afterCommit(() -> workloadIndex.untrack(complaintId));
+        notifyResident(complaint.get(), resolution == null || resolution.isEmpty()
+                ? "has been resolved" : "has been resolved: " + resolution);
+        return true;
+    }
+
+    /**
+     * Point a complaint at an uploaded photo
+     */
+    @Transactional
+    public boolean attachImage(Long complaintId, String imageUrl) {
+        Optional<Complaint> complaint = complaintRepository.findById(complaintId);
+        complaint.ifPresent(c -> c.setImageUrl(imageUrl));
+        return complaint.isPresent();
+    }
+
+    private void notifyResident(Complaint complaint, String change) {
+        notificationOutbox.enqueue(complaint.getResident().getId(), NotificationOutbox.Kind.COMPLAINT_STATUS,
+                complaint.getId(), "Your complaint \"" + complaint.getTitle() + "\" " + change);
+    }
+
+    private static boolean isOpen(Status status) {
+        return status == Status.PENDING || status == Status.IN_PROGRESS;
+    }
+}
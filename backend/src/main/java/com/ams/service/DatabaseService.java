@@ -1,21 +1,40 @@
 package com.ams.service;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 import javax.sql.DataSource;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.dao.ConcurrencyFailureException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.SqlParameter;
+import org.springframework.jdbc.core.StatementCreatorUtils;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 import org.springframework.jdbc.core.simple.SimpleJdbcCall;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.ams.config.MetricsConfig;
+import com.ams.config.ReadFromReplica;
+import com.ams.jfr.ProcedureCallEvent;
+import com.ams.service.ArchiveService.ArchivedTable;
+import com.ams.util.Backoff;
+
+import io.micrometer.core.annotation.Timed;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -23,142 +42,236 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class DatabaseService {
 
+    public enum AssignmentOutcome {
+        ASSIGNED,
+        UNAVAILABLE,
+        CONFLICT
+    }
+    
+    public enum PaymentOutcome {
+        PROCESSED,
+        DUPLICATE,
+        CONFLICT,
+        NOT_FOUND
+    }
+    
+    // Rows per history in GetResidentReport
+    private static final int HISTORY_LIMIT = 10;
+    private static final List<String> PRIORITIES = List.of("CRITICAL", "HIGH", "MEDIUM", "LOW");
+    private static final Comparator<Map<String, Object>> PENDING_COMPLAINT_ORDER = Comparator
+            .<Map<String, Object>>comparingInt(row -> PRIORITIES.indexOf(String.valueOf(row.get("priority"))))
+            .thenComparing(row -> String.valueOf(row.get("created_at")));
+    
     private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ScatterGather scatterGather;
+    private final NotificationOutbox notificationOutbox;
+    private final DomainChangeStream changeStream;
+    private final ArchiveService archiveService;
+    private final ResidentLedger residentLedger;
+    private final int maxAttempts;
+    private final long backoffMillis;
     
     @Autowired
-    public DatabaseService(DataSource dataSource) {
+    public DatabaseService(DataSource dataSource, PlatformTransactionManager transactionManager,
+            ScatterGather scatterGather, NotificationOutbox notificationOutbox, DomainChangeStream changeStream,
+            ArchiveService archiveService, ResidentLedger residentLedger,
+            @Value("${ams.concurrency.max-attempts:3}") int maxAttempts,
+            @Value("${ams.concurrency.backoff-ms:20}") long backoffMillis) {
         this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.scatterGather = scatterGather;
+        this.notificationOutbox = notificationOutbox;
+        this.changeStream = changeStream;
+        this.archiveService = archiveService;
+        this.residentLedger = residentLedger;
+        this.maxAttempts = maxAttempts;
+        this.backoffMillis = backoffMillis;
     }
     
     /**
      * Get a list of all overdue payments
      */
     @Cacheable(value = "overduePayments")
+    @Timed(value = MetricsConfig.DATABASE_TIMER, extraTags = {"operation", "getOverduePayments"})
     public List<Map<String, Object>> getOverduePayments() {
         log.debug("Fetching overdue payments from database");
-        SimpleJdbcCall jdbcCall = new SimpleJdbcCall(jdbcTemplate)
-                .withProcedureName("GetOverduePayments");
-        
-        return jdbcCall.execute().get("#result-set-1") != null 
-                ? (List<Map<String, Object>>) jdbcCall.execute().get("#result-set-1") 
-                : List.of();
+        return ShardResults.concat(scatterGather.gather(
+                () -> firstResultSet(execute("GetOverduePayments", new MapSqlParameterSource()))));
     }
     
     /**
-     * Process a payment
+     * Process a payment. Settling is idempotent: replaying the same
+     * transaction returns DUPLICATE and changes nothing, and only a payment
+     * that was actually settled evicts the cached reports.
+     * @throws org.springframework.dao.DuplicateKeyException when the
+     *         transaction id is already recorded on another payment
      */
     @Transactional
-    @CacheEvict(value = {"overduePayments", "monthlyRevenueReports"}, allEntries = true)
-    public void processPayment(Long paymentId, String transactionId, String paymentMethod) {
-        SimpleJdbcCall jdbcCall = new SimpleJdbcCall(jdbcTemplate)
-                .withProcedureName("ProcessPayment");
-        
+    @CacheEvict(value = {"overduePayments", "monthlyRevenueReports", "residentReports"}, allEntries = true,
+            condition = "#result == T(com.ams.service.DatabaseService.PaymentOutcome).PROCESSED")
+    @Timed(value = MetricsConfig.DATABASE_TIMER, extraTags = {"operation", "processPayment"})
+    public PaymentOutcome processPayment(Long paymentId, String transactionId, String paymentMethod) {
         SqlParameterSource params = new MapSqlParameterSource()
                 .addValue("payment_id", paymentId)
                 .addValue("transaction_id", transactionId)
                 .addValue("payment_method", paymentMethod);
         
-        jdbcCall.execute(params);
-        log.info("Payment processed: ID={}, Transaction={}", paymentId, transactionId);
+        List<Map<String, Object>> rows = firstResultSet(execute("ProcessPayment", params));
+        PaymentOutcome outcome = rows.isEmpty()
+                ? PaymentOutcome.NOT_FOUND
+                : PaymentOutcome.valueOf(String.valueOf(rows.get(0).get("outcome")));
+        if (outcome == PaymentOutcome.PROCESSED) {
+            notificationOutbox.withdraw(NotificationOutbox.Kind.PAYMENT_OVERDUE, paymentId);
+            residentLedger.record(paymentId);
+            changeStream.publishAfterCommit("Payment", paymentId, DomainChange.Kind.UPDATED);
+        }
+        log.info("Payment (ID={}) with transaction {}: {}", paymentId, transactionId, outcome);
+        return outcome;
     }
     
     /**
      * Get available apartments with filters
      */
     @Cacheable(value = "availableApartments", key = "#minBedrooms + '_' + #minBathrooms + '_' + #minRent + '_' + #maxRent")
+    @Timed(value = MetricsConfig.DATABASE_TIMER, extraTags = {"operation", "getAvailableApartments"})
     public List<Map<String, Object>> getAvailableApartments(
             int minBedrooms, int minBathrooms, BigDecimal minRent, BigDecimal maxRent) {
         log.debug("Fetching available apartments with filters from database");
-        SimpleJdbcCall jdbcCall = new SimpleJdbcCall(jdbcTemplate)
-                .withProcedureName("GetAvailableApartments");
-        
         SqlParameterSource params = new MapSqlParameterSource()
                 .addValue("min_bedrooms", minBedrooms)
                 .addValue("min_bathrooms", minBathrooms)
                 .addValue("min_rent", minRent)
                 .addValue("max_rent", maxRent);
         
-        return jdbcCall.execute(params).get("#result-set-1") != null 
-                ? (List<Map<String, Object>>) jdbcCall.execute(params).get("#result-set-1") 
-                : List.of();
+        return ShardResults.concat(scatterGather.gather(
+                () -> firstResultSet(execute("GetAvailableApartments", params))));
     }
     
     /**
-     * Assign a resident to an apartment
+     * Assign a resident to an apartment. Each attempt runs in its own
+     * transaction; conflicts (the resident moved concurrently, or a lock
+     * deadlock) are retried a bounded number of times before being returned.
      */
-    @Transactional
-    @CacheEvict(value = {"availableApartments", "occupancyStatistics"}, allEntries = true)
-    public void assignResidentToApartment(Long userId, Long apartmentId) {
-        SimpleJdbcCall jdbcCall = new SimpleJdbcCall(jdbcTemplate)
-                .withProcedureName("AssignResidentToApartment");
-        
+    @CacheEvict(value = {"availableApartments", "availableApartmentsJson", "occupancyStatistics",
+            "occupancyStatisticsJson"}, allEntries = true)
+    @Timed(value = MetricsConfig.DATABASE_TIMER, extraTags = {"operation", "assignResidentToApartment"})
+    public AssignmentOutcome assignResidentToApartment(Long userId, Long apartmentId) {
         SqlParameterSource params = new MapSqlParameterSource()
                 .addValue("user_id", userId)
                 .addValue("apartment_id", apartmentId);
         
-        jdbcCall.execute(params);
-        log.info("Resident (ID={}) assigned to apartment (ID={})", userId, apartmentId);
+        for (int attempt = 1; ; attempt++) {
+            AssignmentOutcome outcome;
+            try {
+                outcome = transactionTemplate.execute(status -> {
+                    List<Map<String, Object>> rows = firstResultSet(execute("AssignResidentToApartment", params));
+                    AssignmentOutcome assigned = rows.isEmpty()
+                            ? AssignmentOutcome.CONFLICT
+                            : AssignmentOutcome.valueOf(String.valueOf(rows.get(0).get("outcome")));
+                    if (assigned == AssignmentOutcome.ASSIGNED) {
+                        changeStream.publishAfterCommit("Apartment", apartmentId, DomainChange.Kind.UPDATED);
+                        changeStream.publishAfterCommit("User", userId, DomainChange.Kind.UPDATED);
+                    }
+                    return assigned;
+                });
+            } catch (ConcurrencyFailureException ex) {
+                outcome = AssignmentOutcome.CONFLICT;
+            }
+            
+            if (outcome != AssignmentOutcome.CONFLICT || attempt >= maxAttempts) {
+                log.info("Resident (ID={}) assignment to apartment (ID={}): {} after {} attempt(s)",
+                        userId, apartmentId, outcome, attempt);
+                return outcome;
+            }
+            Backoff.pause(attempt, backoffMillis);
+        }
     }
     
     /**
      * Get pending complaints
      */
     @Cacheable(value = "pendingComplaints")
+    @Timed(value = MetricsConfig.DATABASE_TIMER, extraTags = {"operation", "getPendingComplaints"})
     public List<Map<String, Object>> getPendingComplaints() {
         log.debug("Fetching pending complaints from database");
-        SimpleJdbcCall jdbcCall = new SimpleJdbcCall(jdbcTemplate)
-                .withProcedureName("GetPendingComplaints");
-        
-        return jdbcCall.execute().get("#result-set-1") != null 
-                ? (List<Map<String, Object>>) jdbcCall.execute().get("#result-set-1") 
-                : List.of();
+        List<Map<String, Object>> complaints = ShardResults.concat(scatterGather.gather(
+                () -> firstResultSet(execute("GetPendingComplaints", new MapSqlParameterSource()))));
+        if (scatterGather.getShards().size() > 1) {
+            // Each shard's list is ordered; restore the procedure's order across them
+            complaints.sort(PENDING_COMPLAINT_ORDER);
+        }
+        return complaints;
     }
     
     /**
-     * Get monthly revenue report
+     * Get monthly revenue report, including archived payments when the month
+     * starts before the archive watermark
      */
     @Cacheable(value = "monthlyRevenueReports", key = "#year + '_' + #month")
+    @Timed(value = MetricsConfig.DATABASE_TIMER, extraTags = {"operation", "getMonthlyRevenueReport"})
+    @ReadFromReplica
     public List<Map<String, Object>> getMonthlyRevenueReport(int year, int month) {
         log.debug("Generating monthly revenue report for {}-{}", year, month);
-        SimpleJdbcCall jdbcCall = new SimpleJdbcCall(jdbcTemplate)
-                .withProcedureName("GetMonthlyRevenueReport");
-        
         SqlParameterSource params = new MapSqlParameterSource()
                 .addValue("year_param", year)
                 .addValue("month_param", month);
         
-        return jdbcCall.execute(params).get("#result-set-1") != null 
-                ? (List<Map<String, Object>>) jdbcCall.execute(params).get("#result-set-1") 
-                : List.of();
+        LocalDate from = LocalDate.of(year, month, 1);
+        return ShardResults.sumGroups(scatterGather.gather(() -> {
+            List<Map<String, Object>> hot = firstResultSet(execute("GetMonthlyRevenueReport", params));
+            return archiveService.isNeeded(ArchivedTable.PAYMENTS, from)
+                    ? ShardResults.sumGroups(List.of(hot, archiveService.revenueByType(from, from.plusMonths(1), null)),
+                            "type")
+                    : hot;
+        }), "type");
     }
     
     /**
      * Get occupancy statistics
      */
     @Cacheable(value = "occupancyStatistics")
+    @Timed(value = MetricsConfig.DATABASE_TIMER, extraTags = {"operation", "getOccupancyStatistics"})
     public Map<String, Object> getOccupancyStatistics() {
         log.debug("Fetching occupancy statistics from database");
-        SimpleJdbcCall jdbcCall = new SimpleJdbcCall(jdbcTemplate)
-                .withProcedureName("GetOccupancyStatistics");
-        
-        List<Map<String, Object>> results = jdbcCall.execute().get("#result-set-1") != null 
-                ? (List<Map<String, Object>>) jdbcCall.execute().get("#result-set-1") 
-                : List.of();
+        List<Map<String, Object>> results = ShardResults.concat(scatterGather.gather(
+                () -> firstResultSet(execute("GetOccupancyStatistics", new MapSqlParameterSource()))));
+        if (results.size() <= 1) {
+            return results.isEmpty() ? Map.of() : results.get(0);
+        }
         
-        return results.isEmpty() ? Map.of() : results.get(0);
+        Map<String, Object> total = ShardResults.sumRows(results);
+        double apartments = ShardResults.doubleValue(total, "total_apartments");
+        total.put("occupancy_rate", apartments == 0 ? null : BigDecimal.valueOf(
+                ShardResults.doubleValue(total, "occupied") * 100 / apartments).setScale(2, RoundingMode.HALF_UP));
+        return total;
     }
     
     /**
-     * Get dashboard statistics
+     * Get dashboard statistics. Collected revenue includes archived payments;
+     * complaint counts cover the hot table only.
      */
     @Cacheable(value = "dashboardStatistics")
+    @Timed(value = MetricsConfig.DATABASE_TIMER, extraTags = {"operation", "getDashboardStatistics"})
+    @ReadFromReplica
+    @SuppressWarnings("unchecked")
     public Map<String, Object> getDashboardStatistics() {
         log.debug("Fetching dashboard statistics from database");
-        SimpleJdbcCall jdbcCall = new SimpleJdbcCall(jdbcTemplate)
-                .withProcedureName("GetDashboardStatistics");
-        
-        Map<String, Object> result = jdbcCall.execute();
-        
+        List<Map<String, Object>> shards = scatterGather.gather(() -> {
+            Map<String, Object> dashboard = dashboardOf(execute("GetDashboardStatistics", new MapSqlParameterSource()));
+            BigDecimal archivedRevenue = archiveService.archivedRevenue();
+            if (archivedRevenue.signum() != 0) {
+                dashboard.put("paymentStats", ShardResults.sumRows(List.of(
+                        (Map<String, Object>) dashboard.getOrDefault("paymentStats", Map.of()),
+                        Map.of("revenue_collected", archivedRevenue))));
+            }
+            return dashboard;
+        });
+        return shards.size() == 1 ? shards.get(0) : mergeDashboards(shards);
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> dashboardOf(Map<String, Object> result) {
         // The stored procedure returns multiple result sets
         Map<String, Object> dashboard = new HashMap<>();
         
@@ -191,18 +304,59 @@ public class DatabaseService {
     }
     
     /**
-     * Get resident report
+     * Combine per-shard dashboards. Users live on their property's shard,
+     * so their counts are summed like the rest.
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> mergeDashboards(List<Map<String, Object>> shards) {
+        Map<String, Object> dashboard = new HashMap<>();
+        
+        List<Map<String, Object>> apartmentStats = shards.stream()
+                .map(shard -> (Map<String, Object>) shard.getOrDefault("apartmentStats", Map.of()))
+                .collect(Collectors.toList());
+        Map<String, Object> apartments = ShardResults.sumRows(apartmentStats);
+        double total = ShardResults.doubleValue(apartments, "total_apartments");
+        double rentSum = 0;
+        for (Map<String, Object> stats : apartmentStats) {
+            rentSum += ShardResults.doubleValue(stats, "average_rent")
+                    * ShardResults.doubleValue(stats, "total_apartments");
+        }
+        apartments.put("average_rent", total == 0 ? null
+                : BigDecimal.valueOf(rentSum / total).setScale(2, RoundingMode.HALF_UP));
+        dashboard.put("apartmentStats", apartments);
+        
+        dashboard.put("userStats", ShardResults.sumRows(shards.stream()
+                .map(shard -> (Map<String, Object>) shard.getOrDefault("userStats", Map.of()))
+                .collect(Collectors.toList())));
+        dashboard.put("complaintStats", ShardResults.sumGroups(shards.stream()
+                .map(shard -> (List<Map<String, Object>>) shard.getOrDefault("complaintStats", List.of()))
+                .collect(Collectors.toList()), "status"));
+        dashboard.put("paymentStats", ShardResults.sumRows(shards.stream()
+                .map(shard -> (Map<String, Object>) shard.getOrDefault("paymentStats", Map.of()))
+                .collect(Collectors.toList())));
+        dashboard.put("bookingStats", ShardResults.sumGroups(shards.stream()
+                .map(shard -> (List<Map<String, Object>>) shard.getOrDefault("bookingStats", List.of()))
+                .collect(Collectors.toList()), "status"));
+        return dashboard;
+    }
+    
+    /**
+     * Get resident report. Histories are topped up from the archive when the
+     * hot tables hold fewer than ten rows, and payment
+     * totals include archived payments. The running balance changes with
+     * every ledger entry and is not part of the cached report; see
+     * {@link ResidentLedger#withCurrentBalance}.
      */
-    @Cacheable(value = "residentReports", key = "#residentId")
+    @Cacheable(value = "residentReports",
+            key = "T(com.ams.config.PropertyContext).currentProperty() + '_' + #residentId")
+    @Timed(value = MetricsConfig.DATABASE_TIMER, extraTags = {"operation", "getResidentReport"})
+    @ReadFromReplica
     public Map<String, Object> getResidentReport(Long residentId) {
         log.debug("Generating resident report for ID: {}", residentId);
-        SimpleJdbcCall jdbcCall = new SimpleJdbcCall(jdbcTemplate)
-                .withProcedureName("GetResidentReport");
-        
         SqlParameterSource params = new MapSqlParameterSource()
                 .addValue("resident_id", residentId);
         
-        Map<String, Object> result = jdbcCall.execute(params);
+        Map<String, Object> result = execute("GetResidentReport", params);
         
         // The stored procedure returns multiple result sets
         Map<String, Object> report = new HashMap<>();
@@ -214,19 +368,73 @@ public class DatabaseService {
         
         if (result.get("#result-set-2") != null) {
             List<Map<String, Object>> paymentHistory = (List<Map<String, Object>>) result.get("#result-set-2");
+            if (paymentHistory.size() < HISTORY_LIMIT && archiveService.hasArchived(ArchivedTable.PAYMENTS)) {
+                paymentHistory = new ArrayList<>(paymentHistory);
+                paymentHistory.addAll(archiveService.paymentHistory(residentId,
+                        HISTORY_LIMIT - paymentHistory.size()));
+            }
             report.put("paymentHistory", paymentHistory);
         }
         
         if (result.get("#result-set-3") != null) {
             List<Map<String, Object>> complaintHistory = (List<Map<String, Object>>) result.get("#result-set-3");
+            if (complaintHistory.size() < HISTORY_LIMIT && archiveService.hasArchived(ArchivedTable.COMPLAINTS)) {
+                complaintHistory = new ArrayList<>(complaintHistory);
+                complaintHistory.addAll(archiveService.complaintHistory(residentId,
+                        HISTORY_LIMIT - complaintHistory.size()));
+            }
             report.put("complaintHistory", complaintHistory);
         }
         
         if (result.get("#result-set-4") != null) {
             List<Map<String, Object>> paymentStats = (List<Map<String, Object>>) result.get("#result-set-4");
-            report.put("paymentStats", paymentStats.isEmpty() ? Map.of() : paymentStats.get(0));
+            Map<String, Object> stats = paymentStats.isEmpty() ? Map.of() : paymentStats.get(0);
+            if (archiveService.hasArchived(ArchivedTable.PAYMENTS)) {
+                stats = ShardResults.sumRows(List.of(stats, archiveService.paymentStats(residentId)));
+            }
+            report.put("paymentStats", stats);
         }
         
         return report;
     }
-} 
\ No newline at end of file
+    
+    /**
+     * Execute a stored procedure exactly once and return all of its outputs.
+     * Parameters are bound by position in the order they were added, which
+     * skips the per-call procedure metadata lookup and keeps the call portable
+     * to databases that do not report parameter names (e.g. H2 aliases).
+     */
+    private Map<String, Object> execute(String procedureName, SqlParameterSource params) {
+        ProcedureCallEvent event = new ProcedureCallEvent();
+        event.begin();
+        event.procedure = procedureName;
+        try {
+            SimpleJdbcCall jdbcCall = new SimpleJdbcCall(jdbcTemplate)
+                    .withProcedureName(procedureName)
+                    .withoutProcedureColumnMetaDataAccess();
+            String[] parameterNames = params.getParameterNames();
+            if (parameterNames != null) {
+                for (String name : parameterNames) {
+                    Object value = params.getValue(name);
+                    jdbcCall.addDeclaredParameter(new SqlParameter(name, StatementCreatorUtils
+                            .javaTypeToSqlParameterType(value != null ? value.getClass() : null)));
+                }
+            }
+            Map<String, Object> result = jdbcCall.execute(params);
+            
+            event.succeeded = true;
+            event.resultSets = (int) result.keySet().stream()
+                    .filter(key -> key.startsWith("#result-set-"))
+                    .count();
+            return result;
+        } finally {
+            event.commit();
+        }
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> firstResultSet(Map<String, Object> result) {
+        Object resultSet = result.get("#result-set-1");
+        return resultSet != null ? (List<Map<String, Object>>) resultSet : List.of();
+    }
+}
\ No newline at end of file
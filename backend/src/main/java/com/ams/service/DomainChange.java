@@ -0,0 +1,27 @@
+package com.ams.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * A committed write to one entity, as carried by {@link DomainChangeStream}
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public final class DomainChange {
+
+    public enum Kind {
+        CREATED, UPDATED, DELETED
+    }
+
+    /**
+     * Simple class name of the entity, e.g. {@code Payment}
+     */
+    private final String entity;
+    private final Long id;
+    private final Kind kind;
+    private final long propertyId;
+    private final long committedAtMillis;
+}
@@ -0,0 +1,76 @@
+package com.ams.service;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.ams.model.Announcement;
+import com.ams.model.Apartment;
+import com.ams.model.Booking;
+import com.ams.model.Complaint;
+import com.ams.model.Payment;
+import com.ams.model.User;
+
+/**
+ * JPA entity listener that turns entity writes into {@link DomainChange}s
+ * once the transaction commits. Hibernate obtains it from the Spring
+ * context, so it is injected like any bean.
+ *
+ * Only writes through JPA are seen; rows changed by JDBC or stored
+ * procedures are published by the service that makes the change, through
+ * {@link DomainChangeStream#publishAfterCommit}.
+ */
+@Component
+public class DomainChangeListener {
+
+    private final ObjectProvider<DomainChangeStream> stream;
+
+    @Autowired
+    public DomainChangeListener(ObjectProvider<DomainChangeStream> stream) {
+        this.stream = stream;
+    }
+
+    @PostPersist
+    public void created(Object entity) {
+        publish(entity, DomainChange.Kind.CREATED);
+    }
+
+    @PostUpdate
+    public void updated(Object entity) {
+        publish(entity, DomainChange.Kind.UPDATED);
+    }
+
+    @PostRemove
+    public void deleted(Object entity) {
+        publish(entity, DomainChange.Kind.DELETED);
+    }
+
+    private void publish(Object entity, DomainChange.Kind kind) {
+        Long id = idOf(entity);
+        if (id == null) {
+            return;
+        }
+        stream.getObject().publishAfterCommit(entity.getClass().getSimpleName(), id, kind);
+    }
+
+    private static Long idOf(Object entity) {
+        if (entity instanceof Payment) {
+            return ((Payment) entity).getId();
+        } else if (entity instanceof Complaint) {
+            return ((Complaint) entity).getId();
+        } else if (entity instanceof Booking) {
+            return ((Booking) entity).getId();
+        } else if (entity instanceof Apartment) {
+            return ((Apartment) entity).getId();
+        } else if (entity instanceof User) {
+            return ((User) entity).getId();
+        } else if (entity instanceof Announcement) {
+            return ((Announcement) entity).getId();
+        }
+        return null;
+    }
+}
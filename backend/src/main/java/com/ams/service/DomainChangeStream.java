@@ -0,0 +1,162 @@
+package com.ams.service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.ams.config.PropertyContext;
+import com.ams.util.RingBuffer;
+import com.ams.util.TransactionHooks;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * In-process stream of committed entity writes.
+ *
+ * {@link DomainChangeListener} publishes after commit into a bounded
+ * lock-free {@link RingBuffer}. Each subscriber gets its own position and a
+ * daemon thread that hands it everything published since its last batch, so
+ * a slow subscriber only delays itself until it is a full buffer behind.
+ * Then publishing fails fast rather than blocking the committing request:
+ * the change is dropped and counted, and subscribers must treat the stream
+ * as a hint next to the database, never as the record.
+ *
+ * Per-subscriber lag, the remaining capacity and drops are exported as
+ * {@code ams.changes.*} metrics.
+ */
+@Service
+@Slf4j
+public class DomainChangeStream {
+
+    private static final int SPINS_BEFORE_PARK = 100;
+
+    private final RingBuffer<DomainChange> buffer;
+    private final MeterRegistry meterRegistry;
+    private final int maxBatch;
+    private final long idleParkNanos;
+    private final Counter published;
+    private final Counter dropped;
+    private final Map<String, Thread> subscribers = new ConcurrentHashMap<>();
+    private volatile boolean running = true;
+
+    @Autowired
+    public DomainChangeStream(MeterRegistry meterRegistry,
+            @Value("${ams.changes.capacity:65536}") int capacity,
+            @Value("${ams.changes.max-batch:1024}") int maxBatch,
+            @Value("${ams.changes.idle-park-micros:100}") long idleParkMicros) {
+        this.buffer = new RingBuffer<>(capacity);
+        this.meterRegistry = meterRegistry;
+        this.maxBatch = maxBatch;
+        this.idleParkNanos = TimeUnit.MICROSECONDS.toNanos(idleParkMicros);
+        this.published = Counter.builder("ams.changes.published")
+                .description("Domain changes published to the change stream")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("ams.changes.dropped")
+                .description("Domain changes dropped because a subscriber was a full buffer behind")
+                .register(meterRegistry);
+        Gauge.builder("ams.changes.remaining-capacity", buffer, RingBuffer::remainingCapacity)
+                .description("Changes that can be published before the slowest subscriber holds the stream back")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        subscribers.values().forEach(LockSupport::unpark);
+    }
+
+    /**
+     * Publish a change; never blocks
+     * @return false when the change was dropped
+     */
+    public boolean publish(DomainChange change) {
+        if (buffer.tryPublish(change)) {
+            published.increment();
+            return true;
+        }
+        dropped.increment();
+        log.debug("Change stream full, dropped {}", change);
+        return false;
+    }
+
+    /**
+     * Publish a change to one entity once the surrounding transaction
+     * commits, for writes made outside JPA
+     */
+    public void publishAfterCommit(String entity, Long id, DomainChange.Kind kind) {
+        long propertyId = PropertyContext.currentProperty();
+        TransactionHooks.afterCommit(
+                () -> publish(new DomainChange(entity, id, kind, propertyId, System.currentTimeMillis())));
+    }
+
+    /**
+     * Receive every change published from now on, in batches of up to
+     * {@code ams.changes.max-batch} on a dedicated thread. The batch list is
+     * reused once the handler returns; a handler that throws loses that
+     * batch.
+     */
+    public synchronized void subscribe(String name, Consumer<List<DomainChange>> handler) {
+        if (subscribers.containsKey(name)) {
+            throw new IllegalArgumentException("Change subscriber " + name + " already exists");
+        }
+        RingBuffer<DomainChange>.Reader reader = buffer.newReader(name);
+        DistributionSummary batchSizes = DistributionSummary.builder("ams.changes.batch-size")
+                .tag("subscriber", name)
+                .description("Changes handed to a subscriber per batch")
+                .register(meterRegistry);
+        Counter failures = Counter.builder("ams.changes.failed-batches")
+                .tag("subscriber", name)
+                .description("Batches whose subscriber threw")
+                .register(meterRegistry);
+        Gauge.builder("ams.changes.lag", reader, RingBuffer.Reader::lag)
+                .tag("subscriber", name)
+                .description("Changes published but not yet taken by a subscriber")
+                .register(meterRegistry);
+
+        Thread thread = new Thread(() -> drain(reader, batch -> {
+            batchSizes.record(batch.size());
+            try {
+                handler.accept(batch);
+            } catch (RuntimeException ex) {
+                failures.increment();
+                log.warn("Change subscriber {} failed on a batch of {}: {}", name, batch.size(), ex.getMessage());
+            }
+        }), "change-stream-" + name);
+        thread.setDaemon(true);
+        subscribers.put(name, thread);
+        thread.start();
+        log.info("Change subscriber {} started", name);
+    }
+
+    public int getCapacity() {
+        return buffer.getCapacity();
+    }
+
+    private void drain(RingBuffer<DomainChange>.Reader reader, Consumer<List<DomainChange>> handler) {
+        int idle = 0;
+        while (running) {
+            if (reader.drainTo(handler, maxBatch) > 0) {
+                idle = 0;
+            } else if (++idle <= SPINS_BEFORE_PARK) {
+                Thread.onSpinWait();
+            } else {
+                LockSupport.parkNanos(idleParkNanos);
+            }
+        }
+        buffer.removeReader(reader);
+    }
+}
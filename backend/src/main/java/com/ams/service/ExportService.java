@@ -0,0 +1,269 @@
+package com.ams.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import com.ams.config.MetricsConfig;
+import com.ams.service.ArchiveService.ArchivedTable;
+
+import io.micrometer.core.annotation.Timed;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Streams large tables straight from a forward-only JDBC cursor to an output
+ * stream. Rows are never collected: each row is written as soon as it is
+ * read, and the cursor only advances once the write has been accepted, so a
+ * slow client throttles the query instead of filling the heap.
+ */
+@Service
+@Slf4j
+public class ExportService {
+
+    public enum Dataset {
+        PAYMENTS("payments", ArchivedTable.PAYMENTS, "SELECT p.id, p.type, p.amount, p.description, "
+                + "p.payment_date, p.due_date, p.status, p.transaction_id, p.payment_method, p.resident_id, "
+                + "u.first_name, u.last_name, u.email, p.apartment_id, a.unit_number, p.created_at "
+                + "FROM %s p "
+                + "JOIN users u ON p.resident_id = u.id "
+                + "JOIN apartments a ON p.apartment_id = a.id "
+                + "WHERE p.due_date >= ? AND p.due_date < ? "
+                + "ORDER BY p.id"),
+        COMPLAINTS("complaints", ArchivedTable.COMPLAINTS, "SELECT c.id, c.title, c.category, c.priority, "
+                + "c.status, c.resident_id, u.first_name, u.last_name, c.apartment_id, a.unit_number, "
+                + "c.assigned_to_id, c.resolution, c.created_at, c.resolved_at "
+                + "FROM %s c "
+                + "JOIN users u ON c.resident_id = u.id "
+                + "JOIN apartments a ON c.apartment_id = a.id "
+                + "WHERE c.created_at >= ? AND c.created_at < ? "
+                + "ORDER BY c.id"),
+        BOOKINGS("bookings", null, "SELECT b.id, b.apartment_id, a.unit_number, b.visitor_id, u.first_name, "
+                + "u.last_name, u.email, b.move_in_date, b.status, b.created_at, b.status_changed_at "
+                + "FROM %s b "
+                + "JOIN users u ON b.visitor_id = u.id "
+                + "JOIN apartments a ON b.apartment_id = a.id "
+                + "WHERE b.move_in_date >= ? AND b.move_in_date < ? "
+                + "ORDER BY b.id");
+
+        private final String table;
+        private final ArchivedTable archived;
+        private final String sql;
+
+        /**
+         * @param sql query with the table as {@code %s}, run against the hot
+         *        table and, for ranges that need it, the archive table
+         */
+        Dataset(String table, ArchivedTable archived, String sql) {
+            this.table = table;
+            this.archived = archived;
+            this.sql = sql;
+        }
+    }
+
+    public enum Format {
+        CSV("text/csv"),
+        NDJSON("application/x-ndjson");
+
+        private final String contentType;
+
+        Format(String contentType) {
+            this.contentType = contentType;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+    }
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int FLUSH_EVERY_ROWS = 5000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ArchiveService archiveService;
+
+    @Autowired
+    public ExportService(DataSource dataSource, ArchiveService archiveService,
+            @Value("${ams.export.fetch-size:1000}") int fetchSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+        this.archiveService = archiveService;
+    }
+
+    /**
+     * Write every row of the dataset in [from, to) to the output stream.
+     * When the range reaches back before the archive watermark, archived
+     * rows are streamed first, then the hot rows.
+     * @return Number of rows written
+     */
+    @Timed(value = MetricsConfig.DATABASE_TIMER, extraTags = {"operation", "export"})
+    public long export(Dataset dataset, Format format, LocalDate from, LocalDate to, OutputStream out) {
+        log.info("Exporting {} from {} to {} as {}", dataset, from, to, format);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        long[] rows = {0};
+        
+        List<String> tables = new ArrayList<>(2);
+        if (dataset.archived != null && archiveService.isNeeded(dataset.archived, from)) {
+            tables.add(dataset.archived.getArchiveTable());
+        }
+        tables.add(dataset.table);
+        for (int part = 0; part < tables.size(); part++) {
+            query(String.format(dataset.sql, tables.get(part)), from, to, format, writer, part == 0, rows);
+        }
+        
+        log.info("Exported {} {} rows", rows[0], dataset);
+        return rows[0];
+    }
+
+    private void query(String sql, LocalDate from, LocalDate to, Format format, Writer writer, boolean header,
+            long[] rows) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setObject(1, from);
+            statement.setObject(2, to);
+            return statement;
+        }, (ResultSet rs) -> {
+            try {
+                ResultSetMetaData metaData = rs.getMetaData();
+                int columns = metaData.getColumnCount();
+                String[] labels = new String[columns];
+                for (int i = 0; i < columns; i++) {
+                    labels[i] = metaData.getColumnLabel(i + 1).toLowerCase();
+                }
+                if (header && format == Format.CSV) {
+                    writeCsvRow(writer, labels);
+                }
+                
+                Object[] values = new Object[columns];
+                while (rs.next()) {
+                    for (int i = 0; i < columns; i++) {
+                        values[i] = rs.getObject(i + 1);
+                    }
+                    if (format == Format.CSV) {
+                        writeCsvRow(writer, values);
+                    } else {
+                        writeJsonLine(writer, labels, values);
+                    }
+                    if (++rows[0] % FLUSH_EVERY_ROWS == 0) {
+                        writer.flush();
+                    }
+                }
+                writer.flush();
+                return null;
+            } catch (IOException ex) {
+                // Client went away; abandon the cursor
+                throw new UncheckedIOException(ex);
+            }
+        });
+    }
+
+    private static void writeCsvRow(Writer writer, Object[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            if (values[i] != null) {
+                String text = text(values[i]);
+                if (text.indexOf(',') >= 0 || text.indexOf('"') >= 0
+                        || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0) {
+                    writer.write('"');
+                    writer.write(text.replace("\"", "\"\""));
+                    writer.write('"');
+                } else {
+                    writer.write(text);
+                }
+            }
+        }
+        writer.write("\r\n");
+    }
+
+    private static void writeJsonLine(Writer writer, String[] labels, Object[] values) throws IOException {
+        writer.write('{');
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writer.write('"');
+            writer.write(labels[i]);
+            writer.write("\":");
+            Object value = values[i];
+            if (value == null) {
+                writer.write("null");
+            } else if (value instanceof Number || value instanceof Boolean) {
+                writer.write(value instanceof BigDecimal ? ((BigDecimal) value).toPlainString() : value.toString());
+            } else {
+                writeJsonString(writer, text(value));
+            }
+        }
+        writer.write("}\n");
+    }
+
+    private static void writeJsonString(Writer writer, String text) throws IOException {
+        writer.write('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"':
+                    writer.write("\\\"");
+                    break;
+                case '\\':
+                    writer.write("\\\\");
+                    break;
+                case '\n':
+                    writer.write("\\n");
+                    break;
+                case '\r':
+                    writer.write("\\r");
+                    break;
+                case '\t':
+                    writer.write("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        writer.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        writer.write(c);
+                    }
+            }
+        }
+        writer.write('"');
+    }
+
+    /**
+     * ISO-8601 text for JDBC temporal types, plain text for everything else
+     */
+    private static String text(Object value) {
+        if (value instanceof Timestamp) {
+            return ((Timestamp) value).toLocalDateTime().toString();
+        }
+        if (value instanceof Date) {
+            return ((Date) value).toLocalDate().toString();
+        }
+        if (value instanceof BigDecimal) {
+            return ((BigDecimal) value).toPlainString();
+        }
+        return value.toString();
+    }
+}
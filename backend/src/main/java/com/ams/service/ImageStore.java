@@ -0,0 +1,248 @@
+package com.ams.service;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import javax.annotation.PreDestroy;
+import javax.imageio.ImageIO;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Content-addressed store for apartment and complaint photos.
+ *
+ * An upload is streamed through a SHA-256 digest straight into a temporary
+ * file with {@link FileChannel#transferFrom}, so no file is ever held in the
+ * heap, then moved to {@code <root>/<ab>/<hash>.<ext>}. Identical photos end
+ * up as one file. Thumbnails are rendered on a small bounded pool after the
+ * upload returns; when the pool is saturated the thumbnail is skipped and
+ * clients fall back to the original.
+ */
+@Service
+@Slf4j
+public class ImageStore {
+
+    public static final Map<String, String> CONTENT_TYPES = Map.of(
+            "jpg", "image/jpeg",
+            "png", "image/png",
+            "gif", "image/gif",
+            "webp", "image/webp");
+
+    private static final Pattern KEY = Pattern.compile("[0-9a-f]{64}\\.(jpg|png|gif|webp)");
+    private static final String THUMBNAIL_SUFFIX = ".thumb.jpg";
+    private static final long CHUNK_BYTES = 1024 * 1024;
+
+    private final Path root;
+    private final long maxBytes;
+    private final int thumbnailSize;
+    private final ThreadPoolExecutor thumbnailer;
+
+    @Autowired
+    public ImageStore(@Value("${ams.images.root:data/images}") String root,
+            @Value("${ams.images.max-bytes:10485760}") long maxBytes,
+            @Value("${ams.images.thumbnail-size:320}") int thumbnailSize,
+            @Value("${ams.images.thumbnail-workers:2}") int thumbnailWorkers,
+            @Value("${ams.images.thumbnail-queue:64}") int thumbnailQueue) throws IOException {
+        this.root = Files.createDirectories(Paths.get(root)).toAbsolutePath();
+        this.maxBytes = maxBytes;
+        this.thumbnailSize = thumbnailSize;
+        this.thumbnailer = new ThreadPoolExecutor(thumbnailWorkers, thumbnailWorkers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(thumbnailQueue), runnable -> {
+                    Thread thread = new Thread(runnable, "image-thumbnailer");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        log.info("Image store at {}", this.root);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        thumbnailer.shutdownNow();
+    }
+
+    /**
+     * Store an upload, or find the identical file already stored
+     * @param contentType one of {@link #CONTENT_TYPES}
+     * @throws IllegalArgumentException for an unsupported type or an upload
+     *         over the size limit
+     */
+    public StoredImage store(InputStream in, String contentType) throws IOException {
+        String extension = extensionOf(contentType)
+                .orElseThrow(() -> new IllegalArgumentException("Unsupported image type " + contentType));
+
+        MessageDigest digest = sha256();
+        Path temp = Files.createTempFile(root, "upload-", ".tmp");
+        long size = 0;
+        try {
+            try (ReadableByteChannel source = Channels.newChannel(new DigestInputStream(in, digest));
+                 FileChannel target = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                for (long transferred; (transferred = target.transferFrom(source, size, CHUNK_BYTES)) > 0; ) {
+                    size += transferred;
+                    if (size > maxBytes) {
+                        throw new IllegalArgumentException("Image larger than " + maxBytes + " bytes");
+                    }
+                }
+            }
+            if (size == 0) {
+                throw new IllegalArgumentException("Empty upload");
+            }
+
+            String key = toHex(digest.digest()) + "." + extension;
+            Path path = pathOf(key);
+            boolean created = false;
+            if (!Files.exists(path)) {
+                Files.createDirectories(path.getParent());
+                try {
+                    Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE);
+                    created = true;
+                } catch (FileAlreadyExistsException ex) {
+                    // Stored concurrently by an identical upload
+                }
+            }
+            if (created) {
+                scheduleThumbnail(key);
+            }
+            return new StoredImage(key, size, !created);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * The stored original, if the key is well formed and present
+     */
+    public Optional<Path> find(String key) {
+        if (!KEY.matcher(key).matches()) {
+            return Optional.empty();
+        }
+        Path path = pathOf(key);
+        return Files.isRegularFile(path) ? Optional.of(path) : Optional.empty();
+    }
+
+    /**
+     * The JPEG thumbnail, once it has been rendered
+     */
+    public Optional<Path> findThumbnail(String key) {
+        return find(key)
+                .map(path -> path.resolveSibling(path.getFileName() + THUMBNAIL_SUFFIX))
+                .filter(Files::isRegularFile);
+    }
+
+    public static String contentTypeOf(String key) {
+        return CONTENT_TYPES.getOrDefault(key.substring(key.lastIndexOf('.') + 1), "application/octet-stream");
+    }
+
+    private static Optional<String> extensionOf(String contentType) {
+        if (contentType == null) {
+            return Optional.empty();
+        }
+        String mediaType = contentType.split(";", 2)[0].trim().toLowerCase();
+        return CONTENT_TYPES.entrySet().stream()
+                .filter(entry -> entry.getValue().equals(mediaType))
+                .map(Map.Entry::getKey)
+                .findFirst();
+    }
+
+    private Path pathOf(String key) {
+        return root.resolve(key.substring(0, 2)).resolve(key);
+    }
+
+    private void scheduleThumbnail(String key) {
+        try {
+            thumbnailer.execute(() -> renderThumbnail(key));
+        } catch (RejectedExecutionException ex) {
+            log.warn("Thumbnail queue full, skipping thumbnail for {}", key);
+        }
+    }
+
+    private void renderThumbnail(String key) {
+        Path original = pathOf(key);
+        Path thumbnail = original.resolveSibling(original.getFileName() + THUMBNAIL_SUFFIX);
+        try {
+            // ImageIO has no WebP reader; such images are served without one
+            BufferedImage image = ImageIO.read(original.toFile());
+            if (image == null) {
+                log.debug("No thumbnail for {}: format not readable", key);
+                return;
+            }
+            double scale = Math.min(1.0, (double) thumbnailSize / Math.max(image.getWidth(), image.getHeight()));
+            int width = Math.max(1, (int) Math.round(image.getWidth() * scale));
+            int height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+
+            BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = scaled.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.drawImage(image, 0, 0, width, height, null);
+            } finally {
+                graphics.dispose();
+            }
+
+            Path temp = Files.createTempFile(original.getParent(), "thumb-", ".tmp");
+            try {
+                ImageIO.write(scaled, "jpg", temp.toFile());
+                Files.move(temp, thumbnail, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException | RuntimeException ex) {
+            log.warn("Thumbnail for {} failed: {}", key, ex.getMessage());
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Result of an upload; {@code duplicate} when the same content was
+     * already stored
+     */
+    @Getter
+    @AllArgsConstructor
+    public static final class StoredImage {
+        private final String key;
+        private final long size;
+        private final boolean duplicate;
+    }
+}
@@ -0,0 +1,70 @@
+package com.ams.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.Getter;
+
+/**
+ * Progress and per-row errors of a bulk import
+ */
+@Getter
+public class ImportJob {
+
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+
+    /**
+     * Only the first errors are kept so a badly broken file cannot exhaust memory
+     */
+    public static final int MAX_REPORTED_ERRORS = 1000;
+
+    private final String id = UUID.randomUUID().toString();
+    private final String type;
+    private final LocalDateTime submittedAt = LocalDateTime.now();
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong imported = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final List<String> errors = Collections.synchronizedList(new ArrayList<>());
+    private volatile Status status = Status.QUEUED;
+    private volatile LocalDateTime finishedAt;
+    private volatile String failure;
+
+    public ImportJob(String type) {
+        this.type = type;
+    }
+
+    void start() {
+        status = Status.RUNNING;
+    }
+
+    void complete() {
+        status = Status.COMPLETED;
+        finishedAt = LocalDateTime.now();
+    }
+
+    void fail(String message) {
+        status = Status.FAILED;
+        failure = message;
+        finishedAt = LocalDateTime.now();
+    }
+
+    void reject(long row, String message) {
+        rejected.incrementAndGet();
+        if (errors.size() < MAX_REPORTED_ERRORS) {
+            errors.add("Row " + row + ": " + message);
+        }
+    }
+
+    public boolean isFinished() {
+        return status == Status.COMPLETED || status == Status.FAILED;
+    }
+}
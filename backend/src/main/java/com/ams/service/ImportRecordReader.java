@@ -0,0 +1,164 @@
+package com.ams.service;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Reads import records one at a time from CSV (with a header row) or from a
+ * JSON array of objects. Field names are normalized to lower case without
+ * underscores, so {@code floor_number} and {@code floorNumber} are the same.
+ */
+abstract class ImportRecordReader implements Closeable {
+
+    /**
+     * @return The next record, or null at end of input
+     */
+    abstract Map<String, String> next() throws IOException;
+
+    static ImportRecordReader csv(InputStream in) throws IOException {
+        return new CsvReader(in);
+    }
+
+    static ImportRecordReader json(InputStream in) throws IOException {
+        return new JsonReader(in);
+    }
+
+    static String normalize(String field) {
+        return field.trim().replace("_", "").toLowerCase(Locale.ROOT);
+    }
+
+    private static final class CsvReader extends ImportRecordReader {
+
+        private final BufferedReader reader;
+        private final String[] header;
+
+        CsvReader(InputStream in) throws IOException {
+            this.reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 64 * 1024);
+            List<String> columns = readRow();
+            if (columns == null) {
+                throw new IOException("CSV input has no header row");
+            }
+            this.header = columns.stream().map(ImportRecordReader::normalize).toArray(String[]::new);
+        }
+
+        @Override
+        Map<String, String> next() throws IOException {
+            List<String> values;
+            do {
+                values = readRow();
+                if (values == null) {
+                    return null;
+                }
+            } while (values.size() == 1 && values.get(0).isEmpty());
+            
+            Map<String, String> record = new HashMap<>();
+            for (int i = 0; i < header.length && i < values.size(); i++) {
+                record.put(header[i], values.get(i));
+            }
+            return record;
+        }
+
+        /**
+         * Parse one RFC 4180 row; quoted fields may span lines
+         */
+        private List<String> readRow() throws IOException {
+            String line = reader.readLine();
+            if (line == null) {
+                return null;
+            }
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            while (true) {
+                for (int i = 0; i < line.length(); i++) {
+                    char c = line.charAt(i);
+                    if (quoted) {
+                        if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                            field.append('"');
+                            i++;
+                        } else if (c == '"') {
+                            quoted = false;
+                        } else {
+                            field.append(c);
+                        }
+                    } else if (c == '"') {
+                        quoted = true;
+                    } else if (c == ',') {
+                        fields.add(field.toString());
+                        field.setLength(0);
+                    } else {
+                        field.append(c);
+                    }
+                }
+                if (!quoted) {
+                    break;
+                }
+                line = reader.readLine();
+                if (line == null) {
+                    throw new IOException("Unterminated quoted field");
+                }
+                field.append('\n');
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    private static final class JsonReader extends ImportRecordReader {
+
+        private final JsonParser parser;
+
+        JsonReader(InputStream in) throws IOException {
+            this.parser = new JsonFactory().createParser(in);
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("JSON input must be an array of objects");
+            }
+        }
+
+        @Override
+        Map<String, String> next() throws IOException {
+            JsonToken token = parser.nextToken();
+            if (token == null || token == JsonToken.END_ARRAY) {
+                return null;
+            }
+            if (token != JsonToken.START_OBJECT) {
+                throw new IOException("Expected an object at " + parser.getCurrentLocation());
+            }
+            
+            Map<String, String> record = new HashMap<>();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = normalize(parser.getCurrentName());
+                JsonToken value = parser.nextToken();
+                if (value == JsonToken.START_OBJECT || value == JsonToken.START_ARRAY) {
+                    parser.skipChildren();
+                } else if (value != JsonToken.VALUE_NULL) {
+                    record.put(name, parser.getText());
+                }
+            }
+            return record;
+        }
+
+        @Override
+        public void close() throws IOException {
+            parser.close();
+        }
+    }
+}
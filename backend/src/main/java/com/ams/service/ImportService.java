@@ -0,0 +1,523 @@
+package com.ams.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.ams.config.PropertyContext;
+import com.ams.model.Apartment;
+import com.ams.model.User;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Bulk import of apartments and residents from CSV or JSON.
+ *
+ * Records are parsed and validated one at a time against the bean-validation
+ * constraints on {@link Apartment} and {@link User}, then written with plain
+ * JDBC batches. Hibernate cannot batch inserts for IDENTITY ids; here the
+ * database assigns ids inside each multi-row INSERT (with
+ * {@code rewriteBatchedStatements=true} a batch is one round trip) and
+ * residents reference apartments of the property by unit number (and
+ * building, where unit numbers repeat), resolved once per batch. A resident
+ * only moves into a unit nobody occupies: the claim on the unit and the
+ * resident's row are written in one transaction. A batch the database
+ * refuses is retried row by row, so each bad row is rejected with its own
+ * error.
+ */
+@Service
+@Slf4j
+public class ImportService {
+
+    public static final String APARTMENTS = "apartments";
+    public static final String RESIDENTS = "residents";
+
+    /**
+     * Stored for residents imported without a BCrypt hash; it can never match
+     * a password, so those accounts cannot log in until a password is set
+     */
+    private static final String UNUSABLE_PASSWORD = "!imported";
+
+    private static final String[] EVICTED_CACHES = {
+        "availableApartments", "availableApartmentsJson", "occupancyStatistics", "occupancyStatisticsJson",
+        "dashboardStatistics", "dashboardStatisticsJson", "apartmentSearchResults", "userSearchResults"
+    };
+
+    private static final int MAX_RETAINED_JOBS = 100;
+
+    private static final String INSERT_APARTMENT_SQL = "INSERT INTO apartments (name, floor_number, unit_number, "
+            + "building, area, bedrooms, bathrooms, rent, description, image_url, is_available, property_id) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String UNITS_SQL = "SELECT id, unit_number, building FROM apartments "
+            + "WHERE property_id = :property AND unit_number IN (:units)";
+    // Zero rows updated means the unit was already occupied
+    private static final String CLAIM_UNIT_SQL = "UPDATE apartments SET is_available = FALSE, version = version + 1 "
+            + "WHERE id = ? AND is_available = TRUE";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Validator validator;
+    private final CacheManager cacheManager;
+    private final BookingIntervalIndex intervalIndex;
+    private final int batchSize;
+    private final ExecutorService executor;
+    private final Map<String, ImportJob> jobs = new LinkedHashMap<>();
+
+    @Autowired
+    public ImportService(DataSource dataSource, PlatformTransactionManager transactionManager, Validator validator,
+            CacheManager cacheManager, BookingIntervalIndex intervalIndex,
+            @Value("${ams.import.batch-size:1000}") int batchSize,
+            @Value("${ams.import.workers:1}") int workers) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.validator = validator;
+        this.cacheManager = cacheManager;
+        this.intervalIndex = intervalIndex;
+        this.batchSize = batchSize;
+        this.executor = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "import-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Spool the upload to a temporary file and queue it for import
+     * @param type {@value #APARTMENTS} or {@value #RESIDENTS}
+     * @param format csv or json
+     */
+    public ImportJob submit(String type, String format, InputStream body) throws IOException {
+        if (!APARTMENTS.equals(type) && !RESIDENTS.equals(type)) {
+            throw new IllegalArgumentException("Unknown import type: " + type);
+        }
+        if (!"csv".equals(format) && !"json".equals(format)) {
+            throw new IllegalArgumentException("Unsupported import format: " + format);
+        }
+        
+        Path file = Files.createTempFile("ams-import-", "." + format);
+        Files.copy(body, file, StandardCopyOption.REPLACE_EXISTING);
+        
+        ImportJob job = new ImportJob(type);
+        synchronized (jobs) {
+            if (jobs.size() >= MAX_RETAINED_JOBS) {
+                jobs.values().removeIf(ImportJob::isFinished);
+            }
+            jobs.put(job.getId(), job);
+        }
+        // The import writes to the shard of the property it was uploaded for
+        long propertyId = PropertyContext.currentProperty();
+        executor.submit(() -> PropertyContext.withProperty(propertyId, () -> run(job, format, file)));
+        log.info("Queued {} import {} ({} bytes)", type, job.getId(), Files.size(file));
+        return job;
+    }
+
+    public Optional<ImportJob> getJob(String id) {
+        synchronized (jobs) {
+            return Optional.ofNullable(jobs.get(id));
+        }
+    }
+
+    private void run(ImportJob job, String format, Path file) {
+        job.start();
+        long start = System.nanoTime();
+        try (InputStream in = Files.newInputStream(file);
+             ImportRecordReader reader = "csv".equals(format) ? ImportRecordReader.csv(in) : ImportRecordReader.json(in)) {
+            if (APARTMENTS.equals(job.getType())) {
+                importApartments(job, reader);
+                // Reloads every shard, not just this property's
+                intervalIndex.rebuild();
+            } else {
+                importResidents(job, reader);
+            }
+            job.complete();
+        } catch (IOException | RuntimeException ex) {
+            log.error("Import {} failed after {} rows", job.getId(), job.getProcessed().get(), ex);
+            job.fail(ex.getMessage());
+        } finally {
+            for (String cacheName : EVICTED_CACHES) {
+                Cache cache = cacheManager.getCache(cacheName);
+                if (cache != null) {
+                    cache.clear();
+                }
+            }
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ex) {
+                log.warn("Could not delete import file {}", file);
+            }
+        }
+        log.info("Import {} finished: {} imported, {} rejected in {} ms", job.getId(), job.getImported().get(),
+                job.getRejected().get(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private void importApartments(ImportJob job, ImportRecordReader reader) throws IOException {
+        List<Apartment> batch = new ArrayList<>(batchSize);
+        List<Long> rows = new ArrayList<>(batchSize);
+        Map<String, String> record;
+        while ((record = reader.next()) != null) {
+            long row = job.getProcessed().incrementAndGet();
+            Apartment apartment;
+            try {
+                apartment = toApartment(record);
+                apartment.setPropertyId(PropertyContext.currentProperty());
+            } catch (IllegalArgumentException ex) {
+                job.reject(row, ex.getMessage());
+                continue;
+            }
+            String violations = validate(apartment);
+            if (violations != null) {
+                job.reject(row, violations);
+                continue;
+            }
+            
+            batch.add(apartment);
+            rows.add(row);
+            if (batch.size() >= batchSize) {
+                insertApartments(job, batch, rows);
+            }
+        }
+        insertApartments(job, batch, rows);
+    }
+
+    private void insertApartments(ImportJob job, List<Apartment> batch, List<Long> rows) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            writeApartments(batch);
+            job.getImported().addAndGet(batch.size());
+        } catch (DataAccessException ex) {
+            logBatchFailure(job, batch.size(), ex);
+            for (int i = 0; i < batch.size(); i++) {
+                try {
+                    writeApartments(List.of(batch.get(i)));
+                    job.getImported().incrementAndGet();
+                } catch (DataAccessException rowEx) {
+                    rejectRow(job, rows.get(i), rowEx);
+                }
+            }
+        }
+        batch.clear();
+        rows.clear();
+    }
+
+    private void writeApartments(List<Apartment> apartments) {
+        jdbcTemplate.batchUpdate(INSERT_APARTMENT_SQL, apartments, apartments.size(), (ps, apartment) -> {
+            ps.setString(1, apartment.getName());
+            ps.setInt(2, apartment.getFloorNumber());
+            ps.setString(3, apartment.getUnitNumber());
+            ps.setString(4, apartment.getBuilding());
+            ps.setDouble(5, apartment.getArea());
+            ps.setInt(6, apartment.getBedrooms());
+            ps.setInt(7, apartment.getBathrooms());
+            ps.setBigDecimal(8, apartment.getRent());
+            ps.setString(9, apartment.getDescription());
+            ps.setString(10, apartment.getImageUrl());
+            ps.setBoolean(11, apartment.isAvailable());
+            ps.setLong(12, apartment.getPropertyId());
+        });
+    }
+
+    private void importResidents(ImportJob job, ImportRecordReader reader) throws IOException {
+        Set<String> seenEmails = new HashSet<>();
+        List<PendingResident> batch = new ArrayList<>(batchSize);
+        Map<String, String> record;
+        while ((record = reader.next()) != null) {
+            long row = job.getProcessed().incrementAndGet();
+            User user;
+            try {
+                user = toResident(record);
+            } catch (IllegalArgumentException ex) {
+                job.reject(row, ex.getMessage());
+                continue;
+            }
+            String violations = validate(user);
+            if (violations != null) {
+                job.reject(row, violations);
+                continue;
+            }
+            if (!seenEmails.add(user.getEmail().toLowerCase())) {
+                job.reject(row, "duplicate email " + user.getEmail() + " in file");
+                continue;
+            }
+            
+            batch.add(new PendingResident(row, user, blankToNull(record.get("unitnumber")),
+                    blankToNull(record.get("building"))));
+            if (batch.size() >= batchSize) {
+                insertResidents(job, batch);
+            }
+        }
+        insertResidents(job, batch);
+    }
+
+    private void insertResidents(ImportJob job, List<PendingResident> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        
+        // One query per batch for existing emails and one for unit numbers. Emails
+        // are compared lowercased, as the file's own duplicates are.
+        Set<String> emails = batch.stream().map(p -> p.user.getEmail()).collect(Collectors.toSet());
+        Set<String> existing = namedParameterJdbcTemplate.queryForList(
+                "SELECT email FROM users WHERE email IN (:emails)",
+                new MapSqlParameterSource("emails", emails), String.class).stream()
+                .map(String::toLowerCase)
+                .collect(Collectors.toSet());
+        
+        Set<String> units = batch.stream().map(p -> p.unitNumber).filter(u -> u != null).collect(Collectors.toSet());
+        Map<String, List<Long>> unitIds = new HashMap<>();
+        Map<String, Long> buildingUnitIds = new HashMap<>();
+        if (!units.isEmpty()) {
+            namedParameterJdbcTemplate.query(UNITS_SQL, new MapSqlParameterSource()
+                    .addValue("property", PropertyContext.currentProperty())
+                    .addValue("units", units), rs -> {
+                        long id = rs.getLong("id");
+                        String unit = rs.getString("unit_number");
+                        unitIds.computeIfAbsent(unit, u -> new ArrayList<>()).add(id);
+                        buildingUnitIds.put(unitKey(rs.getString("building"), unit), id);
+                    });
+        }
+        
+        List<PendingResident> accepted = new ArrayList<>(batch.size());
+        for (PendingResident pending : batch) {
+            if (existing.contains(pending.user.getEmail().toLowerCase())) {
+                job.reject(pending.row, "email " + pending.user.getEmail() + " already exists");
+                continue;
+            }
+            if (pending.unitNumber != null) {
+                List<Long> matches = unitIds.getOrDefault(pending.unitNumber, List.of());
+                if (pending.building != null) {
+                    pending.apartmentId = buildingUnitIds.get(unitKey(pending.building, pending.unitNumber));
+                } else if (matches.size() == 1) {
+                    pending.apartmentId = matches.get(0);
+                } else if (matches.size() > 1) {
+                    job.reject(pending.row, "unit number " + pending.unitNumber
+                            + " exists in several buildings; give the building");
+                    continue;
+                }
+                if (pending.apartmentId == null) {
+                    job.reject(pending.row, "unknown unit number " + pending.unitNumber
+                            + (pending.building != null ? " in building " + pending.building : ""));
+                    continue;
+                }
+            }
+            accepted.add(pending);
+        }
+        batch.clear();
+        if (accepted.isEmpty()) {
+            return;
+        }
+        
+        try {
+            writeResidents(job, accepted);
+        } catch (DataAccessException ex) {
+            logBatchFailure(job, accepted.size(), ex);
+            for (PendingResident pending : accepted) {
+                try {
+                    writeResidents(job, List.of(pending));
+                } catch (DataAccessException rowEx) {
+                    rejectRow(job, pending.row, rowEx);
+                }
+            }
+        }
+    }
+
+    /**
+     * Claim the units and insert the residents in one transaction, then
+     * record the outcome; nothing is recorded when the transaction fails
+     */
+    private void writeResidents(ImportJob job, List<PendingResident> residents) {
+        Set<PendingResident> lost = new HashSet<>();
+        List<PendingResident> inserted = transactionTemplate.execute(status -> claimAndInsert(residents, lost));
+        job.getImported().addAndGet(inserted.size());
+        for (PendingResident pending : residents) {
+            if (lost.contains(pending)) {
+                job.reject(pending.row, "unit " + pending.unitNumber + " is already occupied");
+            }
+        }
+    }
+
+    /**
+     * Occupy the residents' units and insert the residents whose unit was
+     * still free, in the caller's transaction. A unit that is already
+     * occupied, or claimed by an earlier row of the batch, puts its row in
+     * {@code lost}.
+     * @return the residents inserted
+     */
+    private List<PendingResident> claimAndInsert(List<PendingResident> accepted, Set<PendingResident> lost) {
+        List<PendingResident> moving = accepted.stream()
+                .filter(p -> p.apartmentId != null)
+                .collect(Collectors.toList());
+        if (!moving.isEmpty()) {
+            int[][] claimed = jdbcTemplate.batchUpdate(CLAIM_UNIT_SQL, moving, moving.size(),
+                    (ps, pending) -> ps.setLong(1, pending.apartmentId));
+            for (int i = 0; i < moving.size(); i++) {
+                if (claimed[0][i] == 0) {
+                    lost.add(moving.get(i));
+                }
+            }
+        }
+        
+        List<PendingResident> inserted = accepted.stream()
+                .filter(p -> !lost.contains(p))
+                .collect(Collectors.toList());
+        if (!inserted.isEmpty()) {
+            jdbcTemplate.batchUpdate("INSERT INTO users (first_name, last_name, email, password, phone, role, "
+                    + "apartment_id, active) VALUES (?, ?, ?, ?, ?, ?, ?, ?)",
+                    inserted, inserted.size(), (ps, pending) -> {
+                        User user = pending.user;
+                        ps.setString(1, user.getFirstName());
+                        ps.setString(2, user.getLastName());
+                        ps.setString(3, user.getEmail());
+                        ps.setString(4, user.getPassword());
+                        ps.setString(5, user.getPhone());
+                        ps.setString(6, user.getRole().name());
+                        ps.setObject(7, pending.apartmentId);
+                        ps.setBoolean(8, true);
+                    });
+        }
+        return inserted;
+    }
+
+    private static String unitKey(String building, String unitNumber) {
+        return (building == null ? "" : building) + '\u0000' + unitNumber;
+    }
+
+    private void logBatchFailure(ImportJob job, int rows, DataAccessException ex) {
+        log.warn("Import {} batch of {} rows failed, retrying row by row: {}", job.getId(), rows,
+                ex.getMostSpecificCause().getMessage());
+    }
+
+    private void rejectRow(ImportJob job, long row, DataAccessException ex) {
+        job.reject(row, "insert failed: " + ex.getMostSpecificCause().getMessage());
+    }
+
+    private Apartment toApartment(Map<String, String> record) {
+        Apartment apartment = new Apartment(
+                record.get("name"),
+                parseInt(record, "floornumber"),
+                record.get("unitnumber"),
+                parseDouble(record, "area"),
+                parseInt(record, "bedrooms"),
+                parseInt(record, "bathrooms"),
+                parseDecimal(record, "rent"));
+        apartment.setBuilding(blankToNull(record.get("building")));
+        apartment.setDescription(blankToNull(record.get("description")));
+        apartment.setImageUrl(blankToNull(record.get("imageurl")));
+        String available = blankToNull(record.get("isavailable"));
+        apartment.setAvailable(available == null || Boolean.parseBoolean(available));
+        return apartment;
+    }
+
+    private User toResident(Map<String, String> record) {
+        String password = blankToNull(record.get("password"));
+        if (password != null && !password.startsWith("$2")) {
+            throw new IllegalArgumentException("password must be a BCrypt hash");
+        }
+        return new User(
+                record.get("firstname"),
+                record.get("lastname"),
+                record.get("email"),
+                password != null ? password : UNUSABLE_PASSWORD,
+                blankToNull(record.get("phone")),
+                User.Role.RESIDENT);
+    }
+
+    /**
+     * @return The constraint violations as one message, or null when valid
+     */
+    private <T> String validate(T entity) {
+        Set<ConstraintViolation<T>> violations = validator.validate(entity);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(v -> v.getPropertyPath() + " " + v.getMessage())
+                .sorted()
+                .collect(Collectors.joining(", "));
+    }
+
+    private static Integer parseInt(Map<String, String> record, String field) {
+        String value = blankToNull(record.get(field));
+        try {
+            return value != null ? Integer.valueOf(value) : null;
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException(field + " is not a whole number: " + value);
+        }
+    }
+
+    private static Double parseDouble(Map<String, String> record, String field) {
+        String value = blankToNull(record.get(field));
+        try {
+            return value != null ? Double.valueOf(value) : null;
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException(field + " is not a number: " + value);
+        }
+    }
+
+    private static BigDecimal parseDecimal(Map<String, String> record, String field) {
+        String value = blankToNull(record.get(field));
+        try {
+            return value != null ? new BigDecimal(value) : null;
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException(field + " is not a number: " + value);
+        }
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.trim().isEmpty() ? null : value.trim();
+    }
+
+    private static final class PendingResident {
+        final long row;
+        final User user;
+        final String unitNumber;
+        final String building;
+        Long apartmentId;
+
+        PendingResident(long row, User user, String unitNumber, String building) {
+            this.row = row;
+            this.user = user;
+            this.unitNumber = unitNumber;
+            this.building = building;
+        }
+    }
+}
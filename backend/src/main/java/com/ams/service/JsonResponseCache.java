@@ -0,0 +1,99 @@
+package com.ams.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+
+import com.ams.config.StaleFallbackAspect;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Hot read responses cached as ready-to-send JSON bytes, so a hit costs
+ * neither a database call nor a Jackson pass.
+ *
+ * Entries live in their own Spring caches (by convention the source cache's
+ * name plus {@code Json}) and must be evicted together with the source cache.
+ * Each entry carries a version that makes up its strong ETag; the boot time
+ * is part of the tag so versions reissued after a restart never match what
+ * clients kept from before it.
+ */
+@Service
+public class JsonResponseCache {
+
+    private final CacheManager cacheManager;
+    private final ObjectMapper objectMapper;
+    private final int gzipMinBytes;
+    private final String bootId = Long.toHexString(System.currentTimeMillis());
+    private final AtomicLong versions = new AtomicLong();
+
+    @Autowired
+    public JsonResponseCache(CacheManager cacheManager, ObjectMapper objectMapper,
+            @Value("${ams.json-cache.gzip-min-bytes:1024}") int gzipMinBytes) {
+        this.cacheManager = cacheManager;
+        this.objectMapper = objectMapper;
+        this.gzipMinBytes = gzipMinBytes;
+    }
+
+    /**
+     * Get the cached response, serializing the loader's value once on a miss
+     */
+    public CachedJson get(String cacheName, Object key, Supplier<?> loader) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache == null) {
+            throw new IllegalArgumentException("Unknown cache " + cacheName);
+        }
+        CachedJson json = cache.get(key, () -> serialize(loader.get()));
+        if (StaleFallbackAspect.isServingStale()) {
+            // Served once, flagged; the next request tries the database again
+            cache.evict(key);
+        }
+        return json;
+    }
+
+    private CachedJson serialize(Object value) {
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(value);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Cannot serialize cached response", ex);
+        }
+        byte[] gzip = gzipMinBytes >= 0 && json.length >= gzipMinBytes ? gzip(json) : null;
+        String etag = "\"" + bootId + "-" + Long.toHexString(versions.incrementAndGet()) + "\"";
+        return new CachedJson(json, gzip, etag);
+    }
+
+    private static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * UTF-8 JSON body, its gzip encoding when large enough to be worth it,
+     * and the strong ETag of this version
+     */
+    @Getter
+    @AllArgsConstructor
+    public static final class CachedJson {
+        private final byte[] json;
+        private final byte[] gzip;
+        private final String etag;
+    }
+}
@@ -0,0 +1,381 @@
+package com.ams.service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PreDestroy;
+import javax.mail.MessagingException;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import com.ams.config.NotificationProperties;
+import com.ams.config.PropertyContext;
+import com.ams.service.NotificationOutbox.Kind;
+import com.ams.util.Backoff;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Delivers the notification outbox by email.
+ *
+ * Each round claims the due notifications of up to {@code batch-size}
+ * residents under a lease, coalesces each resident's notifications into a
+ * single digest, and sends the digests in parallel over pooled SMTP
+ * connections. Delivered rows are marked SENT; failed ones are rescheduled
+ * with jittered exponential backoff until {@code max-attempts}. Claims are
+ * conditional updates, so several instances can drain the same outbox, and
+ * an instance that dies mid-send only delays its claimed rows until the
+ * lease expires: delivery is at least once. An expired lease counts as a
+ * failed attempt, so a digest whose sender keeps dying is given up on too.
+ */
+@Service
+@Slf4j
+public class NotificationDispatcher {
+
+    private static final String CLAIMABLE = "status = 'PENDING' AND next_attempt_at <= :now";
+    private static final String EXPIRE_LEASES_SQL = "UPDATE notification_outbox SET "
+            + "status = CASE WHEN attempts + 1 >= :maxAttempts THEN 'FAILED' ELSE 'PENDING' END, "
+            + "attempts = attempts + 1, last_error = 'Lease expired before delivery was settled', "
+            + "claim_token = NULL WHERE status = 'SENDING' AND next_attempt_at <= :now";
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final NotificationOutbox outbox;
+    private final SmtpConnectionPool connections;
+    private final ScatterGather scatterGather;
+    private final NotificationProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService senders;
+
+    @Autowired
+    public NotificationDispatcher(DataSource dataSource, NotificationOutbox outbox, SmtpConnectionPool connections,
+            ScatterGather scatterGather, NotificationProperties properties, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.outbox = outbox;
+        this.connections = connections;
+        this.scatterGather = scatterGather;
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "notification-dispatcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.senders = Executors.newFixedThreadPool(properties.getSmtp().getConnections(), runnable -> {
+            Thread thread = new Thread(runnable, "notification-sender");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!properties.isEnabled()) {
+            log.info("Resident notifications disabled");
+            return;
+        }
+        scheduler.scheduleWithFixedDelay(this::scanOverduePayments, 0, properties.getOverdueScanIntervalMs(),
+                TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::dispatch, properties.getPollIntervalMs(),
+                properties.getPollIntervalMs(), TimeUnit.MILLISECONDS);
+        log.info("Notification dispatcher sending through {}:{} on {} connections",
+                properties.getSmtp().getHost(), properties.getSmtp().getPort(), properties.getSmtp().getConnections());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        senders.shutdownNow();
+    }
+
+    /**
+     * Queue reminders for payments that went overdue since the last scan
+     */
+    public void scanOverduePayments() {
+        for (String shard : scatterGather.getShards()) {
+            try {
+                int queued = PropertyContext.onShard(shard, outbox::enqueueOverduePayments);
+                if (queued > 0) {
+                    log.info("Queued {} overdue payment reminders on shard {}", queued, shard);
+                }
+            } catch (DataAccessException ex) {
+                log.warn("Overdue payment scan on shard {} failed: {}", shard, ex.getMessage());
+            } catch (RuntimeException ex) {
+                // Thrown out of the scheduled task it would cancel every later scan
+                log.error("Overdue payment scan on shard {} failed", shard, ex);
+            }
+        }
+    }
+
+    /**
+     * Send everything due on every shard
+     */
+    public void dispatch() {
+        for (String shard : scatterGather.getShards()) {
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            try {
+                PropertyContext.onShard(shard, this::drain);
+            } catch (DataAccessException ex) {
+                log.warn("Notification dispatch on shard {} failed: {}", shard, ex.getMessage());
+            } catch (RuntimeException ex) {
+                // Thrown out of the scheduled task it would cancel every later round
+                log.error("Notification dispatch on shard {} failed", shard, ex);
+            }
+        }
+    }
+
+    /**
+     * Run rounds on the current shard until one comes back short
+     * @return residents claimed
+     */
+    private int drain() {
+        int residents = 0;
+        try {
+            int claimed;
+            do {
+                claimed = dispatchRound();
+                residents += claimed;
+            } while (claimed >= properties.getBatchSize());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        return residents;
+    }
+
+    /**
+     * Claim, send and settle one batch of residents
+     * @return residents claimed
+     */
+    private int dispatchRound() throws InterruptedException {
+        LocalDateTime now = LocalDateTime.now();
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("now", Timestamp.valueOf(now))
+                .addValue("cutoff", Timestamp.valueOf(now.minusNanos(
+                        TimeUnit.MILLISECONDS.toNanos(properties.getCoalesceWindowMs()))))
+                .addValue("limit", properties.getBatchSize())
+                .addValue("maxAttempts", properties.getMaxAttempts());
+        int expired = namedJdbcTemplate.update(EXPIRE_LEASES_SQL, params);
+        if (expired > 0) {
+            log.warn("Released {} notifications whose lease expired unsettled", expired);
+        }
+
+        List<Long> residents = namedJdbcTemplate.queryForList("SELECT DISTINCT resident_id FROM notification_outbox "
+                + "WHERE " + CLAIMABLE + " AND created_at <= :cutoff LIMIT :limit", params, Long.class);
+        if (residents.isEmpty()) {
+            return 0;
+        }
+
+        // A resident's later notifications join the digest even inside the coalescing window
+        String token = UUID.randomUUID().toString();
+        params.addValue("token", token)
+                .addValue("residents", residents)
+                .addValue("leaseUntil", Timestamp.valueOf(now.plusNanos(
+                        TimeUnit.MILLISECONDS.toNanos(properties.getLeaseMs()))));
+        namedJdbcTemplate.update("UPDATE notification_outbox SET status = 'SENDING', claim_token = :token, "
+                + "next_attempt_at = :leaseUntil WHERE resident_id IN (:residents) AND " + CLAIMABLE, params);
+
+        List<Digest> digests = loadDigests(token);
+        if (!digests.isEmpty()) {
+            MessagingException[] failures = new MessagingException[digests.size()];
+            settle(digests, failures, send(digests, failures));
+        }
+        return residents.size();
+    }
+
+    private List<Digest> loadDigests(String token) {
+        Map<Long, Digest> digests = new LinkedHashMap<>();
+        jdbcTemplate.query("SELECT o.id, o.resident_id, o.kind, o.message, o.attempts, u.email, u.first_name "
+                + "FROM notification_outbox o JOIN users u ON o.resident_id = u.id "
+                + "WHERE o.claim_token = ? ORDER BY o.resident_id, o.id", rs -> {
+                    long residentId = rs.getLong("resident_id");
+                    Digest digest = digests.get(residentId);
+                    if (digest == null) {
+                        digest = new Digest(residentId, rs.getString("email"), rs.getString("first_name"));
+                        digests.put(residentId, digest);
+                    }
+                    digest.add(rs.getLong("id"), Kind.valueOf(rs.getString("kind")), rs.getString("message"),
+                            rs.getInt("attempts"));
+                }, token);
+        return new ArrayList<>(digests.values());
+    }
+
+    /**
+     * Split the digests across the sender threads, one connection each
+     * @param failures receives the failure of each digest, null where it was accepted
+     * @return whether each digest's send completed, false where its sender threw
+     */
+    private boolean[] send(List<Digest> digests, MessagingException[] failures) throws InterruptedException {
+        boolean[] completed = new boolean[digests.size()];
+        int senderCount = Math.min(properties.getSmtp().getConnections(), digests.size());
+        int chunk = (digests.size() + senderCount - 1) / senderCount;
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (int from = 0; from < digests.size(); from += chunk) {
+            int start = from;
+            int end = Math.min(digests.size(), from + chunk);
+            futures.add(senders.submit(() -> {
+                MimeMessage[] messages = new MimeMessage[end - start];
+                for (int i = start; i < end; i++) {
+                    try {
+                        messages[i - start] = toMessage(digests.get(i));
+                    } catch (MessagingException ex) {
+                        failures[i] = ex;
+                    }
+                }
+                MimeMessage[] built = Arrays.stream(messages).filter(Objects::nonNull).toArray(MimeMessage[]::new);
+                MessagingException[] sent = connections.send(built);
+                for (int i = start, next = 0; i < end; i++) {
+                    if (messages[i - start] != null) {
+                        failures[i] = sent[next++];
+                    }
+                    completed[i] = true;
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException ex) {
+                // The sender's digests are not settled: they stay claimed until the lease expires, which
+                // counts as a failed attempt
+                log.error("Notification sender failed", ex.getCause());
+            }
+        }
+        return completed;
+    }
+
+    private void settle(List<Digest> digests, MessagingException[] failures, boolean[] completed) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> sent = new ArrayList<>();
+        int unsettled = 0;
+        for (int i = 0; i < digests.size(); i++) {
+            Digest digest = digests.get(i);
+            if (!completed[i]) {
+                unsettled++;
+                continue;
+            }
+            if (failures[i] == null) {
+                sent.addAll(digest.getIds());
+                count("sent");
+                continue;
+            }
+            int attempt = digest.getAttempts() + 1;
+            boolean abandoned = attempt >= properties.getMaxAttempts();
+            log.warn("Notification digest for resident {} failed (attempt {}{}): {}", digest.getResidentId(), attempt,
+                    abandoned ? ", giving up" : "", failures[i].getMessage());
+            String error = String.valueOf(failures[i].getMessage());
+            namedJdbcTemplate.update("UPDATE notification_outbox SET "
+                    + "status = CASE WHEN attempts + 1 >= :maxAttempts THEN 'FAILED' ELSE 'PENDING' END, "
+                    + "attempts = attempts + 1, next_attempt_at = :retryAt, last_error = :error, claim_token = NULL "
+                    + "WHERE id IN (:ids)", new MapSqlParameterSource()
+                            .addValue("maxAttempts", properties.getMaxAttempts())
+                            .addValue("retryAt", Timestamp.valueOf(now.plusNanos(TimeUnit.MILLISECONDS.toNanos(
+                                    Backoff.delayMillis(attempt, properties.getRetryBackoffMs())))))
+                            .addValue("error", error.length() > MAX_ERROR_LENGTH
+                                    ? error.substring(0, MAX_ERROR_LENGTH) : error)
+                            .addValue("ids", digest.getIds()));
+            count(abandoned ? "failed" : "retried");
+        }
+        if (!sent.isEmpty()) {
+            namedJdbcTemplate.update("UPDATE notification_outbox SET status = 'SENT', sent_at = :now, "
+                    + "claim_token = NULL WHERE id IN (:ids)", new MapSqlParameterSource()
+                            .addValue("now", Timestamp.valueOf(now))
+                            .addValue("ids", sent));
+        }
+        log.debug("Notification round: {} digests, {} notifications delivered, {} digests left to the lease",
+                digests.size(), sent.size(), unsettled);
+    }
+
+    private MimeMessage toMessage(Digest digest) throws MessagingException {
+        Map<Kind, List<String>> sections = new LinkedHashMap<>();
+        for (int i = 0; i < digest.getIds().size(); i++) {
+            sections.computeIfAbsent(digest.getKinds().get(i), kind -> new ArrayList<>())
+                    .add(digest.getMessages().get(i));
+        }
+
+        StringBuilder body = new StringBuilder("Hello ").append(digest.getFirstName()).append(",\n");
+        sections.forEach((kind, messages) -> {
+            body.append('\n').append(kind == Kind.PAYMENT_OVERDUE ? "Overdue payments" : "Complaint updates")
+                    .append(":\n");
+            messages.forEach(message -> body.append(" - ").append(message).append('\n'));
+        });
+
+        int count = digest.getIds().size();
+        MimeMessage message = new MimeMessage(connections.getSession());
+        message.setFrom(new InternetAddress(properties.getSmtp().getFrom()));
+        message.setRecipient(MimeMessage.RecipientType.TO, new InternetAddress(digest.getEmail(), true));
+        message.setSubject(count == 1 ? "You have a new notice" : "You have " + count + " new notices", "UTF-8");
+        message.setText(body.toString(), "UTF-8");
+        message.setSentDate(new Date());
+        return message;
+    }
+
+    private void count(String outcome) {
+        Counter.builder("ams.notifications.digests")
+                .tag("outcome", outcome)
+                .description("Notification digests by delivery outcome")
+                .register(meterRegistry)
+                .increment();
+    }
+
+    /**
+     * The claimed notifications of one resident
+     */
+    @Getter
+    private static final class Digest {
+        private final Long residentId;
+        private final String email;
+        private final String firstName;
+        private final List<Long> ids = new ArrayList<>();
+        private final List<Kind> kinds = new ArrayList<>();
+        private final List<String> messages = new ArrayList<>();
+        private int attempts;
+
+        Digest(Long residentId, String email, String firstName) {
+            this.residentId = residentId;
+            this.email = email;
+            this.firstName = firstName;
+        }
+
+        void add(long id, Kind kind, String message, int attempts) {
+            ids.add(id);
+            kinds.add(kind);
+            messages.add(message);
+            this.attempts = Math.max(this.attempts, attempts);
+        }
+    }
+}
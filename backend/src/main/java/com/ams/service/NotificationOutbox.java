@@ -0,0 +1,95 @@
+package com.ams.service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import com.ams.config.NotificationProperties;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Transactional outbox for resident notifications.
+ *
+ * Notifications are rows in notification_outbox written through the
+ * caller's connection, so they commit or roll back with the change they
+ * describe; nothing is sent from the request thread.
+ * {@link NotificationDispatcher} delivers them afterwards.
+ */
+@Service
+@Slf4j
+public class NotificationOutbox {
+
+    public enum Kind {
+        PAYMENT_OVERDUE,
+        COMPLAINT_STATUS
+    }
+
+    private static final int MAX_MESSAGE_LENGTH = 1000;
+
+    // One row per overdue payment; the NOT EXISTS keeps repeated scans idempotent
+    private static final String ENQUEUE_OVERDUE_SQL = "INSERT INTO notification_outbox "
+            + "(resident_id, kind, reference_id, message, next_attempt_at, created_at) "
+            + "SELECT p.resident_id, 'PAYMENT_OVERDUE', p.id, "
+            + "CONCAT('Payment of ', p.amount, ' due ', p.due_date, ' is overdue', "
+            + "COALESCE(CONCAT(': ', p.description), '')), ?, ? "
+            + "FROM payments p "
+            + "WHERE p.status = 'PENDING' AND p.due_date < CURRENT_DATE "
+            + "AND NOT EXISTS (SELECT 1 FROM notification_outbox o "
+            + "WHERE o.kind = 'PAYMENT_OVERDUE' AND o.reference_id = p.id)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+
+    @Autowired
+    public NotificationOutbox(DataSource dataSource, NotificationProperties properties) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.enabled = properties.isEnabled();
+    }
+
+    /**
+     * Queue a notification within the current transaction. Times are taken
+     * from the application clock, like the dispatcher's, rather than the
+     * database's.
+     */
+    public void enqueue(Long residentId, Kind kind, Long referenceId, String message) {
+        if (!enabled) {
+            return;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.update("INSERT INTO notification_outbox (resident_id, kind, reference_id, message, "
+                + "next_attempt_at, created_at) VALUES (?, ?, ?, ?, ?, ?)", residentId, kind.name(), referenceId,
+                message.length() > MAX_MESSAGE_LENGTH ? message.substring(0, MAX_MESSAGE_LENGTH) : message,
+                now, now);
+    }
+
+    /**
+     * Drop notifications that have not been picked up yet, e.g. a reminder
+     * for a payment that has just been paid
+     */
+    public void withdraw(Kind kind, Long referenceId) {
+        if (!enabled) {
+            return;
+        }
+        jdbcTemplate.update("DELETE FROM notification_outbox WHERE kind = ? AND reference_id = ? "
+                + "AND status = 'PENDING'", kind.name(), referenceId);
+    }
+
+    /**
+     * Queue a reminder for every overdue payment that has not had one, in
+     * a single statement
+     * @return reminders queued
+     */
+    public int enqueueOverduePayments() {
+        if (!enabled) {
+            return 0;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        return jdbcTemplate.update(ENQUEUE_OVERDUE_SQL, now, now);
+    }
+}
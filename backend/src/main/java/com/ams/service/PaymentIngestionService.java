@@ -0,0 +1,162 @@
+package com.ams.service;
+
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import com.ams.config.PropertyContext;
+import com.ams.service.DatabaseService.PaymentOutcome;
+import com.ams.util.BloomFilter;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Idempotent entry point for payment gateway callbacks, which gateways
+ * redeliver freely.
+ *
+ * A replay is answered from memory when possible: transactions settled
+ * recently are kept exactly, and a Bloom filter of recorded transaction ids
+ * (warmed at startup from live and archived payments) sends only possible
+ * replays to a lookup on the unique transaction indexes. A transaction the filter has never seen goes straight
+ * to {@code ProcessPayment}. The procedure and the unique index remain the
+ * authority, and it also refuses transaction ids found in the archive, so a
+ * stale or cold filter only costs speed.
+ */
+@Service
+@Slf4j
+public class PaymentIngestionService {
+
+    private static final String RECORDED_TRANSACTIONS_SQL =
+            "SELECT transaction_id FROM payments WHERE transaction_id IS NOT NULL ORDER BY id DESC LIMIT ?";
+    private static final String ARCHIVED_TRANSACTIONS_SQL =
+            "SELECT transaction_id FROM payments_archive WHERE transaction_id IS NOT NULL ORDER BY id DESC LIMIT ?";
+    // Settled payments may have been archived since
+    private static final String RECORDED_PAYMENT_SQL = "SELECT id FROM payments WHERE transaction_id = ? "
+            + "UNION ALL SELECT id FROM payments_archive WHERE transaction_id = ?";
+
+    private final DatabaseService databaseService;
+    private final ScatterGather scatterGather;
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry meterRegistry;
+    private final BloomFilter transactions;
+    private final Cache<String, Long> recentlySettled;
+    private final long expectedTransactions;
+
+    @Autowired
+    public PaymentIngestionService(DatabaseService databaseService, ScatterGather scatterGather,
+            DataSource dataSource, MeterRegistry meterRegistry,
+            @Value("${ams.payments.idempotency.expected-transactions:1000000}") long expectedTransactions,
+            @Value("${ams.payments.idempotency.false-positive-rate:0.01}") double falsePositiveRate,
+            @Value("${ams.payments.idempotency.recent-size:100000}") long recentSize,
+            @Value("${ams.payments.idempotency.fetch-size:1000}") int fetchSize) {
+        this.databaseService = databaseService;
+        this.scatterGather = scatterGather;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+        this.meterRegistry = meterRegistry;
+        this.expectedTransactions = expectedTransactions;
+        this.transactions = new BloomFilter(expectedTransactions, falsePositiveRate);
+        this.recentlySettled = Caffeine.newBuilder()
+                .maximumSize(recentSize)
+                .build();
+    }
+
+    /**
+     * Put the most recent transaction ids of every shard into the filter,
+     * topping up from the archive when the live table has fewer than expected
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        long start = System.nanoTime();
+        for (String shard : scatterGather.getShards()) {
+            try {
+                PropertyContext.onShard(shard, () -> {
+                    long[] loaded = new long[1];
+                    jdbcTemplate.query(RECORDED_TRANSACTIONS_SQL, rs -> {
+                        transactions.put(rs.getString(1));
+                        loaded[0]++;
+                    }, expectedTransactions);
+                    if (loaded[0] < expectedTransactions) {
+                        jdbcTemplate.query(ARCHIVED_TRANSACTIONS_SQL, rs -> {
+                            transactions.put(rs.getString(1));
+                        }, expectedTransactions - loaded[0]);
+                    }
+                    return null;
+                });
+            } catch (DataAccessException ex) {
+                log.warn("Transaction filter not warmed from shard {}: {}", shard, ex.getMessage());
+            }
+        }
+        log.info("Transaction filter warmed with {} ids in {} ms ({} bits, {} hashes)",
+                transactions.approximateInsertions(), (System.nanoTime() - start) / 1_000_000,
+                transactions.getBitCount(), transactions.getHashCount());
+    }
+
+    /**
+     * Settle a payment from a gateway callback; safe to call any number of
+     * times with the same transaction
+     * @return DUPLICATE for a replay of the transaction that settled this
+     *         payment, CONFLICT when the payment was settled by another
+     *         transaction or the transaction settled another payment
+     */
+    public PaymentOutcome ingest(Long paymentId, String transactionId, String paymentMethod) {
+        if (transactionId == null || transactionId.trim().isEmpty()) {
+            throw new IllegalArgumentException("Transaction id required");
+        }
+
+        Long settledPayment = recentlySettled.getIfPresent(transactionId);
+        if (settledPayment != null) {
+            return count(replay(settledPayment, paymentId), "recent");
+        }
+        if (transactions.mightContain(transactionId)) {
+            List<Long> recorded = jdbcTemplate.queryForList(RECORDED_PAYMENT_SQL, Long.class, transactionId,
+                    transactionId);
+            if (!recorded.isEmpty()) {
+                recentlySettled.put(transactionId, recorded.get(0));
+                return count(replay(recorded.get(0), paymentId), "lookup");
+            }
+        }
+
+        PaymentOutcome outcome;
+        try {
+            outcome = databaseService.processPayment(paymentId, transactionId, paymentMethod);
+        } catch (DuplicateKeyException ex) {
+            // Recorded on another payment, concurrently or before the filter was warm
+            transactions.put(transactionId);
+            return count(PaymentOutcome.CONFLICT, "procedure");
+        }
+        if (outcome == PaymentOutcome.PROCESSED || outcome == PaymentOutcome.DUPLICATE) {
+            transactions.put(transactionId);
+            recentlySettled.put(transactionId, paymentId);
+        }
+        return count(outcome, "procedure");
+    }
+
+    private static PaymentOutcome replay(Long settledPayment, Long paymentId) {
+        return settledPayment.equals(paymentId) ? PaymentOutcome.DUPLICATE : PaymentOutcome.CONFLICT;
+    }
+
+    private PaymentOutcome count(PaymentOutcome outcome, String path) {
+        Counter.builder("ams.payments.callbacks")
+                .tag("outcome", outcome.name())
+                .tag("path", path)
+                .description("Payment callbacks by outcome and by how they were decided")
+                .register(meterRegistry)
+                .increment();
+        return outcome;
+    }
+}
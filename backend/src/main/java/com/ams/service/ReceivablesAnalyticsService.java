@@ -0,0 +1,513 @@
+package com.ams.service;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import com.ams.config.MetricsConfig;
+import com.ams.config.PropertyContext;
+import com.ams.model.Payment.PaymentType;
+
+import io.micrometer.core.annotation.Timed;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Receivables aging and monthly collection rates across every shard,
+ * computed in one streaming pass over each shard's payments.
+ *
+ * Payments are split into id ranges that are scanned in parallel, each into
+ * flat arrays of cent totals indexed by building, payment type, aging bucket
+ * and due month; the partitions are then summed, and the shards' reports
+ * merged by building. Each shard's result is kept for the day it was
+ * computed for. Payment changes arrive on the {@link DomainChangeStream} and
+ * only mark their partition stale, so the next read rescans just the stale
+ * partitions. The stream may drop changes; a dropped one is picked up by the
+ * next day's full scan.
+ */
+@Service
+@Slf4j
+public class ReceivablesAnalyticsService {
+
+    public enum AgingBucket {
+        CURRENT,
+        DAYS_1_30,
+        DAYS_31_60,
+        DAYS_61_90,
+        DAYS_OVER_90
+    }
+
+    private static final AgingBucket[] BUCKETS = AgingBucket.values();
+    private static final PaymentType[] TYPES = PaymentType.values();
+    private static final String UNASSIGNED_BUILDING = "(none)";
+
+    private static final String APARTMENTS_SQL = "SELECT id, building FROM apartments ORDER BY id";
+    private static final String ID_RANGE_SQL = "SELECT MIN(id), MAX(id) FROM payments";
+    private static final String PAYMENTS_SQL = "SELECT apartment_id, type, status, due_date, "
+            + "ROUND(amount * 100) AS amount_cents FROM payments WHERE id BETWEEN ? AND ? AND status <> 'CANCELLED'";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ScatterGather scatterGather;
+    private final DomainChangeStream changeStream;
+    private final int partitions;
+    private final int collectionMonths;
+    private final ExecutorService workers;
+
+    // Per shard; guarded by this
+    private final Map<String, Snapshot> snapshots = new LinkedHashMap<>();
+    // Ids of payments changed since the last read per shard; mapped to partitions then
+    private final Map<String, Set<Long>> changedPayments = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ReceivablesAnalyticsService(DataSource dataSource, ScatterGather scatterGather,
+            DomainChangeStream changeStream,
+            @Value("${ams.analytics.fetch-size:1000}") int fetchSize,
+            @Value("${ams.analytics.partitions:16}") int partitions,
+            @Value("${ams.analytics.workers:4}") int workers,
+            @Value("${ams.analytics.collection-months:12}") int collectionMonths) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+        this.scatterGather = scatterGather;
+        this.changeStream = changeStream;
+        this.partitions = partitions;
+        this.collectionMonths = collectionMonths;
+        this.workers = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "analytics-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        changeStream.subscribe("receivables", this::onChanges);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    /**
+     * Get today's aging buckets and collection rates, rescanning only the
+     * partitions touched by payment changes since the last read
+     */
+    @Timed(value = MetricsConfig.DATABASE_TIMER, extraTags = {"operation", "getReceivables"})
+    public synchronized ReceivablesReport getReceivables() {
+        LocalDate today = LocalDate.now();
+        List<ReceivablesReport> reports = new ArrayList<>();
+        for (String shard : scatterGather.getShards()) {
+            reports.add(PropertyContext.onShard(shard, () -> shardReport(shard, today)));
+        }
+        return reports.size() == 1 ? reports.get(0) : mergeReports(today, reports);
+    }
+
+    /**
+     * Mark the partition holding a payment stale once a payment of a
+     * property was created or changed; ids past the last scan fall into the
+     * open-ended last partition
+     */
+    public void paymentChanged(long propertyId, Long paymentId) {
+        String shard = PropertyContext.withProperty(propertyId, scatterGather::currentShard);
+        changedPayments.computeIfAbsent(shard, key -> ConcurrentHashMap.newKeySet()).add(paymentId);
+    }
+
+    /**
+     * Drop the cached results so the next read scans everything again
+     */
+    public synchronized void invalidate() {
+        snapshots.clear();
+        changedPayments.clear();
+    }
+
+    private void onChanges(List<DomainChange> changes) {
+        for (DomainChange change : changes) {
+            if ("Payment".equals(change.getEntity())) {
+                paymentChanged(change.getPropertyId(), change.getId());
+            }
+        }
+    }
+
+    private ReceivablesReport shardReport(String shard, LocalDate today) {
+        Snapshot current = snapshots.get(shard);
+        Set<Long> changed = changedPayments.computeIfAbsent(shard, key -> ConcurrentHashMap.newKeySet());
+        if (current == null || !current.asOf.equals(today)) {
+            // Changes committed during the scan stay queued and are rescanned
+            // on the next read
+            changed.clear();
+            current = computeSnapshot(shard, today);
+        } else if (!changed.isEmpty()) {
+            current = refresh(shard, current, changed);
+        }
+        snapshots.put(shard, current);
+        return current.report;
+    }
+
+    private Snapshot computeSnapshot(String shard, LocalDate asOf) {
+        Dimensions dimensions = loadDimensions(asOf);
+        long[] lowerBounds = partitionBounds();
+        Accumulator[] parts = new Accumulator[lowerBounds.length];
+        scan(shard, dimensions, lowerBounds, allPartitions(lowerBounds.length), parts, false);
+        log.info("Receivables analytics computed for {} on shard {} across {} partitions", asOf, shard,
+                parts.length);
+        return new Snapshot(asOf, dimensions, lowerBounds, parts, dimensions.toReport(merge(dimensions, parts)));
+    }
+
+    private Snapshot refresh(String shard, Snapshot current, Set<Long> queued) {
+        List<Long> changed = new ArrayList<>(queued);
+        queued.removeAll(changed);
+        Set<Integer> stale = new TreeSet<>();
+        for (Long paymentId : changed) {
+            int index = Arrays.binarySearch(current.lowerBounds, paymentId);
+            stale.add(index >= 0 ? index : Math.max(0, -index - 2));
+        }
+
+        Accumulator[] parts = current.parts.clone();
+        try {
+            scan(shard, current.dimensions, current.lowerBounds, new ArrayList<>(stale), parts, true);
+        } catch (UnknownApartmentException ex) {
+            // A payment for an apartment added since the full scan; the
+            // building dimension has to be rebuilt
+            return computeSnapshot(shard, current.asOf);
+        } catch (RuntimeException ex) {
+            queued.addAll(changed);
+            throw ex;
+        }
+        log.debug("Receivables analytics refreshed {} stale partitions on shard {}", stale.size(), shard);
+        return new Snapshot(current.asOf, current.dimensions, current.lowerBounds, parts,
+                current.dimensions.toReport(merge(current.dimensions, parts)));
+    }
+
+    /**
+     * @param strict fail on apartments missing from the dimensions instead of
+     *        counting them as unassigned
+     */
+    private void scan(String shard, Dimensions dimensions, long[] lowerBounds, List<Integer> indexes,
+            Accumulator[] parts, boolean strict) {
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int index : indexes) {
+            long from = lowerBounds[index];
+            long to = index + 1 < lowerBounds.length ? lowerBounds[index + 1] - 1 : Long.MAX_VALUE;
+            futures.add(CompletableFuture.runAsync(() -> parts[index] = PropertyContext.onShard(shard,
+                    () -> scanPartition(dimensions, from, to, strict)), workers));
+        }
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw ex;
+        }
+    }
+
+    private Accumulator scanPartition(Dimensions dimensions, long fromId, long toId, boolean strict) {
+        Accumulator acc = new Accumulator(dimensions);
+        long asOfDay = dimensions.asOf.toEpochDay();
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(PAYMENTS_SQL,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setLong(1, fromId);
+            statement.setLong(2, toId);
+            return statement;
+        }, rs -> {
+            int building = dimensions.buildingOf(rs.getLong("apartment_id"), strict);
+            int type = PaymentType.valueOf(rs.getString("type")).ordinal();
+            boolean paid = "PAID".equals(rs.getString("status"));
+            LocalDate dueDate = rs.getDate("due_date").toLocalDate();
+            long cents = rs.getLong("amount_cents");
+
+            if (!paid) {
+                int bucket = bucket(asOfDay - dueDate.toEpochDay());
+                int slot = building * BUCKETS.length + bucket;
+                acc.agingCents[slot] += cents;
+                acc.agingCounts[slot]++;
+            }
+            int month = dimensions.monthIndex(dueDate);
+            if (month >= 0) {
+                int slot = (building * TYPES.length + type) * collectionMonths + month;
+                acc.billedCents[slot] += cents;
+                if (paid) {
+                    acc.collectedCents[slot] += cents;
+                }
+            }
+        });
+        return acc;
+    }
+
+    private static int bucket(long daysPastDue) {
+        if (daysPastDue <= 0) {
+            return AgingBucket.CURRENT.ordinal();
+        } else if (daysPastDue <= 30) {
+            return AgingBucket.DAYS_1_30.ordinal();
+        } else if (daysPastDue <= 60) {
+            return AgingBucket.DAYS_31_60.ordinal();
+        } else if (daysPastDue <= 90) {
+            return AgingBucket.DAYS_61_90.ordinal();
+        }
+        return AgingBucket.DAYS_OVER_90.ordinal();
+    }
+
+    private Accumulator merge(Dimensions dimensions, Accumulator[] parts) {
+        Accumulator total = new Accumulator(dimensions);
+        for (Accumulator part : parts) {
+            add(total.agingCents, part.agingCents);
+            add(total.agingCounts, part.agingCounts);
+            add(total.billedCents, part.billedCents);
+            add(total.collectedCents, part.collectedCents);
+        }
+        return total;
+    }
+
+    private static void add(long[] target, long[] source) {
+        for (int i = 0; i < target.length; i++) {
+            target[i] += source[i];
+        }
+    }
+
+    private Dimensions loadDimensions(LocalDate asOf) {
+        List<Long> ids = new ArrayList<>();
+        List<String> apartmentBuildings = new ArrayList<>();
+        jdbcTemplate.query(APARTMENTS_SQL, rs -> {
+            ids.add(rs.getLong("id"));
+            String building = rs.getString("building");
+            apartmentBuildings.add(building == null || building.isBlank() ? UNASSIGNED_BUILDING : building);
+        });
+
+        List<String> buildings = apartmentBuildings.stream().distinct().sorted().collect(Collectors.toList());
+        if (!buildings.contains(UNASSIGNED_BUILDING)) {
+            buildings.add(UNASSIGNED_BUILDING);
+        }
+        long[] apartmentIds = new long[ids.size()];
+        int[] buildingIndexes = new int[ids.size()];
+        for (int i = 0; i < apartmentIds.length; i++) {
+            apartmentIds[i] = ids.get(i);
+            buildingIndexes[i] = buildings.indexOf(apartmentBuildings.get(i));
+        }
+        return new Dimensions(asOf, YearMonth.from(asOf).minusMonths(collectionMonths - 1L), collectionMonths,
+                buildings, apartmentIds, buildingIndexes);
+    }
+
+    /**
+     * Lower id bound of each partition; the last partition is open-ended
+     */
+    private long[] partitionBounds() {
+        long[] range = jdbcTemplate.queryForObject(ID_RANGE_SQL,
+                (rs, rowNum) -> new long[] {rs.getLong(1), rs.getLong(2)});
+        long min = range[0];
+        long max = range[1];
+        if (max <= min) {
+            return new long[] {min};
+        }
+        long step = Math.max(1, (max - min + partitions) / partitions);
+        List<Long> bounds = new ArrayList<>();
+        for (long bound = min; bound <= max; bound += step) {
+            bounds.add(bound);
+        }
+        return bounds.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private static List<Integer> allPartitions(int count) {
+        List<Integer> indexes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            indexes.add(i);
+        }
+        return indexes;
+    }
+
+    /**
+     * Sum the shards' reports by building, in the order of a single report
+     */
+    private static ReceivablesReport mergeReports(LocalDate asOf, List<ReceivablesReport> reports) {
+        Map<String, AgingRow> aging = new LinkedHashMap<>();
+        Map<String, CollectionRow> collection = new LinkedHashMap<>();
+        LocalDateTime computedAt = null;
+        for (ReceivablesReport report : reports) {
+            for (AgingRow row : report.getAging()) {
+                aging.merge(row.getBuilding() + '|' + row.getBucket(), row, (a, b) -> new AgingRow(a.getBuilding(),
+                        a.getBucket(), a.getPayments() + b.getPayments(), a.getAmount().add(b.getAmount())));
+            }
+            for (CollectionRow row : report.getCollection()) {
+                collection.merge(row.getBuilding() + '|' + row.getType() + '|' + row.getMonth(), row, (a, b) -> {
+                    BigDecimal billed = a.getBilled().add(b.getBilled());
+                    BigDecimal collected = a.getCollected().add(b.getCollected());
+                    return new CollectionRow(a.getBuilding(), a.getType(), a.getMonth(), billed, collected,
+                            collected.doubleValue() / billed.doubleValue());
+                });
+            }
+            // The oldest shard result dates the merged report
+            if (computedAt == null || report.getComputedAt().isBefore(computedAt)) {
+                computedAt = report.getComputedAt();
+            }
+        }
+        List<AgingRow> agingRows = new ArrayList<>(aging.values());
+        agingRows.sort(Comparator.comparing(AgingRow::getBuilding).thenComparing(AgingRow::getBucket));
+        List<CollectionRow> collectionRows = new ArrayList<>(collection.values());
+        collectionRows.sort(Comparator.comparing(CollectionRow::getBuilding)
+                .thenComparing(CollectionRow::getType)
+                .thenComparing(CollectionRow::getMonth));
+        return new ReceivablesReport(asOf, computedAt, agingRows, collectionRows);
+    }
+
+    private static BigDecimal toAmount(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    /**
+     * Aging of outstanding (pending or late) payments for one building
+     */
+    @Getter
+    @AllArgsConstructor
+    public static final class AgingRow {
+        private final String building;
+        private final AgingBucket bucket;
+        private final long payments;
+        private final BigDecimal amount;
+    }
+
+    /**
+     * Amount billed and collected for payments due in one month
+     */
+    @Getter
+    @AllArgsConstructor
+    public static final class CollectionRow {
+        private final String building;
+        private final PaymentType type;
+        private final YearMonth month;
+        private final BigDecimal billed;
+        private final BigDecimal collected;
+        private final double collectionRate;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static final class ReceivablesReport {
+        private final LocalDate asOf;
+        private final LocalDateTime computedAt;
+        private final List<AgingRow> aging;
+        private final List<CollectionRow> collection;
+    }
+
+    /**
+     * Buildings and months the accumulators are indexed by, fixed for a
+     * snapshot
+     */
+    @AllArgsConstructor
+    private static final class Dimensions {
+        private final LocalDate asOf;
+        private final YearMonth firstMonth;
+        private final int months;
+        private final List<String> buildings;
+        private final long[] apartmentIds;
+        private final int[] buildingIndexes;
+
+        int buildingOf(long apartmentId, boolean strict) {
+            int index = Arrays.binarySearch(apartmentIds, apartmentId);
+            if (index >= 0) {
+                return buildingIndexes[index];
+            }
+            if (strict) {
+                throw new UnknownApartmentException();
+            }
+            return buildings.indexOf(UNASSIGNED_BUILDING);
+        }
+
+        /**
+         * Position of a due date within the collection window, or -1 outside it
+         */
+        int monthIndex(LocalDate dueDate) {
+            long offset = (dueDate.getYear() - firstMonth.getYear()) * 12L
+                    + dueDate.getMonthValue() - firstMonth.getMonthValue();
+            return offset >= 0 && offset < months ? (int) offset : -1;
+        }
+
+        ReceivablesReport toReport(Accumulator total) {
+            List<AgingRow> aging = new ArrayList<>();
+            List<CollectionRow> collection = new ArrayList<>();
+            for (int building = 0; building < buildings.size(); building++) {
+                for (AgingBucket bucket : BUCKETS) {
+                    int slot = building * BUCKETS.length + bucket.ordinal();
+                    if (total.agingCounts[slot] > 0) {
+                        aging.add(new AgingRow(buildings.get(building), bucket, total.agingCounts[slot],
+                                toAmount(total.agingCents[slot])));
+                    }
+                }
+                for (PaymentType type : TYPES) {
+                    for (int month = 0; month < months; month++) {
+                        int slot = (building * TYPES.length + type.ordinal()) * months + month;
+                        long billed = total.billedCents[slot];
+                        if (billed > 0) {
+                            long collected = total.collectedCents[slot];
+                            collection.add(new CollectionRow(buildings.get(building), type, firstMonth.plusMonths(month),
+                                    toAmount(billed), toAmount(collected), (double) collected / billed));
+                        }
+                    }
+                }
+            }
+            return new ReceivablesReport(asOf, LocalDateTime.now(), aging, collection);
+        }
+    }
+
+    /**
+     * Cent totals of one partition, flattened by building and bucket or by
+     * building, type and month
+     */
+    private static final class Accumulator {
+        private final long[] agingCents;
+        private final long[] agingCounts;
+        private final long[] billedCents;
+        private final long[] collectedCents;
+
+        Accumulator(Dimensions dimensions) {
+            int buildings = dimensions.buildings.size();
+            this.agingCents = new long[buildings * BUCKETS.length];
+            this.agingCounts = new long[buildings * BUCKETS.length];
+            this.billedCents = new long[buildings * TYPES.length * dimensions.months];
+            this.collectedCents = new long[buildings * TYPES.length * dimensions.months];
+        }
+    }
+
+    @AllArgsConstructor
+    private static final class Snapshot {
+        private final LocalDate asOf;
+        private final Dimensions dimensions;
+        private final long[] lowerBounds;
+        private final Accumulator[] parts;
+        private final ReceivablesReport report;
+    }
+
+    private static final class UnknownApartmentException extends RuntimeException {
+        UnknownApartmentException() {
+            super("Payment references an apartment outside the current snapshot", null, false, false);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.ams.service;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import lombok.Getter;
+
+/**
+ * Progress of an asynchronous report job. The result itself is persisted in
+ * the report_jobs table and streamed from there.
+ */
+@Getter
+public class ReportJob {
+
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+
+    private final String id;
+    private final ReportSpec.Type type;
+    @JsonIgnore
+    private final String specKey;
+    private final int totalParts;
+    private final AtomicInteger completedParts = new AtomicInteger();
+    private final LocalDateTime submittedAt;
+    private volatile Status status;
+    private volatile LocalDateTime finishedAt;
+    private volatile String failure;
+
+    ReportJob(ReportSpec.Type type, String specKey, int totalParts) {
+        this(UUID.randomUUID().toString(), type, specKey, totalParts, Status.QUEUED, LocalDateTime.now());
+    }
+
+    /**
+     * A job restored from the report_jobs table
+     */
+    ReportJob(String id, ReportSpec.Type type, String specKey, int totalParts, Status status,
+            LocalDateTime submittedAt) {
+        this.id = id;
+        this.type = type;
+        this.specKey = specKey;
+        this.totalParts = totalParts;
+        this.status = status;
+        this.submittedAt = submittedAt;
+        if (status == Status.COMPLETED) {
+            completedParts.set(totalParts);
+        }
+    }
+
+    void start() {
+        if (status == Status.QUEUED) {
+            status = Status.RUNNING;
+        }
+    }
+
+    void partDone() {
+        completedParts.incrementAndGet();
+    }
+
+    void complete(LocalDateTime finishedAt) {
+        status = Status.COMPLETED;
+        this.finishedAt = finishedAt;
+    }
+
+    void fail(String message) {
+        status = Status.FAILED;
+        failure = message;
+        finishedAt = LocalDateTime.now();
+    }
+
+    public boolean isFinished() {
+        return status == Status.COMPLETED || status == Status.FAILED;
+    }
+}
@@ -0,0 +1,359 @@
+package com.ams.service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import com.ams.config.PropertyContext;
+import com.ams.service.ArchiveService.ArchivedTable;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Asynchronous report jobs. A submitted {@link ReportSpec} is split into
+ * parts (months or residents) that run in parallel on a bounded worker
+ * pool; the assembled JSON is stored in report_jobs and streamed back from
+ * there. A spec that is already running, or that completed with a result
+ * that is still valid, returns the existing job instead of a new one.
+ *
+ * A job belongs to the property it was submitted for: its row lives on that
+ * property's shard, and its parts run for that property on the workers and
+ * read only that shard, so the stored result matches the key it is stored
+ * under.
+ */
+@Service
+@Slf4j
+public class ReportService {
+
+    private static final int MAX_MONTHS = 120;
+    private static final int MAX_RETAINED_JOBS = 100;
+
+    private static final String RESIDENTS_SQL = "SELECT id FROM users WHERE role = 'RESIDENT' ORDER BY id";
+    private static final String BUILDING_RESIDENTS_SQL = "SELECT u.id FROM users u "
+            + "JOIN apartments a ON u.apartment_id = a.id "
+            + "WHERE u.role = 'RESIDENT' AND a.building = ? ORDER BY u.id";
+    private static final String REVENUE_SQL = "SELECT SUM(amount) AS total_revenue, COUNT(*) AS payment_count, type "
+            + "FROM payments WHERE status = 'PAID' AND payment_date >= ? AND payment_date < ? GROUP BY type";
+    private static final String BUILDING_REVENUE_SQL = "SELECT SUM(p.amount) AS total_revenue, "
+            + "COUNT(*) AS payment_count, p.type "
+            + "FROM payments p JOIN apartments a ON p.apartment_id = a.id "
+            + "WHERE p.status = 'PAID' AND a.building = ? AND p.payment_date >= ? AND p.payment_date < ? "
+            + "GROUP BY p.type";
+    private static final String INTERRUPTED_SQL = "UPDATE report_jobs SET status = 'FAILED', "
+            + "failure = 'Interrupted by restart', finished_at = ? WHERE status IN ('QUEUED', 'RUNNING')";
+
+    private final DatabaseService databaseService;
+    private final ArchiveService archiveService;
+    private final ResidentLedger residentLedger;
+    private final ScatterGather scatterGather;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final ExecutorService workers;
+    private final Map<String, ReportJob> jobs = new LinkedHashMap<>();
+    private final Map<String, ReportJob> inFlight = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ReportService(DatabaseService databaseService, ArchiveService archiveService,
+            ResidentLedger residentLedger, ScatterGather scatterGather, DataSource dataSource,
+            ObjectMapper objectMapper, @Value("${ams.reports.workers:4}") int workers) {
+        this.databaseService = databaseService;
+        this.archiveService = archiveService;
+        this.residentLedger = residentLedger;
+        this.scatterGather = scatterGather;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.objectMapper = objectMapper;
+        this.workers = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "report-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    /**
+     * Jobs that were queued or running when the application stopped will
+     * never finish, on whichever shard they were queued
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void failInterruptedJobs() {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        try {
+            int interrupted = scatterGather.gather(() -> jdbcTemplate.update(INTERRUPTED_SQL, now)).stream()
+                    .mapToInt(Integer::intValue).sum();
+            if (interrupted > 0) {
+                log.warn("Marked {} interrupted report jobs as failed", interrupted);
+            }
+        } catch (DataAccessException ex) {
+            log.warn("Could not check for interrupted report jobs: {}", ex.getMessage());
+        }
+    }
+
+    /**
+     * Queue a report, or return the job already computing or holding the
+     * same result
+     */
+    public ReportJob submit(ReportSpec spec) {
+        validate(spec);
+        long propertyId = PropertyContext.currentProperty();
+        String key = spec.dedupeKey(propertyId, LocalDate.now());
+
+        ReportJob job;
+        List<Part> parts;
+        synchronized (jobs) {
+            ReportJob existing = inFlight.get(key);
+            if (existing == null) {
+                existing = findCompleted(key).orElse(null);
+            }
+            if (existing != null) {
+                log.debug("Report spec {} deduplicated to job {}", key, existing.getId());
+                retain(existing);
+                return existing;
+            }
+
+            parts = plan(spec);
+            job = new ReportJob(spec.getType(), key, parts.size());
+            jdbcTemplate.update("INSERT INTO report_jobs (id, spec_key, type, status, total_parts, submitted_at) "
+                    + "VALUES (?, ?, ?, 'QUEUED', ?, ?)", job.getId(), key, spec.getType().name(), parts.size(),
+                    Timestamp.valueOf(job.getSubmittedAt()));
+            inFlight.put(key, job);
+            retain(job);
+        }
+
+        run(job, spec, parts, propertyId);
+        log.info("Queued {} report job {} with {} parts", spec.getType(), job.getId(), parts.size());
+        return job;
+    }
+
+    public Optional<ReportJob> getJob(String id) {
+        synchronized (jobs) {
+            ReportJob job = jobs.get(id);
+            if (job != null) {
+                return Optional.of(job);
+            }
+        }
+        return loadJobs("WHERE id = ?", id).stream().findFirst();
+    }
+
+    /**
+     * Whether a completed result is stored for the job on the current shard
+     */
+    public boolean hasResult(String id) {
+        Integer found = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM report_jobs "
+                + "WHERE id = ? AND status = 'COMPLETED' AND result IS NOT NULL", Integer.class, id);
+        return found != null && found > 0;
+    }
+
+    /**
+     * Copy a completed job's JSON result to {@code out} without loading it
+     * into memory
+     * @return false when the job does not exist or has not completed
+     */
+    public boolean streamResult(String id, Writer out) {
+        Boolean found = jdbcTemplate.query("SELECT result FROM report_jobs WHERE id = ? AND status = 'COMPLETED'",
+                rs -> {
+                    if (!rs.next()) {
+                        return false;
+                    }
+                    try (Reader result = rs.getCharacterStream(1)) {
+                        result.transferTo(out);
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                    return true;
+                }, id);
+        return Boolean.TRUE.equals(found);
+    }
+
+    private void validate(ReportSpec spec) {
+        if (spec.getType() == null) {
+            throw new IllegalArgumentException("Report type is required");
+        }
+        if (spec.getType() == ReportSpec.Type.RESIDENT_REPORTS) {
+            // Resident reports are point-in-time; the range only labels them
+            YearMonth now = YearMonth.now();
+            spec.setFrom(spec.getFrom() == null ? now : spec.getFrom());
+            spec.setTo(spec.getTo() == null ? now : spec.getTo());
+        }
+        if (spec.getFrom() == null || spec.getTo() == null || spec.getTo().isBefore(spec.getFrom())) {
+            throw new IllegalArgumentException("A month range with from <= to is required");
+        }
+        if (spec.getFrom().plusMonths(MAX_MONTHS).isBefore(spec.getTo())) {
+            throw new IllegalArgumentException("Report range is limited to " + MAX_MONTHS + " months");
+        }
+    }
+
+    /**
+     * Split a spec into independently computable parts
+     */
+    private List<Part> plan(ReportSpec spec) {
+        List<Part> parts = new ArrayList<>();
+        String building = spec.getBuilding();
+        if (spec.getType() == ReportSpec.Type.MONTHLY_REVENUE) {
+            for (YearMonth month = spec.getFrom(); !month.isAfter(spec.getTo()); month = month.plusMonths(1)) {
+                YearMonth m = month;
+                parts.add(new Part(m.toString(), () -> revenue(building, m)));
+            }
+        } else {
+            List<Long> residentIds = building == null
+                    ? jdbcTemplate.queryForList(RESIDENTS_SQL, Long.class)
+                    : jdbcTemplate.queryForList(BUILDING_RESIDENTS_SQL, Long.class, building);
+            for (Long residentId : residentIds) {
+                parts.add(new Part(String.valueOf(residentId), () -> residentLedger.withCurrentBalance(
+                        databaseService.getResidentReport(residentId), residentId)));
+            }
+        }
+        return parts;
+    }
+
+    /**
+     * Revenue of one month on the job's shard, of one building or of all of
+     * them
+     */
+    private List<Map<String, Object>> revenue(String building, YearMonth month) {
+        LocalDate from = month.atDay(1);
+        LocalDate to = month.plusMonths(1).atDay(1);
+        List<Map<String, Object>> hot = building == null
+                ? jdbcTemplate.queryForList(REVENUE_SQL, from, to)
+                : jdbcTemplate.queryForList(BUILDING_REVENUE_SQL, building, from, to);
+        return archiveService.isNeeded(ArchivedTable.PAYMENTS, from)
+                ? ShardResults.sumGroups(List.of(hot, archiveService.revenueByType(from, to, building)), "type")
+                : hot;
+    }
+
+    /**
+     * Compute the parts on the workers and record the outcome, all for the
+     * property the job was submitted for
+     */
+    private void run(ReportJob job, ReportSpec spec, List<Part> parts, long propertyId) {
+        Object[] results = new Object[parts.size()];
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[parts.size()];
+        for (int i = 0; i < parts.size(); i++) {
+            int index = i;
+            futures[i] = CompletableFuture.runAsync(() -> PropertyContext.withProperty(propertyId, () -> {
+                job.start();
+                results[index] = parts.get(index).compute.get();
+                job.partDone();
+            }), workers);
+        }
+        CompletableFuture.allOf(futures).whenComplete((ignored, ex) -> PropertyContext.withProperty(propertyId, () -> {
+            try {
+                if (ex == null) {
+                    complete(job, spec, parts, results);
+                } else {
+                    fail(job, ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex);
+                }
+            } catch (RuntimeException | JsonProcessingException failure) {
+                fail(job, failure);
+            } finally {
+                inFlight.remove(job.getSpecKey(), job);
+            }
+        }));
+    }
+
+    private void complete(ReportJob job, ReportSpec spec, List<Part> parts, Object[] results)
+            throws JsonProcessingException {
+        Map<String, Object> partResults = new LinkedHashMap<>();
+        for (int i = 0; i < parts.size(); i++) {
+            partResults.put(parts.get(i).label, results[i]);
+        }
+        LocalDateTime finishedAt = LocalDateTime.now();
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("jobId", job.getId());
+        report.put("spec", spec);
+        report.put("generatedAt", finishedAt);
+        report.put("parts", partResults);
+
+        jdbcTemplate.update("UPDATE report_jobs SET status = 'COMPLETED', result = ?, finished_at = ? WHERE id = ?",
+                objectMapper.writeValueAsString(report), Timestamp.valueOf(finishedAt), job.getId());
+        job.complete(finishedAt);
+        log.info("Report job {} completed: {} parts in {} ms", job.getId(), parts.size(),
+                Duration.between(job.getSubmittedAt(), finishedAt).toMillis());
+    }
+
+    private void fail(ReportJob job, Throwable cause) {
+        log.error("Report job {} failed", job.getId(), cause);
+        String message = String.valueOf(cause.getMessage());
+        job.fail(message);
+        try {
+            jdbcTemplate.update("UPDATE report_jobs SET status = 'FAILED', failure = ?, finished_at = ? WHERE id = ?",
+                    message.length() > 1000 ? message.substring(0, 1000) : message,
+                    Timestamp.valueOf(job.getFinishedAt()), job.getId());
+        } catch (DataAccessException ex) {
+            log.warn("Could not record failure of report job {}", job.getId(), ex);
+        }
+    }
+
+    private Optional<ReportJob> findCompleted(String key) {
+        return loadJobs("WHERE spec_key = ? AND status = 'COMPLETED' ORDER BY finished_at DESC", key)
+                .stream().findFirst();
+    }
+
+    private List<ReportJob> loadJobs(String where, Object... args) {
+        return jdbcTemplate.query("SELECT id, spec_key, type, status, total_parts, submitted_at, finished_at "
+                + "FROM report_jobs " + where, (rs, rowNum) -> {
+                    ReportJob job = new ReportJob(rs.getString("id"), ReportSpec.Type.valueOf(rs.getString("type")),
+                            rs.getString("spec_key"), rs.getInt("total_parts"),
+                            ReportJob.Status.valueOf(rs.getString("status")),
+                            rs.getTimestamp("submitted_at").toLocalDateTime());
+                    Timestamp finishedAt = rs.getTimestamp("finished_at");
+                    if (job.getStatus() == ReportJob.Status.COMPLETED && finishedAt != null) {
+                        job.complete(finishedAt.toLocalDateTime());
+                    }
+                    return job;
+                }, args);
+    }
+
+    private void retain(ReportJob job) {
+        if (jobs.size() >= MAX_RETAINED_JOBS) {
+            jobs.values().removeIf(ReportJob::isFinished);
+        }
+        jobs.put(job.getId(), job);
+    }
+
+    /**
+     * One independently computed piece of a report
+     */
+    private static final class Part {
+        private final String label;
+        private final Supplier<Object> compute;
+
+        Part(String label, Supplier<Object> compute) {
+            this.label = label;
+            this.compute = compute;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.ams.service;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+
+import lombok.Data;
+
+/**
+ * What an asynchronous report job computes: one part per month of the range
+ * for revenue, or one part per resident for resident reports. Either covers
+ * the submitting property's shard, optionally narrowed to one building.
+ */
+@Data
+public class ReportSpec {
+
+    public enum Type {
+        MONTHLY_REVENUE,
+        RESIDENT_REPORTS
+    }
+
+    @NotNull
+    private Type type;
+    
+    private YearMonth from;
+    
+    private YearMonth to;
+    
+    @Size(max = 50)
+    private String building;
+
+    /**
+     * Identical specs for the same property share a key, so they are never
+     * computed twice. Results that can still change (the current month,
+     * resident reports) are only shared within the same day.
+     */
+    String dedupeKey(long propertyId, LocalDate today) {
+        StringBuilder key = new StringBuilder().append(propertyId).append('|').append(type.name())
+                .append('|').append(from).append('|').append(to)
+                .append('|').append(building == null ? "" : building);
+        if (type == Type.RESIDENT_REPORTS || !to.isBefore(YearMonth.from(today))) {
+            key.append('|').append(today);
+        }
+        return key.toString();
+    }
+}
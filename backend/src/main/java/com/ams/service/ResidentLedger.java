@@ -0,0 +1,438 @@
+package com.ams.service;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.ams.config.PropertyContext;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Append-only ledger of what each resident has been charged and has paid,
+ * with a running balance per resident and periodic balance snapshots.
+ *
+ * Every change in what a payment charges or has been paid appends one entry.
+ * The entry and the resident's running totals are written in one
+ * transaction, with the balance row locked first, so per resident the
+ * entries are numbered in the order they were applied. Reading the current
+ * balance is a primary-key lookup, and residents sort by balance on an
+ * index. A past balance is the latest snapshot taken before that date plus
+ * the few entries recorded after it.
+ *
+ * Payments settled through {@link DatabaseService#processPayment} are
+ * recorded in that transaction. Payments written through JPA arrive on the
+ * {@link DomainChangeStream}, and new invoices inserted by other means are
+ * picked up by a periodic sync. The stream may drop changes, so the sync also
+ * reconciles every payment updated since its last pass whose entries no
+ * longer add up to its amount and status. Recording compares the payment
+ * with what the ledger already holds for it, so each path may see the same
+ * change.
+ */
+@Service
+@Slf4j
+public class ResidentLedger {
+
+    public enum EntryType {
+        // A new charge
+        CHARGE,
+        // A charge withdrawn, e.g. a payment cancelled
+        CANCELLATION,
+        // A charge changed in amount
+        ADJUSTMENT,
+        PAYMENT,
+        // A payment taken back
+        REFUND
+    }
+
+    private static final String PAYMENT_SQL = "SELECT id, property_id, resident_id, amount, status, created_at, "
+            + "updated_at FROM payments WHERE id = ? FOR UPDATE";
+    private static final String RECORDED_SQL = "SELECT COALESCE(SUM(charged), 0) AS charged, "
+            + "COALESCE(SUM(paid), 0) AS paid FROM resident_ledger WHERE payment_id = ?";
+    private static final String ENTRY_SQL = "INSERT INTO resident_ledger "
+            + "(property_id, resident_id, payment_id, entry_type, charged, paid, effective_at) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String ADD_TO_BALANCE_SQL = "UPDATE resident_balances SET "
+            + "total_charged = total_charged + ?, total_paid = total_paid + ?, balance = balance + ?, "
+            + "updated_at = CURRENT_TIMESTAMP WHERE resident_id = ?";
+    private static final String NEW_BALANCE_SQL = "INSERT INTO resident_balances "
+            + "(resident_id, property_id, total_charged, total_paid, balance, last_entry_id, updated_at) "
+            + "VALUES (?, ?, ?, ?, ?, 0, CURRENT_TIMESTAMP)";
+    private static final String LAST_ENTRY_SQL = "UPDATE resident_balances SET last_entry_id = ? WHERE resident_id = ?";
+    private static final String BALANCE_SQL = "SELECT total_charged, total_paid, balance, updated_at "
+            + "FROM resident_balances WHERE resident_id = ?";
+    private static final String RANKED_SQL = "SELECT b.resident_id, u.first_name, u.last_name, u.email, "
+            + "b.total_charged, b.total_paid, b.balance, b.updated_at "
+            + "FROM resident_balances b JOIN users u ON b.resident_id = u.id "
+            + "WHERE b.property_id = ? ORDER BY b.balance %s LIMIT ?";
+    private static final String SNAPSHOT_BEFORE_SQL = "SELECT total_charged, total_paid, last_entry_id "
+            + "FROM resident_balance_snapshots WHERE resident_id = ? AND taken_at < ? "
+            + "ORDER BY taken_at DESC LIMIT 1";
+    private static final String REPLAY_SQL = "SELECT COALESCE(SUM(charged), 0) AS charged, "
+            + "COALESCE(SUM(paid), 0) AS paid, COUNT(*) AS entries FROM resident_ledger "
+            + "WHERE resident_id = ? AND id > ? AND effective_at < ?";
+    // Only residents whose balance moved since their latest snapshot
+    private static final String SNAPSHOT_SQL = "INSERT INTO resident_balance_snapshots "
+            + "(resident_id, taken_at, total_charged, total_paid, last_entry_id) "
+            + "SELECT b.resident_id, CURRENT_TIMESTAMP, b.total_charged, b.total_paid, b.last_entry_id "
+            + "FROM resident_balances b WHERE b.last_entry_id > 0 AND NOT EXISTS ("
+            + "SELECT 1 FROM resident_balance_snapshots s "
+            + "WHERE s.resident_id = b.resident_id AND s.last_entry_id = b.last_entry_id)";
+    private static final String UNRECORDED_SQL = "SELECT p.id FROM payments p "
+            + "WHERE p.id > ? AND p.created_at < ? AND NOT EXISTS ("
+            + "SELECT 1 FROM resident_ledger l WHERE l.payment_id = p.id) ORDER BY p.id LIMIT ?";
+    // Payments updated in a window whose entries disagree with their amount and status
+    private static final String DRIFTED_SQL = "SELECT p.id FROM payments p "
+            + "WHERE p.updated_at >= ? AND p.updated_at < ? AND p.id > ? AND ("
+            + "(SELECT COALESCE(SUM(l.charged), 0) FROM resident_ledger l WHERE l.payment_id = p.id) "
+            + "<> CASE WHEN p.status = 'CANCELLED' THEN 0 ELSE p.amount END "
+            + "OR (SELECT COALESCE(SUM(l.paid), 0) FROM resident_ledger l WHERE l.payment_id = p.id) "
+            + "<> CASE WHEN p.status = 'PAID' THEN p.amount ELSE 0 END) ORDER BY p.id LIMIT ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ScatterGather scatterGather;
+    private final DomainChangeStream changeStream;
+    private final MeterRegistry meterRegistry;
+    private final ScheduledExecutorService scheduler;
+    // Highest payment id synced per shard; starts from scratch on every boot
+    private final Map<String, Long> syncedUpTo = new ConcurrentHashMap<>();
+    // Update time up to which payments were reconciled per shard; likewise from scratch
+    private final Map<String, Timestamp> reconciledUpTo = new ConcurrentHashMap<>();
+    private final long syncIntervalMillis;
+    private final long settleMillis;
+    private final int batchSize;
+    private final long snapshotIntervalMillis;
+
+    @Autowired
+    public ResidentLedger(DataSource dataSource, PlatformTransactionManager transactionManager,
+            ScatterGather scatterGather, DomainChangeStream changeStream, MeterRegistry meterRegistry,
+            @Value("${ams.ledger.sync-interval-ms:60000}") long syncIntervalMillis,
+            @Value("${ams.ledger.settle-ms:60000}") long settleMillis,
+            @Value("${ams.ledger.batch-size:500}") int batchSize,
+            @Value("${ams.ledger.snapshot-interval-ms:86400000}") long snapshotIntervalMillis) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.scatterGather = scatterGather;
+        this.changeStream = changeStream;
+        this.meterRegistry = meterRegistry;
+        this.syncIntervalMillis = syncIntervalMillis;
+        this.settleMillis = settleMillis;
+        this.batchSize = batchSize;
+        this.snapshotIntervalMillis = snapshotIntervalMillis;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ledger");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        changeStream.subscribe("ledger", this::onChanges);
+        // The first sync catches up on everything recorded while stopped
+        scheduler.scheduleWithFixedDelay(this::sync, 0, syncIntervalMillis, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::snapshot, snapshotIntervalMillis, snapshotIntervalMillis,
+                TimeUnit.MILLISECONDS);
+        log.info("Syncing the resident ledger every {} ms, snapshotting balances every {} ms",
+                syncIntervalMillis, snapshotIntervalMillis);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Bring the ledger in line with a payment's current state on the current
+     * shard, in the caller's transaction or a new one. A payment no longer
+     * in the hot table (archived or deleted) keeps what was recorded.
+     * @return the number of entries appended
+     */
+    public int record(long paymentId) {
+        return transactionTemplate.execute(status -> {
+            List<Map<String, Object>> rows = jdbcTemplate.queryForList(PAYMENT_SQL, paymentId);
+            if (rows.isEmpty()) {
+                return 0;
+            }
+            Map<String, Object> payment = rows.get(0);
+            String paymentStatus = String.valueOf(payment.get("status"));
+            BigDecimal amount = decimal(payment.get("amount"));
+            BigDecimal charged = "CANCELLED".equals(paymentStatus) ? BigDecimal.ZERO : amount;
+            BigDecimal paid = "PAID".equals(paymentStatus) ? amount : BigDecimal.ZERO;
+
+            Map<String, Object> recorded = jdbcTemplate.queryForMap(RECORDED_SQL, paymentId);
+            BigDecimal recordedCharge = decimal(recorded.get("charged"));
+            BigDecimal chargeDelta = charged.subtract(recordedCharge);
+            BigDecimal paidDelta = paid.subtract(decimal(recorded.get("paid")));
+
+            int appended = 0;
+            if (chargeDelta.signum() != 0) {
+                EntryType type = recordedCharge.signum() == 0 ? EntryType.CHARGE
+                        : charged.signum() == 0 ? EntryType.CANCELLATION : EntryType.ADJUSTMENT;
+                // A charge takes effect when the payment was raised
+                Object effectiveAt = type == EntryType.CHARGE ? payment.get("created_at") : payment.get("updated_at");
+                append(payment, type, chargeDelta, BigDecimal.ZERO, effectiveAt);
+                appended++;
+            }
+            if (paidDelta.signum() != 0) {
+                append(payment, paidDelta.signum() > 0 ? EntryType.PAYMENT : EntryType.REFUND, BigDecimal.ZERO,
+                        paidDelta, payment.get("updated_at"));
+                appended++;
+            }
+            return appended;
+        });
+    }
+
+    /**
+     * A resident's running balance on the current shard; zero for a resident
+     * without entries
+     */
+    public Balance currentBalance(long residentId) {
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(BALANCE_SQL, residentId);
+        if (rows.isEmpty()) {
+            return new Balance(residentId, BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO, null);
+        }
+        Map<String, Object> row = rows.get(0);
+        return new Balance(residentId, decimal(row.get("total_charged")), decimal(row.get("total_paid")),
+                decimal(row.get("balance")), toDateTime(row.get("updated_at")));
+    }
+
+    /**
+     * A copy of a resident report with the resident's current balance added
+     */
+    public Map<String, Object> withCurrentBalance(Map<String, Object> report, long residentId) {
+        Map<String, Object> withBalance = new HashMap<>(report);
+        withBalance.put("balance", currentBalance(residentId));
+        return withBalance;
+    }
+
+    /**
+     * A resident's balance at the end of {@code date}: the latest snapshot
+     * taken before then, plus the entries recorded after it that took effect
+     * by then
+     */
+    public Balance balanceAt(long residentId, LocalDate date) {
+        Timestamp end = Timestamp.valueOf(date.plusDays(1).atStartOfDay());
+        List<Map<String, Object>> snapshots = jdbcTemplate.queryForList(SNAPSHOT_BEFORE_SQL, residentId, end);
+        BigDecimal charged = BigDecimal.ZERO;
+        BigDecimal paid = BigDecimal.ZERO;
+        long afterEntry = 0;
+        if (!snapshots.isEmpty()) {
+            Map<String, Object> snapshot = snapshots.get(0);
+            charged = decimal(snapshot.get("total_charged"));
+            paid = decimal(snapshot.get("total_paid"));
+            afterEntry = ((Number) snapshot.get("last_entry_id")).longValue();
+        }
+        Map<String, Object> replay = jdbcTemplate.queryForMap(REPLAY_SQL, residentId, afterEntry, end);
+        charged = charged.add(decimal(replay.get("charged")));
+        paid = paid.add(decimal(replay.get("paid")));
+        log.debug("Balance of resident {} on {} replayed {} entries after entry {}",
+                residentId, date, replay.get("entries"), afterEntry);
+        return new Balance(residentId, charged, paid, charged.subtract(paid), end.toLocalDateTime());
+    }
+
+    /**
+     * Residents of the current property by balance, highest first unless
+     * {@code ascending}
+     */
+    public List<Map<String, Object>> rankByBalance(int limit, boolean ascending) {
+        return jdbcTemplate.queryForList(String.format(RANKED_SQL, ascending ? "ASC" : "DESC"),
+                PropertyContext.currentProperty(), limit);
+    }
+
+    /**
+     * Record payments on every shard that the ledger has not seen yet, and
+     * reconcile those updated since the last sync. Payments are only taken
+     * once settle-ms old, so an insert or update that commits late is not
+     * skipped.
+     * @return payments recorded
+     */
+    public int sync() {
+        int synced = 0;
+        for (String shard : scatterGather.getShards()) {
+            try {
+                synced += PropertyContext.onShard(shard, () -> syncShard(shard) + reconcileShard(shard));
+            } catch (DataAccessException ex) {
+                log.warn("Syncing the ledger on shard {} failed: {}", shard, ex.getMessage());
+            }
+        }
+        return synced;
+    }
+
+    /**
+     * Snapshot the balances changed since their last snapshot on every shard
+     * @return snapshots taken
+     */
+    public int snapshot() {
+        int taken = 0;
+        for (String shard : scatterGather.getShards()) {
+            try {
+                int rows = PropertyContext.onShard(shard, () -> jdbcTemplate.update(SNAPSHOT_SQL));
+                taken += rows;
+                log.info("Snapshotted {} resident balances on shard {}", rows, shard);
+            } catch (DataAccessException ex) {
+                log.warn("Snapshotting balances on shard {} failed: {}", shard, ex.getMessage());
+            }
+        }
+        return taken;
+    }
+
+    private int syncShard(String shard) {
+        Timestamp settled = new Timestamp(System.currentTimeMillis() - settleMillis);
+        int synced = 0;
+        while (!Thread.currentThread().isInterrupted()) {
+            long after = syncedUpTo.getOrDefault(shard, 0L);
+            List<Long> ids = jdbcTemplate.queryForList(UNRECORDED_SQL, Long.class, after, settled, batchSize);
+            for (Long id : ids) {
+                record(id);
+                syncedUpTo.put(shard, id);
+            }
+            synced += ids.size();
+            if (ids.size() < batchSize) {
+                break;
+            }
+        }
+        if (synced > 0) {
+            log.info("Recorded {} new payments in the ledger on shard {}", synced, shard);
+        }
+        return synced;
+    }
+
+    private int reconcileShard(String shard) {
+        Timestamp from = reconciledUpTo.getOrDefault(shard, new Timestamp(0));
+        Timestamp to = new Timestamp(System.currentTimeMillis() - settleMillis);
+        int reconciled = 0;
+        long after = 0;
+        while (!Thread.currentThread().isInterrupted()) {
+            List<Long> ids = jdbcTemplate.queryForList(DRIFTED_SQL, Long.class, from, to, after, batchSize);
+            for (Long id : ids) {
+                record(id);
+                after = id;
+            }
+            reconciled += ids.size();
+            if (ids.size() < batchSize) {
+                reconciledUpTo.put(shard, to);
+                break;
+            }
+        }
+        if (reconciled > 0) {
+            log.warn("Reconciled {} payments whose ledger entries had drifted on shard {}", reconciled, shard);
+        }
+        return reconciled;
+    }
+
+    private void onChanges(List<DomainChange> changes) {
+        for (DomainChange change : changes) {
+            if (!"Payment".equals(change.getEntity()) || change.getKind() == DomainChange.Kind.DELETED) {
+                continue;
+            }
+            try {
+                PropertyContext.withProperty(change.getPropertyId(), () -> {
+                    record(change.getId());
+                });
+            } catch (DataAccessException ex) {
+                // The next sync reconciles it
+                log.warn("Recording payment {} in the ledger failed: {}", change.getId(), ex.getMessage());
+            }
+        }
+    }
+
+    private void append(Map<String, Object> payment, EntryType type, BigDecimal charged, BigDecimal paid,
+            Object effectiveAt) {
+        long residentId = ((Number) payment.get("resident_id")).longValue();
+        long propertyId = ((Number) payment.get("property_id")).longValue();
+        BigDecimal change = charged.subtract(paid);
+
+        // Lock the balance row before numbering the entry
+        if (jdbcTemplate.update(ADD_TO_BALANCE_SQL, charged, paid, change, residentId) == 0) {
+            try {
+                jdbcTemplate.update(NEW_BALANCE_SQL, residentId, propertyId, charged, paid, change);
+            } catch (DuplicateKeyException ex) {
+                // Created concurrently; now it can be locked
+                jdbcTemplate.update(ADD_TO_BALANCE_SQL, charged, paid, change, residentId);
+            }
+        }
+
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(ENTRY_SQL, Statement.RETURN_GENERATED_KEYS);
+            statement.setLong(1, propertyId);
+            statement.setLong(2, residentId);
+            statement.setLong(3, ((Number) payment.get("id")).longValue());
+            statement.setString(4, type.name());
+            statement.setBigDecimal(5, charged);
+            statement.setBigDecimal(6, paid);
+            statement.setTimestamp(7, toTimestamp(effectiveAt));
+            return statement;
+        }, keyHolder);
+        jdbcTemplate.update(LAST_ENTRY_SQL, keyHolder.getKey().longValue(), residentId);
+
+        meterRegistry.counter("ams.ledger.entries", "type", type.name()).increment();
+        log.debug("Ledger {} for payment {} of resident {}: charged {}, paid {}",
+                type, payment.get("id"), residentId, charged, paid);
+    }
+
+    private static BigDecimal decimal(Object value) {
+        if (value == null) {
+            return BigDecimal.ZERO;
+        }
+        return value instanceof BigDecimal ? (BigDecimal) value : new BigDecimal(value.toString());
+    }
+
+    private static LocalDateTime toDateTime(Object value) {
+        if (value instanceof LocalDateTime) {
+            return (LocalDateTime) value;
+        }
+        return value instanceof Timestamp ? ((Timestamp) value).toLocalDateTime() : null;
+    }
+
+    // Unknown times (e.g. rows inserted without created_at) count as now
+    private static Timestamp toTimestamp(Object value) {
+        LocalDateTime dateTime = toDateTime(value);
+        return dateTime != null ? Timestamp.valueOf(dateTime) : new Timestamp(System.currentTimeMillis());
+    }
+
+    /**
+     * Charged and paid totals and the outstanding balance as of a point in time
+     */
+    @Getter
+    @AllArgsConstructor
+    public static final class Balance {
+        private final long residentId;
+        private final BigDecimal totalCharged;
+        private final BigDecimal totalPaid;
+        private final BigDecimal balance;
+        private final LocalDateTime asOf;
+    }
+}
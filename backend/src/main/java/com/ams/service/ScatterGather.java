@@ -0,0 +1,115 @@
+package com.ams.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.ams.config.PropertyContext;
+import com.ams.config.ReplicaRoutingDataSource;
+import com.ams.config.ShardRoutingDataSource;
+import com.ams.config.ShardingProperties;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Runs a cross-property query on every shard in parallel and returns the
+ * per-shard results for the caller to merge. With a single shard the query
+ * simply runs on the calling thread.
+ */
+@Service
+@Slf4j
+public class ScatterGather {
+
+    private final ShardRoutingDataSource router;
+    private final List<String> shards;
+    private final ExecutorService executor;
+
+    @Autowired
+    public ScatterGather(DataSource dataSource, ShardingProperties properties) {
+        this.router = router(dataSource);
+        this.shards = router != null ? router.getShardNames() : List.of(ShardingProperties.PRIMARY_SHARD);
+        this.executor = shards.size() == 1 ? null : Executors.newFixedThreadPool(
+                Math.min(properties.getScatterThreads(), shards.size()), runnable -> {
+                    Thread thread = new Thread(runnable, "shard-scatter");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        log.info("Cross-property queries span shards {}", shards);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    public List<String> getShards() {
+        return shards;
+    }
+
+    /**
+     * The shard the current thread's connections go to, given its property
+     */
+    public String currentShard() {
+        return router != null ? router.currentShard() : ShardingProperties.PRIMARY_SHARD;
+    }
+
+    /**
+     * Run a query once per shard; results are in shard order, primary first
+     */
+    public <T> List<T> gather(Supplier<T> query) {
+        if (executor == null) {
+            return List.of(query.get());
+        }
+        // Replica preference is per thread; carry it to the workers
+        boolean replicaScope = ReplicaRoutingDataSource.isInReplicaScope();
+        List<CompletableFuture<T>> futures = new ArrayList<>();
+        for (String shard : shards) {
+            futures.add(CompletableFuture.supplyAsync(() -> PropertyContext.onShard(shard, () -> {
+                boolean previous = replicaScope && ReplicaRoutingDataSource.enterReplicaScope();
+                try {
+                    return query.get();
+                } finally {
+                    if (replicaScope) {
+                        ReplicaRoutingDataSource.exitReplicaScope(previous);
+                    }
+                }
+            }), executor));
+        }
+
+        List<T> results = new ArrayList<>(futures.size());
+        try {
+            for (CompletableFuture<T> future : futures) {
+                results.add(future.join());
+            }
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw ex;
+        }
+        return results;
+    }
+
+    private static ShardRoutingDataSource router(DataSource dataSource) {
+        try {
+            if (dataSource.isWrapperFor(ShardRoutingDataSource.class)) {
+                return dataSource.unwrap(ShardRoutingDataSource.class);
+            }
+        } catch (java.sql.SQLException ex) {
+            log.warn("Could not inspect data source for shards: {}", ex.getMessage());
+        }
+        return null;
+    }
+}
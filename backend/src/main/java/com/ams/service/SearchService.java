@@ -10,10 +10,17 @@ import org.springframework.cache.annotation.Cacheable;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 
+import com.ams.config.MetricsConfig;
+import com.ams.config.ReadFromReplica;
+import com.ams.jfr.SearchQueryEvent;
+
+import io.micrometer.core.annotation.Timed;
+
 import lombok.extern.slf4j.Slf4j;
 
 @Service
 @Slf4j
+@ReadFromReplica
 public class SearchService {
 
     private final JdbcTemplate jdbcTemplate;
@@ -28,12 +35,14 @@ public class SearchService {
      * @param searchTerm The search term for apartments
      * @return List of apartments matching the search
      */
-    @Cacheable(value = "apartmentSearchResults", key = "#searchTerm")
+    @Cacheable(value = "apartmentSearchResults",
+            key = "T(com.ams.config.PropertyContext).currentProperty() + '_' + #searchTerm")
+    @Timed(value = MetricsConfig.SEARCH_TIMER, extraTags = {"operation", "searchApartments"})
     public List<Map<String, Object>> searchApartments(String searchTerm) {
         log.debug("Searching apartments with term: {}", searchTerm);
         
         String sql = "SELECT * FROM apartments WHERE MATCH(name, description) AGAINST(? IN NATURAL LANGUAGE MODE)";
-        return jdbcTemplate.queryForList(sql, searchTerm);
+        return query("searchApartments", sql, searchTerm);
     }
     
     /**
@@ -41,7 +50,9 @@ public class SearchService {
      * @param searchTerm The search term for complaints
      * @return List of complaints matching the search
      */
-    @Cacheable(value = "complaintSearchResults", key = "#searchTerm")
+    @Cacheable(value = "complaintSearchResults",
+            key = "T(com.ams.config.PropertyContext).currentProperty() + '_' + #searchTerm")
+    @Timed(value = MetricsConfig.SEARCH_TIMER, extraTags = {"operation", "searchComplaints"})
     public List<Map<String, Object>> searchComplaints(String searchTerm) {
         log.debug("Searching complaints with term: {}", searchTerm);
         
@@ -50,7 +61,7 @@ public class SearchService {
                      "JOIN users u ON c.resident_id = u.id " +
                      "JOIN apartments a ON c.apartment_id = a.id " +
                      "WHERE MATCH(c.title, c.description) AGAINST(? IN NATURAL LANGUAGE MODE)";
-        return jdbcTemplate.queryForList(sql, searchTerm);
+        return query("searchComplaints", sql, searchTerm);
     }
     
     /**
@@ -58,7 +69,9 @@ public class SearchService {
      * @param searchTerm The search term for announcements
      * @return List of announcements matching the search
      */
-    @Cacheable(value = "announcementSearchResults", key = "#searchTerm")
+    @Cacheable(value = "announcementSearchResults",
+            key = "T(com.ams.config.PropertyContext).currentProperty() + '_' + #searchTerm")
+    @Timed(value = MetricsConfig.SEARCH_TIMER, extraTags = {"operation", "searchAnnouncements"})
     public List<Map<String, Object>> searchAnnouncements(String searchTerm) {
         log.debug("Searching announcements with term: {}", searchTerm);
         
@@ -68,7 +81,7 @@ public class SearchService {
                      "WHERE MATCH(a.title, a.content) AGAINST(? IN NATURAL LANGUAGE MODE) " +
                      "AND a.active = true " +
                      "AND (a.expiry_date IS NULL OR a.expiry_date > NOW())";
-        return jdbcTemplate.queryForList(sql, searchTerm);
+        return query("searchAnnouncements", sql, searchTerm);
     }
     
     /**
@@ -76,7 +89,9 @@ public class SearchService {
      * @param searchTerm The search term for users
      * @return List of users matching the search
      */
-    @Cacheable(value = "userSearchResults", key = "#searchTerm")
+    @Cacheable(value = "userSearchResults",
+            key = "T(com.ams.config.PropertyContext).currentProperty() + '_' + #searchTerm")
+    @Timed(value = MetricsConfig.SEARCH_TIMER, extraTags = {"operation", "searchUsers"})
     public List<Map<String, Object>> searchUsers(String searchTerm) {
         log.debug("Searching users with term: {}", searchTerm);
         
@@ -86,7 +101,7 @@ public class SearchService {
                      "WHERE (first_name LIKE ? OR last_name LIKE ? OR email LIKE ?) " +
                      "AND active = true";
         String term = "%" + searchTerm + "%";
-        return jdbcTemplate.queryForList(sql, term, term, term);
+        return query("searchUsers", sql, term, term, term);
     }
     
     /**
@@ -94,6 +109,7 @@ public class SearchService {
      * @param searchTerm The global search term
      * @return Map containing search results from different entities
      */
+    @Timed(value = MetricsConfig.SEARCH_TIMER, extraTags = {"operation", "globalSearch"})
     public Map<String, List<Map<String, Object>>> globalSearch(String searchTerm) {
         log.debug("Performing global search with term: {}", searchTerm);
         
@@ -104,4 +120,22 @@ public class SearchService {
             "users", searchUsers(searchTerm)
         );
     }
-} 
\ No newline at end of file
+    
+    /**
+     * Run a search query and record it as a JFR event
+     */
+    private List<Map<String, Object>> query(String operation, String sql, Object... args) {
+        SearchQueryEvent event = new SearchQueryEvent();
+        event.begin();
+        
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(sql, args);
+        
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = operation;
+            event.rows = rows.size();
+            event.commit();
+        }
+        return rows;
+    }
+}
\ No newline at end of file
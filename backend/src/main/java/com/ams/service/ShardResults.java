@@ -0,0 +1,77 @@
+package com.ams.service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.util.LinkedCaseInsensitiveMap;
+
+/**
+ * Merges the rows one query returned on each shard into the answer the
+ * query would have given against a single database
+ */
+final class ShardResults {
+
+    private ShardResults() {
+    }
+
+    static List<Map<String, Object>> concat(List<List<Map<String, Object>>> parts) {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        parts.forEach(rows::addAll);
+        return rows;
+    }
+
+    /**
+     * Add up single aggregate rows column by column; non-numeric columns keep
+     * the first shard's value
+     */
+    static Map<String, Object> sumRows(List<Map<String, Object>> rows) {
+        Map<String, Object> total = new LinkedCaseInsensitiveMap<>();
+        for (Map<String, Object> row : rows) {
+            row.forEach((column, value) -> total.put(column, add(total.get(column), value)));
+        }
+        return total;
+    }
+
+    /**
+     * Add up {@code GROUP BY} results, matching groups on one column
+     */
+    static List<Map<String, Object>> sumGroups(List<List<Map<String, Object>>> parts, String groupColumn) {
+        Map<Object, List<Map<String, Object>>> groups = new LinkedHashMap<>();
+        for (List<Map<String, Object>> part : parts) {
+            for (Map<String, Object> row : part) {
+                groups.computeIfAbsent(row.get(groupColumn), group -> new ArrayList<>()).add(row);
+            }
+        }
+        List<Map<String, Object>> merged = new ArrayList<>(groups.size());
+        groups.values().forEach(rows -> merged.add(sumRows(rows)));
+        return merged;
+    }
+
+    static double doubleValue(Map<String, Object> row, String column) {
+        Object value = row.get(column);
+        return value instanceof Number ? ((Number) value).doubleValue() : 0;
+    }
+
+    private static Object add(Object left, Object right) {
+        if (left == null || right == null) {
+            return left != null ? left : right;
+        }
+        if (!(left instanceof Number) || !(right instanceof Number)) {
+            return left;
+        }
+        if (left instanceof BigDecimal || right instanceof BigDecimal) {
+            return toBigDecimal((Number) left).add(toBigDecimal((Number) right));
+        }
+        if (left instanceof Double || left instanceof Float || right instanceof Double || right instanceof Float) {
+            return ((Number) left).doubleValue() + ((Number) right).doubleValue();
+        }
+        return ((Number) left).longValue() + ((Number) right).longValue();
+    }
+
+    private static BigDecimal toBigDecimal(Number number) {
+        return number instanceof BigDecimal ? (BigDecimal) number : new BigDecimal(number.toString());
+    }
+}
@@ -0,0 +1,126 @@
+package com.ams.service;
+
+import java.util.Properties;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.internet.MimeMessage;
+
+import com.ams.config.NotificationProperties;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A bounded set of open SMTP connections. Opening a connection costs a TCP
+ * handshake, the greeting, EHLO and possibly STARTTLS and AUTH, so
+ * connections are kept and reused across messages and dispatch rounds;
+ * one found closed by the server is replaced on borrow.
+ */
+@Slf4j
+public class SmtpConnectionPool implements AutoCloseable {
+
+    private final NotificationProperties.Smtp smtp;
+    private final Session session;
+    private final Semaphore permits;
+    private final BlockingDeque<Transport> idle = new LinkedBlockingDeque<>();
+
+    public SmtpConnectionPool(NotificationProperties.Smtp smtp) {
+        this.smtp = smtp;
+        Properties properties = new Properties();
+        properties.put("mail.transport.protocol", "smtp");
+        properties.put("mail.smtp.host", smtp.getHost());
+        properties.put("mail.smtp.port", String.valueOf(smtp.getPort()));
+        properties.put("mail.smtp.auth", String.valueOf(!smtp.getUsername().isEmpty()));
+        properties.put("mail.smtp.starttls.enable", String.valueOf(smtp.isStarttls()));
+        properties.put("mail.smtp.connectiontimeout", String.valueOf(smtp.getTimeoutMs()));
+        properties.put("mail.smtp.timeout", String.valueOf(smtp.getTimeoutMs()));
+        properties.put("mail.smtp.writetimeout", String.valueOf(smtp.getTimeoutMs()));
+        this.session = Session.getInstance(properties);
+        this.permits = new Semaphore(smtp.getConnections());
+    }
+
+    public Session getSession() {
+        return session;
+    }
+
+    /**
+     * Send messages over one pooled connection, waiting for a free one.
+     * Each message's outcome is reported separately; a failure that breaks
+     * the connection also fails the messages after it.
+     * @return the failure of each message, null where it was accepted
+     */
+    public MessagingException[] send(MimeMessage[] messages) throws InterruptedException {
+        MessagingException[] failures = new MessagingException[messages.length];
+        permits.acquire();
+        Transport transport = null;
+        try {
+            for (int i = 0; i < messages.length; i++) {
+                try {
+                    if (transport == null) {
+                        transport = borrow();
+                    }
+                    transport.sendMessage(messages[i], messages[i].getAllRecipients());
+                } catch (MessagingException ex) {
+                    failures[i] = ex;
+                    if (transport != null && !isConnected(transport)) {
+                        closeQuietly(transport);
+                        transport = null;
+                    }
+                }
+            }
+        } finally {
+            if (transport != null) {
+                idle.offerFirst(transport);
+            }
+            permits.release();
+        }
+        return failures;
+    }
+
+    @Override
+    public void close() {
+        Transport transport;
+        while ((transport = idle.pollFirst()) != null) {
+            closeQuietly(transport);
+        }
+    }
+
+    private Transport borrow() throws MessagingException {
+        Transport transport;
+        while ((transport = idle.pollFirst()) != null) {
+            // isConnected() sends a NOOP, catching connections the server dropped while idle
+            if (isConnected(transport)) {
+                return transport;
+            }
+            closeQuietly(transport);
+        }
+        transport = session.getTransport();
+        if (smtp.getUsername().isEmpty()) {
+            transport.connect();
+        } else {
+            transport.connect(smtp.getHost(), smtp.getPort(), smtp.getUsername(), smtp.getPassword());
+        }
+        log.debug("Opened SMTP connection to {}:{}", smtp.getHost(), smtp.getPort());
+        return transport;
+    }
+
+    private static boolean isConnected(Transport transport) {
+        try {
+            return transport.isConnected();
+        } catch (RuntimeException ex) {
+            return false;
+        }
+    }
+
+    private static void closeQuietly(Transport transport) {
+        try {
+            transport.close();
+        } catch (MessagingException ex) {
+            log.debug("Closing SMTP connection failed: {}", ex.getMessage());
+        }
+    }
+}
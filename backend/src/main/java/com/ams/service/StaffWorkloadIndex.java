@@ -0,0 +1,233 @@
+package com.ams.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import com.ams.model.Complaint.Category;
+import com.ams.model.Complaint.Priority;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * In-memory workload of every staff member (users with the ADMIN role),
+ * measured as the weighted sum of their open complaints. Staff are kept in
+ * a skip list ordered by load, so the least loaded one is found in O(1) and
+ * each change costs O(log staff) regardless of complaint history.
+ *
+ * Staff live on their property's shard like every other user, and a
+ * complaint can only reference an assignee on its own shard, so each shard
+ * has its own skip list and assignment picks from the caller's shard.
+ *
+ * Writers are serialized; lookups are lock-free. The index is rebuilt from
+ * every shard at startup.
+ */
+@Service
+@Slf4j
+public class StaffWorkloadIndex {
+
+    private static final Map<Priority, Integer> PRIORITY_WEIGHTS = new EnumMap<>(Priority.class);
+    private static final Map<Category, Integer> CATEGORY_WEIGHTS = new EnumMap<>(Category.class);
+
+    static {
+        PRIORITY_WEIGHTS.put(Priority.LOW, 1);
+        PRIORITY_WEIGHTS.put(Priority.MEDIUM, 2);
+        PRIORITY_WEIGHTS.put(Priority.HIGH, 4);
+        PRIORITY_WEIGHTS.put(Priority.CRITICAL, 8);
+
+        // Trade work that needs a site visit costs more than a noise report
+        CATEGORY_WEIGHTS.put(Category.PLUMBING, 3);
+        CATEGORY_WEIGHTS.put(Category.ELECTRICAL, 3);
+        CATEGORY_WEIGHTS.put(Category.HVAC, 3);
+        CATEGORY_WEIGHTS.put(Category.SECURITY, 3);
+        CATEGORY_WEIGHTS.put(Category.MAINTENANCE, 2);
+        CATEGORY_WEIGHTS.put(Category.APPLIANCE, 2);
+        CATEGORY_WEIGHTS.put(Category.NOISE, 1);
+        CATEGORY_WEIGHTS.put(Category.OTHER, 1);
+    }
+
+    private static final String STAFF_SQL = "SELECT id FROM users WHERE role = 'ADMIN'";
+    private static final String OPEN_COMPLAINTS_SQL = "SELECT id, assigned_to_id, priority, category FROM complaints "
+            + "WHERE assigned_to_id IS NOT NULL AND status IN ('PENDING', 'IN_PROGRESS')";
+
+    private static final Comparator<Workload> BY_LOAD = Comparator.comparingLong(Workload::getLoad)
+            .thenComparingInt(Workload::getOpenComplaints)
+            .thenComparingLong(Workload::getStaffId);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ScatterGather scatterGather;
+    private final Map<Long, Workload> workloads = new ConcurrentHashMap<>();
+    // Staff of each shard, least loaded first
+    private final Map<String, ConcurrentSkipListSet<Workload>> byLoad = new ConcurrentHashMap<>();
+    private final Map<Long, OpenComplaint> openComplaints = new ConcurrentHashMap<>();
+
+    @Autowired
+    public StaffWorkloadIndex(DataSource dataSource, ScatterGather scatterGather) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.scatterGather = scatterGather;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        try {
+            rebuild();
+        } catch (DataAccessException ex) {
+            log.warn("Staff workload index not loaded: {}", ex.getMessage());
+        }
+    }
+
+    /**
+     * Reload staff and their open complaints from every shard
+     */
+    public synchronized void rebuild() {
+        workloads.clear();
+        byLoad.clear();
+        openComplaints.clear();
+        List<String> shards = scatterGather.getShards();
+        List<List<Long>> staff = scatterGather.gather(() -> jdbcTemplate.queryForList(STAFF_SQL, Long.class));
+        for (int i = 0; i < shards.size(); i++) {
+            for (Long staffId : staff.get(i)) {
+                register(shards.get(i), staffId);
+            }
+        }
+        scatterGather.gather(() -> jdbcTemplate.query(OPEN_COMPLAINTS_SQL, (rs, rowNum) -> new Object[] {
+            rs.getLong("id"), rs.getLong("assigned_to_id"),
+            Priority.valueOf(rs.getString("priority")), Category.valueOf(rs.getString("category"))
+        })).forEach(rows -> rows.forEach(row -> track((Long) row[0], (Long) row[1], (Priority) row[2],
+                (Category) row[3])));
+        log.info("Staff workload index rebuilt: {} staff, {} open complaints", workloads.size(), openComplaints.size());
+    }
+
+    /**
+     * Weight of one open complaint
+     */
+    public static int weight(Priority priority, Category category) {
+        return PRIORITY_WEIGHTS.get(priority) * CATEGORY_WEIGHTS.get(category);
+    }
+
+    /**
+     * Assign a complaint to the least loaded staff member on the current
+     * property's shard and count it against them straight away, so
+     * concurrent assignments spread out
+     */
+    public synchronized Optional<Long> assignLeastLoaded(Long complaintId, Priority priority, Category category) {
+        Optional<Long> staffId = findLeastLoaded();
+        staffId.ifPresent(id -> track(complaintId, id, priority, category));
+        return staffId;
+    }
+
+    /**
+     * Count an open complaint against a staff member, replacing any earlier
+     * assignment of the same complaint. Complaints held by users who are not
+     * staff are not counted, so those users never become assignment targets.
+     */
+    public synchronized void track(Long complaintId, Long staffId, Priority priority, Category category) {
+        untrack(complaintId);
+        if (!workloads.containsKey(staffId)) {
+            return;
+        }
+        int weight = weight(priority, category);
+        openComplaints.put(complaintId, new OpenComplaint(staffId, weight));
+        adjust(staffId, weight, 1);
+    }
+
+    /**
+     * Stop counting a complaint once it is resolved, cancelled or unassigned
+     */
+    public synchronized void untrack(Long complaintId) {
+        OpenComplaint complaint = openComplaints.remove(complaintId);
+        if (complaint != null) {
+            adjust(complaint.getStaffId(), -complaint.getWeight(), -1);
+        }
+    }
+
+    /**
+     * Make a new staff member of the current property's shard eligible for
+     * assignment
+     */
+    public synchronized void addStaff(Long staffId) {
+        if (!workloads.containsKey(staffId)) {
+            register(scatterGather.currentShard(), staffId);
+        }
+    }
+
+    /**
+     * Get the least loaded staff member on the current property's shard
+     * without assigning anything
+     */
+    public Optional<Long> findLeastLoaded() {
+        ConcurrentSkipListSet<Workload> staff = byLoad.get(scatterGather.currentShard());
+        if (staff == null) {
+            return Optional.empty();
+        }
+        // Iterating avoids the race between isEmpty() and first()
+        for (Workload workload : staff) {
+            return Optional.of(workload.getStaffId());
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Get every staff member's workload across all shards, least loaded first
+     */
+    public List<Workload> getWorkloads() {
+        List<Workload> all = new ArrayList<>(workloads.values());
+        all.sort(BY_LOAD);
+        return all;
+    }
+
+    private void register(String shard, Long staffId) {
+        Workload workload = new Workload(staffId, shard, 0, 0);
+        workloads.put(staffId, workload);
+        byLoad.computeIfAbsent(shard, name -> new ConcurrentSkipListSet<>(BY_LOAD)).add(workload);
+    }
+
+    private void adjust(Long staffId, long loadDelta, int countDelta) {
+        Workload current = workloads.get(staffId);
+        if (current == null) {
+            return;
+        }
+        ConcurrentSkipListSet<Workload> staff = byLoad.get(current.getShard());
+        staff.remove(current);
+        Workload updated = new Workload(staffId, current.getShard(), current.getLoad() + loadDelta,
+                current.getOpenComplaints() + countDelta);
+        workloads.put(staffId, updated);
+        staff.add(updated);
+    }
+
+    /**
+     * Immutable workload snapshot; replaced rather than mutated so the skip
+     * list ordering stays valid
+     */
+    @Getter
+    @AllArgsConstructor
+    public static final class Workload {
+        private final Long staffId;
+        private final String shard;
+        private final long load;
+        private final int openComplaints;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private static final class OpenComplaint {
+        private final Long staffId;
+        private final int weight;
+    }
+}
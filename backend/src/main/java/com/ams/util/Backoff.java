@@ -0,0 +1,32 @@
+package com.ams.util;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Jittered exponential backoff between retries
+ */
+public final class Backoff {
+
+    private Backoff() {
+    }
+
+    /**
+     * Sleep for a random time up to {@code baseMillis * 2^(attempt - 1)}
+     */
+    public static void pause(int attempt, long baseMillis) {
+        try {
+            Thread.sleep(delayMillis(attempt, baseMillis));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The random delay {@link #pause} would sleep, for retries that are
+     * scheduled rather than waited for
+     */
+    public static long delayMillis(int attempt, long baseMillis) {
+        long ceiling = baseMillis << Math.min(attempt - 1, 6);
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+}
@@ -0,0 +1,171 @@
+package com.ams.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Circuit breaker over a count-based window of the most recent calls.
+ *
+ * While closed, every call is let through and its outcome recorded; once the
+ * window holds enough calls and either the share of failed calls or the
+ * share of slow calls reaches its threshold, the circuit opens and rejects
+ * calls outright. After the open duration a few probe calls are let through
+ * (half-open): if all of them succeed in time the circuit closes with an
+ * empty window, otherwise it opens again.
+ *
+ * Every state change starts a new epoch, and a permit carries the epoch it
+ * was granted in, so an outcome that arrives after the state has moved on
+ * (a slow call admitted before the circuit opened) is ignored.
+ */
+@Slf4j
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        HALF_OPEN,
+        OPEN
+    }
+
+    private static final byte FAILED = 1;
+    private static final byte SLOW = 2;
+
+    private final String name;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final double slowCallRateThreshold;
+    private final long slowCallNanos;
+    private final long openNanos;
+    private final int halfOpenProbes;
+
+    // Guarded by this
+    private final byte[] window;
+    private int next;
+    private int calls;
+    private int failures;
+    private int slowCalls;
+    private State state = State.CLOSED;
+    private long epoch;
+    private long openedAt;
+    private int probesInFlight;
+    private int probesSucceeded;
+
+    public CircuitBreaker(String name, int windowSize, int minimumCalls, double failureRateThreshold,
+            double slowCallRateThreshold, long slowCallNanos, long openNanos, int halfOpenProbes) {
+        this.name = name;
+        this.window = new byte[windowSize];
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.slowCallNanos = slowCallNanos;
+        this.openNanos = openNanos;
+        this.halfOpenProbes = halfOpenProbes;
+    }
+
+    /**
+     * Ask to make a call
+     * @return a permit to pass to {@link #onResult} or {@link #release}, or
+     *         -1 when the call is rejected
+     */
+    public synchronized long tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAt < openNanos) {
+                return -1;
+            }
+            transition(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (probesInFlight + probesSucceeded >= halfOpenProbes) {
+                return -1;
+            }
+            probesInFlight++;
+        }
+        return epoch;
+    }
+
+    /**
+     * Record the outcome of a permitted call
+     * @param failed whether the call failed in a way the breaker guards against
+     */
+    public synchronized void onResult(long permit, long nanos, boolean failed) {
+        if (permit != epoch) {
+            return;
+        }
+        boolean slow = nanos > slowCallNanos;
+        if (state == State.HALF_OPEN) {
+            probesInFlight--;
+            if (failed || slow) {
+                log.warn("Circuit {} probe {} after {} ms; opening again", name, failed ? "failed" : "was slow",
+                        nanos / 1_000_000);
+                transition(State.OPEN);
+            } else if (++probesSucceeded >= halfOpenProbes) {
+                transition(State.CLOSED);
+            }
+            return;
+        }
+
+        byte outcome = (byte) ((failed ? FAILED : 0) | (slow ? SLOW : 0));
+        if (calls == window.length) {
+            failures -= window[next] & FAILED;
+            slowCalls -= (window[next] & SLOW) >> 1;
+        } else {
+            calls++;
+        }
+        window[next] = outcome;
+        failures += outcome & FAILED;
+        slowCalls += (outcome & SLOW) >> 1;
+        next = (next + 1) % window.length;
+
+        if (calls >= minimumCalls && (failures >= failureRateThreshold * calls
+                || slowCalls >= slowCallRateThreshold * calls)) {
+            log.warn("Circuit {} opening: {} of the last {} calls failed, {} were slow",
+                    name, failures, calls, slowCalls);
+            transition(State.OPEN);
+        }
+    }
+
+    /**
+     * Give back a permit whose call never ran
+     */
+    public synchronized void release(long permit) {
+        if (permit == epoch && state == State.HALF_OPEN) {
+            probesInFlight--;
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Failed calls in the window as a fraction, 0 while the window is empty
+     */
+    public synchronized double getFailureRate() {
+        return calls == 0 ? 0 : (double) failures / calls;
+    }
+
+    public synchronized double getSlowCallRate() {
+        return calls == 0 ? 0 : (double) slowCalls / calls;
+    }
+
+    public synchronized int getCalls() {
+        return calls;
+    }
+
+    private void transition(State target) {
+        if (target == State.CLOSED) {
+            log.info("Circuit {} closed", name);
+        } else if (target == State.HALF_OPEN) {
+            log.info("Circuit {} half-open; letting {} probes through", name, halfOpenProbes);
+        }
+        state = target;
+        epoch++;
+        if (target == State.OPEN) {
+            openedAt = System.nanoTime();
+        }
+        probesInFlight = 0;
+        probesSucceeded = 0;
+        calls = 0;
+        failures = 0;
+        slowCalls = 0;
+        next = 0;
+    }
+}
@@ -0,0 +1,119 @@
+package com.ams.util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Hashed timer wheel for large numbers of coarse deadlines. Scheduling and
+ * cancelling are O(1); a single daemon thread advances the wheel once per
+ * tick and fires the timeouts that fall due, so deadlines are accurate to
+ * one tick. Deadlines further away than one revolution wait out the extra
+ * rounds in their bucket.
+ *
+ * Ticks follow the scheduler's monotonic clock, not the wall clock, so a
+ * wall-clock deadline is converted to ticks from the time it is scheduled.
+ * Callers comparing against the wall clock when a timeout fires should
+ * expect it up to a tick early or late, and reschedule if it is early.
+ */
+@Slf4j
+public class HashedTimerWheel<T> {
+
+    private final long tickMillis;
+    private final List<List<Timeout<T>>> buckets;
+    private final Queue<Timeout<T>> pending = new ConcurrentLinkedQueue<>();
+    private final Consumer<T> onExpiry;
+    private final ScheduledExecutorService ticker;
+    private volatile long tick;
+
+    public HashedTimerWheel(long tickMillis, int wheelSize, String threadName, Consumer<T> onExpiry) {
+        this.tickMillis = tickMillis;
+        this.buckets = new ArrayList<>(wheelSize);
+        for (int i = 0; i < wheelSize; i++) {
+            buckets.add(new ArrayList<>());
+        }
+        this.onExpiry = onExpiry;
+        this.ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, threadName);
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(this::advance, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Fire {@code item} at the given wall-clock time; past deadlines fire on
+     * the next tick
+     */
+    public Timeout<T> schedule(T item, long deadlineMillis) {
+        long delayMillis = Math.max(0, deadlineMillis - System.currentTimeMillis());
+        long deadlineTick = tick + (delayMillis + tickMillis - 1) / tickMillis;
+        Timeout<T> timeout = new Timeout<>(item, deadlineTick);
+        pending.add(timeout);
+        return timeout;
+    }
+
+    public void stop() {
+        ticker.shutdownNow();
+    }
+
+    private void advance() {
+        tick++;
+        for (Timeout<T> timeout; (timeout = pending.poll()) != null; ) {
+            if (!timeout.cancelled) {
+                long due = Math.max(timeout.deadlineTick, tick);
+                timeout.remainingRounds = (due - tick) / buckets.size();
+                buckets.get((int) (due % buckets.size())).add(timeout);
+            }
+        }
+
+        Iterator<Timeout<T>> bucket = buckets.get((int) (tick % buckets.size())).iterator();
+        while (bucket.hasNext()) {
+            Timeout<T> timeout = bucket.next();
+            if (timeout.cancelled) {
+                bucket.remove();
+            } else if (timeout.remainingRounds <= 0) {
+                bucket.remove();
+                try {
+                    onExpiry.accept(timeout.item);
+                } catch (RuntimeException ex) {
+                    // Caught per timeout: thrown out of the loop it would strand the rest of the
+                    // bucket, and out of advance() it would cancel the fixed-rate schedule
+                    log.error("Timer wheel expiry callback failed", ex);
+                }
+            } else {
+                timeout.remainingRounds--;
+            }
+        }
+    }
+
+    /**
+     * Handle to a scheduled item
+     */
+    public static final class Timeout<T> {
+        private final T item;
+        private final long deadlineTick;
+        private long remainingRounds;
+        private volatile boolean cancelled;
+
+        private Timeout(T item, long deadlineTick) {
+            this.item = item;
+            this.deadlineTick = deadlineTick;
+        }
+
+        /**
+         * Cancelled timeouts are dropped lazily when the wheel reaches them
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+}
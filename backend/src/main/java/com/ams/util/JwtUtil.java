@@ -15,6 +15,7 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
+import com.ams.jfr.TokenVerificationEvent;
 import com.ams.model.User;
 
 import io.jsonwebtoken.Claims;
@@ -83,11 +84,7 @@ public class JwtUtil {
     
     public boolean validateToken(String token) {
         try {
-            Key key = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
-            Jwts.parserBuilder()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token);
+            extractAllClaims(token);
             return true;
         } catch (SignatureException ex) {
             logger.error("Invalid JWT signature");
@@ -127,12 +124,20 @@ public class JwtUtil {
     }
     
     private Claims extractAllClaims(String token) {
-        Key key = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
-        return Jwts.parserBuilder()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        TokenVerificationEvent event = new TokenVerificationEvent();
+        event.begin();
+        try {
+            Key key = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+            Claims claims = Jwts.parserBuilder()
+                    .setSigningKey(key)
+                    .build()
+                    .parseClaimsJws(token)
+                    .getBody();
+            event.valid = true;
+            return claims;
+        } finally {
+            event.commit();
+        }
     }
     
     private Boolean isTokenExpired(String token) {
@@ -0,0 +1,580 @@
+package com.ams.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.StampedLock;
+import java.util.zip.CRC32;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Persistent byte store for cache entries: an append-only log in
+ * memory-mapped segment files, with an off-heap open-addressing index from
+ * key hash to record location.
+ *
+ * Every put, remove and clear appends a checksummed record, so reopening the
+ * directory replays the segments into the index at memory speed and the
+ * store survives restarts. Lookups read the index under an optimistic stamp
+ * and copy the value straight out of the mapping. Each entry carries its
+ * expiry time. A background task rewrites the live entries of segments that
+ * fall below {@code compactBelow} live bytes and deletes them; segments are
+ * compacted oldest first so that removals and clears are never lost while an
+ * older segment could still replay what they hid.
+ *
+ * Writes are not forced to disk: a process restart keeps everything in the
+ * page cache, a machine crash may lose the tail, and a torn or corrupt
+ * record simply ends the replay of its segment.
+ */
+@Slf4j
+public class MappedLogStore implements Closeable {
+
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+    private static final byte CLEAR = 3;
+    // Length, type, expiry, key length
+    private static final int HEADER_BYTES = 4 + 1 + 8 + 4;
+    private static final int CRC_BYTES = 4;
+    private static final int SLOT_BYTES = 16;
+    private static final long REMOVED = -1;
+    private static final byte[] EMPTY = new byte[0];
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final int initialSlots;
+    private final double compactBelow;
+    private final ConcurrentSkipListMap<Integer, Segment> segments = new ConcurrentSkipListMap<>();
+    private final StampedLock lock = new StampedLock();
+    private final ScheduledExecutorService compactor;
+
+    // Guarded by lock; the reference is volatile so optimistic readers see
+    // a resized table
+    private volatile ByteBuffer index;
+    private int usedSlots;
+    private int entries;
+    private Segment current;
+
+    /**
+     * Open the store in {@code directory}, replaying any segments already
+     * there
+     * @param segmentBytes size of each segment file; larger records are not
+     *        stored
+     * @param initialSlots index slots to start with, a power of two
+     */
+    public MappedLogStore(Path directory, int segmentBytes, int initialSlots, double compactBelow,
+            long compactionIntervalMillis, String threadName) throws IOException {
+        if (initialSlots < 1 || Integer.bitCount(initialSlots) != 1) {
+            throw new IllegalArgumentException("Index slots must be a power of two: " + initialSlots);
+        }
+        this.directory = Files.createDirectories(directory);
+        this.segmentBytes = segmentBytes;
+        this.initialSlots = initialSlots;
+        this.compactBelow = compactBelow;
+        this.index = ByteBuffer.allocateDirect(initialSlots * SLOT_BYTES);
+
+        long start = System.nanoTime();
+        replay();
+        log.info("Opened {} with {} entries in {} segments in {} ms", directory, entries, segments.size(),
+                (System.nanoTime() - start) / 1_000_000);
+
+        this.compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, threadName);
+            thread.setDaemon(true);
+            return thread;
+        });
+        compactor.scheduleWithFixedDelay(this::compact, compactionIntervalMillis, compactionIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * The value stored under {@code key}, or null when absent or expired
+     */
+    public byte[] get(byte[] key) {
+        long hash = hash(key);
+        long stamp = lock.tryOptimisticRead();
+        long location = locate(hash);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                location = locate(hash);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return location > 0 ? read(location, key, System.currentTimeMillis()) : null;
+    }
+
+    /**
+     * Store {@code value} under {@code key} for {@code ttlMillis}
+     * @return false when the entry is larger than a segment
+     */
+    public boolean put(byte[] key, byte[] value, long ttlMillis) throws IOException {
+        byte[] record = encode(PUT, System.currentTimeMillis() + ttlMillis, key, value);
+        if (record.length > segmentBytes) {
+            return false;
+        }
+        long hash = hash(key);
+        long stamp = lock.writeLock();
+        try {
+            long location = append(record);
+            release(indexPut(hash, location));
+            current.live += record.length;
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void remove(byte[] key) throws IOException {
+        long hash = hash(key);
+        long stamp = lock.writeLock();
+        try {
+            int slot = findSlot(hash);
+            long previous = slot < 0 ? 0 : index.getLong(slot * SLOT_BYTES + 8);
+            if (previous <= 0) {
+                return;
+            }
+            // The removal only has to outlive the entry it hides
+            long expiresAt = recordAt(previous).getLong(4 + 1);
+            if (expiresAt > System.currentTimeMillis()) {
+                append(encode(REMOVE, expiresAt, key, EMPTY));
+            }
+            index.putLong(slot * SLOT_BYTES + 8, REMOVED);
+            entries--;
+            release(previous);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void clear() throws IOException {
+        long stamp = lock.writeLock();
+        try {
+            append(encode(CLEAR, 0, EMPTY, EMPTY));
+            current.hasClear = true;
+            resetIndex();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Entries in the index, including expired ones not yet compacted
+     */
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return entries;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Bytes written to the segments, live or not
+     */
+    public long usedBytes() {
+        long stamp = lock.readLock();
+        try {
+            return segments.values().stream().mapToLong(segment -> segment.position).sum();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        compactor.shutdownNow();
+        long stamp = lock.writeLock();
+        try {
+            for (Segment segment : segments.values()) {
+                segment.channel.close();
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Rewrite sparse segments, oldest first. A segment holding a clear is
+     * only dropped once no older segment is left for it to hide.
+     */
+    void compact() {
+        try {
+            for (Segment segment : new ArrayList<>(segments.values())) {
+                long stamp = lock.writeLock();
+                try {
+                    if (segment == current) {
+                        return;
+                    }
+                    boolean oldest = segment.id == segments.firstKey();
+                    if (segment.hasClear && !oldest || segment.live >= segment.position * compactBelow) {
+                        continue;
+                    }
+                    compact(segment, oldest);
+                } finally {
+                    lock.unlockWrite(stamp);
+                }
+            }
+        } catch (IOException | RuntimeException ex) {
+            log.warn("Compaction of {} failed: {}", directory, ex.getMessage());
+        }
+    }
+
+    private void compact(Segment segment, boolean oldest) throws IOException {
+        long now = System.currentTimeMillis();
+        int moved = 0;
+        for (int offset = 0; offset < segment.position; ) {
+            ByteBuffer record = segment.slice(offset);
+            int length = record.getInt(0);
+            byte type = record.get(4);
+            long expiresAt = record.getLong(4 + 1);
+            long hash = hash(keyOf(record));
+            long location = location(segment.id, offset);
+            if (type == PUT) {
+                int slot = findSlot(hash);
+                if (slot >= 0 && index.getLong(slot * SLOT_BYTES + 8) == location) {
+                    if (expiresAt > now) {
+                        long relocated = append(bytesOf(record, length));
+                        index.putLong(slot * SLOT_BYTES + 8, relocated);
+                        current.live += length;
+                        moved++;
+                    } else {
+                        index.putLong(slot * SLOT_BYTES + 8, REMOVED);
+                        entries--;
+                    }
+                }
+            } else if (type == REMOVE && !oldest && expiresAt > now && locate(hash) <= 0) {
+                // An older segment may still hold the entry this removal hides
+                append(bytesOf(record, length));
+            }
+            offset += length;
+        }
+        segments.remove(segment.id);
+        segment.channel.close();
+        Files.deleteIfExists(segment.path);
+        log.debug("Compacted {} moving {} live entries", segment.path, moved);
+    }
+
+    private void replay() throws IOException {
+        List<Integer> ids = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    ids.add(Integer.parseInt(name.substring(SEGMENT_PREFIX.length(),
+                            name.length() - SEGMENT_SUFFIX.length())));
+                } catch (NumberFormatException ex) {
+                    log.warn("Ignoring unexpected file {}", file);
+                }
+            }
+        }
+        ids.sort(null);
+
+        for (int id : ids) {
+            Segment segment = openSegment(id);
+            segments.put(id, segment);
+            current = segment;
+            CRC32 crc = new CRC32();
+            int offset = 0;
+            while (offset + HEADER_BYTES + CRC_BYTES <= segment.capacity()) {
+                ByteBuffer record = segment.slice(offset);
+                int length = record.getInt(0);
+                if (length < HEADER_BYTES + CRC_BYTES || offset + length > segment.capacity()) {
+                    break;
+                }
+                byte[] bytes = bytesOf(record, length);
+                crc.reset();
+                crc.update(bytes, 4, length - 4 - CRC_BYTES);
+                if ((int) crc.getValue() != record.getInt(length - CRC_BYTES)) {
+                    break;
+                }
+                apply(segment, offset, record);
+                offset += length;
+            }
+            segment.position = offset;
+        }
+
+        if (current == null) {
+            current = openSegment(1);
+            segments.put(1, current);
+        } else if (current.position + 4 <= current.capacity() && current.buffer.getInt(current.position) != 0) {
+            // Torn tail: clear it so later appends replay cleanly
+            ByteBuffer tail = current.slice(current.position);
+            tail.put(new byte[tail.remaining()]);
+        }
+    }
+
+    private void apply(Segment segment, int offset, ByteBuffer record) {
+        long hash = hash(keyOf(record));
+        switch (record.get(4)) {
+            case PUT:
+                release(indexPut(hash, location(segment.id, offset)));
+                segment.live += record.getInt(0);
+                break;
+            case REMOVE:
+                int slot = findSlot(hash);
+                long previous = slot < 0 ? 0 : index.getLong(slot * SLOT_BYTES + 8);
+                if (previous > 0) {
+                    index.putLong(slot * SLOT_BYTES + 8, REMOVED);
+                    entries--;
+                    release(previous);
+                }
+                break;
+            case CLEAR:
+                segment.hasClear = true;
+                resetIndex();
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void resetIndex() {
+        index = ByteBuffer.allocateDirect(initialSlots * SLOT_BYTES);
+        usedSlots = 0;
+        entries = 0;
+        for (Segment segment : segments.values()) {
+            segment.live = 0;
+        }
+    }
+
+    private long append(byte[] record) throws IOException {
+        if (current.position + record.length > current.capacity()) {
+            int id = current.id + 1;
+            current = openSegment(id);
+            segments.put(id, current);
+        }
+        int offset = current.position;
+        ByteBuffer target = current.slice(offset);
+        target.position(4);
+        target.put(record, 4, record.length - 4);
+        // The length goes in last: a record is not replayed until complete
+        current.buffer.putInt(offset, record.length);
+        current.position += record.length;
+        return location(current.id, offset);
+    }
+
+    private byte[] read(long location, byte[] key, long now) {
+        Segment segment = segments.get((int) (location >>> 32));
+        int offset = (int) location;
+        if (segment == null || offset + HEADER_BYTES + CRC_BYTES > segment.capacity()) {
+            return null;
+        }
+        ByteBuffer record = segment.slice(offset);
+        int length = record.getInt(0);
+        if (length < HEADER_BYTES + CRC_BYTES || offset + length > segment.capacity()
+                || record.get(4) != PUT || record.getLong(4 + 1) <= now
+                || !Arrays.equals(keyOf(record), key)) {
+            return null;
+        }
+        byte[] value = new byte[length - HEADER_BYTES - key.length - CRC_BYTES];
+        record.position(HEADER_BYTES + key.length);
+        record.get(value);
+        return value;
+    }
+
+    /**
+     * Record the location for a hash, growing the table when it gets full
+     * @return the location it replaced, or 0
+     */
+    private long indexPut(long hash, long location) {
+        if ((usedSlots + 1) * 10L > (index.capacity() / SLOT_BYTES) * 7L) {
+            resize();
+        }
+        int mask = index.capacity() / SLOT_BYTES - 1;
+        for (int i = (int) hash & mask; ; i = (i + 1) & mask) {
+            long slotHash = index.getLong(i * SLOT_BYTES);
+            long slotLocation = index.getLong(i * SLOT_BYTES + 8);
+            if (slotHash == 0 && slotLocation == 0) {
+                index.putLong(i * SLOT_BYTES + 8, location);
+                index.putLong(i * SLOT_BYTES, hash);
+                usedSlots++;
+                entries++;
+                return 0;
+            }
+            if (slotHash == hash) {
+                index.putLong(i * SLOT_BYTES + 8, location);
+                if (slotLocation == REMOVED) {
+                    entries++;
+                    return 0;
+                }
+                return slotLocation;
+            }
+        }
+    }
+
+    private void resize() {
+        ByteBuffer old = index;
+        int slots = old.capacity() / SLOT_BYTES;
+        // Removed slots are dropped, so a table full of them is rebuilt in place
+        int grown = entries * 10L > slots * 5L ? slots * 2 : slots;
+        ByteBuffer table = ByteBuffer.allocateDirect(grown * SLOT_BYTES);
+        int mask = grown - 1;
+        for (int slot = 0; slot < slots; slot++) {
+            long hash = old.getLong(slot * SLOT_BYTES);
+            long location = old.getLong(slot * SLOT_BYTES + 8);
+            if (hash == 0 || location == REMOVED) {
+                continue;
+            }
+            int i = (int) hash & mask;
+            while (table.getLong(i * SLOT_BYTES) != 0) {
+                i = (i + 1) & mask;
+            }
+            table.putLong(i * SLOT_BYTES, hash);
+            table.putLong(i * SLOT_BYTES + 8, location);
+        }
+        usedSlots = entries;
+        index = table;
+    }
+
+    /**
+     * Location stored for a hash, 0 when absent or {@link #REMOVED}. Safe to
+     * run under an optimistic stamp: the probe is bounded even if the table
+     * changes underneath.
+     */
+    private long locate(long hash) {
+        ByteBuffer table = index;
+        int slots = table.capacity() / SLOT_BYTES;
+        int mask = slots - 1;
+        int i = (int) hash & mask;
+        for (int probes = 0; probes < slots; probes++, i = (i + 1) & mask) {
+            long slotHash = table.getLong(i * SLOT_BYTES);
+            long slotLocation = table.getLong(i * SLOT_BYTES + 8);
+            if (slotHash == hash) {
+                return slotLocation;
+            }
+            if (slotHash == 0 && slotLocation == 0) {
+                return 0;
+            }
+        }
+        return 0;
+    }
+
+    private int findSlot(long hash) {
+        int slots = index.capacity() / SLOT_BYTES;
+        int mask = slots - 1;
+        int i = (int) hash & mask;
+        for (int probes = 0; probes < slots; probes++, i = (i + 1) & mask) {
+            long slotHash = index.getLong(i * SLOT_BYTES);
+            if (slotHash == hash) {
+                return i;
+            }
+            if (slotHash == 0 && index.getLong(i * SLOT_BYTES + 8) == 0) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private void release(long location) {
+        if (location <= 0) {
+            return;
+        }
+        Segment segment = segments.get((int) (location >>> 32));
+        if (segment != null) {
+            segment.live -= segment.buffer.getInt((int) location);
+        }
+    }
+
+    private ByteBuffer recordAt(long location) {
+        return segments.get((int) (location >>> 32)).slice((int) location);
+    }
+
+    private Segment openSegment(int id) throws IOException {
+        Path path = directory.resolve(SEGMENT_PREFIX + id + SEGMENT_SUFFIX);
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        long size = Math.max(channel.size(), segmentBytes);
+        return new Segment(id, path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+    }
+
+    private static byte[] encode(byte type, long expiresAt, byte[] key, byte[] value) {
+        int length = HEADER_BYTES + key.length + value.length + CRC_BYTES;
+        ByteBuffer record = ByteBuffer.allocate(length);
+        record.putInt(length).put(type).putLong(expiresAt).putInt(key.length).put(key).put(value);
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 4, length - 4 - CRC_BYTES);
+        record.putInt((int) crc.getValue());
+        return record.array();
+    }
+
+    private static byte[] keyOf(ByteBuffer record) {
+        byte[] key = new byte[record.getInt(4 + 1 + 8)];
+        record.position(HEADER_BYTES);
+        record.get(key);
+        return key;
+    }
+
+    private static byte[] bytesOf(ByteBuffer record, int length) {
+        byte[] bytes = new byte[length];
+        record.position(0);
+        record.get(bytes);
+        return bytes;
+    }
+
+    private static long location(int segmentId, int offset) {
+        return (long) segmentId << 32 | offset;
+    }
+
+    /**
+     * 64-bit FNV-1a with a final avalanche; never 0, which marks an empty slot
+     */
+    private static long hash(byte[] key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash == 0 ? 1 : hash;
+    }
+
+    private static final class Segment {
+        private final int id;
+        private final Path path;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private int position;
+        private long live;
+        private boolean hasClear;
+
+        private Segment(int id, Path path, FileChannel channel, MappedByteBuffer buffer) {
+            this.id = id;
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        private int capacity() {
+            return buffer.capacity();
+        }
+
+        /**
+         * An independent view starting at {@code offset}, for absolute reads
+         * without touching the shared buffer's position
+         */
+        private ByteBuffer slice(int offset) {
+            ByteBuffer view = buffer.duplicate();
+            view.position(offset);
+            return view.slice();
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.ams.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Bounded multi-producer, multi-reader ring buffer without locks.
+ *
+ * Producers claim a sequence with a CAS on the cursor, store the event in
+ * its slot and then mark the slot published with the lap it was written in,
+ * so readers can tell a fresh slot from a stale one without a lock. Every
+ * reader keeps its own sequence; a producer never laps the slowest reader
+ * and instead fails fast when the buffer is full, leaving the caller to
+ * decide what a dropped event costs. Readers take every published event
+ * since their last read in one batch.
+ */
+public class RingBuffer<E> {
+
+    private final Object[] entries;
+    private final AtomicIntegerArray published;
+    private final int mask;
+    private final int lapShift;
+    private final AtomicLong cursor = new AtomicLong(-1);
+
+    // Reader sequences, copied on change; read on every claim that nears
+    // the slowest reader
+    private volatile AtomicLong[] readerSequences = new AtomicLong[0];
+    private volatile long slowestCache = -1;
+
+    /**
+     * @param capacity slots, a power of two
+     */
+    public RingBuffer(int capacity) {
+        if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        this.entries = new Object[capacity];
+        this.published = new AtomicIntegerArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            published.set(i, -1);
+        }
+        this.mask = capacity - 1;
+        this.lapShift = Integer.numberOfTrailingZeros(capacity);
+    }
+
+    /**
+     * Publish an event unless that would overwrite one a reader has not
+     * taken yet
+     * @return false when the buffer is full
+     */
+    public boolean tryPublish(E event) {
+        long current;
+        long next;
+        do {
+            current = cursor.get();
+            next = current + 1;
+            long wrapPoint = next - entries.length;
+            if (wrapPoint > slowestCache) {
+                long slowest = slowest(current);
+                slowestCache = slowest;
+                if (wrapPoint > slowest) {
+                    return false;
+                }
+            }
+        } while (!cursor.compareAndSet(current, next));
+
+        int index = (int) next & mask;
+        entries[index] = event;
+        published.lazySet(index, (int) (next >>> lapShift));
+        return true;
+    }
+
+    /**
+     * Add a reader that sees every event published from now on
+     */
+    public synchronized Reader newReader(String name) {
+        Reader reader = new Reader(name, cursor.get());
+        AtomicLong[] updated = Arrays.copyOf(readerSequences, readerSequences.length + 1);
+        updated[readerSequences.length] = reader.sequence;
+        readerSequences = updated;
+        // A producer may have moved on before the reader became visible to it
+        reader.sequence.set(cursor.get());
+        return reader;
+    }
+
+    /**
+     * Stop holding producers back for this reader
+     */
+    public synchronized void removeReader(Reader reader) {
+        List<AtomicLong> remaining = new ArrayList<>(readerSequences.length);
+        for (AtomicLong sequence : readerSequences) {
+            if (sequence != reader.sequence) {
+                remaining.add(sequence);
+            }
+        }
+        readerSequences = remaining.toArray(new AtomicLong[0]);
+    }
+
+    public int getCapacity() {
+        return entries.length;
+    }
+
+    /**
+     * Sequence of the last claimed event, -1 before the first
+     */
+    public long getCursor() {
+        return cursor.get();
+    }
+
+    /**
+     * Slots producers can still claim before the slowest reader holds them back
+     */
+    public long remainingCapacity() {
+        long current = cursor.get();
+        return entries.length - (current - slowest(current));
+    }
+
+    private long slowest(long current) {
+        long minimum = current;
+        for (AtomicLong sequence : readerSequences) {
+            minimum = Math.min(minimum, sequence.get());
+        }
+        return minimum;
+    }
+
+    private boolean isPublished(long sequence) {
+        return published.get((int) sequence & mask) == (int) (sequence >>> lapShift);
+    }
+
+    @SuppressWarnings("unchecked")
+    private E entryAt(long sequence) {
+        return (E) entries[(int) sequence & mask];
+    }
+
+    /**
+     * One independent position in the buffer. A reader is meant to be
+     * drained by a single thread.
+     */
+    public final class Reader {
+
+        private final String name;
+        private final AtomicLong sequence;
+        private final List<E> batch = new ArrayList<>();
+
+        private Reader(String name, long start) {
+            this.name = name;
+            this.sequence = new AtomicLong(start);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Events published but not yet taken by this reader
+         */
+        public long lag() {
+            return Math.max(0, cursor.get() - sequence.get());
+        }
+
+        /**
+         * Hand up to {@code maxBatch} consecutive published events to
+         * {@code handler}. The slots are released once the handler returns,
+         * also when it throws.
+         * @return the number of events handed over
+         */
+        public int drainTo(Consumer<List<E>> handler, int maxBatch) {
+            long next = sequence.get() + 1;
+            long last = Math.min(cursor.get(), next + maxBatch - 1);
+            // A claimed slot may still be being written; stop in front of it
+            long available = next - 1;
+            while (available < last && isPublished(available + 1)) {
+                available++;
+            }
+            if (available < next) {
+                return 0;
+            }
+
+            batch.clear();
+            for (long s = next; s <= available; s++) {
+                batch.add(entryAt(s));
+            }
+            try {
+                handler.accept(batch);
+            } finally {
+                batch.clear();
+                sequence.lazySet(available);
+            }
+            return (int) (available - next + 1);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.ams.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket, implemented as the generic cell rate algorithm:
+ * the whole state is one theoretical arrival time updated by CAS, so an
+ * admission costs a read, some arithmetic and usually a single CAS.
+ *
+ * Capacity and rate are passed on every call rather than stored, so a limit
+ * changed at runtime applies to existing buckets immediately.
+ */
+public class TokenBucket {
+
+    private final AtomicLong theoreticalArrival = new AtomicLong(Long.MIN_VALUE);
+
+    /**
+     * Take one token
+     * @return 0 when admitted, otherwise the nanoseconds until a token is free
+     */
+    public long tryAcquire(int capacity, double tokensPerSecond) {
+        long interval = (long) (TimeUnit.SECONDS.toNanos(1) / tokensPerSecond);
+        long tolerance = interval * capacity;
+        while (true) {
+            long now = System.nanoTime();
+            long tat = theoreticalArrival.get();
+            long next = (tat == Long.MIN_VALUE || tat - now < 0 ? now : tat) + interval;
+            long excess = next - now - tolerance;
+            if (excess > 0) {
+                return excess;
+            }
+            if (theoreticalArrival.compareAndSet(tat, next)) {
+                return 0;
+            }
+        }
+    }
+}
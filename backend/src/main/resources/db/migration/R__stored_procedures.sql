@@ -0,0 +1,292 @@
+-- Stored procedures. Flyway re-applies this repeatable migration only when
+-- its checksum changes, so every procedure is dropped before being recreated.
+
+DELIMITER //
+
+-- Procedure to get all overdue payments
+DROP PROCEDURE IF EXISTS GetOverduePayments //
+CREATE PROCEDURE GetOverduePayments()
+BEGIN
+    SELECT 
+        p.id, p.amount, p.description, p.due_date, 
+        u.first_name, u.last_name, u.email,
+        a.name as apartment_name, a.unit_number
+    FROM 
+        payments p
+    JOIN 
+        users u ON p.resident_id = u.id
+    JOIN 
+        apartments a ON p.apartment_id = a.id
+    WHERE 
+        p.status = 'PENDING' AND p.due_date < CURDATE();
+END //
+
+-- Procedure to mark a payment as paid
+-- A payment is settled at most once, so a redelivered gateway callback
+-- changes nothing. Returns one row with outcome PROCESSED, DUPLICATE
+-- (already settled by this transaction), CONFLICT (settled by another
+-- transaction) or NOT_FOUND. A transaction id already recorded on another
+-- payment fails the unique index.
+DROP PROCEDURE IF EXISTS ProcessPayment //
+CREATE PROCEDURE ProcessPayment(
+    IN payment_id BIGINT,
+    IN transaction_id VARCHAR(255),
+    IN payment_method VARCHAR(50)
+)
+BEGIN
+    DECLARE recorded_status VARCHAR(20);
+    DECLARE recorded_transaction_id VARCHAR(255);
+    DECLARE archived_payment_id BIGINT;
+    
+    -- A transaction id settled on an archived payment is never reused
+    SELECT a.id INTO archived_payment_id
+    FROM payments_archive a WHERE a.transaction_id = transaction_id LIMIT 1;
+    
+    IF archived_payment_id IS NOT NULL THEN
+        SELECT IF(archived_payment_id = payment_id, 'DUPLICATE', 'CONFLICT') AS outcome;
+    ELSE
+        UPDATE payments p
+        SET 
+            p.status = 'PAID',
+            p.payment_date = CURDATE(),
+            p.transaction_id = transaction_id,
+            p.payment_method = payment_method,
+            p.updated_at = NOW()
+        WHERE 
+            p.id = payment_id AND p.status <> 'PAID';
+    
+        IF ROW_COUNT() > 0 THEN
+            SELECT 'PROCESSED' AS outcome;
+        ELSE
+            SELECT p.status, p.transaction_id INTO recorded_status, recorded_transaction_id
+            FROM payments p WHERE p.id = payment_id;
+        
+            IF recorded_status IS NULL THEN
+                SELECT 'NOT_FOUND' AS outcome;
+            ELSEIF recorded_transaction_id <=> transaction_id THEN
+                SELECT 'DUPLICATE' AS outcome;
+            ELSE
+                SELECT 'CONFLICT' AS outcome;
+            END IF;
+        END IF;
+    END IF;
+END //
+
+-- Procedure to get apartments with availability filters
+DROP PROCEDURE IF EXISTS GetAvailableApartments //
+CREATE PROCEDURE GetAvailableApartments(
+    IN min_bedrooms INT,
+    IN min_bathrooms INT,
+    IN min_rent DECIMAL(10,2),
+    IN max_rent DECIMAL(10,2)
+)
+BEGIN
+    SELECT * FROM apartments
+    WHERE is_available = TRUE
+    AND bedrooms >= min_bedrooms
+    AND bathrooms >= min_bathrooms
+    AND rent BETWEEN min_rent AND max_rent;
+END //
+
+-- Procedure to assign resident to apartment
+-- The target unit is claimed with a conditional update, so concurrent
+-- assignments to the same unit cannot both succeed. Returns one row with
+-- outcome ASSIGNED, UNAVAILABLE (unit already taken) or CONFLICT (the
+-- resident was moved concurrently; safe to retry). Runs inside the
+-- caller's transaction.
+DROP PROCEDURE IF EXISTS AssignResidentToApartment //
+CREATE PROCEDURE AssignResidentToApartment(
+    IN user_id BIGINT,
+    IN apartment_id BIGINT
+)
+BEGIN
+    DECLARE current_apartment_id BIGINT;
+    
+    -- Claim the new apartment only if it is still available
+    UPDATE apartments a
+    SET a.is_available = FALSE, a.version = a.version + 1
+    WHERE a.id = apartment_id AND a.is_available = TRUE;
+    
+    IF ROW_COUNT() = 0 THEN
+        SELECT 'UNAVAILABLE' AS outcome;
+    ELSE
+        -- Get current apartment_id for user
+        SELECT u.apartment_id INTO current_apartment_id FROM users u WHERE u.id = user_id;
+        
+        -- Move the user only if nobody else moved them in the meantime
+        UPDATE users u
+        SET u.apartment_id = apartment_id
+        WHERE u.id = user_id AND u.apartment_id <=> current_apartment_id;
+        
+        IF ROW_COUNT() = 0 THEN
+            -- Release the claim and let the caller retry
+            UPDATE apartments a
+            SET a.is_available = TRUE, a.version = a.version + 1
+            WHERE a.id = apartment_id;
+            SELECT 'CONFLICT' AS outcome;
+        ELSE
+            -- If user already had an apartment, mark it as available
+            IF current_apartment_id IS NOT NULL THEN
+                UPDATE apartments a
+                SET a.is_available = TRUE, a.version = a.version + 1
+                WHERE a.id = current_apartment_id;
+            END IF;
+            SELECT 'ASSIGNED' AS outcome;
+        END IF;
+    END IF;
+END //
+
+-- Procedure to get pending complaints
+DROP PROCEDURE IF EXISTS GetPendingComplaints //
+CREATE PROCEDURE GetPendingComplaints()
+BEGIN
+    SELECT 
+        c.id, c.title, c.description, c.category, c.priority, c.status,
+        c.created_at, c.updated_at,
+        u.first_name, u.last_name, u.email,
+        a.name as apartment_name, a.unit_number
+    FROM 
+        complaints c
+    JOIN 
+        users u ON c.resident_id = u.id
+    JOIN 
+        apartments a ON c.apartment_id = a.id
+    WHERE 
+        c.status = 'PENDING'
+    ORDER BY 
+        CASE c.priority
+            WHEN 'CRITICAL' THEN 1
+            WHEN 'HIGH' THEN 2
+            WHEN 'MEDIUM' THEN 3
+            WHEN 'LOW' THEN 4
+        END,
+        c.created_at;
+END //
+
+-- Procedure to get monthly revenue report
+DROP PROCEDURE IF EXISTS GetMonthlyRevenueReport //
+CREATE PROCEDURE GetMonthlyRevenueReport(
+    IN year_param INT,
+    IN month_param INT
+)
+BEGIN
+    SELECT 
+        SUM(amount) as total_revenue,
+        COUNT(*) as payment_count,
+        type
+    FROM 
+        payments
+    WHERE 
+        status = 'PAID'
+        AND YEAR(payment_date) = year_param
+        AND MONTH(payment_date) = month_param
+    GROUP BY 
+        type;
+END //
+
+-- Procedure to get occupancy statistics
+DROP PROCEDURE IF EXISTS GetOccupancyStatistics //
+CREATE PROCEDURE GetOccupancyStatistics()
+BEGIN
+    SELECT 
+        COUNT(*) as total_apartments,
+        SUM(CASE WHEN is_available = FALSE THEN 1 ELSE 0 END) as occupied,
+        SUM(CASE WHEN is_available = TRUE THEN 1 ELSE 0 END) as available,
+        ROUND((SUM(CASE WHEN is_available = FALSE THEN 1 ELSE 0 END) / COUNT(*)) * 100, 2) as occupancy_rate
+    FROM 
+        apartments;
+END //
+
+-- NEW PROCEDURE: Get Comprehensive Dashboard Statistics
+DROP PROCEDURE IF EXISTS GetDashboardStatistics //
+CREATE PROCEDURE GetDashboardStatistics()
+BEGIN
+    -- Get apartment stats
+    SELECT 
+        (SELECT COUNT(*) FROM apartments) as total_apartments,
+        (SELECT COUNT(*) FROM apartments WHERE is_available = TRUE) as available_apartments,
+        (SELECT AVG(rent) FROM apartments) as average_rent;
+
+    -- Get user stats
+    SELECT 
+        (SELECT COUNT(*) FROM users WHERE role = 'RESIDENT') as total_residents,
+        (SELECT COUNT(*) FROM users WHERE role = 'VISITOR') as total_visitors;
+    
+    -- Get complaint stats
+    SELECT 
+        status, COUNT(*) as count
+    FROM 
+        complaints
+    GROUP BY 
+        status;
+    
+    -- Get payment stats
+    SELECT 
+        SUM(CASE WHEN status = 'PAID' THEN amount ELSE 0 END) as revenue_collected,
+        SUM(CASE WHEN status = 'PENDING' AND due_date < CURDATE() THEN amount ELSE 0 END) as overdue_amount,
+        COUNT(CASE WHEN status = 'PENDING' AND due_date < CURDATE() THEN 1 END) as overdue_count
+    FROM 
+        payments;
+    
+    -- Get booking stats
+    SELECT 
+        status, COUNT(*) as count
+    FROM 
+        bookings
+    GROUP BY 
+        status;
+END //
+
+-- NEW PROCEDURE: Get Resident Performance Report
+DROP PROCEDURE IF EXISTS GetResidentReport //
+CREATE PROCEDURE GetResidentReport(
+    IN resident_id BIGINT
+)
+BEGIN
+    -- Get resident info
+    SELECT 
+        u.first_name, u.last_name, u.email, u.phone,
+        a.name as apartment_name, a.unit_number, a.rent
+    FROM 
+        users u
+    LEFT JOIN 
+        apartments a ON u.apartment_id = a.id
+    WHERE 
+        u.id = resident_id;
+    
+    -- Get payment history
+    SELECT 
+        payment_date, due_date, amount, status, type, description
+    FROM 
+        payments
+    WHERE 
+        resident_id = resident_id
+    ORDER BY 
+        created_at DESC
+    LIMIT 10;
+    
+    -- Get complaint history
+    SELECT 
+        title, category, priority, status, created_at, resolved_at
+    FROM 
+        complaints
+    WHERE 
+        resident_id = resident_id
+    ORDER BY 
+        created_at DESC
+    LIMIT 10;
+    
+    -- Payment statistics
+    SELECT 
+        COUNT(*) as total_payments,
+        SUM(CASE WHEN status = 'PAID' THEN 1 ELSE 0 END) as paid_count,
+        SUM(CASE WHEN status = 'PENDING' AND due_date < CURDATE() THEN 1 ELSE 0 END) as overdue_count,
+        SUM(CASE WHEN status = 'PAID' THEN amount ELSE 0 END) as total_paid,
+        SUM(CASE WHEN status = 'PENDING' THEN amount ELSE 0 END) as total_pending
+    FROM 
+        payments
+    WHERE 
+        resident_id = resident_id;
+END //
+
+DELIMITER ;
@@ -0,0 +1,23 @@
+-- Optimistic versions on apartments and bookings, booking move-out dates,
+-- apartment buildings and the asynchronous report jobs table
+
+ALTER TABLE apartments ADD COLUMN building VARCHAR(50) AFTER unit_number;
+ALTER TABLE apartments ADD COLUMN version BIGINT NOT NULL DEFAULT 0 AFTER is_available;
+ALTER TABLE bookings ADD COLUMN move_out_date DATE AFTER move_in_date;
+ALTER TABLE bookings ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+
+-- Create report jobs table (results of asynchronous report jobs)
+CREATE TABLE report_jobs (
+    id VARCHAR(36) PRIMARY KEY,
+    spec_key VARCHAR(255) NOT NULL,
+    type VARCHAR(50) NOT NULL,
+    status ENUM('QUEUED', 'RUNNING', 'COMPLETED', 'FAILED') NOT NULL DEFAULT 'QUEUED',
+    total_parts INT NOT NULL DEFAULT 0,
+    result LONGTEXT,
+    failure VARCHAR(1000),
+    submitted_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    finished_at TIMESTAMP NULL
+);
+
+CREATE INDEX idx_apartment_building ON apartments(building);
+CREATE INDEX idx_report_job_spec ON report_jobs(spec_key, status);
@@ -0,0 +1,11 @@
+-- Property (tenant) dimension. Existing rows belong to property 1.
+
+ALTER TABLE apartments ADD COLUMN property_id BIGINT NOT NULL DEFAULT 1 AFTER id;
+ALTER TABLE complaints ADD COLUMN property_id BIGINT NOT NULL DEFAULT 1 AFTER id;
+ALTER TABLE payments ADD COLUMN property_id BIGINT NOT NULL DEFAULT 1 AFTER id;
+ALTER TABLE bookings ADD COLUMN property_id BIGINT NOT NULL DEFAULT 1 AFTER id;
+
+CREATE INDEX idx_apartment_property ON apartments(property_id);
+CREATE INDEX idx_complaint_property_status ON complaints(property_id, status);
+CREATE INDEX idx_payment_property_due_date ON payments(property_id, due_date);
+CREATE INDEX idx_booking_property_apartment ON bookings(property_id, apartment_id);
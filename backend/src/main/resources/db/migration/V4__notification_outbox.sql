@@ -0,0 +1,20 @@
+-- Transactional outbox for resident notifications
+CREATE TABLE notification_outbox (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    resident_id BIGINT NOT NULL,
+    kind ENUM('PAYMENT_OVERDUE', 'COMPLAINT_STATUS') NOT NULL,
+    reference_id BIGINT NOT NULL,
+    message VARCHAR(1000) NOT NULL,
+    status ENUM('PENDING', 'SENDING', 'SENT', 'FAILED') NOT NULL DEFAULT 'PENDING',
+    attempts INT NOT NULL DEFAULT 0,
+    next_attempt_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    claim_token VARCHAR(36),
+    last_error VARCHAR(500),
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    sent_at TIMESTAMP NULL,
+    FOREIGN KEY (resident_id) REFERENCES users(id)
+);
+
+CREATE INDEX idx_outbox_due ON notification_outbox(status, next_attempt_at);
+CREATE INDEX idx_outbox_reference ON notification_outbox(kind, reference_id);
+CREATE INDEX idx_outbox_claim ON notification_outbox(claim_token);
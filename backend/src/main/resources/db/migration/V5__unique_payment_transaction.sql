@@ -0,0 +1,4 @@
+-- Each gateway transaction settles at most one payment. Fails if existing
+-- rows already share a transaction id; resolve those first.
+
+CREATE UNIQUE INDEX uq_payment_transaction ON payments(transaction_id);
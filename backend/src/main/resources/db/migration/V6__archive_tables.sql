@@ -0,0 +1,69 @@
+-- Archive tables for closed payments, complaints and expired announcements
+
+CREATE TABLE payments_archive (
+    id BIGINT PRIMARY KEY,
+    property_id BIGINT NOT NULL,
+    type VARCHAR(20) NOT NULL,
+    amount DECIMAL(10,2) NOT NULL,
+    description VARCHAR(255) NOT NULL,
+    payment_date DATE,
+    due_date DATE NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    resident_id BIGINT NOT NULL,
+    apartment_id BIGINT NOT NULL,
+    transaction_id VARCHAR(255),
+    payment_method VARCHAR(50),
+    created_at TIMESTAMP NULL,
+    updated_at TIMESTAMP NULL,
+    archived_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE TABLE complaints_archive (
+    id BIGINT PRIMARY KEY,
+    property_id BIGINT NOT NULL,
+    title VARCHAR(100) NOT NULL,
+    description VARCHAR(1000) NOT NULL,
+    category VARCHAR(20) NOT NULL,
+    priority VARCHAR(20) NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    resident_id BIGINT NOT NULL,
+    apartment_id BIGINT NOT NULL,
+    assigned_to_id BIGINT,
+    image_url VARCHAR(255),
+    resolution VARCHAR(1000),
+    created_at TIMESTAMP NULL,
+    updated_at TIMESTAMP NULL,
+    resolved_at TIMESTAMP NULL,
+    archived_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE TABLE announcements_archive (
+    id BIGINT PRIMARY KEY,
+    title VARCHAR(100) NOT NULL,
+    content VARCHAR(2000) NOT NULL,
+    created_by_id BIGINT NOT NULL,
+    type VARCHAR(20) NOT NULL,
+    active BOOLEAN NOT NULL,
+    expiry_date TIMESTAMP NULL,
+    created_at TIMESTAMP NULL,
+    updated_at TIMESTAMP NULL,
+    archived_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Create archive watermarks table (per hot table, every archived row is
+-- older than archived_before; reads only consult the archive for ranges
+-- starting before it)
+CREATE TABLE archive_watermarks (
+    table_name VARCHAR(64) PRIMARY KEY,
+    archived_before TIMESTAMP NULL,
+    rows_archived BIGINT NOT NULL DEFAULT 0,
+    amount_archived DECIMAL(15,2) NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP NULL
+);
+
+INSERT INTO archive_watermarks (table_name) VALUES ('payments'), ('complaints'), ('announcements');
+
+CREATE INDEX idx_payment_archive_date ON payments_archive(payment_date);
+CREATE INDEX idx_payment_archive_resident ON payments_archive(resident_id, created_at);
+CREATE UNIQUE INDEX uq_payment_archive_transaction ON payments_archive(transaction_id);
+CREATE INDEX idx_complaint_archive_resident ON complaints_archive(resident_id, created_at);
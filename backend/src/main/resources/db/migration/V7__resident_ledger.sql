@@ -0,0 +1,76 @@
+-- Resident ledger with running balances and periodic snapshots
+
+-- Create resident ledger table (append-only; one entry per change in what a
+-- payment charges or has been paid, so a resident's balance is the sum of
+-- charged - paid over their entries)
+CREATE TABLE resident_ledger (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    property_id BIGINT NOT NULL,
+    resident_id BIGINT NOT NULL,
+    payment_id BIGINT NOT NULL,
+    entry_type VARCHAR(20) NOT NULL,
+    charged DECIMAL(12,2) NOT NULL DEFAULT 0,
+    paid DECIMAL(12,2) NOT NULL DEFAULT 0,
+    effective_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    recorded_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Create resident balances table (running totals of the ledger, updated in
+-- the transaction that appends the entry; last_entry_id is the newest entry
+-- included)
+CREATE TABLE resident_balances (
+    resident_id BIGINT PRIMARY KEY,
+    property_id BIGINT NOT NULL,
+    total_charged DECIMAL(15,2) NOT NULL DEFAULT 0,
+    total_paid DECIMAL(15,2) NOT NULL DEFAULT 0,
+    balance DECIMAL(15,2) NOT NULL DEFAULT 0,
+    last_entry_id BIGINT NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP NULL
+);
+
+-- Create resident balance snapshots table (periodic copies of changed
+-- balances; a past balance is the latest snapshot before it plus the
+-- entries after last_entry_id)
+CREATE TABLE resident_balance_snapshots (
+    resident_id BIGINT NOT NULL,
+    taken_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    total_charged DECIMAL(15,2) NOT NULL,
+    total_paid DECIMAL(15,2) NOT NULL,
+    last_entry_id BIGINT NOT NULL,
+    PRIMARY KEY (resident_id, taken_at)
+);
+
+CREATE INDEX idx_ledger_payment ON resident_ledger(payment_id);
+CREATE INDEX idx_ledger_resident ON resident_ledger(resident_id, id);
+CREATE INDEX idx_balance_property ON resident_balances(property_id, balance);
+CREATE INDEX idx_snapshot_entry ON resident_balance_snapshots(resident_id, last_entry_id);
+
+-- Backfill from the payments recorded so far, live and archived: a charge
+-- for every payment not cancelled, dated when it was created, and a payment
+-- for every paid one, dated when it was last updated
+
+INSERT INTO resident_ledger (property_id, resident_id, payment_id, entry_type, charged, paid, effective_at)
+SELECT p.property_id, p.resident_id, p.id, 'CHARGE', p.amount, 0, COALESCE(p.created_at, CURRENT_TIMESTAMP)
+FROM (
+    SELECT id, property_id, resident_id, amount, status, created_at FROM payments
+    UNION ALL
+    SELECT id, property_id, resident_id, amount, status, created_at FROM payments_archive
+) p
+WHERE p.status <> 'CANCELLED'
+ORDER BY p.id;
+
+INSERT INTO resident_ledger (property_id, resident_id, payment_id, entry_type, charged, paid, effective_at)
+SELECT p.property_id, p.resident_id, p.id, 'PAYMENT', 0, p.amount,
+    COALESCE(p.updated_at, p.created_at, CURRENT_TIMESTAMP)
+FROM (
+    SELECT id, property_id, resident_id, amount, status, created_at, updated_at FROM payments
+    UNION ALL
+    SELECT id, property_id, resident_id, amount, status, created_at, updated_at FROM payments_archive
+) p
+WHERE p.status = 'PAID'
+ORDER BY p.id;
+
+INSERT INTO resident_balances (resident_id, property_id, total_charged, total_paid, balance, last_entry_id, updated_at)
+SELECT resident_id, MAX(property_id), SUM(charged), SUM(paid), SUM(charged) - SUM(paid), MAX(id), CURRENT_TIMESTAMP
+FROM resident_ledger
+GROUP BY resident_id;
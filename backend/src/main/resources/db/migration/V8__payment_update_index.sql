@@ -0,0 +1,3 @@
+-- The ledger sync reconciles payments by the time they were last updated
+
+CREATE INDEX idx_payment_updated ON payments(updated_at);
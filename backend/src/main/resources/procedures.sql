@@ -18,21 +18,53 @@ BEGIN
 END //
 
 -- Procedure to mark a payment as paid
+-- A payment is settled at most once, so a redelivered gateway callback
+-- changes nothing. Returns one row with outcome PROCESSED, DUPLICATE
+-- (already settled by this transaction), CONFLICT (settled by another
+-- transaction) or NOT_FOUND. A transaction id already recorded on another
+-- payment fails the unique index.
 CREATE PROCEDURE ProcessPayment(
     IN payment_id BIGINT,
     IN transaction_id VARCHAR(255),
     IN payment_method VARCHAR(50)
 )
 BEGIN
-    UPDATE payments 
-    SET 
-        status = 'PAID',
-        payment_date = CURDATE(),
-        transaction_id = transaction_id,
-        payment_method = payment_method,
-        updated_at = NOW()
-    WHERE 
-        id = payment_id;
+    DECLARE recorded_status VARCHAR(20);
+    DECLARE recorded_transaction_id VARCHAR(255);
+    DECLARE archived_payment_id BIGINT;
+    
+    -- A transaction id settled on an archived payment is never reused
+    SELECT a.id INTO archived_payment_id
+    FROM payments_archive a WHERE a.transaction_id = transaction_id LIMIT 1;
+    
+    IF archived_payment_id IS NOT NULL THEN
+        SELECT IF(archived_payment_id = payment_id, 'DUPLICATE', 'CONFLICT') AS outcome;
+    ELSE
+        UPDATE payments p
+        SET 
+            p.status = 'PAID',
+            p.payment_date = CURDATE(),
+            p.transaction_id = transaction_id,
+            p.payment_method = payment_method,
+            p.updated_at = NOW()
+        WHERE 
+            p.id = payment_id AND p.status <> 'PAID';
+    
+        IF ROW_COUNT() > 0 THEN
+            SELECT 'PROCESSED' AS outcome;
+        ELSE
+            SELECT p.status, p.transaction_id INTO recorded_status, recorded_transaction_id
+            FROM payments p WHERE p.id = payment_id;
+        
+            IF recorded_status IS NULL THEN
+                SELECT 'NOT_FOUND' AS outcome;
+            ELSEIF recorded_transaction_id <=> transaction_id THEN
+                SELECT 'DUPLICATE' AS outcome;
+            ELSE
+                SELECT 'CONFLICT' AS outcome;
+            END IF;
+        END IF;
+    END IF;
 END //
 
 -- Procedure to get apartments with availability filters
@@ -51,6 +83,11 @@ BEGIN
 END //
 
 -- Procedure to assign resident to apartment
+-- The target unit is claimed with a conditional update, so concurrent
+-- assignments to the same unit cannot both succeed. Returns one row with
+-- outcome ASSIGNED, UNAVAILABLE (unit already taken) or CONFLICT (the
+-- resident was moved concurrently; safe to retry). Runs inside the
+-- caller's transaction.
 CREATE PROCEDURE AssignResidentToApartment(
     IN user_id BIGINT,
     IN apartment_id BIGINT
@@ -58,25 +95,38 @@ CREATE PROCEDURE AssignResidentToApartment(
 BEGIN
     DECLARE current_apartment_id BIGINT;
     
-    -- Begin transaction
-    START TRANSACTION;
+    -- Claim the new apartment only if it is still available
+    UPDATE apartments a
+    SET a.is_available = FALSE, a.version = a.version + 1
+    WHERE a.id = apartment_id AND a.is_available = TRUE;
     
-    -- Get current apartment_id for user
-    SELECT apartment_id INTO current_apartment_id FROM users WHERE id = user_id;
-    
-    -- If user already has an apartment, mark it as available
-    IF current_apartment_id IS NOT NULL THEN
-        UPDATE apartments SET is_available = TRUE WHERE id = current_apartment_id;
+    IF ROW_COUNT() = 0 THEN
+        SELECT 'UNAVAILABLE' AS outcome;
+    ELSE
+        -- Get current apartment_id for user
+        SELECT u.apartment_id INTO current_apartment_id FROM users u WHERE u.id = user_id;
+        
+        -- Move the user only if nobody else moved them in the meantime
+        UPDATE users u
+        SET u.apartment_id = apartment_id
+        WHERE u.id = user_id AND u.apartment_id <=> current_apartment_id;
+        
+        IF ROW_COUNT() = 0 THEN
+            -- Release the claim and let the caller retry
+            UPDATE apartments a
+            SET a.is_available = TRUE, a.version = a.version + 1
+            WHERE a.id = apartment_id;
+            SELECT 'CONFLICT' AS outcome;
+        ELSE
+            -- If user already had an apartment, mark it as available
+            IF current_apartment_id IS NOT NULL THEN
+                UPDATE apartments a
+                SET a.is_available = TRUE, a.version = a.version + 1
+                WHERE a.id = current_apartment_id;
+            END IF;
+            SELECT 'ASSIGNED' AS outcome;
+        END IF;
     END IF;
-    
-    -- Update user's apartment
-    UPDATE users SET apartment_id = apartment_id WHERE id = user_id;
-    
-    -- Mark apartment as unavailable
-    UPDATE apartments SET is_available = FALSE WHERE id = apartment_id;
-    
-    -- Commit transaction
-    COMMIT;
 END //
 
 -- Procedure to get pending complaints
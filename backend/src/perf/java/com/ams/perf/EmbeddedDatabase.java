@@ -0,0 +1,72 @@
+package com.ams.perf;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+
+/**
+ * Embedded H2 databases in MySQL mode, built from the application's own
+ * schema.sql with the portable procedures from {@link H2Procedures}
+ */
+public final class EmbeddedDatabase {
+
+    /**
+     * JDBC URL options that make H2 accept the MySQL schema and identifiers
+     */
+    public static final String URL_OPTIONS = ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+
+    private EmbeddedDatabase() {
+    }
+
+    public static String url(String name) {
+        return "jdbc:h2:mem:" + name + URL_OPTIONS;
+    }
+
+    /**
+     * Create a standalone in-memory database with schema and procedures but no data
+     */
+    public static DataSource create(String name) {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource();
+        dataSource.setDriverClassName("org.h2.Driver");
+        dataSource.setUrl(url(name));
+        dataSource.setUsername("sa");
+        dataSource.setPassword("");
+        initialize(dataSource);
+        return dataSource;
+    }
+
+    /**
+     * Run schema.sql, skipping the MySQL-only FULLTEXT indexes, and register
+     * the portable procedures. The script is split by Spring's SQL script
+     * parser, so comments and quoted text may contain semicolons.
+     */
+    public static void initialize(DataSource dataSource) {
+        String script;
+        try (InputStream in = new ClassPathResource("schema.sql").getInputStream()) {
+            script = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException ex) {
+            throw new IllegalStateException("Unable to read schema.sql", ex);
+        }
+        
+        List<String> statements = new ArrayList<>();
+        ScriptUtils.splitSqlScript(script, ScriptUtils.DEFAULT_STATEMENT_SEPARATOR, statements);
+        
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        for (String statement : statements) {
+            String sql = statement.trim();
+            if (!sql.isEmpty() && !sql.contains("FULLTEXT")) {
+                jdbcTemplate.execute(sql);
+            }
+        }
+        H2Procedures.register(jdbcTemplate);
+    }
+}
@@ -0,0 +1,243 @@
+package com.ams.perf;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Objects;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Portable H2 versions of the stored procedures in procedures.sql, registered
+ * as Java function aliases under the same names so that
+ * {@code DatabaseService} runs unchanged against an embedded database.
+ *
+ * H2 functions can only return a single result set. Procedures that return
+ * several result sets in MySQL run every query, so the database work is
+ * comparable, but only the first result set is returned.
+ */
+public final class H2Procedures {
+
+    private static final String[][] ALIASES = {
+        {"GetOverduePayments", "getOverduePayments"},
+        {"ProcessPayment", "processPayment"},
+        {"GetAvailableApartments", "getAvailableApartments"},
+        {"AssignResidentToApartment", "assignResidentToApartment"},
+        {"GetPendingComplaints", "getPendingComplaints"},
+        {"GetMonthlyRevenueReport", "getMonthlyRevenueReport"},
+        {"GetOccupancyStatistics", "getOccupancyStatistics"},
+        {"GetDashboardStatistics", "getDashboardStatistics"},
+        {"GetResidentReport", "getResidentReport"}
+    };
+
+    private H2Procedures() {
+    }
+
+    /**
+     * Register every procedure as an H2 alias
+     */
+    public static void register(JdbcTemplate jdbcTemplate) {
+        for (String[] alias : ALIASES) {
+            jdbcTemplate.execute("CREATE ALIAS IF NOT EXISTS " + alias[0]
+                    + " FOR \"" + H2Procedures.class.getName() + "." + alias[1] + "\"");
+        }
+    }
+
+    public static ResultSet getOverduePayments(Connection connection) throws SQLException {
+        return connection.createStatement().executeQuery(
+                "SELECT p.id, p.amount, p.description, p.due_date, "
+                + "u.first_name, u.last_name, u.email, a.name as apartment_name, a.unit_number "
+                + "FROM payments p "
+                + "JOIN users u ON p.resident_id = u.id "
+                + "JOIN apartments a ON p.apartment_id = a.id "
+                + "WHERE p.status = 'PENDING' AND p.due_date < CURRENT_DATE");
+    }
+
+    public static ResultSet processPayment(Connection connection, Long paymentId, String transactionId,
+            String paymentMethod) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT id FROM payments_archive WHERE transaction_id = ? LIMIT 1")) {
+            statement.setString(1, transactionId);
+            try (ResultSet rs = statement.executeQuery()) {
+                if (rs.next()) {
+                    String archived = rs.getLong(1) == paymentId ? "DUPLICATE" : "CONFLICT";
+                    return connection.createStatement().executeQuery("SELECT '" + archived + "' AS outcome");
+                }
+            }
+        }
+        String outcome;
+        int settled;
+        try (PreparedStatement statement = connection.prepareStatement(
+                "UPDATE payments SET status = 'PAID', payment_date = CURRENT_DATE, transaction_id = ?, "
+                + "payment_method = ?, updated_at = CURRENT_TIMESTAMP WHERE id = ? AND status <> 'PAID'")) {
+            statement.setString(1, transactionId);
+            statement.setString(2, paymentMethod);
+            statement.setLong(3, paymentId);
+            settled = statement.executeUpdate();
+        }
+        if (settled > 0) {
+            outcome = "PROCESSED";
+        } else {
+            try (PreparedStatement statement = prepare(connection, "SELECT transaction_id FROM payments WHERE id = ?",
+                    paymentId); ResultSet rs = statement.executeQuery()) {
+                if (!rs.next()) {
+                    outcome = "NOT_FOUND";
+                } else {
+                    outcome = Objects.equals(transactionId, rs.getString(1)) ? "DUPLICATE" : "CONFLICT";
+                }
+            }
+        }
+        return connection.createStatement().executeQuery("SELECT '" + outcome + "' AS outcome");
+    }
+
+    public static ResultSet getAvailableApartments(Connection connection, Integer minBedrooms,
+            Integer minBathrooms, BigDecimal minRent, BigDecimal maxRent) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(
+                "SELECT * FROM apartments WHERE is_available = TRUE AND bedrooms >= ? AND bathrooms >= ? "
+                + "AND rent BETWEEN ? AND ?");
+        statement.setInt(1, minBedrooms);
+        statement.setInt(2, minBathrooms);
+        statement.setBigDecimal(3, minRent);
+        statement.setBigDecimal(4, maxRent);
+        return statement.executeQuery();
+    }
+
+    public static ResultSet assignResidentToApartment(Connection connection, Long userId, Long apartmentId)
+            throws SQLException {
+        String outcome;
+        if (update(connection, "UPDATE apartments SET is_available = FALSE, version = version + 1 "
+                + "WHERE id = ? AND is_available = TRUE", apartmentId) == 0) {
+            outcome = "UNAVAILABLE";
+        } else {
+            Long currentApartmentId = null;
+            try (PreparedStatement statement = prepare(connection, "SELECT apartment_id FROM users WHERE id = ?",
+                    userId); ResultSet rs = statement.executeQuery()) {
+                if (rs.next()) {
+                    currentApartmentId = rs.getObject(1, Long.class);
+                }
+            }
+            
+            int moved;
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "UPDATE users SET apartment_id = ? WHERE id = ? AND apartment_id IS NOT DISTINCT FROM ?")) {
+                statement.setLong(1, apartmentId);
+                statement.setLong(2, userId);
+                statement.setObject(3, currentApartmentId);
+                moved = statement.executeUpdate();
+            }
+            
+            if (moved == 0) {
+                update(connection, "UPDATE apartments SET is_available = TRUE, version = version + 1 WHERE id = ?",
+                        apartmentId);
+                outcome = "CONFLICT";
+            } else {
+                if (currentApartmentId != null) {
+                    update(connection, "UPDATE apartments SET is_available = TRUE, version = version + 1 "
+                            + "WHERE id = ?", currentApartmentId);
+                }
+                outcome = "ASSIGNED";
+            }
+        }
+        return connection.createStatement().executeQuery("SELECT '" + outcome + "' AS outcome");
+    }
+
+    public static ResultSet getPendingComplaints(Connection connection) throws SQLException {
+        return connection.createStatement().executeQuery(
+                "SELECT c.id, c.title, c.description, c.category, c.priority, c.status, "
+                + "c.created_at, c.updated_at, u.first_name, u.last_name, u.email, "
+                + "a.name as apartment_name, a.unit_number "
+                + "FROM complaints c "
+                + "JOIN users u ON c.resident_id = u.id "
+                + "JOIN apartments a ON c.apartment_id = a.id "
+                + "WHERE c.status = 'PENDING' "
+                + "ORDER BY CASE c.priority WHEN 'CRITICAL' THEN 1 WHEN 'HIGH' THEN 2 "
+                + "WHEN 'MEDIUM' THEN 3 WHEN 'LOW' THEN 4 END, c.created_at");
+    }
+
+    public static ResultSet getMonthlyRevenueReport(Connection connection, Integer year, Integer month)
+            throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(
+                "SELECT SUM(amount) as total_revenue, COUNT(*) as payment_count, type FROM payments "
+                + "WHERE status = 'PAID' AND YEAR(payment_date) = ? AND MONTH(payment_date) = ? GROUP BY type");
+        statement.setInt(1, year);
+        statement.setInt(2, month);
+        return statement.executeQuery();
+    }
+
+    public static ResultSet getOccupancyStatistics(Connection connection) throws SQLException {
+        return connection.createStatement().executeQuery(
+                "SELECT COUNT(*) as total_apartments, "
+                + "SUM(CASE WHEN is_available = FALSE THEN 1 ELSE 0 END) as occupied, "
+                + "SUM(CASE WHEN is_available = TRUE THEN 1 ELSE 0 END) as available, "
+                + "ROUND((SUM(CASE WHEN is_available = FALSE THEN 1 ELSE 0 END) / COUNT(*)) * 100, 2) "
+                + "as occupancy_rate FROM apartments");
+    }
+
+    public static ResultSet getDashboardStatistics(Connection connection) throws SQLException {
+        drain(connection.createStatement(),
+                "SELECT (SELECT COUNT(*) FROM users WHERE role = 'RESIDENT') as total_residents, "
+                + "(SELECT COUNT(*) FROM users WHERE role = 'VISITOR') as total_visitors");
+        drain(connection.createStatement(), "SELECT status, COUNT(*) as count FROM complaints GROUP BY status");
+        drain(connection.createStatement(),
+                "SELECT SUM(CASE WHEN status = 'PAID' THEN amount ELSE 0 END) as revenue_collected, "
+                + "SUM(CASE WHEN status = 'PENDING' AND due_date < CURRENT_DATE THEN amount ELSE 0 END) "
+                + "as overdue_amount, "
+                + "COUNT(CASE WHEN status = 'PENDING' AND due_date < CURRENT_DATE THEN 1 END) as overdue_count "
+                + "FROM payments");
+        drain(connection.createStatement(), "SELECT status, COUNT(*) as count FROM bookings GROUP BY status");
+        
+        return connection.createStatement().executeQuery(
+                "SELECT (SELECT COUNT(*) FROM apartments) as total_apartments, "
+                + "(SELECT COUNT(*) FROM apartments WHERE is_available = TRUE) as available_apartments, "
+                + "(SELECT AVG(rent) FROM apartments) as average_rent");
+    }
+
+    public static ResultSet getResidentReport(Connection connection, Long residentId) throws SQLException {
+        drain(prepare(connection, "SELECT payment_date, due_date, amount, status, type, description "
+                + "FROM payments WHERE resident_id = ? ORDER BY created_at DESC LIMIT 10", residentId));
+        drain(prepare(connection, "SELECT title, category, priority, status, created_at, resolved_at "
+                + "FROM complaints WHERE resident_id = ? ORDER BY created_at DESC LIMIT 10", residentId));
+        drain(prepare(connection, "SELECT COUNT(*) as total_payments, "
+                + "SUM(CASE WHEN status = 'PAID' THEN 1 ELSE 0 END) as paid_count, "
+                + "SUM(CASE WHEN status = 'PENDING' AND due_date < CURRENT_DATE THEN 1 ELSE 0 END) as overdue_count, "
+                + "SUM(CASE WHEN status = 'PAID' THEN amount ELSE 0 END) as total_paid, "
+                + "SUM(CASE WHEN status = 'PENDING' THEN amount ELSE 0 END) as total_pending "
+                + "FROM payments WHERE resident_id = ?", residentId));
+        
+        return prepare(connection, "SELECT u.first_name, u.last_name, u.email, u.phone, "
+                + "a.name as apartment_name, a.unit_number, a.rent "
+                + "FROM users u LEFT JOIN apartments a ON u.apartment_id = a.id WHERE u.id = ?", residentId)
+                .executeQuery();
+    }
+
+    private static PreparedStatement prepare(Connection connection, String sql, long id) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(sql);
+        statement.setLong(1, id);
+        return statement;
+    }
+
+    private static int update(Connection connection, String sql, long id) throws SQLException {
+        try (PreparedStatement statement = prepare(connection, sql, id)) {
+            return statement.executeUpdate();
+        }
+    }
+
+    private static void drain(PreparedStatement statement) throws SQLException {
+        try (statement; ResultSet rs = statement.executeQuery()) {
+            while (rs.next()) {
+                // Consume every row so the work matches the MySQL procedure
+            }
+        }
+    }
+
+    private static void drain(Statement statement, String sql) throws SQLException {
+        try (statement; ResultSet rs = statement.executeQuery(sql)) {
+            while (rs.next()) {
+                // Consume every row so the work matches the MySQL procedure
+            }
+        }
+    }
+}
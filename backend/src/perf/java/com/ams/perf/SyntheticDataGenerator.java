@@ -0,0 +1,229 @@
+package com.ams.perf;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Deterministic synthetic data for benchmarks and load tests. Rows are
+ * inserted in id order into empty tables, so generated ids are predictable:
+ * apartment ids run 1..apartments, the admin is user 1, residents follow and
+ * visitors come last.
+ */
+@Slf4j
+public class SyntheticDataGenerator {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private static final String[] FIRST_NAMES = {
+        "John", "Jane", "Mike", "Sarah", "Robert", "Emily", "David", "Anna", "Chris", "Laura",
+        "James", "Maria", "Daniel", "Olivia", "Paul", "Sofia", "Mark", "Grace", "Kevin", "Nina"
+    };
+    private static final String[] LAST_NAMES = {
+        "Doe", "Smith", "Johnson", "Williams", "Brown", "Jones", "Miller", "Davis", "Garcia", "Wilson",
+        "Moore", "Taylor", "Anderson", "Thomas", "Jackson", "White", "Harris", "Martin", "Clark", "Lewis"
+    };
+    private static final String[] CATEGORIES = {
+        "MAINTENANCE", "PLUMBING", "ELECTRICAL", "HVAC", "APPLIANCE", "NOISE", "SECURITY", "OTHER"
+    };
+    private static final String[] PRIORITIES = {"LOW", "MEDIUM", "HIGH", "CRITICAL"};
+    private static final String[] BOOKING_STATUSES = {"PENDING", "APPROVED", "REJECTED", "CANCELLED"};
+    private static final String[] ANNOUNCEMENT_TYPES = {"GENERAL", "MAINTENANCE", "EVENT", "EMERGENCY", "OTHER"};
+
+    /**
+     * Size of the generated portfolio
+     */
+    @Data
+    public static class Scale {
+        private int buildings = 4;
+        private int floorsPerBuilding = 10;
+        private int unitsPerFloor = 10;
+        /** Fraction of apartments with a resident */
+        private double occupancy = 0.9;
+        private int visitors = 200;
+        /** Months of rent history per resident */
+        private int yearsOfPayments = 3;
+        private int complaintsPerResidentPerYear = 2;
+        private int bookingsPerVisitor = 2;
+        private int announcementsPerYear = 50;
+
+        public int apartments() {
+            return buildings * floorsPerBuilding * unitsPerFloor;
+        }
+
+        public int residents() {
+            return (int) (apartments() * occupancy);
+        }
+
+        /**
+         * A portfolio sized so that it holds roughly the given number of residents
+         */
+        public static Scale ofResidents(int residents) {
+            Scale scale = new Scale();
+            scale.setBuildings(Math.max(1, (int) Math.ceil(residents / (scale.floorsPerBuilding
+                    * scale.unitsPerFloor * scale.occupancy))));
+            scale.setVisitors(Math.max(10, residents / 10));
+            return scale;
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Random random;
+
+    public SyntheticDataGenerator(DataSource dataSource, long seed) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.random = new Random(seed);
+    }
+
+    public void generate(Scale scale) {
+        long start = System.nanoTime();
+        LocalDate today = LocalDate.now();
+        int apartments = scale.apartments();
+        int residents = scale.residents();
+        
+        List<Object[]> rows = new ArrayList<>();
+        BigDecimal[] rents = new BigDecimal[apartments + 1];
+        for (int building = 1, id = 1; building <= scale.getBuildings(); building++) {
+            for (int floor = 1; floor <= scale.getFloorsPerBuilding(); floor++) {
+                for (int unit = 1; unit <= scale.getUnitsPerFloor(); unit++, id++) {
+                    int bedrooms = 1 + random.nextInt(4);
+                    rents[id] = BigDecimal.valueOf(900 + bedrooms * 400L + random.nextInt(300));
+                    rows.add(new Object[] {
+                        "Building " + building + " - Unit " + floor + String.format("%02d", unit), floor,
+                        building + "-" + floor + String.format("%02d", unit), "Building " + building,
+                        450.0 + bedrooms * 275,
+                        bedrooms, Math.max(1, bedrooms - 1), rents[id],
+                        bedrooms + " bedroom apartment in building " + building + " on floor " + floor,
+                        id > residents
+                    });
+                }
+            }
+        }
+        batch("INSERT INTO apartments (name, floor_number, unit_number, building, area, bedrooms, bathrooms, "
+                + "rent, description, is_available) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", rows);
+        
+        rows.add(new Object[] {"Admin", "User", "admin@ams.com", "password", "555-0100", "ADMIN", null});
+        for (int i = 1; i <= residents; i++) {
+            rows.add(user(i, "resident", "RESIDENT", (long) i));
+        }
+        for (int i = 1; i <= scale.getVisitors(); i++) {
+            rows.add(user(i, "visitor", "VISITOR", null));
+        }
+        batch("INSERT INTO users (first_name, last_name, email, password, phone, role, apartment_id) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?)", rows);
+        
+        int months = scale.getYearsOfPayments() * 12;
+        for (int i = 1; i <= residents; i++) {
+            long residentId = i + 1L;
+            for (int month = months - 1; month >= 0; month--) {
+                LocalDate dueDate = today.minusMonths(month).withDayOfMonth(1);
+                String status;
+                LocalDate paymentDate = null;
+                if (month == 0) {
+                    status = "PENDING";
+                } else if (random.nextInt(50) == 0) {
+                    status = month <= 3 ? "PENDING" : "LATE";
+                } else {
+                    status = "PAID";
+                    paymentDate = dueDate.plusDays(random.nextInt(10) - 3);
+                }
+                rows.add(new Object[] {
+                    "RENT", rents[i], "Rent for " + dueDate.getMonth() + " " + dueDate.getYear(),
+                    paymentDate != null ? Date.valueOf(paymentDate) : null, Date.valueOf(dueDate),
+                    status, residentId, (long) i
+                });
+                flushIfFull("INSERT INTO payments (type, amount, description, payment_date, due_date, status, "
+                        + "resident_id, apartment_id) VALUES (?, ?, ?, ?, ?, ?, ?, ?)", rows);
+            }
+        }
+        batch("INSERT INTO payments (type, amount, description, payment_date, due_date, status, "
+                + "resident_id, apartment_id) VALUES (?, ?, ?, ?, ?, ?, ?, ?)", rows);
+        
+        int complaintsPerResident = scale.getComplaintsPerResidentPerYear() * scale.getYearsOfPayments();
+        for (int i = 1; i <= residents; i++) {
+            for (int c = 0; c < complaintsPerResident; c++) {
+                LocalDateTime createdAt = today.atStartOfDay().minusDays(random.nextInt(months * 30 + 1));
+                boolean open = createdAt.isAfter(today.atStartOfDay().minusDays(30)) && random.nextBoolean();
+                String category = CATEGORIES[random.nextInt(CATEGORIES.length)];
+                rows.add(new Object[] {
+                    category.charAt(0) + category.substring(1).toLowerCase() + " issue in unit " + i,
+                    "Resident reports a " + category.toLowerCase() + " problem that needs attention",
+                    category, PRIORITIES[random.nextInt(PRIORITIES.length)],
+                    open ? "PENDING" : (random.nextInt(10) == 0 ? "CANCELLED" : "RESOLVED"),
+                    i + 1L, (long) i, open ? null : 1L, Timestamp.valueOf(createdAt),
+                    open ? null : Timestamp.valueOf(createdAt.plusDays(1 + random.nextInt(14)))
+                });
+                flushIfFull("INSERT INTO complaints (title, description, category, priority, status, resident_id, "
+                        + "apartment_id, assigned_to_id, created_at, resolved_at) "
+                        + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", rows);
+            }
+        }
+        batch("INSERT INTO complaints (title, description, category, priority, status, resident_id, "
+                + "apartment_id, assigned_to_id, created_at, resolved_at) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", rows);
+        
+        long firstVisitorId = residents + 2L;
+        for (int v = 0; v < scale.getVisitors(); v++) {
+            for (int b = 0; b < scale.getBookingsPerVisitor(); b++) {
+                LocalDate moveIn = today.plusDays(random.nextInt(180) - 30);
+                rows.add(new Object[] {
+                    1L + random.nextInt(apartments), firstVisitorId + v,
+                    Date.valueOf(moveIn), Date.valueOf(moveIn.plusMonths(1 + random.nextInt(12))),
+                    BOOKING_STATUSES[random.nextInt(BOOKING_STATUSES.length)], "Interested in viewing this unit"
+                });
+            }
+        }
+        batch("INSERT INTO bookings (apartment_id, visitor_id, move_in_date, move_out_date, status, message) "
+                + "VALUES (?, ?, ?, ?, ?, ?)", rows);
+        
+        for (int a = 0; a < scale.getAnnouncementsPerYear() * scale.getYearsOfPayments(); a++) {
+            LocalDateTime createdAt = today.atStartOfDay().minusDays(random.nextInt(months * 30 + 1));
+            rows.add(new Object[] {
+                "Announcement " + (a + 1), "Notice to all residents regarding building operations",
+                1L, ANNOUNCEMENT_TYPES[random.nextInt(ANNOUNCEMENT_TYPES.length)], true,
+                Timestamp.valueOf(createdAt.plusDays(7 + random.nextInt(60))), Timestamp.valueOf(createdAt)
+            });
+        }
+        batch("INSERT INTO announcements (title, content, created_by_id, type, active, expiry_date, created_at) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?)", rows);
+        
+        log.info("Generated {} apartments, {} residents, {} visitors and {} months of payments in {} ms",
+                apartments, residents, scale.getVisitors(), months, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private Object[] user(int index, String prefix, String role, Long apartmentId) {
+        return new Object[] {
+            FIRST_NAMES[random.nextInt(FIRST_NAMES.length)], LAST_NAMES[random.nextInt(LAST_NAMES.length)],
+            prefix + index + "@example.com", "password", "555-" + String.format("%04d", index % 10000),
+            role, apartmentId
+        };
+    }
+
+    private void flushIfFull(String sql, List<Object[]> rows) {
+        if (rows.size() >= BATCH_SIZE) {
+            batch(sql, rows);
+        }
+    }
+
+    /**
+     * Insert the rows in batches and clear the list
+     */
+    private void batch(String sql, List<Object[]> rows) {
+        for (int from = 0; from < rows.size(); from += BATCH_SIZE) {
+            jdbcTemplate.batchUpdate(sql, rows.subList(from, Math.min(from + BATCH_SIZE, rows.size())));
+        }
+        rows.clear();
+    }
+}
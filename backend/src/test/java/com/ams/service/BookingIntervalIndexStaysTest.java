@@ -0,0 +1,92 @@
+package com.ams.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.ams.service.BookingIntervalIndex.Stays;
+
+class BookingIntervalIndexStaysTest {
+
+    private static final long OPEN = Long.MAX_VALUE;
+
+    @Test
+    void emptyApartmentOverlapsNothing() {
+        assertThat(Stays.EMPTY.overlaps(0, 10)).isFalse();
+        assertThat(Stays.EMPTY.overlaps(0, OPEN)).isFalse();
+    }
+
+    @Test
+    void staysAreHalfOpen() {
+        Stays stays = Stays.of(List.of(new long[] {1, 10, 20}));
+
+        // Moving in on the day the previous resident moves out is free
+        assertThat(stays.overlaps(20, 30)).isFalse();
+        assertThat(stays.overlaps(0, 10)).isFalse();
+        assertThat(stays.overlaps(19, 30)).isTrue();
+        assertThat(stays.overlaps(0, 11)).isTrue();
+    }
+
+    @Test
+    void containedAndContainingRangesOverlap() {
+        Stays stays = Stays.of(List.of(new long[] {1, 10, 20}));
+
+        assertThat(stays.overlaps(12, 15)).isTrue();
+        assertThat(stays.overlaps(5, 25)).isTrue();
+        assertThat(stays.overlaps(10, 20)).isTrue();
+    }
+
+    @Test
+    void openEndedStayBlocksEverythingAfterItsStart() {
+        Stays stays = Stays.of(List.of(new long[] {1, 100, OPEN}));
+
+        assertThat(stays.overlaps(50, 100)).isFalse();
+        assertThat(stays.overlaps(50, 101)).isTrue();
+        assertThat(stays.overlaps(1_000_000, 1_000_001)).isTrue();
+        assertThat(stays.overlaps(1_000_000, OPEN)).isTrue();
+    }
+
+    @Test
+    void openEndedRequestConflictsWithAnyLaterStay() {
+        Stays stays = Stays.of(List.of(new long[] {1, 10, 20}));
+
+        assertThat(stays.overlaps(20, OPEN)).isFalse();
+        assertThat(stays.overlaps(15, OPEN)).isTrue();
+        assertThat(stays.overlaps(0, OPEN)).isTrue();
+    }
+
+    @Test
+    void findsAGapBetweenStaysInAnyInsertionOrder() {
+        Stays stays = Stays.of(List.of(new long[] {2, 40, 50}, new long[] {1, 10, 20}, new long[] {3, 60, OPEN}));
+
+        assertThat(stays.overlaps(20, 40)).isFalse();
+        assertThat(stays.overlaps(50, 60)).isFalse();
+        assertThat(stays.overlaps(25, 45)).isTrue();
+        assertThat(stays.overlaps(55, 65)).isTrue();
+    }
+
+    @Test
+    void longEarlierStayIsFoundBehindShorterLaterOnes() {
+        // The running maximum end catches a stay that starts first but ends last
+        Stays stays = Stays.of(List.of(new long[] {1, 0, 100}, new long[] {2, 10, 20}, new long[] {3, 30, 40}));
+
+        assertThat(stays.overlaps(50, 60)).isTrue();
+        assertThat(stays.overlaps(100, 110)).isFalse();
+    }
+
+    @Test
+    void withAndWithoutReplaceABookingsStay() {
+        Stays stays = Stays.of(List.of(new long[] {1, 10, 20}));
+
+        Stays moved = stays.with(1, 30, 40);
+        assertThat(moved.overlaps(10, 20)).isFalse();
+        assertThat(moved.overlaps(35, 36)).isTrue();
+
+        Stays added = moved.with(2, 50, OPEN);
+        assertThat(added.overlaps(45, 55)).isTrue();
+        assertThat(added.without(2).overlaps(45, 55)).isFalse();
+        assertThat(added.without(1).overlaps(35, 36)).isFalse();
+    }
+}
@@ -0,0 +1,54 @@
+package com.ams.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class BloomFilterTest {
+
+    @Test
+    void neverForgetsAValueThatWasPut() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put("txn-" + i);
+        }
+        for (int i = 0; i < 10_000; i++) {
+            assertThat(filter.mightContain("txn-" + i)).as("txn-" + i).isTrue();
+        }
+    }
+
+    @Test
+    void keepsNoFalseNegativesWhenOverfilled() {
+        BloomFilter filter = new BloomFilter(100, 0.01);
+        for (int i = 0; i < 5_000; i++) {
+            filter.put("txn-" + i);
+        }
+        for (int i = 0; i < 5_000; i++) {
+            assertThat(filter.mightContain("txn-" + i)).as("txn-" + i).isTrue();
+        }
+    }
+
+    @Test
+    void falsePositiveRateStaysNearTheTargetAtExpectedSize() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put("txn-" + i);
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (filter.mightContain("other-" + i)) {
+                falsePositives++;
+            }
+        }
+        // Well above the 1% target, so only a broken hash fails this
+        assertThat(falsePositives).isLessThan(300);
+        assertThat(filter.approximateInsertions()).isBetween(9_000L, 10_000L);
+    }
+
+    @Test
+    void emptyFilterContainsNothing() {
+        BloomFilter filter = new BloomFilter(1_000, 0.01);
+        assertThat(filter.mightContain("txn-1")).isFalse();
+        assertThat(filter.mightContain("")).isFalse();
+    }
+}
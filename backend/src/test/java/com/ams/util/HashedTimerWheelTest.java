@@ -0,0 +1,98 @@
+package com.ams.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class HashedTimerWheelTest {
+
+    private static final long TICK_MILLIS = 10;
+
+    private final List<String> fired = new CopyOnWriteArrayList<>();
+    private final Map<String, Long> firedAt = new ConcurrentHashMap<>();
+    private CountDownLatch latch;
+    private HashedTimerWheel<String> wheel;
+
+    @AfterEach
+    void stop() {
+        if (wheel != null) {
+            wheel.stop();
+        }
+    }
+
+    @Test
+    void firesPastDeadlinesOnTheNextTick() throws InterruptedException {
+        start(1, 8);
+        wheel.schedule("past", System.currentTimeMillis() - 1_000);
+
+        assertThat(latch.await(1, TimeUnit.SECONDS)).isTrue();
+        assertThat(fired).containsExactly("past");
+    }
+
+    @Test
+    void firesNoEarlierThanAboutTheDeadline() throws InterruptedException {
+        start(1, 8);
+        long scheduledAt = System.currentTimeMillis();
+        wheel.schedule("later", scheduledAt + 50);
+
+        assertThat(latch.await(1, TimeUnit.SECONDS)).isTrue();
+        // Accurate to one tick either way
+        assertThat(firedAt.get("later") - scheduledAt).isGreaterThanOrEqualTo(50 - TICK_MILLIS);
+    }
+
+    @Test
+    void waitsOutExtraRoundsForDeadlinesBeyondOneRevolution() throws InterruptedException {
+        // One revolution is 4 ticks; the deadline is several revolutions away
+        start(1, 4);
+        long scheduledAt = System.currentTimeMillis();
+        wheel.schedule("far", scheduledAt + 150);
+
+        assertThat(latch.await(1, TimeUnit.SECONDS)).isTrue();
+        assertThat(firedAt.get("far") - scheduledAt).isGreaterThanOrEqualTo(150 - TICK_MILLIS);
+    }
+
+    @Test
+    void cancelledTimeoutsNeverFire() throws InterruptedException {
+        start(1, 8);
+        wheel.schedule("cancelled", System.currentTimeMillis() + 20).cancel();
+        wheel.schedule("kept", System.currentTimeMillis() + 60);
+
+        assertThat(latch.await(1, TimeUnit.SECONDS)).isTrue();
+        assertThat(fired).containsExactly("kept");
+    }
+
+    @Test
+    void failingCallbackDoesNotStopTheWheel() throws InterruptedException {
+        latch = new CountDownLatch(1);
+        wheel = new HashedTimerWheel<>(TICK_MILLIS, 8, "test-wheel", item -> {
+            if (item.equals("failing")) {
+                throw new IllegalStateException("callback failed");
+            }
+            fired.add(item);
+            latch.countDown();
+        });
+        long now = System.currentTimeMillis();
+        wheel.schedule("failing", now);
+        wheel.schedule("after", now + 30);
+
+        assertThat(latch.await(1, TimeUnit.SECONDS)).isTrue();
+        assertThat(fired).containsExactly("after");
+    }
+
+    private void start(int expected, int wheelSize) {
+        latch = new CountDownLatch(expected);
+        wheel = new HashedTimerWheel<>(TICK_MILLIS, wheelSize, "test-wheel", item -> {
+            firedAt.put(item, System.currentTimeMillis());
+            fired.add(item);
+            latch.countDown();
+        });
+    }
+}
@@ -0,0 +1,123 @@
+package com.ams.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MappedLogStoreTest {
+
+    private static final long HOUR = 3_600_000;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void replaysPutsAndRemovalsAfterReopen() throws IOException {
+        try (MappedLogStore store = open()) {
+            assertThat(store.put(bytes("a"), bytes("1"), HOUR)).isTrue();
+            store.put(bytes("b"), bytes("2"), HOUR);
+            store.put(bytes("a"), bytes("3"), HOUR);
+            store.put(bytes("c"), bytes("4"), HOUR);
+            store.remove(bytes("c"));
+        }
+
+        try (MappedLogStore store = open()) {
+            assertThat(store.get(bytes("a"))).isEqualTo(bytes("3"));
+            assertThat(store.get(bytes("b"))).isEqualTo(bytes("2"));
+            assertThat(store.get(bytes("c"))).isNull();
+            assertThat(store.size()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    void replaysAcrossSegmentsAfterReopen() throws IOException {
+        try (MappedLogStore store = open()) {
+            for (int i = 0; i < 100; i++) {
+                store.put(bytes("key-" + i), bytes("value-" + i), HOUR);
+            }
+        }
+
+        try (MappedLogStore store = open()) {
+            assertThat(store.size()).isEqualTo(100);
+            for (int i = 0; i < 100; i++) {
+                assertThat(store.get(bytes("key-" + i))).isEqualTo(bytes("value-" + i));
+            }
+        }
+    }
+
+    @Test
+    void clearHidesEarlierEntriesAfterReopen() throws IOException {
+        try (MappedLogStore store = open()) {
+            store.put(bytes("a"), bytes("1"), HOUR);
+            store.clear();
+            store.put(bytes("b"), bytes("2"), HOUR);
+        }
+
+        try (MappedLogStore store = open()) {
+            assertThat(store.get(bytes("a"))).isNull();
+            assertThat(store.get(bytes("b"))).isEqualTo(bytes("2"));
+        }
+    }
+
+    @Test
+    void expiredEntriesAreNotReturned() throws IOException {
+        try (MappedLogStore store = open()) {
+            store.put(bytes("a"), bytes("1"), -1);
+            assertThat(store.get(bytes("a"))).isNull();
+        }
+    }
+
+    @Test
+    void rejectsEntriesLargerThanASegment() throws IOException {
+        try (MappedLogStore store = open()) {
+            assertThat(store.put(bytes("a"), new byte[1024], HOUR)).isFalse();
+            assertThat(store.get(bytes("a"))).isNull();
+        }
+    }
+
+    @Test
+    void compactionKeepsLiveEntriesAndRemovalsAcrossReopen() throws IOException {
+        long before;
+        try (MappedLogStore store = open()) {
+            store.put(bytes("kept"), bytes("kept"), HOUR);
+            store.put(bytes("removed"), bytes("removed"), HOUR);
+            // Overwrites leave the older segments almost entirely dead
+            for (int i = 0; i < 50; i++) {
+                store.put(bytes("hot"), bytes("value-" + i), HOUR);
+            }
+            store.remove(bytes("removed"));
+            store.put(bytes("tail"), bytes("tail"), HOUR);
+
+            before = store.usedBytes();
+            store.compact();
+            assertThat(store.usedBytes()).isLessThan(before);
+
+            assertThat(store.get(bytes("kept"))).isEqualTo(bytes("kept"));
+            assertThat(store.get(bytes("hot"))).isEqualTo(bytes("value-49"));
+            assertThat(store.get(bytes("removed"))).isNull();
+        }
+
+        try (MappedLogStore store = open()) {
+            assertThat(store.usedBytes()).isLessThan(before);
+            assertThat(store.get(bytes("kept"))).isEqualTo(bytes("kept"));
+            assertThat(store.get(bytes("hot"))).isEqualTo(bytes("value-49"));
+            assertThat(store.get(bytes("tail"))).isEqualTo(bytes("tail"));
+            assertThat(store.get(bytes("removed"))).isNull();
+            assertThat(store.size()).isEqualTo(3);
+        }
+    }
+
+    private MappedLogStore open() throws IOException {
+        // Compaction only runs when a test asks for it
+        return new MappedLogStore(directory, 256, 16, 0.5, HOUR, "test-compactor");
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,105 @@
+package com.ams.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class RingBufferTest {
+
+    @Test
+    void rejectsCapacityThatIsNotAPowerOfTwo() {
+        assertThatThrownBy(() -> new RingBuffer<String>(6)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void wrapsAroundOnceReaderHasTakenTheSlots() {
+        RingBuffer<Integer> buffer = new RingBuffer<>(4);
+        RingBuffer<Integer>.Reader reader = buffer.newReader("reader");
+
+        for (int i = 0; i < 4; i++) {
+            assertThat(buffer.tryPublish(i)).isTrue();
+        }
+        assertThat(buffer.tryPublish(4)).isFalse();
+        assertThat(drain(reader, 10)).containsExactly(0, 1, 2, 3);
+
+        // Every slot is written a second time
+        for (int i = 4; i < 8; i++) {
+            assertThat(buffer.tryPublish(i)).isTrue();
+        }
+        assertThat(buffer.getCursor()).isEqualTo(7);
+        assertThat(reader.lag()).isEqualTo(4);
+        assertThat(drain(reader, 10)).containsExactly(4, 5, 6, 7);
+        assertThat(reader.lag()).isZero();
+    }
+
+    @Test
+    void drainsAtMostTheRequestedBatch() {
+        RingBuffer<Integer> buffer = new RingBuffer<>(8);
+        RingBuffer<Integer>.Reader reader = buffer.newReader("reader");
+        for (int i = 0; i < 5; i++) {
+            buffer.tryPublish(i);
+        }
+
+        assertThat(drain(reader, 3)).containsExactly(0, 1, 2);
+        assertThat(drain(reader, 3)).containsExactly(3, 4);
+        assertThat(drain(reader, 3)).isEmpty();
+    }
+
+    @Test
+    void slowestReaderHoldsProducersBack() {
+        RingBuffer<Integer> buffer = new RingBuffer<>(4);
+        RingBuffer<Integer>.Reader fast = buffer.newReader("fast");
+        RingBuffer<Integer>.Reader slow = buffer.newReader("slow");
+
+        for (int i = 0; i < 4; i++) {
+            assertThat(buffer.tryPublish(i)).isTrue();
+        }
+        drain(fast, 10);
+        assertThat(buffer.tryPublish(4)).isFalse();
+        assertThat(buffer.remainingCapacity()).isZero();
+
+        assertThat(drain(slow, 2)).containsExactly(0, 1);
+        assertThat(buffer.remainingCapacity()).isEqualTo(2);
+        assertThat(buffer.tryPublish(4)).isTrue();
+        assertThat(buffer.tryPublish(5)).isTrue();
+        assertThat(buffer.tryPublish(6)).isFalse();
+
+        assertThat(drain(fast, 10)).containsExactly(4, 5);
+        assertThat(drain(slow, 10)).containsExactly(2, 3, 4, 5);
+    }
+
+    @Test
+    void removedReaderNoLongerHoldsProducersBack() {
+        RingBuffer<Integer> buffer = new RingBuffer<>(2);
+        RingBuffer<Integer>.Reader reader = buffer.newReader("reader");
+        buffer.tryPublish(0);
+        buffer.tryPublish(1);
+        assertThat(buffer.tryPublish(2)).isFalse();
+
+        buffer.removeReader(reader);
+        assertThat(buffer.tryPublish(2)).isTrue();
+    }
+
+    @Test
+    void newReaderOnlySeesLaterEvents() {
+        RingBuffer<Integer> buffer = new RingBuffer<>(4);
+        RingBuffer<Integer>.Reader early = buffer.newReader("early");
+        buffer.tryPublish(0);
+        RingBuffer<Integer>.Reader late = buffer.newReader("late");
+        buffer.tryPublish(1);
+
+        assertThat(drain(early, 10)).containsExactly(0, 1);
+        assertThat(drain(late, 10)).containsExactly(1);
+    }
+
+    private static List<Integer> drain(RingBuffer<Integer>.Reader reader, int maxBatch) {
+        // The batch handed to the handler is reused after it returns
+        List<Integer> taken = new ArrayList<>();
+        reader.drainTo(taken::addAll, maxBatch);
+        return taken;
+    }
+}
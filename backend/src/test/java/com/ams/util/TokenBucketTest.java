@@ -0,0 +1,46 @@
+package com.ams.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class TokenBucketTest {
+
+    @Test
+    void admitsABurstOfCapacityThenRejects() {
+        TokenBucket bucket = new TokenBucket();
+
+        // One token a minute: nothing refills while the test runs
+        for (int i = 0; i < 5; i++) {
+            assertThat(bucket.tryAcquire(5, 1.0 / 60)).isZero();
+        }
+        long wait = bucket.tryAcquire(5, 1.0 / 60);
+        assertThat(wait).isPositive().isLessThanOrEqualTo(TimeUnit.MINUTES.toNanos(1));
+    }
+
+    @Test
+    void refillsAtTheConfiguredRate() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket();
+        assertThat(bucket.tryAcquire(1, 10)).isZero();
+
+        long wait = bucket.tryAcquire(1, 10);
+        assertThat(wait).isPositive().isLessThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(100));
+
+        TimeUnit.NANOSECONDS.sleep(wait + TimeUnit.MILLISECONDS.toNanos(5));
+        assertThat(bucket.tryAcquire(1, 10)).isZero();
+    }
+
+    @Test
+    void idleBucketDoesNotSaveUpMoreThanCapacity() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket();
+        assertThat(bucket.tryAcquire(2, 100)).isZero();
+
+        // Long enough to refill far more than two tokens at 100 a second
+        TimeUnit.MILLISECONDS.sleep(100);
+        assertThat(bucket.tryAcquire(2, 100)).isZero();
+        assertThat(bucket.tryAcquire(2, 100)).isZero();
+        assertThat(bucket.tryAcquire(2, 100)).isPositive();
+    }
+}